@@ -0,0 +1,256 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.kdgregory.logging.testhelpers.fakeaws;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+
+/**
+ *  Implements the subset of CloudWatch Logs used by the log-writer: log group
+ *  and stream management, and <code>PutLogEvents</code>.
+ */
+class CloudWatchLogsService
+{
+    private final static Set<Integer> VALID_RETENTION_PERIODS = new HashSet<>(Arrays.asList(
+            1, 3, 5, 7, 14, 30, 60, 90, 120, 150, 180, 365, 400, 545, 731, 1827, 2192, 2557, 2922, 3288, 3653));
+
+    private FakeAwsEndpoint endpoint;
+
+    // the skip-list keeps describe results ordered, and supports prefix search
+    private ConcurrentSkipListMap<String,LogGroup> logGroups = new ConcurrentSkipListMap<>();
+
+    private AtomicLong sequenceTokens = new AtomicLong();
+
+
+    public CloudWatchLogsService(FakeAwsEndpoint endpoint)
+    {
+        this.endpoint = endpoint;
+    }
+
+
+    /**
+     *  Dispatches a request, returning the response body.
+     */
+    public ObjectNode invoke(String operation, JsonNode request)
+    {
+        switch (operation)
+        {
+            case "DescribeLogGroups" :
+                return describeLogGroups(request);
+            case "CreateLogGroup" :
+                return createLogGroup(request);
+            case "PutRetentionPolicy" :
+                return putRetentionPolicy(request);
+            case "DescribeLogStreams" :
+                return describeLogStreams(request);
+            case "CreateLogStream" :
+                return createLogStream(request);
+            case "PutLogEvents" :
+                return putLogEvents(request);
+            default :
+                throw new FakeServiceException("UnknownOperationException", "unsupported operation: " + operation);
+        }
+    }
+
+
+    /**
+     *  Removes all log groups.
+     */
+    public void reset()
+    {
+        logGroups.clear();
+    }
+
+//----------------------------------------------------------------------------
+//  Operations
+//----------------------------------------------------------------------------
+
+    private ObjectNode describeLogGroups(JsonNode request)
+    {
+        String prefix = request.path("logGroupNamePrefix").asText("");
+
+        ObjectNode response = JsonNodeFactory.instance.objectNode();
+        ArrayNode groups = response.putArray("logGroups");
+        for (LogGroup group : logGroups.tailMap(prefix).values())
+        {
+            if (! group.name.startsWith(prefix))
+                break;
+
+            ObjectNode entry = groups.addObject();
+            entry.put("logGroupName", group.name);
+            entry.put("arn", group.arn + ":*");
+            entry.put("creationTime", group.creationTime);
+            if (group.retentionInDays != null)
+                entry.put("retentionInDays", group.retentionInDays.intValue());
+        }
+        return response;
+    }
+
+
+    private ObjectNode createLogGroup(JsonNode request)
+    {
+        String groupName = requiredParam(request, "logGroupName");
+        LogGroup group = new LogGroup(groupName);
+        if (logGroups.putIfAbsent(groupName, group) != null)
+            throw new FakeServiceException("ResourceAlreadyExistsException", "The specified log group already exists");
+
+        return JsonNodeFactory.instance.objectNode();
+    }
+
+
+    private ObjectNode putRetentionPolicy(JsonNode request)
+    {
+        LogGroup group = getLogGroup(requiredParam(request, "logGroupName"));
+        int retentionInDays = request.path("retentionInDays").asInt();
+        if (! VALID_RETENTION_PERIODS.contains(retentionInDays))
+            throw new FakeServiceException("InvalidParameterException", "invalid retention period: " + retentionInDays);
+
+        group.retentionInDays = retentionInDays;
+        return JsonNodeFactory.instance.objectNode();
+    }
+
+
+    private ObjectNode describeLogStreams(JsonNode request)
+    {
+        LogGroup group = getLogGroup(requiredParam(request, "logGroupName"));
+        String prefix = request.path("logStreamNamePrefix").asText("");
+
+        ObjectNode response = JsonNodeFactory.instance.objectNode();
+        ArrayNode streams = response.putArray("logStreams");
+        for (LogStream stream : group.streams.tailMap(prefix).values())
+        {
+            if (! stream.name.startsWith(prefix))
+                break;
+
+            ObjectNode entry = streams.addObject();
+            entry.put("logStreamName", stream.name);
+            entry.put("arn", stream.arn);
+            entry.put("creationTime", stream.creationTime);
+            entry.put("storedBytes", stream.storedBytes.get());
+        }
+        return response;
+    }
+
+
+    private ObjectNode createLogStream(JsonNode request)
+    {
+        LogGroup group = getLogGroup(requiredParam(request, "logGroupName"));
+        String streamName = requiredParam(request, "logStreamName");
+        LogStream stream = new LogStream(group, streamName);
+        if (group.streams.putIfAbsent(streamName, stream) != null)
+            throw new FakeServiceException("ResourceAlreadyExistsException", "The specified log stream already exists");
+
+        return JsonNodeFactory.instance.objectNode();
+    }
+
+
+    private ObjectNode putLogEvents(JsonNode request)
+    {
+        LogGroup group = getLogGroup(requiredParam(request, "logGroupName"));
+        String streamName = requiredParam(request, "logStreamName");
+        LogStream stream = group.streams.get(streamName);
+        if (stream == null)
+            throw new FakeServiceException("ResourceNotFoundException", "The specified log stream does not exist.");
+
+        JsonNode events = request.path("logEvents");
+        if (events.size() == 0)
+            throw new FakeServiceException("InvalidParameterException", "logEvents must contain at least one event");
+
+        long lastTimestamp = Long.MIN_VALUE;
+        for (JsonNode event : events)
+        {
+            long timestamp = event.path("timestamp").asLong();
+            if (timestamp < lastTimestamp)
+                throw new FakeServiceException("InvalidParameterException", "Log events in a single PutLogEvents request must be in chronological order.");
+            lastTimestamp = timestamp;
+        }
+
+        String destination = group.name + "/" + stream.name;
+        for (JsonNode event : events)
+        {
+            String message = event.path("message").asText();
+            int messageBytes = message.getBytes(StandardCharsets.UTF_8).length;
+            stream.storedBytes.addAndGet(messageBytes);
+            endpoint.messageAccepted(destination, message, messageBytes);
+        }
+
+        ObjectNode response = JsonNodeFactory.instance.objectNode();
+        response.put("nextSequenceToken", String.valueOf(sequenceTokens.incrementAndGet()));
+        return response;
+    }
+
+//----------------------------------------------------------------------------
+//  Internals
+//----------------------------------------------------------------------------
+
+    private static String requiredParam(JsonNode request, String name)
+    {
+        String value = request.path(name).asText("");
+        if (value.isEmpty())
+            throw new FakeServiceException("InvalidParameterException", "missing required parameter: " + name);
+        return value;
+    }
+
+
+    private LogGroup getLogGroup(String groupName)
+    {
+        LogGroup group = logGroups.get(groupName);
+        if (group == null)
+            throw new FakeServiceException("ResourceNotFoundException", "The specified log group does not exist.");
+        return group;
+    }
+
+
+    private static class LogGroup
+    {
+        public final String name;
+        public final String arn;
+        public final long creationTime = System.currentTimeMillis();
+        public final ConcurrentSkipListMap<String,LogStream> streams = new ConcurrentSkipListMap<>();
+        public volatile Integer retentionInDays;
+
+        public LogGroup(String name)
+        {
+            this.name = name;
+            this.arn = "arn:aws:logs:" + FakeAwsEndpoint.REGION + ":" + FakeAwsEndpoint.ACCOUNT_ID + ":log-group:" + name;
+        }
+    }
+
+
+    private static class LogStream
+    {
+        public final String name;
+        public final String arn;
+        public final long creationTime = System.currentTimeMillis();
+        public final AtomicLong storedBytes = new AtomicLong();
+
+        public LogStream(LogGroup group, String name)
+        {
+            this.name = name;
+            this.arn = group.arn + ":log-stream:" + name;
+        }
+    }
+}
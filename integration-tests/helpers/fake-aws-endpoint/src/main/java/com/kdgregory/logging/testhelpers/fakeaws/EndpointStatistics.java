@@ -0,0 +1,200 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.kdgregory.logging.testhelpers.fakeaws;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+/**
+ *  Request and byte accounting for a {@link FakeAwsEndpoint}. All counters are
+ *  updated concurrently by the endpoint's request threads, and may be read at
+ *  any time.
+ *  <p>
+ *  Operations are identified by their API name (for example, <code>PutLogEvents</code>
+ *  or <code>Publish</code>).
+ */
+public class EndpointStatistics
+{
+    private ConcurrentHashMap<String,AtomicLong> requestCounts = new ConcurrentHashMap<>();
+    private ConcurrentHashMap<String,AtomicLong> throttledCounts = new ConcurrentHashMap<>();
+
+    private AtomicLong requestsReceived = new AtomicLong();
+    private AtomicLong requestsThrottled = new AtomicLong();
+    private AtomicLong bytesReceived = new AtomicLong();
+    private AtomicLong messagesAccepted = new AtomicLong();
+    private AtomicLong messageBytesAccepted = new AtomicLong();
+    private AtomicLong recordsFailed = new AtomicLong();
+
+//----------------------------------------------------------------------------
+//  Accessors
+//----------------------------------------------------------------------------
+
+    /**
+     *  Returns the total number of requests received, including those that
+     *  were throttled or failed.
+     */
+    public long getRequestsReceived()
+    {
+        return requestsReceived.get();
+    }
+
+
+    /**
+     *  Returns the number of requests received for a single operation.
+     */
+    public long getRequestsReceived(String operation)
+    {
+        AtomicLong counter = requestCounts.get(operation);
+        return (counter != null) ? counter.get() : 0;
+    }
+
+
+    /**
+     *  Returns the total number of requests that were rejected due to simulated
+     *  throttling.
+     */
+    public long getRequestsThrottled()
+    {
+        return requestsThrottled.get();
+    }
+
+
+    /**
+     *  Returns the number of requests for a single operation that were rejected
+     *  due to simulated throttling.
+     */
+    public long getRequestsThrottled(String operation)
+    {
+        AtomicLong counter = throttledCounts.get(operation);
+        return (counter != null) ? counter.get() : 0;
+    }
+
+
+    /**
+     *  Returns the total size of all request bodies, as sent over the wire.
+     */
+    public long getBytesReceived()
+    {
+        return bytesReceived.get();
+    }
+
+
+    /**
+     *  Returns the number of log messages accepted: CloudWatch events, Kinesis
+     *  records, and SNS publishes.
+     */
+    public long getMessagesAccepted()
+    {
+        return messagesAccepted.get();
+    }
+
+
+    /**
+     *  Returns the total size, in bytes of UTF-8, of the accepted log messages.
+     */
+    public long getMessageBytesAccepted()
+    {
+        return messageBytesAccepted.get();
+    }
+
+
+    /**
+     *  Returns the number of individual Kinesis records that were rejected by
+     *  simulated partial failures.
+     */
+    public long getRecordsFailed()
+    {
+        return recordsFailed.get();
+    }
+
+
+    /**
+     *  Returns a snapshot of the per-operation request counts, ordered by name.
+     */
+    public Map<String,Long> getRequestCounts()
+    {
+        Map<String,Long> result = new TreeMap<>();
+        for (Map.Entry<String,AtomicLong> entry : requestCounts.entrySet())
+        {
+            result.put(entry.getKey(), entry.getValue().get());
+        }
+        return result;
+    }
+
+
+    /**
+     *  Resets all counters to zero.
+     */
+    public void reset()
+    {
+        requestCounts.clear();
+        throttledCounts.clear();
+        requestsReceived.set(0);
+        requestsThrottled.set(0);
+        bytesReceived.set(0);
+        messagesAccepted.set(0);
+        messageBytesAccepted.set(0);
+        recordsFailed.set(0);
+    }
+
+
+    @Override
+    public String toString()
+    {
+        return "EndpointStatistics["
+             + "requestsReceived=" + requestsReceived.get()
+             + ", requestsThrottled=" + requestsThrottled.get()
+             + ", bytesReceived=" + bytesReceived.get()
+             + ", messagesAccepted=" + messagesAccepted.get()
+             + ", messageBytesAccepted=" + messageBytesAccepted.get()
+             + ", recordsFailed=" + recordsFailed.get()
+             + "]";
+    }
+
+//----------------------------------------------------------------------------
+//  Updaters -- called by endpoint and services
+//----------------------------------------------------------------------------
+
+    void recordRequest(String operation, int bodySize)
+    {
+        requestsReceived.incrementAndGet();
+        bytesReceived.addAndGet(bodySize);
+        requestCounts.computeIfAbsent(operation, k -> new AtomicLong()).incrementAndGet();
+    }
+
+
+    void recordThrottle(String operation)
+    {
+        requestsThrottled.incrementAndGet();
+        throttledCounts.computeIfAbsent(operation, k -> new AtomicLong()).incrementAndGet();
+    }
+
+
+    void recordMessage(int messageBytes)
+    {
+        messagesAccepted.incrementAndGet();
+        messageBytesAccepted.addAndGet(messageBytes);
+    }
+
+
+    void recordFailedRecord()
+    {
+        recordsFailed.incrementAndGet();
+    }
+}
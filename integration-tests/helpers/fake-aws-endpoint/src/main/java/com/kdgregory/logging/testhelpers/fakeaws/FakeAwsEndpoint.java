@@ -0,0 +1,476 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.kdgregory.logging.testhelpers.fakeaws;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+
+/**
+ *  An in-process HTTP server that implements enough of CloudWatch Logs, Kinesis,
+ *  and SNS to run the log-writers against it, so that load and soak tests can
+ *  exercise the full request path (SDK marshalling, HTTP, retries) without
+ *  touching AWS.
+ *  <p>
+ *  To use, start the endpoint and configure the appender's <code>clientEndpoint</code>
+ *  property with the value of {@link #getEndpoint}; also configure <code>clientRegion</code>
+ *  as {@link #REGION}. The SDK requires credentials, but they aren't checked: setting
+ *  the <code>aws.accessKeyId</code> and <code>aws.secretKey</code> system properties to
+ *  any value is sufficient.
+ *  <p>
+ *  The endpoint can add latency to every request, throttle write requests
+ *  (<code>PutLogEvents</code>, <code>PutRecords</code>, and <code>Publish</code>),
+ *  and reject individual Kinesis records. These behaviors are randomized; call
+ *  {@link #setRandomSeed} for repeatable runs. Note that the AWS SDK retries
+ *  throttled requests internally, so the writer's throttling statistics will
+ *  only reflect requests that exhausted those retries.
+ *  <p>
+ *  Resources are created on request and held in memory; messages are counted
+ *  (see {@link #getStatistics}) but only retained if {@link #setRetainMessages}
+ *  has been called, since a soak test would otherwise exhaust the heap.
+ *  <p>
+ *  This class is threadsafe: configuration may be changed while requests are
+ *  being processed.
+ */
+public class FakeAwsEndpoint
+{
+    /** The region used for ARNs. */
+    public final static String REGION = "us-east-1";
+
+    /** The account ID used for ARNs. */
+    public final static String ACCOUNT_ID = "123456789012";
+
+    private final static String JSON_CONTENT_TYPE = "application/x-amz-json-1.1";
+    private final static String CBOR_CONTENT_TYPE = "application/x-amz-cbor-1.1";
+
+    private ObjectMapper jsonMapper = new ObjectMapper();
+    private ObjectMapper cborMapper = new ObjectMapper(new CBORFactory());
+
+    private EndpointStatistics stats = new EndpointStatistics();
+
+    private CloudWatchLogsService logsService = new CloudWatchLogsService(this);
+    private KinesisService kinesisService = new KinesisService(this);
+    private SNSService snsService = new SNSService(this);
+
+    private HttpServer server;
+    private ExecutorService executor;
+
+    private volatile Random random = new Random();
+    private volatile long minLatency;
+    private volatile long maxLatency;
+    private volatile double throttleRate;
+    private volatile double recordFailureRate;
+    private volatile boolean retainMessages;
+
+    private ConcurrentHashMap<String,List<String>> retainedMessages = new ConcurrentHashMap<>();
+
+//----------------------------------------------------------------------------
+//  Lifecycle
+//----------------------------------------------------------------------------
+
+    /**
+     *  Starts the server on an ephemeral port, bound to the loopback address.
+     */
+    public synchronized FakeAwsEndpoint start()
+    throws IOException
+    {
+        if (server != null)
+            throw new IllegalStateException("endpoint already started");
+
+        executor = Executors.newCachedThreadPool(new RequestThreadFactory());
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/", this::handle);
+        server.setExecutor(executor);
+        server.start();
+        return this;
+    }
+
+
+    /**
+     *  Stops the server. Any in-progress requests are abandoned.
+     */
+    public synchronized void stop()
+    {
+        if (server == null)
+            return;
+
+        server.stop(0);
+        executor.shutdownNow();
+        server = null;
+        executor = null;
+    }
+
+
+    /**
+     *  Returns the URL of the running server, suitable for the appenders'
+     *  <code>clientEndpoint</code> property.
+     */
+    public synchronized String getEndpoint()
+    {
+        if (server == null)
+            throw new IllegalStateException("endpoint not started");
+
+        return "http://localhost:" + server.getAddress().getPort();
+    }
+
+
+    /**
+     *  Removes all resources and retained messages, and resets statistics. Does
+     *  not change configuration.
+     */
+    public void reset()
+    {
+        logsService.reset();
+        kinesisService.reset();
+        snsService.reset();
+        retainedMessages.clear();
+        stats.reset();
+    }
+
+//----------------------------------------------------------------------------
+//  Configuration and results
+//----------------------------------------------------------------------------
+
+    /**
+     *  Sets the range of latency, in milliseconds, added to every request. The
+     *  actual latency is uniformly distributed in this range.
+     */
+    public void setLatency(long minMillis, long maxMillis)
+    {
+        if ((minMillis < 0) || (maxMillis < minMillis))
+            throw new IllegalArgumentException("invalid latency range: " + minMillis + " - " + maxMillis);
+
+        this.minLatency = minMillis;
+        this.maxLatency = maxMillis;
+    }
+
+
+    /**
+     *  Sets the fraction (0 to 1) of write requests that are rejected as throttled.
+     */
+    public void setThrottleRate(double value)
+    {
+        this.throttleRate = value;
+    }
+
+
+    /**
+     *  Sets the fraction (0 to 1) of individual Kinesis records that are rejected
+     *  in an otherwise successful <code>PutRecords</code> request.
+     */
+    public void setKinesisRecordFailureRate(double value)
+    {
+        this.recordFailureRate = value;
+    }
+
+
+    /**
+     *  Sets the seed for the random number generator that controls latency,
+     *  throttling, and record failures.
+     */
+    public void setRandomSeed(long seed)
+    {
+        this.random = new Random(seed);
+    }
+
+
+    /**
+     *  Controls whether accepted messages are retained for later retrieval.
+     */
+    public void setRetainMessages(boolean value)
+    {
+        this.retainMessages = value;
+    }
+
+
+    /**
+     *  Returns the messages that have been accepted for the specified destination,
+     *  in the order that they were received (which, for concurrent requests, may
+     *  differ from the order that they were sent). Destinations are identified as
+     *  follows:
+     *  <ul>
+     *  <li> CloudWatch Logs: <code>LOG_GROUP/LOG_STREAM</code>
+     *  <li> Kinesis: the stream name
+     *  <li> SNS: the topic name
+     *  </ul>
+     *  Returns an empty list if no messages have been retained.
+     */
+    public List<String> getRetainedMessages(String destination)
+    {
+        List<String> messages = retainedMessages.get(destination);
+        if (messages == null)
+            return Collections.emptyList();
+
+        synchronized (messages)
+        {
+            return new ArrayList<>(messages);
+        }
+    }
+
+
+    /**
+     *  Returns the endpoint's statistics.
+     */
+    public EndpointStatistics getStatistics()
+    {
+        return stats;
+    }
+
+//----------------------------------------------------------------------------
+//  Callbacks from services
+//----------------------------------------------------------------------------
+
+    void messageAccepted(String destination, String message, int messageBytes)
+    {
+        stats.recordMessage(messageBytes);
+        if (retainMessages)
+        {
+            retainedMessages.computeIfAbsent(destination, k -> Collections.synchronizedList(new ArrayList<>()))
+                            .add(message);
+        }
+    }
+
+
+    boolean shouldFailRecord()
+    {
+        return (recordFailureRate > 0) && (random.nextDouble() < recordFailureRate);
+    }
+
+//----------------------------------------------------------------------------
+//  Request handling
+//----------------------------------------------------------------------------
+
+    private void handle(HttpExchange exchange)
+    throws IOException
+    {
+        try
+        {
+            byte[] body = readBody(exchange.getRequestBody());
+            String target = exchange.getRequestHeaders().getFirst("X-Amz-Target");
+            if (target != null)
+                handleJson(exchange, target, body);
+            else
+                handleQuery(exchange, body);
+        }
+        catch (Exception ex)
+        {
+            sendResponse(exchange, 500, "text/plain", String.valueOf(ex).getBytes(StandardCharsets.UTF_8));
+        }
+        finally
+        {
+            exchange.close();
+        }
+    }
+
+
+    /**
+     *  Handles CloudWatch Logs and Kinesis, which identify the operation with the
+     *  <code>X-Amz-Target</code> header, and send either JSON or CBOR.
+     */
+    private void handleJson(HttpExchange exchange, String target, byte[] body)
+    throws IOException
+    {
+        String contentType = exchange.getRequestHeaders().getFirst("Content-Type");
+        boolean isCbor = (contentType != null) && contentType.contains("cbor");
+        ObjectMapper mapper = isCbor ? cborMapper : jsonMapper;
+        String responseType = isCbor ? CBOR_CONTENT_TYPE : JSON_CONTENT_TYPE;
+
+        int dotIdx = target.indexOf('.');
+        String service = target.substring(0, Math.max(dotIdx, 0));
+        String operation = target.substring(dotIdx + 1);
+
+        stats.recordRequest(operation, body.length);
+        simulateLatency();
+
+        try
+        {
+            JsonNode request = (body.length > 0) ? mapper.readTree(body) : JsonNodeFactory.instance.objectNode();
+            ObjectNode response;
+            if (service.startsWith("Logs_"))
+            {
+                checkThrottle(operation, "PutLogEvents", "ThrottlingException");
+                response = logsService.invoke(operation, request);
+            }
+            else if (service.startsWith("Kinesis_"))
+            {
+                checkThrottle(operation, "PutRecords", "ProvisionedThroughputExceededException");
+                response = kinesisService.invoke(operation, request);
+            }
+            else
+            {
+                throw new FakeServiceException("UnknownOperationException", "unsupported service: " + target);
+            }
+            sendResponse(exchange, 200, responseType, mapper.writeValueAsBytes(response));
+        }
+        catch (FakeServiceException ex)
+        {
+            ObjectNode error = JsonNodeFactory.instance.objectNode();
+            error.put("__type", ex.getErrorCode());
+            error.put("message", ex.getMessage());
+            exchange.getResponseHeaders().add("x-amzn-ErrorType", ex.getErrorCode());
+            sendResponse(exchange, 400, responseType, mapper.writeValueAsBytes(error));
+        }
+    }
+
+
+    /**
+     *  Handles SNS, which sends form-encoded parameters and expects XML.
+     */
+    private void handleQuery(HttpExchange exchange, byte[] body)
+    throws IOException
+    {
+        Map<String,String> params = parseForm(new String(body, StandardCharsets.UTF_8));
+        String operation = params.getOrDefault("Action", "");
+
+        stats.recordRequest(operation, body.length);
+        simulateLatency();
+
+        try
+        {
+            checkThrottle(operation, "Publish", "Throttling");
+            String response = snsService.invoke(operation, params);
+            sendResponse(exchange, 200, "text/xml", response.getBytes(StandardCharsets.UTF_8));
+        }
+        catch (FakeServiceException ex)
+        {
+            String response = SNSService.errorResponse(ex.getErrorCode(), ex.getMessage());
+            sendResponse(exchange, 400, "text/xml", response.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+
+    private void simulateLatency()
+    {
+        long min = minLatency;
+        long max = maxLatency;
+        if (max <= 0)
+            return;
+
+        long delay = min + (long)(random.nextDouble() * (max - min));
+        try
+        {
+            Thread.sleep(delay);
+        }
+        catch (InterruptedException ex)
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+
+    private void checkThrottle(String operation, String writeOperation, String errorCode)
+    {
+        if (! operation.equals(writeOperation))
+            return;
+
+        if ((throttleRate > 0) && (random.nextDouble() < throttleRate))
+        {
+            stats.recordThrottle(operation);
+            throw new FakeServiceException(errorCode, "Rate exceeded");
+        }
+    }
+
+
+    private static void sendResponse(HttpExchange exchange, int status, String contentType, byte[] body)
+    throws IOException
+    {
+        exchange.getResponseHeaders().add("Content-Type", contentType);
+        exchange.getResponseHeaders().add("x-amzn-RequestId", UUID.randomUUID().toString());
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody())
+        {
+            out.write(body);
+        }
+    }
+
+
+    private static byte[] readBody(InputStream in)
+    throws IOException
+    {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream(8192);
+        byte[] buf = new byte[8192];
+        int count;
+        while ((count = in.read(buf)) > 0)
+        {
+            bos.write(buf, 0, count);
+        }
+        return bos.toByteArray();
+    }
+
+
+    private static Map<String,String> parseForm(String body)
+    throws UnsupportedEncodingException
+    {
+        Map<String,String> result = new HashMap<>();
+        for (String param : body.split("&"))
+        {
+            if (param.isEmpty())
+                continue;
+
+            int eqIdx = param.indexOf('=');
+            String name = (eqIdx < 0) ? param : param.substring(0, eqIdx);
+            String value = (eqIdx < 0) ? "" : param.substring(eqIdx + 1);
+            result.put(URLDecoder.decode(name, "UTF-8"), URLDecoder.decode(value, "UTF-8"));
+        }
+        return result;
+    }
+
+
+    /**
+     *  Creates daemon threads, so that a test that forgets to stop the endpoint
+     *  doesn't prevent the JVM from exiting.
+     */
+    private static class RequestThreadFactory
+    implements ThreadFactory
+    {
+        private AtomicInteger threadNumber = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable)
+        {
+            Thread thread = new Thread(runnable, "fake-aws-endpoint-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,45 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.kdgregory.logging.testhelpers.fakeaws;
+
+
+/**
+ *  Thrown by the service implementations to report an error response. The
+ *  endpoint translates this into the service's wire format.
+ */
+class FakeServiceException
+extends RuntimeException
+{
+    private static final long serialVersionUID = 1L;
+
+    private String errorCode;
+
+
+    public FakeServiceException(String errorCode, String message)
+    {
+        super(message);
+        this.errorCode = errorCode;
+    }
+
+
+    /**
+     *  Returns the AWS error code (for example, <code>ResourceNotFoundException</code>).
+     */
+    public String getErrorCode()
+    {
+        return errorCode;
+    }
+}
@@ -0,0 +1,218 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.kdgregory.logging.testhelpers.fakeaws;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+
+/**
+ *  Implements the subset of Kinesis Data Streams used by the log-writer: stream
+ *  management and <code>PutRecords</code>. Streams become active as soon as
+ *  they're created.
+ *  <p>
+ *  The endpoint's record failure rate causes individual records to be rejected
+ *  with <code>ProvisionedThroughputExceededException</code>, as happens when a
+ *  shard is at its write limit.
+ */
+class KinesisService
+{
+    private FakeAwsEndpoint endpoint;
+
+    private ConcurrentHashMap<String,Stream> streams = new ConcurrentHashMap<>();
+
+    private AtomicLong sequenceNumbers = new AtomicLong(49500000000000000L);
+
+
+    public KinesisService(FakeAwsEndpoint endpoint)
+    {
+        this.endpoint = endpoint;
+    }
+
+
+    /**
+     *  Dispatches a request, returning the response body.
+     */
+    public ObjectNode invoke(String operation, JsonNode request)
+    {
+        switch (operation)
+        {
+            case "DescribeStreamSummary" :
+                return describeStreamSummary(request);
+            case "CreateStream" :
+                return createStream(request);
+            case "IncreaseStreamRetentionPeriod" :
+                return increaseStreamRetentionPeriod(request);
+            case "PutRecords" :
+                return putRecords(request);
+            default :
+                throw new FakeServiceException("UnknownOperationException", "unsupported operation: " + operation);
+        }
+    }
+
+
+    /**
+     *  Removes all streams.
+     */
+    public void reset()
+    {
+        streams.clear();
+    }
+
+//----------------------------------------------------------------------------
+//  Operations
+//----------------------------------------------------------------------------
+
+    private ObjectNode describeStreamSummary(JsonNode request)
+    {
+        Stream stream = getStream(request);
+
+        ObjectNode response = JsonNodeFactory.instance.objectNode();
+        ObjectNode summary = response.putObject("StreamDescriptionSummary");
+        summary.put("StreamName", stream.name);
+        summary.put("StreamARN", stream.arn);
+        summary.put("StreamStatus", "ACTIVE");
+        summary.put("RetentionPeriodHours", stream.retentionPeriodHours);
+        summary.put("OpenShardCount", stream.shardCount);
+        summary.putArray("EnhancedMonitoring");
+        return response;
+    }
+
+
+    private ObjectNode createStream(JsonNode request)
+    {
+        String streamName = requiredParam(request, "StreamName");
+        int shardCount = request.path("ShardCount").asInt(1);
+        if (shardCount < 1)
+            throw new FakeServiceException("InvalidArgumentException", "ShardCount must be at least 1");
+
+        if (streams.putIfAbsent(streamName, new Stream(streamName, shardCount)) != null)
+            throw new FakeServiceException("ResourceInUseException", "Stream " + streamName + " already exists");
+
+        return JsonNodeFactory.instance.objectNode();
+    }
+
+
+    private ObjectNode increaseStreamRetentionPeriod(JsonNode request)
+    {
+        Stream stream = getStream(request);
+        int hours = request.path("RetentionPeriodHours").asInt();
+        if ((hours < stream.retentionPeriodHours) || (hours > 8760))
+            throw new FakeServiceException("InvalidArgumentException", "invalid retention period: " + hours);
+
+        stream.retentionPeriodHours = hours;
+        return JsonNodeFactory.instance.objectNode();
+    }
+
+
+    private ObjectNode putRecords(JsonNode request)
+    {
+        Stream stream = getStream(request);
+
+        JsonNode records = request.path("Records");
+        if ((records.size() == 0) || (records.size() > 500))
+            throw new FakeServiceException("InvalidArgumentException", "request must contain between 1 and 500 records");
+
+        ObjectNode response = JsonNodeFactory.instance.objectNode();
+        ArrayNode entries = response.putArray("Records");
+        int failedRecordCount = 0;
+        for (JsonNode record : records)
+        {
+            ObjectNode entry = entries.addObject();
+            if (endpoint.shouldFailRecord())
+            {
+                failedRecordCount++;
+                endpoint.getStatistics().recordFailedRecord();
+                entry.put("ErrorCode", "ProvisionedThroughputExceededException");
+                entry.put("ErrorMessage", "Rate exceeded for shard in stream " + stream.name);
+                continue;
+            }
+
+            String partitionKey = record.path("PartitionKey").asText();
+            byte[] data = recordData(record);
+            endpoint.messageAccepted(stream.name, new String(data, StandardCharsets.UTF_8), data.length);
+
+            entry.put("SequenceNumber", String.valueOf(sequenceNumbers.incrementAndGet()));
+            entry.put("ShardId", String.format("shardId-%012d", (partitionKey.hashCode() & 0x7FFFFFFF) % stream.shardCount));
+        }
+
+        response.put("FailedRecordCount", failedRecordCount);
+        return response;
+    }
+
+//----------------------------------------------------------------------------
+//  Internals
+//----------------------------------------------------------------------------
+
+    private static String requiredParam(JsonNode request, String name)
+    {
+        String value = request.path(name).asText("");
+        if (value.isEmpty())
+            throw new FakeServiceException("InvalidArgumentException", "missing required parameter: " + name);
+        return value;
+    }
+
+
+    private Stream getStream(JsonNode request)
+    {
+        String streamName = requiredParam(request, "StreamName");
+        Stream stream = streams.get(streamName);
+        if (stream == null)
+            throw new FakeServiceException("ResourceNotFoundException", "Stream " + streamName + " not found");
+        return stream;
+    }
+
+
+    /**
+     *  Extracts the record's data. This is a base64-encoded string when the client
+     *  sends JSON, and a byte string when it sends CBOR; Jackson handles both.
+     */
+    private static byte[] recordData(JsonNode record)
+    {
+        try
+        {
+            byte[] data = record.path("Data").binaryValue();
+            return (data != null) ? data : new byte[0];
+        }
+        catch (IOException ex)
+        {
+            throw new FakeServiceException("SerializationException", "unable to decode record data");
+        }
+    }
+
+
+    private static class Stream
+    {
+        public final String name;
+        public final String arn;
+        public final int shardCount;
+        public volatile int retentionPeriodHours = 24;
+
+        public Stream(String name, int shardCount)
+        {
+            this.name = name;
+            this.arn = "arn:aws:kinesis:" + FakeAwsEndpoint.REGION + ":" + FakeAwsEndpoint.ACCOUNT_ID + ":stream/" + name;
+            this.shardCount = shardCount;
+        }
+    }
+}
@@ -0,0 +1,178 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.kdgregory.logging.testhelpers.fakeaws;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+
+/**
+ *  Implements the subset of SNS used by the log-writer: <code>ListTopics</code>,
+ *  <code>CreateTopic</code>, and <code>Publish</code>. Unlike the other services,
+ *  SNS uses the "query" protocol: requests are form-encoded and responses are XML.
+ */
+class SNSService
+{
+    public final static String XML_NAMESPACE = "http://sns.amazonaws.com/doc/2010-03-31/";
+
+    private FakeAwsEndpoint endpoint;
+
+    // topic name -> ARN; ordered so that ListTopics is consistent
+    private ConcurrentSkipListMap<String,String> topics = new ConcurrentSkipListMap<>();
+
+
+    public SNSService(FakeAwsEndpoint endpoint)
+    {
+        this.endpoint = endpoint;
+    }
+
+
+    /**
+     *  Dispatches a request, returning the response body.
+     */
+    public String invoke(String operation, Map<String,String> params)
+    {
+        switch (operation)
+        {
+            case "ListTopics" :
+                return listTopics();
+            case "CreateTopic" :
+                return createTopic(params);
+            case "Publish" :
+                return publish(params);
+            default :
+                throw new FakeServiceException("InvalidAction", "unsupported operation: " + operation);
+        }
+    }
+
+
+    /**
+     *  Removes all topics.
+     */
+    public void reset()
+    {
+        topics.clear();
+    }
+
+//----------------------------------------------------------------------------
+//  Operations
+//----------------------------------------------------------------------------
+
+    private String listTopics()
+    {
+        // all topics are returned in a single page
+        StringBuilder sb = new StringBuilder(1024);
+        sb.append("<Topics>");
+        for (String arn : topics.values())
+        {
+            sb.append("<member><TopicArn>").append(escape(arn)).append("</TopicArn></member>");
+        }
+        sb.append("</Topics>");
+        return response("ListTopics", sb.toString());
+    }
+
+
+    private String createTopic(Map<String,String> params)
+    {
+        String topicName = requiredParam(params, "Name");
+        if (! topicName.matches("[A-Za-z0-9_-]{1,256}"))
+            throw new FakeServiceException("InvalidParameter", "Invalid parameter: Topic Name");
+
+        String arn = "arn:aws:sns:" + FakeAwsEndpoint.REGION + ":" + FakeAwsEndpoint.ACCOUNT_ID + ":" + topicName;
+        topics.putIfAbsent(topicName, arn);
+        return response("CreateTopic", "<TopicArn>" + escape(arn) + "</TopicArn>");
+    }
+
+
+    private String publish(Map<String,String> params)
+    {
+        String topicArn = requiredParam(params, "TopicArn");
+        String topicName = topicArn.substring(topicArn.lastIndexOf(':') + 1);
+        if (! topicArn.equals(topics.get(topicName)))
+            throw new FakeServiceException("NotFound", "Topic does not exist");
+
+        String message = requiredParam(params, "Message");
+        endpoint.messageAccepted(topicName, message, message.getBytes(StandardCharsets.UTF_8).length);
+
+        return response("Publish", "<MessageId>" + UUID.randomUUID() + "</MessageId>");
+    }
+
+//----------------------------------------------------------------------------
+//  Internals
+//----------------------------------------------------------------------------
+
+    private static String requiredParam(Map<String,String> params, String name)
+    {
+        String value = params.get(name);
+        if ((value == null) || value.isEmpty())
+            throw new FakeServiceException("InvalidParameter", "Invalid parameter: " + name);
+        return value;
+    }
+
+
+    /**
+     *  Wraps an operation's result in the standard response envelope.
+     */
+    private static String response(String operation, String result)
+    {
+        return "<" + operation + "Response xmlns=\"" + XML_NAMESPACE + "\">"
+             + "<" + operation + "Result>" + result + "</" + operation + "Result>"
+             + "<ResponseMetadata><RequestId>" + UUID.randomUUID() + "</RequestId></ResponseMetadata>"
+             + "</" + operation + "Response>";
+    }
+
+
+    /**
+     *  Returns an error response body.
+     */
+    public static String errorResponse(String errorCode, String message)
+    {
+        return "<ErrorResponse xmlns=\"" + XML_NAMESPACE + "\">"
+             + "<Error><Type>Sender</Type><Code>" + escape(errorCode) + "</Code><Message>" + escape(message) + "</Message></Error>"
+             + "<RequestId>" + UUID.randomUUID() + "</RequestId>"
+             + "</ErrorResponse>";
+    }
+
+
+    private static String escape(String value)
+    {
+        StringBuilder sb = new StringBuilder(value.length() + 16);
+        for (int ii = 0 ; ii < value.length() ; ii++)
+        {
+            char c = value.charAt(ii);
+            switch (c)
+            {
+                case '<' :
+                    sb.append("&lt;");
+                    break;
+                case '>' :
+                    sb.append("&gt;");
+                    break;
+                case '&' :
+                    sb.append("&amp;");
+                    break;
+                case '"' :
+                    sb.append("&quot;");
+                    break;
+                default :
+                    sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,360 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.kdgregory.logging.testhelpers.fakeaws;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import com.amazonaws.ClientConfiguration;
+import com.amazonaws.auth.AWSStaticCredentialsProvider;
+import com.amazonaws.auth.BasicAWSCredentials;
+import com.amazonaws.client.builder.AwsClientBuilder.EndpointConfiguration;
+import com.amazonaws.services.kinesis.AmazonKinesis;
+import com.amazonaws.services.kinesis.AmazonKinesisClientBuilder;
+import com.amazonaws.services.kinesis.model.DescribeStreamSummaryRequest;
+import com.amazonaws.services.logs.AWSLogs;
+import com.amazonaws.services.logs.AWSLogsClientBuilder;
+import com.amazonaws.services.logs.model.*;
+import com.amazonaws.services.sns.AmazonSNS;
+import com.amazonaws.services.sns.AmazonSNSClientBuilder;
+import com.amazonaws.services.sns.model.PublishRequest;
+
+import com.kdgregory.logging.aws.cloudwatch.CloudWatchWriterConfig;
+import com.kdgregory.logging.aws.cloudwatch.CloudWatchWriterFactory;
+import com.kdgregory.logging.aws.cloudwatch.CloudWatchWriterStatistics;
+import com.kdgregory.logging.aws.kinesis.KinesisWriterConfig;
+import com.kdgregory.logging.aws.kinesis.KinesisWriterFactory;
+import com.kdgregory.logging.aws.kinesis.KinesisWriterStatistics;
+import com.kdgregory.logging.aws.sns.SNSWriterConfig;
+import com.kdgregory.logging.aws.sns.SNSWriterFactory;
+import com.kdgregory.logging.aws.sns.SNSWriterStatistics;
+import com.kdgregory.logging.common.LogMessage;
+import com.kdgregory.logging.common.LogWriter;
+import com.kdgregory.logging.common.util.DefaultThreadFactory;
+import com.kdgregory.logging.testhelpers.TestableInternalLogger;
+
+
+/**
+ *  Verifies that the fake endpoint works with the actual (v1) SDK clients and
+ *  log-writers.
+ */
+public class TestFakeAwsEndpoint
+{
+    private static FakeAwsEndpoint endpoint;
+
+    private TestableInternalLogger internalLogger = new TestableInternalLogger();
+
+    // tests that create a writer assign it here, so that it will be stopped
+    private LogWriter writer;
+
+//----------------------------------------------------------------------------
+//  Support Code
+//----------------------------------------------------------------------------
+
+    private static ClientConfiguration noRetries()
+    {
+        return new ClientConfiguration().withMaxErrorRetry(0);
+    }
+
+
+    private static EndpointConfiguration endpointConfig()
+    {
+        return new EndpointConfiguration(endpoint.getEndpoint(), FakeAwsEndpoint.REGION);
+    }
+
+
+    private static AWSStaticCredentialsProvider credentials()
+    {
+        return new AWSStaticCredentialsProvider(new BasicAWSCredentials("AKIAEXAMPLE", "EXAMPLE"));
+    }
+
+
+    private void writeMessages(LogWriter logWriter, int count)
+    throws Exception
+    {
+        new DefaultThreadFactory("test").startWriterThread(logWriter, null);
+        assertTrue("writer initialized", logWriter.waitUntilInitialized(5000));
+
+        for (int ii = 0 ; ii < count ; ii++)
+        {
+            logWriter.addMessage(new LogMessage(System.currentTimeMillis(), "message " + ii));
+        }
+
+        // a flush fails if any messages were requeued (eg, rejected Kinesis records),
+        // so we repeat until one succeeds
+        long timeoutAt = System.currentTimeMillis() + 10000;
+        boolean flushed = false;
+        while (! flushed && (System.currentTimeMillis() < timeoutAt))
+        {
+            flushed = logWriter.flush(1000);
+        }
+        assertTrue("flushed", flushed);
+    }
+
+//----------------------------------------------------------------------------
+//  JUnit scaffolding
+//----------------------------------------------------------------------------
+
+    @BeforeClass
+    public static void startEndpoint()
+    throws Exception
+    {
+        // the writers use the default credentials chain; values don't matter
+        System.setProperty("aws.accessKeyId", "AKIAEXAMPLE");
+        System.setProperty("aws.secretKey", "EXAMPLE");
+
+        endpoint = new FakeAwsEndpoint().start();
+    }
+
+
+    @AfterClass
+    public static void stopEndpoint()
+    {
+        endpoint.stop();
+    }
+
+
+    @Before
+    public void setUp()
+    {
+        endpoint.reset();
+        endpoint.setLatency(0, 0);
+        endpoint.setThrottleRate(0);
+        endpoint.setKinesisRecordFailureRate(0);
+        endpoint.setRandomSeed(12345);
+        endpoint.setRetainMessages(true);
+    }
+
+
+    @After
+    public void tearDown()
+    {
+        if (writer != null)
+            writer.stop();
+    }
+
+//----------------------------------------------------------------------------
+//  Testcases
+//----------------------------------------------------------------------------
+
+    @Test
+    public void testCloudWatchWriter() throws Exception
+    {
+        CloudWatchWriterConfig config = new CloudWatchWriterConfig()
+                                        .setLogGroupName("example")
+                                        .setLogStreamName("stream")
+                                        .setRetentionPeriod(7)
+                                        .setBatchDelay(100)
+                                        .setUseShutdownHook(false)
+                                        .setClientRegion(FakeAwsEndpoint.REGION)
+                                        .setClientEndpoint(endpoint.getEndpoint());
+        CloudWatchWriterStatistics stats = new CloudWatchWriterStatistics();
+
+        writer = new CloudWatchWriterFactory().newLogWriter(config, stats, internalLogger);
+        writeMessages(writer, 100);
+
+        List<String> messages = endpoint.getRetainedMessages("example/stream");
+        assertEquals("messages received",           100,                messages.size());
+        assertEquals("first message",               "message 0",        messages.get(0));
+        assertEquals("last message",                "message 99",       messages.get(99));
+        assertEquals("writer stats: messages sent", 100,                stats.getMessagesSent());
+        assertEquals("endpoint stats: accepted",    100,                endpoint.getStatistics().getMessagesAccepted());
+        assertEquals("endpoint stats: create group", 1,                 endpoint.getStatistics().getRequestsReceived("CreateLogGroup"));
+        assertEquals("endpoint stats: retention",   1,                  endpoint.getStatistics().getRequestsReceived("PutRetentionPolicy"));
+        assertEquals("endpoint stats: create stream", 1,                endpoint.getStatistics().getRequestsReceived("CreateLogStream"));
+        assertTrue("endpoint stats: bytes received",                    endpoint.getStatistics().getBytesReceived() > 0);
+        assertEquals("no errors",                   0,                  internalLogger.errorMessages.size());
+    }
+
+
+    @Test
+    public void testKinesisWriterWithRecordFailures() throws Exception
+    {
+        endpoint.setKinesisRecordFailureRate(0.2);
+
+        KinesisWriterConfig config = new KinesisWriterConfig()
+                                     .setStreamName("example")
+                                     .setPartitionKey("{random}")
+                                     .setAutoCreate(true)
+                                     .setShardCount(2)
+                                     .setBatchDelay(100)
+                                     .setUseShutdownHook(false)
+                                     .setClientRegion(FakeAwsEndpoint.REGION)
+                                     .setClientEndpoint(endpoint.getEndpoint());
+        KinesisWriterStatistics stats = new KinesisWriterStatistics();
+
+        writer = new KinesisWriterFactory().newLogWriter(config, stats, internalLogger);
+        writeMessages(writer, 200);
+
+        List<String> expected = new ArrayList<>();
+        for (int ii = 0 ; ii < 200 ; ii++)
+            expected.add("message " + ii);
+
+        List<String> messages = endpoint.getRetainedMessages("example");
+        assertEquals("messages received",           200,                messages.size());
+        assertEquals("all messages delivered",      new HashSet<>(expected), new HashSet<>(messages));
+        assertEquals("writer stats: messages sent", 200,                stats.getMessagesSent());
+        assertTrue("endpoint stats: failed records",                    endpoint.getStatistics().getRecordsFailed() > 0);
+        assertTrue("multiple PutRecords calls",                         endpoint.getStatistics().getRequestsReceived("PutRecords") > 1);
+        assertEquals("no errors",                   0,                  internalLogger.errorMessages.size());
+    }
+
+
+    @Test
+    public void testSNSWriter() throws Exception
+    {
+        SNSWriterConfig config = new SNSWriterConfig()
+                                 .setTopicName("example")
+                                 .setSubject("test")
+                                 .setAutoCreate(true)
+                                 .setUseShutdownHook(false)
+                                 .setClientRegion(FakeAwsEndpoint.REGION)
+                                 .setClientEndpoint(endpoint.getEndpoint());
+        SNSWriterStatistics stats = new SNSWriterStatistics();
+
+        writer = new SNSWriterFactory().newLogWriter(config, stats, internalLogger);
+        writeMessages(writer, 10);
+
+        List<String> messages = endpoint.getRetainedMessages("example");
+        assertEquals("messages received",           10,                 messages.size());
+        assertEquals("first message",               "message 0",        messages.get(0));
+        assertEquals("writer stats: topic ARN",     "arn:aws:sns:us-east-1:123456789012:example", stats.getActualTopicArn());
+        assertEquals("endpoint stats: publish",     10,                 endpoint.getStatistics().getRequestsReceived("Publish"));
+        assertEquals("no errors",                   0,                  internalLogger.errorMessages.size());
+    }
+
+
+    @Test
+    public void testThrottling() throws Exception
+    {
+        endpoint.setThrottleRate(1.0);
+
+        AWSLogs client = AWSLogsClientBuilder.standard()
+                         .withEndpointConfiguration(endpointConfig())
+                         .withCredentials(credentials())
+                         .withClientConfiguration(noRetries())
+                         .build();
+
+        // only writes are throttled
+        client.createLogGroup(new CreateLogGroupRequest("example"));
+        client.createLogStream(new CreateLogStreamRequest("example", "stream"));
+
+        try
+        {
+            client.putLogEvents(new PutLogEventsRequest()
+                                .withLogGroupName("example")
+                                .withLogStreamName("stream")
+                                .withLogEvents(new InputLogEvent().withTimestamp(System.currentTimeMillis()).withMessage("test")));
+            fail("should have thrown");
+        }
+        catch (AWSLogsException ex)
+        {
+            assertEquals("error code", "ThrottlingException", ex.getErrorCode());
+        }
+
+        // the SDK may retry throttled requests even when configured not to, so we can't check exact counts
+        assertTrue("endpoint stats: throttled",                         endpoint.getStatistics().getRequestsThrottled() > 0);
+        assertEquals("endpoint stats: all writes throttled",            endpoint.getStatistics().getRequestsReceived("PutLogEvents"),
+                                                                        endpoint.getStatistics().getRequestsThrottled("PutLogEvents"));
+        assertEquals("endpoint stats: accepted",    0,                  endpoint.getStatistics().getMessagesAccepted());
+
+        client.shutdown();
+    }
+
+
+    @Test
+    public void testLatency() throws Exception
+    {
+        endpoint.setLatency(200, 250);
+
+        AWSLogs client = AWSLogsClientBuilder.standard()
+                         .withEndpointConfiguration(endpointConfig())
+                         .withCredentials(credentials())
+                         .build();
+
+        long start = System.currentTimeMillis();
+        client.describeLogGroups(new DescribeLogGroupsRequest());
+        long elapsed = System.currentTimeMillis() - start;
+
+        assertTrue("request took at least minimum latency (was " + elapsed + ")", elapsed >= 200);
+
+        client.shutdown();
+    }
+
+
+    @Test
+    public void testMissingResources() throws Exception
+    {
+        AWSLogs logsClient = AWSLogsClientBuilder.standard()
+                             .withEndpointConfiguration(endpointConfig())
+                             .withCredentials(credentials())
+                             .withClientConfiguration(noRetries())
+                             .build();
+        try
+        {
+            logsClient.putLogEvents(new PutLogEventsRequest()
+                                    .withLogGroupName("example")
+                                    .withLogStreamName("stream")
+                                    .withLogEvents(new InputLogEvent().withTimestamp(System.currentTimeMillis()).withMessage("test")));
+            fail("CloudWatch should have thrown");
+        }
+        catch (com.amazonaws.services.logs.model.ResourceNotFoundException ex)
+        {
+            // success
+        }
+        logsClient.shutdown();
+
+        AmazonKinesis kinesisClient = AmazonKinesisClientBuilder.standard()
+                                      .withEndpointConfiguration(endpointConfig())
+                                      .withCredentials(credentials())
+                                      .withClientConfiguration(noRetries())
+                                      .build();
+        try
+        {
+            kinesisClient.describeStreamSummary(new DescribeStreamSummaryRequest().withStreamName("example"));
+            fail("Kinesis should have thrown");
+        }
+        catch (com.amazonaws.services.kinesis.model.ResourceNotFoundException ex)
+        {
+            // success
+        }
+        kinesisClient.shutdown();
+
+        AmazonSNS snsClient = AmazonSNSClientBuilder.standard()
+                              .withEndpointConfiguration(endpointConfig())
+                              .withCredentials(credentials())
+                              .withClientConfiguration(noRetries())
+                              .build();
+        try
+        {
+            snsClient.publish(new PublishRequest("arn:aws:sns:us-east-1:123456789012:example", "test"));
+            fail("SNS should have thrown");
+        }
+        catch (com.amazonaws.services.sns.model.NotFoundException ex)
+        {
+            // success
+        }
+        snsClient.shutdown();
+    }
+}
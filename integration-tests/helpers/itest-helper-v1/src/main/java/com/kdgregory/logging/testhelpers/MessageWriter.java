@@ -67,6 +67,24 @@ public abstract class MessageWriter implements Runnable
     protected abstract void writeLogMessage(String message);
 
 
+    /**
+     *  Returns the ID that identifies this writer's messages.
+     */
+    protected int getWriterId()
+    {
+        return writerId;
+    }
+
+
+    /**
+     *  Returns the number of messages that this writer was constructed to write.
+     */
+    protected int getNumMessages()
+    {
+        return numMessages;
+    }
+
+
     /**
      *  Helper function to take a collection of writers and invoke them on threads,
      *  then wait for those threads to complete.
@@ -0,0 +1,102 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.kdgregory.logging.testhelpers.load;
+
+import java.net.URL;
+
+import com.kdgregory.logging.aws.internal.AbstractWriterStatistics;
+
+
+/**
+ *  Configures a logging framework to write to a destination, and provides access
+ *  to the appender's logger and statistics. Each framework is configured from a
+ *  classpath resource named <code>FRAMEWORK/DESTINATION.EXT</code>, which defines
+ *  an appender named "test" attached to the logger named "TestLogger".
+ *  <p>
+ *  The configuration files reference the following system properties, which are
+ *  set by {@link LoadHarness}: <code>loadtest.endpoint</code>, <code>loadtest.batchDelay</code>,
+ *  <code>loadtest.discardThreshold</code>, <code>loadtest.discardAction</code>, and
+ *  <code>loadtest.clientFactory</code> (which is empty unless SDK retries are disabled).
+ */
+public abstract class FrameworkDriver
+{
+    public final static String LOGGER_NAME = "TestLogger";
+    public final static String APPENDER_NAME = "test";
+
+
+    /**
+     *  Returns the driver for a framework, identified by its configuration name.
+     */
+    public static FrameworkDriver forName(String name)
+    {
+        switch (name)
+        {
+            case "log4j1" :
+                return new Log4J1Driver();
+            case "log4j2" :
+                return new Log4J2Driver();
+            case "logback" :
+                return new LogbackDriver();
+            default :
+                throw new IllegalArgumentException("unsupported framework: " + name);
+        }
+    }
+
+
+    /**
+     *  Returns the framework's configuration name.
+     */
+    public abstract String getName();
+
+
+    /**
+     *  Configures the framework to write to the specified destination.
+     */
+    public abstract void start(String destination)
+    throws Exception;
+
+
+    /**
+     *  Writes a message to the test logger. This is called concurrently, by all
+     *  load-generator threads.
+     */
+    public abstract void log(String message);
+
+
+    /**
+     *  Returns the test appender's statistics.
+     */
+    public abstract AbstractWriterStatistics getStatistics();
+
+
+    /**
+     *  Shuts down the framework, stopping the test appender.
+     */
+    public abstract void stop();
+
+
+    /**
+     *  Returns the URL of a configuration file, throwing if it doesn't exist.
+     */
+    protected static URL configResource(String framework, String destination, String extension)
+    {
+        String path = framework + "/" + destination + "." + extension;
+        URL url = FrameworkDriver.class.getClassLoader().getResource(path);
+        if (url == null)
+            throw new IllegalArgumentException("no configuration for " + framework + " and destination " + destination);
+        return url;
+    }
+}
@@ -0,0 +1,182 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.kdgregory.logging.testhelpers.load;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.ListenerNotFoundException;
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.openmbean.CompositeData;
+
+import com.sun.management.GarbageCollectionNotificationInfo;
+
+import com.kdgregory.logging.common.util.LatencyHistogram;
+
+
+/**
+ *  Records garbage collections while it's running, using the notifications
+ *  provided by the JVM's collector beans.
+ *  <p>
+ *  Collections by concurrent collectors (for example, the CMS old generation)
+ *  include time that application threads were running. These are reported by
+ *  collector, but are not included in the pause totals.
+ */
+public class GcMonitor
+implements NotificationListener
+{
+    private final static Set<String> CONCURRENT_COLLECTORS = new HashSet<>(Arrays.asList(
+            "ConcurrentMarkSweep", "G1 Concurrent GC", "Shenandoah Cycles", "ZGC Cycles", "ZGC Major Cycles", "ZGC Minor Cycles"));
+
+    private List<NotificationEmitter> emitters = new ArrayList<>();
+
+    private LatencyHistogram pauses = new LatencyHistogram();
+    private AtomicLong pauseCount = new AtomicLong();
+    private AtomicLong pauseTime = new AtomicLong();
+    private AtomicLong maxPause = new AtomicLong();
+
+    private Map<String,long[]> byCollector = new TreeMap<>();
+
+
+    /**
+     *  Starts listening for collections.
+     */
+    public void start()
+    {
+        for (GarbageCollectorMXBean bean : ManagementFactory.getGarbageCollectorMXBeans())
+        {
+            if (bean instanceof NotificationEmitter)
+            {
+                NotificationEmitter emitter = (NotificationEmitter)bean;
+                emitter.addNotificationListener(this, null, null);
+                emitters.add(emitter);
+            }
+        }
+    }
+
+
+    /**
+     *  Stops listening for collections.
+     */
+    public void stop()
+    {
+        for (NotificationEmitter emitter : emitters)
+        {
+            try
+            {
+                emitter.removeNotificationListener(this);
+            }
+            catch (ListenerNotFoundException ignored)
+            {
+                // shouldn't happen, and nothing we can do if it does
+            }
+        }
+        emitters.clear();
+    }
+
+
+    @Override
+    public void handleNotification(Notification notification, Object handback)
+    {
+        if (! GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION.equals(notification.getType()))
+            return;
+
+        GarbageCollectionNotificationInfo info = GarbageCollectionNotificationInfo.from((CompositeData)notification.getUserData());
+        String collector = info.getGcName();
+        long duration = info.getGcInfo().getDuration();
+
+        synchronized (byCollector)
+        {
+            long[] values = byCollector.computeIfAbsent(collector, k -> new long[3]);
+            values[0]++;
+            values[1] += duration;
+            values[2] = Math.max(values[2], duration);
+        }
+
+        if (CONCURRENT_COLLECTORS.contains(collector))
+            return;
+
+        pauses.record(duration);
+        pauseCount.incrementAndGet();
+        pauseTime.addAndGet(duration);
+        maxPause.accumulateAndGet(duration, Math::max);
+    }
+
+
+    /**
+     *  Returns the number of stop-the-world collections.
+     */
+    public long getPauseCount()
+    {
+        return pauseCount.get();
+    }
+
+
+    /**
+     *  Returns the total time, in milliseconds, of stop-the-world collections.
+     */
+    public long getPauseTime()
+    {
+        return pauseTime.get();
+    }
+
+
+    /**
+     *  Returns the longest stop-the-world collection, in milliseconds.
+     */
+    public long getMaxPause()
+    {
+        return maxPause.get();
+    }
+
+
+    /**
+     *  Returns the specified percentile (0.99 is the 99th) of stop-the-world
+     *  collection time, in milliseconds.
+     */
+    public long getPausePercentile(double percentile)
+    {
+        return pauses.getPercentile(percentile);
+    }
+
+
+    /**
+     *  Returns the count, total time, and maximum time of collections (whether
+     *  stop-the-world or concurrent), by collector name.
+     */
+    public Map<String,long[]> getCollections()
+    {
+        Map<String,long[]> result = new TreeMap<>();
+        synchronized (byCollector)
+        {
+            for (Map.Entry<String,long[]> entry : byCollector.entrySet())
+            {
+                result.put(entry.getKey(), entry.getValue().clone());
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,420 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.kdgregory.logging.testhelpers.load;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+
+/**
+ *  Configuration for a load-test run. Each property can be set from the command
+ *  line as <code>NAME=VALUE</code>, using the property names from {@link #parse}.
+ */
+public class LoadConfig
+{
+    private List<String> frameworks = Arrays.asList("log4j1", "log4j2", "logback");
+    private String destination = "cloudwatch";
+    private int threads = 4;
+    private int messagesPerSecond = 1000;
+    private int durationSeconds = 30;
+    private int messageSize = 200;
+    private long sampleInterval = 1000;
+    private long flushTimeout = 30000;
+    private long batchDelay = 2000;
+    private int discardThreshold = 10000;
+    private String discardAction = "oldest";
+    private long endpointMinLatency = 0;
+    private long endpointMaxLatency = 0;
+    private double endpointThrottleRate = 0;
+    private double kinesisRecordFailureRate = 0;
+    private Long endpointRandomSeed;
+    private boolean sdkRetries = true;
+    private String outputFile;
+    private String label;
+
+
+    /**
+     *  Creates an instance from command-line arguments, each of which has the form
+     *  <code>NAME=VALUE</code>. Unspecified properties retain their defaults.
+     *
+     *  @throws IllegalArgumentException if passed an unknown or malformed argument.
+     */
+    public static LoadConfig parse(String... args)
+    {
+        LoadConfig config = new LoadConfig();
+        for (String arg : args)
+        {
+            int eqIdx = arg.indexOf('=');
+            if (eqIdx < 1)
+                throw new IllegalArgumentException("invalid argument: " + arg);
+
+            String name = arg.substring(0, eqIdx);
+            String value = arg.substring(eqIdx + 1);
+            switch (name)
+            {
+                case "frameworks" :
+                    config.setFrameworks(Arrays.asList(value.split(",")));
+                    break;
+                case "destination" :
+                    config.setDestination(value);
+                    break;
+                case "threads" :
+                    config.setThreads(Integer.parseInt(value));
+                    break;
+                case "messagesPerSecond" :
+                    config.setMessagesPerSecond(Integer.parseInt(value));
+                    break;
+                case "durationSeconds" :
+                    config.setDurationSeconds(Integer.parseInt(value));
+                    break;
+                case "messageSize" :
+                    config.setMessageSize(Integer.parseInt(value));
+                    break;
+                case "sampleInterval" :
+                    config.setSampleInterval(Long.parseLong(value));
+                    break;
+                case "flushTimeout" :
+                    config.setFlushTimeout(Long.parseLong(value));
+                    break;
+                case "batchDelay" :
+                    config.setBatchDelay(Long.parseLong(value));
+                    break;
+                case "discardThreshold" :
+                    config.setDiscardThreshold(Integer.parseInt(value));
+                    break;
+                case "discardAction" :
+                    config.setDiscardAction(value);
+                    break;
+                case "endpointLatency" :
+                    String[] range = value.split("-");
+                    config.setEndpointLatency(Long.parseLong(range[0]), Long.parseLong(range[range.length - 1]));
+                    break;
+                case "endpointThrottleRate" :
+                    config.setEndpointThrottleRate(Double.parseDouble(value));
+                    break;
+                case "kinesisRecordFailureRate" :
+                    config.setKinesisRecordFailureRate(Double.parseDouble(value));
+                    break;
+                case "endpointRandomSeed" :
+                    config.setEndpointRandomSeed(Long.valueOf(value));
+                    break;
+                case "sdkRetries" :
+                    config.setSdkRetries(Boolean.parseBoolean(value));
+                    break;
+                case "outputFile" :
+                    config.setOutputFile(value);
+                    break;
+                case "label" :
+                    config.setLabel(value);
+                    break;
+                default :
+                    throw new IllegalArgumentException("unknown argument: " + name);
+            }
+        }
+        return config;
+    }
+
+//----------------------------------------------------------------------------
+//  Accessors
+//----------------------------------------------------------------------------
+
+    /**
+     *  The frameworks to test, in order: <code>log4j1</code>, <code>log4j2</code>,
+     *  and/or <code>logback</code>. Each produces a separate report.
+     */
+    public List<String> getFrameworks()
+    {
+        return frameworks;
+    }
+
+    public LoadConfig setFrameworks(List<String> value)
+    {
+        frameworks = new ArrayList<>(value);
+        return this;
+    }
+
+
+    /**
+     *  The destination: <code>cloudwatch</code>, <code>kinesis</code>, or <code>sns</code>.
+     */
+    public String getDestination()
+    {
+        return destination;
+    }
+
+    public LoadConfig setDestination(String value)
+    {
+        destination = value;
+        return this;
+    }
+
+
+    /**
+     *  The number of threads that write messages.
+     */
+    public int getThreads()
+    {
+        return threads;
+    }
+
+    public LoadConfig setThreads(int value)
+    {
+        threads = value;
+        return this;
+    }
+
+
+    /**
+     *  The rate at which each thread writes messages. 0 means as fast as possible.
+     */
+    public int getMessagesPerSecond()
+    {
+        return messagesPerSecond;
+    }
+
+    public LoadConfig setMessagesPerSecond(int value)
+    {
+        messagesPerSecond = value;
+        return this;
+    }
+
+
+    /**
+     *  The number of seconds that each thread writes messages.
+     */
+    public int getDurationSeconds()
+    {
+        return durationSeconds;
+    }
+
+    public LoadConfig setDurationSeconds(int value)
+    {
+        durationSeconds = value;
+        return this;
+    }
+
+
+    /**
+     *  The approximate size, in characters, of each message (before layout).
+     */
+    public int getMessageSize()
+    {
+        return messageSize;
+    }
+
+    public LoadConfig setMessageSize(int value)
+    {
+        messageSize = value;
+        return this;
+    }
+
+
+    /**
+     *  The interval, in milliseconds, between samples of the writer's queue.
+     */
+    public long getSampleInterval()
+    {
+        return sampleInterval;
+    }
+
+    public LoadConfig setSampleInterval(long value)
+    {
+        sampleInterval = value;
+        return this;
+    }
+
+
+    /**
+     *  The maximum time, in milliseconds, to wait for the writer to send its queue
+     *  once all threads have finished.
+     */
+    public long getFlushTimeout()
+    {
+        return flushTimeout;
+    }
+
+    public LoadConfig setFlushTimeout(long value)
+    {
+        flushTimeout = value;
+        return this;
+    }
+
+
+    /**
+     *  The appender's <code>batchDelay</code>.
+     */
+    public long getBatchDelay()
+    {
+        return batchDelay;
+    }
+
+    public LoadConfig setBatchDelay(long value)
+    {
+        batchDelay = value;
+        return this;
+    }
+
+
+    /**
+     *  The appender's <code>discardThreshold</code>.
+     */
+    public int getDiscardThreshold()
+    {
+        return discardThreshold;
+    }
+
+    public LoadConfig setDiscardThreshold(int value)
+    {
+        discardThreshold = value;
+        return this;
+    }
+
+
+    /**
+     *  The appender's <code>discardAction</code>.
+     */
+    public String getDiscardAction()
+    {
+        return discardAction;
+    }
+
+    public LoadConfig setDiscardAction(String value)
+    {
+        discardAction = value;
+        return this;
+    }
+
+
+    /**
+     *  The range of latency, in milliseconds, that the endpoint adds to each request.
+     *  On the command line, this is specified as <code>MIN-MAX</code> (or a single
+     *  value for constant latency).
+     */
+    public long getEndpointMinLatency()
+    {
+        return endpointMinLatency;
+    }
+
+    public long getEndpointMaxLatency()
+    {
+        return endpointMaxLatency;
+    }
+
+    public LoadConfig setEndpointLatency(long min, long max)
+    {
+        endpointMinLatency = min;
+        endpointMaxLatency = max;
+        return this;
+    }
+
+
+    /**
+     *  The fraction of write requests that the endpoint throttles.
+     */
+    public double getEndpointThrottleRate()
+    {
+        return endpointThrottleRate;
+    }
+
+    public LoadConfig setEndpointThrottleRate(double value)
+    {
+        endpointThrottleRate = value;
+        return this;
+    }
+
+
+    /**
+     *  The fraction of Kinesis records that the endpoint rejects.
+     */
+    public double getKinesisRecordFailureRate()
+    {
+        return kinesisRecordFailureRate;
+    }
+
+    public LoadConfig setKinesisRecordFailureRate(double value)
+    {
+        kinesisRecordFailureRate = value;
+        return this;
+    }
+
+
+    /**
+     *  The seed for the endpoint's random number generator, for repeatable runs.
+     *  If null (the default), the endpoint is unseeded. The endpoint is re-seeded
+     *  before each framework is run.
+     */
+    public Long getEndpointRandomSeed()
+    {
+        return endpointRandomSeed;
+    }
+
+    public LoadConfig setEndpointRandomSeed(Long value)
+    {
+        endpointRandomSeed = value;
+        return this;
+    }
+
+
+    /**
+     *  If true (the default), the appenders use the SDK's default client, which
+     *  retries throttled requests internally. If false, they use a client with
+     *  retries disabled (see {@link NoRetryClientFactory}), so that throttling is
+     *  handled and counted by the writer.
+     */
+    public boolean getSdkRetries()
+    {
+        return sdkRetries;
+    }
+
+    public LoadConfig setSdkRetries(boolean value)
+    {
+        sdkRetries = value;
+        return this;
+    }
+
+
+    /**
+     *  The file that reports are appended to, one JSON object per line. If null,
+     *  reports are written to standard output.
+     */
+    public String getOutputFile()
+    {
+        return outputFile;
+    }
+
+    public LoadConfig setOutputFile(String value)
+    {
+        outputFile = value;
+        return this;
+    }
+
+
+    /**
+     *  An arbitrary label that's copied into each report, to identify the run
+     *  (for example, a branch name).
+     */
+    public String getLabel()
+    {
+        return label;
+    }
+
+    public LoadConfig setLabel(String value)
+    {
+        label = value;
+        return this;
+    }
+}
@@ -0,0 +1,176 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.kdgregory.logging.testhelpers.load;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import com.kdgregory.logging.common.util.LatencyHistogram;
+import com.kdgregory.logging.testhelpers.MessageWriter;
+
+
+/**
+ *  A <code>MessageWriter</code> that writes at a fixed rate for a fixed duration,
+ *  and measures the time and memory taken by each call to the logger.
+ *  <p>
+ *  Messages have the standard <code>MessageWriter</code> format, prefixed with
+ *  padding to bring them up to the configured size; they can be matched with
+ *  {@link MessageWriter#PATTERN}.
+ *  <p>
+ *  Pacing is by schedule rather than by interval: if a call to the logger takes
+ *  longer than the interval, the generator catches up by writing without delay.
+ *  Latency is measured from the start of the call to the logger, not from the
+ *  scheduled time, so it reflects the cost of logging rather than queueing in
+ *  the generator.
+ *  <p>
+ *  Allocation is measured for the thread as a whole, so includes the construction
+ *  of each message (a constant that doesn't change between releases).
+ */
+public class LoadGenerator
+extends MessageWriter
+{
+    private final static com.sun.management.ThreadMXBean threadMXBean
+            = (com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean();
+
+    private FrameworkDriver driver;
+    private LatencyHistogram latencies;
+    private long durationNanos;
+    private long intervalNanos;
+    private String padding;
+
+    // these are written by the generator thread and read after it's joined
+    private int messagesWritten;
+    private long maxLatency;
+    private long allocatedBytes = -1;
+
+
+    /**
+     *  @param  driver      Used to write messages.
+     *  @param  config      Provides rate, duration, and message size.
+     *  @param  latencies   Records the latency of each call, in nanoseconds. This
+     *                      is normally shared between all generators.
+     */
+    public LoadGenerator(FrameworkDriver driver, LoadConfig config, LatencyHistogram latencies)
+    {
+        super(maxMessages(config));
+
+        this.driver = driver;
+        this.latencies = latencies;
+        this.durationNanos = TimeUnit.SECONDS.toNanos(config.getDurationSeconds());
+        this.intervalNanos = (config.getMessagesPerSecond() > 0)
+                           ? TimeUnit.SECONDS.toNanos(1) / config.getMessagesPerSecond()
+                           : 0;
+
+        // the standard message text is ~30 characters
+        StringBuilder sb = new StringBuilder();
+        for (int ii = 30 ; ii < config.getMessageSize() ; ii++)
+        {
+            sb.append((char)('a' + (ii % 26)));
+        }
+        sb.append(' ');
+        this.padding = sb.toString();
+    }
+
+
+    @Override
+    public void run()
+    {
+        long threadId = Thread.currentThread().getId();
+        long startAllocated = threadMXBean.isThreadAllocatedMemoryEnabled()
+                            ? threadMXBean.getThreadAllocatedBytes(threadId)
+                            : -1;
+
+        long startTime = System.nanoTime();
+        long deadline = startTime + durationNanos;
+        for (int ii = 0 ; ii < getNumMessages() ; ii++)
+        {
+            long now = System.nanoTime();
+            if (now >= deadline)
+                break;
+
+            long scheduled = startTime + ii * intervalNanos;
+            if (scheduled > now)
+                LockSupport.parkNanos(scheduled - now);
+
+            String message = padding + "message from writer " + getWriterId() + ": " + ii;
+
+            long callStart = System.nanoTime();
+            writeLogMessage(message);
+            long elapsed = System.nanoTime() - callStart;
+
+            latencies.record(elapsed);
+            maxLatency = Math.max(maxLatency, elapsed);
+            messagesWritten++;
+        }
+
+        if (startAllocated >= 0)
+        {
+            allocatedBytes = threadMXBean.getThreadAllocatedBytes(threadId) - startAllocated;
+        }
+    }
+
+
+    @Override
+    protected void writeLogMessage(String message)
+    {
+        driver.log(message);
+    }
+
+
+    /**
+     *  Returns the number of messages written. Only valid after the generator's
+     *  thread has been joined.
+     */
+    public int getMessagesWritten()
+    {
+        return messagesWritten;
+    }
+
+
+    /**
+     *  Returns the longest time, in nanoseconds, taken by a single call to the logger.
+     *  Only valid after the generator's thread has been joined.
+     */
+    public long getMaxLatency()
+    {
+        return maxLatency;
+    }
+
+
+    /**
+     *  Returns the number of bytes allocated by the generator's thread while it was
+     *  running, -1 if the JVM does not support allocation measurement. Only valid
+     *  after the generator's thread has been joined.
+     */
+    public long getAllocatedBytes()
+    {
+        return allocatedBytes;
+    }
+
+
+    /**
+     *  Calculates the maximum number of messages that a generator will write.
+     */
+    private static int maxMessages(LoadConfig config)
+    {
+        if (config.getMessagesPerSecond() <= 0)
+            return Integer.MAX_VALUE;
+
+        long count = (long)config.getMessagesPerSecond() * config.getDurationSeconds();
+        return (int)Math.min(count, Integer.MAX_VALUE);
+    }
+}
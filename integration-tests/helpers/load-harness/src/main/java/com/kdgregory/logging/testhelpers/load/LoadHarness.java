@@ -0,0 +1,386 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.kdgregory.logging.testhelpers.load;
+
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import com.kdgregory.logging.aws.internal.AbstractWriterStatistics;
+import com.kdgregory.logging.common.util.LatencyHistogram;
+import com.kdgregory.logging.testhelpers.fakeaws.EndpointStatistics;
+import com.kdgregory.logging.testhelpers.fakeaws.FakeAwsEndpoint;
+
+
+/**
+ *  Drives load through one or more frameworks' appenders, writing to a
+ *  {@link FakeAwsEndpoint}, and reports the results as JSON: one object per
+ *  framework, on a single line, so that the results of multiple runs can be
+ *  appended to a single file and compared.
+ *  <p>
+ *  Invoke with zero or more <code>NAME=VALUE</code> arguments, as described by
+ *  {@link LoadConfig}. For example, to run four threads at 1,000 messages per
+ *  second each for five minutes, against Kinesis with 50-100 ms of latency:
+ *  <pre>
+ *      java --add-opens java.base/java.lang=ALL-UNNAMED \
+ *              -cp ... com.kdgregory.logging.testhelpers.load.LoadHarness \
+ *              destination=kinesis threads=4 messagesPerSecond=1000 durationSeconds=300 \
+ *              endpointLatency=50-100 outputFile=results.ndjson
+ *  </pre>
+ *  The <code>--add-opens</code> flag is required on JDK 9 and later: without it,
+ *  the v1 SDK can't unmarshall service-specific exceptions, and simulated throttling
+ *  is reported as an unexpected (non-retryable) error. Omit it on JDK 8, which does
+ *  not recognize the flag.
+ *  <p>
+ *  Each report contains:
+ *  <ul>
+ *  <li> The configuration, along with the library and Java versions.
+ *  <li> The number of messages written, elapsed time, and resulting throughput.
+ *  <li> Percentiles of the time taken to call the logger, in microseconds.
+ *  <li> Bytes allocated per message by the generator threads.
+ *  <li> Stop-the-world GC pauses during the run (including the final flush).
+ *  <li> The writer's statistics: messages sent, discarded, and throttled writes.
+ *  <li> The endpoint's statistics: requests, messages accepted, and failures.
+ *  <li> Periodic samples of the writer's queue depth and progress.
+ *  </ul>
+ */
+public class LoadHarness
+{
+    private Logger logger = LoggerFactory.getLogger(getClass());
+
+    private LoadConfig config;
+    private ObjectMapper mapper = new ObjectMapper();
+
+
+    public static void main(String[] argv)
+    throws Exception
+    {
+        LoadConfig config = LoadConfig.parse(argv);
+        new LoadHarness(config).run();
+    }
+
+
+    public LoadHarness(LoadConfig config)
+    {
+        this.config = config;
+    }
+
+
+    /**
+     *  Runs all configured frameworks, in sequence, against a single endpoint.
+     *  Writes each report as it completes, and returns all of them.
+     */
+    public List<ObjectNode> run()
+    throws Exception
+    {
+        // the SDK requires credentials, but the endpoint doesn't check them
+        if (System.getProperty("aws.accessKeyId") == null)
+        {
+            System.setProperty("aws.accessKeyId", "AKIAEXAMPLE");
+            System.setProperty("aws.secretKey", "EXAMPLE");
+        }
+
+        FakeAwsEndpoint endpoint = new FakeAwsEndpoint().start();
+        endpoint.setLatency(config.getEndpointMinLatency(), config.getEndpointMaxLatency());
+        endpoint.setThrottleRate(config.getEndpointThrottleRate());
+        endpoint.setKinesisRecordFailureRate(config.getKinesisRecordFailureRate());
+
+        System.setProperty("loadtest.endpoint", endpoint.getEndpoint());
+        System.setProperty("loadtest.batchDelay", String.valueOf(config.getBatchDelay()));
+        System.setProperty("loadtest.discardThreshold", String.valueOf(config.getDiscardThreshold()));
+        System.setProperty("loadtest.discardAction", config.getDiscardAction());
+        System.setProperty("loadtest.clientFactory", config.getSdkRetries()
+                                                     ? ""
+                                                     : NoRetryClientFactory.methodNameFor(config.getDestination()));
+
+        try
+        {
+            List<ObjectNode> reports = new ArrayList<>();
+            for (String framework : config.getFrameworks())
+            {
+                endpoint.reset();
+                if (config.getEndpointRandomSeed() != null)
+                {
+                    endpoint.setRandomSeed(config.getEndpointRandomSeed().longValue());
+                }
+                ObjectNode report = run(FrameworkDriver.forName(framework), endpoint);
+                writeReport(report);
+                reports.add(report);
+            }
+            return reports;
+        }
+        finally
+        {
+            endpoint.stop();
+        }
+    }
+
+
+    /**
+     *  Runs a single framework and returns its report.
+     */
+    public ObjectNode run(FrameworkDriver driver, FakeAwsEndpoint endpoint)
+    throws Exception
+    {
+        logger.info("starting run: framework {}, destination {}, {} threads at {} messages/second for {} seconds",
+                    driver.getName(), config.getDestination(), config.getThreads(),
+                    config.getMessagesPerSecond(), config.getDurationSeconds());
+
+        driver.start(config.getDestination());
+        AbstractWriterStatistics stats = driver.getStatistics();
+
+        LatencyHistogram latencies = new LatencyHistogram();
+        List<LoadGenerator> generators = new ArrayList<>();
+        for (int ii = 0 ; ii < config.getThreads() ; ii++)
+        {
+            generators.add(new LoadGenerator(driver, config, latencies));
+        }
+
+        GcMonitor gcMonitor = new GcMonitor();
+        gcMonitor.start();
+
+        long startTime = System.currentTimeMillis();
+        ArrayNode samples = JsonNodeFactory.instance.arrayNode();
+        ScheduledExecutorService sampler = Executors.newSingleThreadScheduledExecutor(runnable ->
+        {
+            Thread thread = new Thread(runnable, "load-harness-sampler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        sampler.scheduleAtFixedRate(() -> addSample(samples, startTime, stats),
+                                    0, config.getSampleInterval(), TimeUnit.MILLISECONDS);
+
+        LoadGenerator.runOnThreads(new ArrayList<>(generators));
+        long appendFinishedTime = System.currentTimeMillis();
+
+        boolean flushed = flush(stats);
+        long flushFinishedTime = System.currentTimeMillis();
+
+        sampler.shutdown();
+        sampler.awaitTermination(1, TimeUnit.SECONDS);
+        addSample(samples, startTime, stats);
+        gcMonitor.stop();
+
+        ObjectNode report = buildReport(driver, generators, latencies, gcMonitor, stats, endpoint.getStatistics(),
+                                        appendFinishedTime - startTime, flushFinishedTime - appendFinishedTime, flushed);
+        report.set("queueSamples", samples);
+
+        driver.stop();
+        return report;
+    }
+
+//----------------------------------------------------------------------------
+//  Internals
+//----------------------------------------------------------------------------
+
+    /**
+     *  Flushes the writer. A single flush fails if any messages are requeued (for
+     *  example, rejected Kinesis records), so this repeats until success or the
+     *  configured timeout.
+     */
+    private boolean flush(AbstractWriterStatistics stats)
+    {
+        long timeoutAt = System.currentTimeMillis() + config.getFlushTimeout();
+        long remaining = config.getFlushTimeout();
+        while (remaining > 0)
+        {
+            if (stats.flush(remaining))
+                return true;
+            remaining = timeoutAt - System.currentTimeMillis();
+        }
+        return false;
+    }
+
+
+    private static void addSample(ArrayNode samples, long startTime, AbstractWriterStatistics stats)
+    {
+        synchronized (samples)
+        {
+            ObjectNode sample = samples.addObject();
+            sample.put("elapsedMillis",         System.currentTimeMillis() - startTime);
+            sample.put("queueDepth",            stats.getQueueDepth());
+            sample.put("queueBytes",            stats.getQueueBytes());
+            sample.put("oldestMessageAge",      stats.getOldestMessageAge());
+            sample.put("messagesSent",          stats.getMessagesSent());
+            sample.put("messagesDiscarded",     stats.getMessagesDiscarded());
+        }
+    }
+
+
+    private ObjectNode buildReport(
+            FrameworkDriver driver, List<LoadGenerator> generators, LatencyHistogram latencies, GcMonitor gcMonitor,
+            AbstractWriterStatistics stats, EndpointStatistics endpointStats,
+            long appendMillis, long flushMillis, boolean flushed)
+    {
+        long messagesWritten = 0;
+        long maxLatency = 0;
+        long allocatedBytes = 0;
+        for (LoadGenerator generator : generators)
+        {
+            messagesWritten += generator.getMessagesWritten();
+            maxLatency = Math.max(maxLatency, generator.getMaxLatency());
+            allocatedBytes = (generator.getAllocatedBytes() >= 0 && allocatedBytes >= 0)
+                           ? allocatedBytes + generator.getAllocatedBytes()
+                           : -1;
+        }
+
+        ObjectNode report = JsonNodeFactory.instance.objectNode();
+        report.put("timestamp",                     Instant.now().toString());
+        report.put("label",                         config.getLabel());
+        report.put("libraryVersion",                libraryVersion());
+        report.put("javaVersion",                   System.getProperty("java.version"));
+        report.put("framework",                     driver.getName());
+        report.put("destination",                   config.getDestination());
+
+        ObjectNode configNode = report.putObject("config");
+        configNode.put("threads",                   config.getThreads());
+        configNode.put("messagesPerSecond",         config.getMessagesPerSecond());
+        configNode.put("durationSeconds",           config.getDurationSeconds());
+        configNode.put("messageSize",               config.getMessageSize());
+        configNode.put("batchDelay",                config.getBatchDelay());
+        configNode.put("discardThreshold",          config.getDiscardThreshold());
+        configNode.put("discardAction",             config.getDiscardAction());
+        configNode.put("endpointMinLatency",        config.getEndpointMinLatency());
+        configNode.put("endpointMaxLatency",        config.getEndpointMaxLatency());
+        configNode.put("endpointThrottleRate",      config.getEndpointThrottleRate());
+        configNode.put("kinesisRecordFailureRate",  config.getKinesisRecordFailureRate());
+        configNode.put("endpointRandomSeed",        config.getEndpointRandomSeed());
+        configNode.put("sdkRetries",                config.getSdkRetries());
+
+        report.put("messagesWritten",               messagesWritten);
+        report.put("appendMillis",                  appendMillis);
+        report.put("appendThroughput",              (appendMillis > 0) ? messagesWritten * 1000.0 / appendMillis : 0.0);
+        report.put("flushMillis",                   flushMillis);
+        report.put("flushed",                       flushed);
+
+        ObjectNode latencyNode = report.putObject("appendLatencyMicros");
+        latencyNode.put("p50",                      latencies.getPercentile(0.50) / 1000.0);
+        latencyNode.put("p90",                      latencies.getPercentile(0.90) / 1000.0);
+        latencyNode.put("p99",                      latencies.getPercentile(0.99) / 1000.0);
+        latencyNode.put("p999",                     latencies.getPercentile(0.999) / 1000.0);
+        latencyNode.put("max",                      maxLatency / 1000.0);
+
+        if ((allocatedBytes >= 0) && (messagesWritten > 0))
+            report.put("allocatedBytesPerMessage",  allocatedBytes / messagesWritten);
+        else
+            report.putNull("allocatedBytesPerMessage");
+
+        ObjectNode gcNode = report.putObject("gc");
+        gcNode.put("pauseCount",                    gcMonitor.getPauseCount());
+        gcNode.put("pauseMillis",                   gcMonitor.getPauseTime());
+        gcNode.put("maxPauseMillis",                gcMonitor.getMaxPause());
+        gcNode.put("p99PauseMillis",                gcMonitor.getPausePercentile(0.99));
+        ObjectNode collectorsNode = gcNode.putObject("collectors");
+        for (Map.Entry<String,long[]> entry : gcMonitor.getCollections().entrySet())
+        {
+            ObjectNode collectorNode = collectorsNode.putObject(entry.getKey());
+            collectorNode.put("count",              entry.getValue()[0]);
+            collectorNode.put("totalMillis",        entry.getValue()[1]);
+            collectorNode.put("maxMillis",          entry.getValue()[2]);
+        }
+
+        ObjectNode writerNode = report.putObject("writer");
+        writerNode.put("messagesSent",              stats.getMessagesSent());
+        writerNode.put("bytesSent",                 stats.getBytesSent());
+        writerNode.put("batchesSent",               stats.getBatchesSent());
+        writerNode.put("messagesDiscarded",         stats.getMessagesDiscarded());
+        writerNode.put("bytesDiscarded",            stats.getBytesDiscarded());
+        writerNode.put("oversizeMessages",          stats.getOversizeMessages());
+        writerNode.put("throttledWrites",           stats.getThrottledWrites());
+        writerNode.put("queueDepthHighWater",       stats.getQueueDepthHighWater());
+        writerNode.put("queueBytesHighWater",       stats.getQueueBytesHighWater());
+        writerNode.put("apiLatencyP50",             stats.getApiLatencyP50());
+        writerNode.put("apiLatencyP99",             stats.getApiLatencyP99());
+        writerNode.put("queueResidencyP99",         stats.getQueueResidencyP99());
+        writerNode.put("lastErrorMessage",          stats.getLastErrorMessage());
+
+        ObjectNode endpointNode = report.putObject("endpoint");
+        endpointNode.put("requestsReceived",        endpointStats.getRequestsReceived());
+        endpointNode.put("requestsThrottled",       endpointStats.getRequestsThrottled());
+        endpointNode.put("bytesReceived",           endpointStats.getBytesReceived());
+        endpointNode.put("messagesAccepted",        endpointStats.getMessagesAccepted());
+        endpointNode.put("recordsFailed",           endpointStats.getRecordsFailed());
+        ObjectNode requestsNode = endpointNode.putObject("requestCounts");
+        for (Map.Entry<String,Long> entry : endpointStats.getRequestCounts().entrySet())
+        {
+            requestsNode.put(entry.getKey(), entry.getValue());
+        }
+
+        report.put("messagesLost",                  messagesWritten - endpointStats.getMessagesAccepted());
+        return report;
+    }
+
+
+    private synchronized void writeReport(ObjectNode report)
+    throws Exception
+    {
+        String json = mapper.writeValueAsString(report) + "\n";
+        if (config.getOutputFile() == null)
+        {
+            System.out.print(json);
+            System.out.flush();
+            return;
+        }
+
+        try (OutputStream out = new FileOutputStream(config.getOutputFile(), true);
+             Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8))
+        {
+            writer.write(json);
+        }
+    }
+
+
+    /**
+     *  Returns the version of the logwriters library, from the Maven metadata in
+     *  its JAR. Returns "unknown" if running from the build directory.
+     */
+    private static String libraryVersion()
+    {
+        String resource = "META-INF/maven/com.kdgregory.logging/logwriters/pom.properties";
+        try (InputStream in = AbstractWriterStatistics.class.getClassLoader().getResourceAsStream(resource))
+        {
+            if (in == null)
+                return "unknown";
+
+            Properties props = new Properties();
+            props.load(in);
+            return props.getProperty("version", "unknown");
+        }
+        catch (Exception ex)
+        {
+            return "unknown";
+        }
+    }
+}
@@ -0,0 +1,75 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.kdgregory.logging.testhelpers.load;
+
+import org.apache.log4j.LogManager;
+import org.apache.log4j.Logger;
+import org.apache.log4j.PropertyConfigurator;
+
+import com.kdgregory.log4j.aws.internal.AbstractAppender;
+import com.kdgregory.logging.aws.internal.AbstractWriterStatistics;
+
+
+/**
+ *  Drives the Log4J 1.x appenders.
+ */
+public class Log4J1Driver
+extends FrameworkDriver
+{
+    private Logger logger;
+    private AbstractAppender<?,?,?> appender;
+
+
+    @Override
+    public String getName()
+    {
+        return "log4j1";
+    }
+
+
+    @Override
+    public void start(String destination)
+    throws Exception
+    {
+        LogManager.resetConfiguration();
+        PropertyConfigurator.configure(configResource(getName(), destination, "properties"));
+
+        logger = Logger.getLogger(LOGGER_NAME);
+        appender = (AbstractAppender<?,?,?>)logger.getAppender(APPENDER_NAME);
+    }
+
+
+    @Override
+    public void log(String message)
+    {
+        logger.info(message);
+    }
+
+
+    @Override
+    public AbstractWriterStatistics getStatistics()
+    {
+        return appender.getAppenderStatistics();
+    }
+
+
+    @Override
+    public void stop()
+    {
+        // this closes all appenders
+        LogManager.resetConfiguration();
+    }
+}
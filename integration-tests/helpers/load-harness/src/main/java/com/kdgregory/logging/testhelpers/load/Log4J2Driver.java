@@ -0,0 +1,75 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.kdgregory.logging.testhelpers.load;
+
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.core.LoggerContext;
+
+import com.kdgregory.log4j2.aws.internal.AbstractAppender;
+import com.kdgregory.logging.aws.internal.AbstractWriterStatistics;
+
+
+/**
+ *  Drives the Log4J 2.x appenders. This uses a standalone logger context, so
+ *  that it doesn't interfere with (or get reconfigured by) the default context.
+ */
+public class Log4J2Driver
+extends FrameworkDriver
+{
+    private LoggerContext context;
+    private Logger logger;
+    private AbstractAppender<?,?,?,?> appender;
+
+
+    @Override
+    public String getName()
+    {
+        return "log4j2";
+    }
+
+
+    @Override
+    public void start(String destination)
+    throws Exception
+    {
+        context = new LoggerContext("LoadHarness", null, configResource(getName(), destination, "xml").toURI());
+        context.start();
+
+        logger = context.getLogger(LOGGER_NAME);
+        appender = (AbstractAppender<?,?,?,?>)context.getConfiguration().getAppender(APPENDER_NAME);
+    }
+
+
+    @Override
+    public void log(String message)
+    {
+        logger.info(message);
+    }
+
+
+    @Override
+    public AbstractWriterStatistics getStatistics()
+    {
+        return appender.getAppenderStatistics();
+    }
+
+
+    @Override
+    public void stop()
+    {
+        context.stop();
+    }
+}
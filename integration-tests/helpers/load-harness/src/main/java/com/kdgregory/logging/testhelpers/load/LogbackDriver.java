@@ -0,0 +1,79 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.kdgregory.logging.testhelpers.load;
+
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.joran.JoranConfigurator;
+
+import com.kdgregory.logback.aws.internal.AbstractAppender;
+import com.kdgregory.logging.aws.internal.AbstractWriterStatistics;
+
+
+/**
+ *  Drives the Logback appenders. This uses a standalone logger context, so that
+ *  it doesn't interfere with the harness's own logging (which goes through SLF4J
+ *  to the default context).
+ */
+public class LogbackDriver
+extends FrameworkDriver
+{
+    private LoggerContext context;
+    private Logger logger;
+    private AbstractAppender<?,?,?,?> appender;
+
+
+    @Override
+    public String getName()
+    {
+        return "logback";
+    }
+
+
+    @Override
+    public void start(String destination)
+    throws Exception
+    {
+        context = new LoggerContext();
+        JoranConfigurator configurator = new JoranConfigurator();
+        configurator.setContext(context);
+        configurator.doConfigure(configResource(getName(), destination, "xml"));
+
+        logger = context.getLogger(LOGGER_NAME);
+        appender = (AbstractAppender<?,?,?,?>)logger.getAppender(APPENDER_NAME);
+    }
+
+
+    @Override
+    public void log(String message)
+    {
+        logger.info(message);
+    }
+
+
+    @Override
+    public AbstractWriterStatistics getStatistics()
+    {
+        return appender.getAppenderStatistics();
+    }
+
+
+    @Override
+    public void stop()
+    {
+        context.stop();
+    }
+}
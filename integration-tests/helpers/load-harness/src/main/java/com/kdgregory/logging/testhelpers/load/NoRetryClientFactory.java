@@ -0,0 +1,86 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.kdgregory.logging.testhelpers.load;
+
+import com.amazonaws.ClientConfiguration;
+import com.amazonaws.client.builder.AwsClientBuilder.EndpointConfiguration;
+import com.amazonaws.services.kinesis.AmazonKinesis;
+import com.amazonaws.services.kinesis.AmazonKinesisClientBuilder;
+import com.amazonaws.services.logs.AWSLogs;
+import com.amazonaws.services.logs.AWSLogsClientBuilder;
+import com.amazonaws.services.sns.AmazonSNS;
+import com.amazonaws.services.sns.AmazonSNSClientBuilder;
+
+
+/**
+ *  Client factory methods (referenced by the appenders' <code>clientFactory</code>
+ *  property) that disable the SDK's internal retries, so that throttled requests
+ *  are handled -- and counted -- by the log writer. Used when the configuration
+ *  sets <code>sdkRetries=false</code>.
+ */
+public class NoRetryClientFactory
+{
+    private static ClientConfiguration clientConfig()
+    {
+        return new ClientConfiguration().withMaxErrorRetry(0);
+    }
+
+
+    public static AWSLogs createCloudWatchClient(String assumedRole, String region, String endpoint)
+    {
+        return AWSLogsClientBuilder.standard()
+               .withClientConfiguration(clientConfig())
+               .withEndpointConfiguration(new EndpointConfiguration(endpoint, region))
+               .build();
+    }
+
+
+    public static AmazonKinesis createKinesisClient(String assumedRole, String region, String endpoint)
+    {
+        return AmazonKinesisClientBuilder.standard()
+               .withClientConfiguration(clientConfig())
+               .withEndpointConfiguration(new EndpointConfiguration(endpoint, region))
+               .build();
+    }
+
+
+    public static AmazonSNS createSNSClient(String assumedRole, String region, String endpoint)
+    {
+        return AmazonSNSClientBuilder.standard()
+               .withClientConfiguration(clientConfig())
+               .withEndpointConfiguration(new EndpointConfiguration(endpoint, region))
+               .build();
+    }
+
+
+    /**
+     *  Returns the fully-qualified name of the factory method for a destination.
+     */
+    public static String methodNameFor(String destination)
+    {
+        switch (destination)
+        {
+            case "cloudwatch" :
+                return NoRetryClientFactory.class.getName() + ".createCloudWatchClient";
+            case "kinesis" :
+                return NoRetryClientFactory.class.getName() + ".createKinesisClient";
+            case "sns" :
+                return NoRetryClientFactory.class.getName() + ".createSNSClient";
+            default :
+                throw new IllegalArgumentException("unsupported destination: " + destination);
+        }
+    }
+}
@@ -0,0 +1,166 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.kdgregory.logging.testhelpers.load;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Matcher;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import com.kdgregory.logging.common.util.LatencyHistogram;
+import com.kdgregory.logging.testhelpers.MessageWriter;
+
+
+/**
+ *  Runs a short load test for each framework, and verifies the reports.
+ */
+public class TestLoadHarness
+{
+    @Test
+    public void testParseConfig() throws Exception
+    {
+        LoadConfig config = LoadConfig.parse("frameworks=log4j2,logback", "destination=kinesis", "threads=8",
+                                             "messagesPerSecond=0", "endpointLatency=10-20", "label=example");
+
+        assertEquals("frameworks",      2,          config.getFrameworks().size());
+        assertEquals("destination",     "kinesis",  config.getDestination());
+        assertEquals("threads",         8,          config.getThreads());
+        assertEquals("rate",            0,          config.getMessagesPerSecond());
+        assertEquals("min latency",     10,         config.getEndpointMinLatency());
+        assertEquals("max latency",     20,         config.getEndpointMaxLatency());
+        assertEquals("label",           "example",  config.getLabel());
+        assertEquals("default duration", 30,        config.getDurationSeconds());
+
+        try
+        {
+            LoadConfig.parse("bogus=1");
+            fail("accepted unknown argument");
+        }
+        catch (IllegalArgumentException ex)
+        {
+            // success
+        }
+    }
+
+
+    @Test
+    public void testGeneratorMessageFormat() throws Exception
+    {
+        FrameworkDriver driver = new Log4J1Driver()
+        {
+            private int count;
+
+            @Override
+            public void log(String message)
+            {
+                Matcher matcher = MessageWriter.PATTERN.matcher(message);
+                assertTrue("message matches standard pattern: " + message, matcher.matches());
+                assertEquals("message number", count++, MessageWriter.getMessageNumber(matcher).intValue());
+                assertEquals("message size", 200, message.length(), 5);
+            }
+        };
+
+        LoadConfig config = new LoadConfig().setMessagesPerSecond(1000).setDurationSeconds(1).setMessageSize(200);
+        LoadGenerator generator = new LoadGenerator(driver, config, new LatencyHistogram());
+        generator.run();
+
+        assertTrue("wrote messages (was " + generator.getMessagesWritten() + ")", generator.getMessagesWritten() > 900);
+        assertTrue("respected rate (was " + generator.getMessagesWritten() + ")", generator.getMessagesWritten() <= 1000);
+    }
+
+
+    @Test
+    public void testRunAllFrameworks() throws Exception
+    {
+        File outputFile = File.createTempFile("TestLoadHarness", ".ndjson");
+        outputFile.deleteOnExit();
+
+        LoadConfig config = new LoadConfig()
+                            .setThreads(2)
+                            .setMessagesPerSecond(200)
+                            .setDurationSeconds(1)
+                            .setBatchDelay(100)
+                            .setSampleInterval(250)
+                            .setLabel("TestLoadHarness")
+                            .setOutputFile(outputFile.getPath());
+
+        List<ObjectNode> reports = new LoadHarness(config).run();
+        assertEquals("number of reports", 3, reports.size());
+
+        List<String> lines = Files.readAllLines(outputFile.toPath(), StandardCharsets.UTF_8);
+        assertEquals("number of lines in output", 3, lines.size());
+
+        ObjectMapper mapper = new ObjectMapper();
+        String[] expectedFrameworks = { "log4j1", "log4j2", "logback" };
+        for (int ii = 0 ; ii < lines.size() ; ii++)
+        {
+            JsonNode report = mapper.readTree(lines.get(ii));
+            String framework = expectedFrameworks[ii];
+
+            assertEquals(framework + ": framework",         framework,          report.path("framework").asText());
+            assertEquals(framework + ": label",             "TestLoadHarness",  report.path("label").asText());
+            assertEquals(framework + ": messages written",  400,                report.path("messagesWritten").asInt());
+            assertEquals(framework + ": messages sent",     400,                report.path("writer").path("messagesSent").asInt());
+            assertEquals(framework + ": messages accepted", 400,                report.path("endpoint").path("messagesAccepted").asInt());
+            assertEquals(framework + ": messages lost",     0,                  report.path("messagesLost").asInt());
+            assertTrue(framework + ": flushed",                                 report.path("flushed").asBoolean());
+            assertTrue(framework + ": latency p50",                             report.path("appendLatencyMicros").path("p50").asDouble() > 0);
+            assertTrue(framework + ": allocation",                              report.path("allocatedBytesPerMessage").asLong() > 0);
+            assertTrue(framework + ": queue samples",                           report.path("queueSamples").size() >= 4);
+            assertTrue(framework + ": GC section",                              report.path("gc").has("pauseCount"));
+        }
+    }
+
+
+    @Test
+    public void testThrottling() throws Exception
+    {
+        // this verifies that throttled requests are recognized as such (which requires
+        // the SDK to unmarshall the service exception), and retried without loss; the
+        // SDK's retries are disabled so that the writer sees every throttled request,
+        // and the seed ensures that the first write is throttled
+
+        LoadConfig config = new LoadConfig()
+                            .setFrameworks(Arrays.asList("log4j1"))
+                            .setThreads(1)
+                            .setMessagesPerSecond(200)
+                            .setDurationSeconds(2)
+                            .setBatchDelay(100)
+                            .setEndpointThrottleRate(0.75)
+                            .setEndpointRandomSeed(2L)
+                            .setSdkRetries(false)
+                            .setLabel("TestLoadHarness");
+
+        List<ObjectNode> reports = new LoadHarness(config).run();
+        assertEquals("number of reports", 1, reports.size());
+
+        JsonNode report = reports.get(0);
+        assertTrue("endpoint throttled requests",                               report.path("endpoint").path("requestsThrottled").asInt() > 0);
+        assertTrue("writer recorded throttling",                                report.path("writer").path("throttledWrites").asInt() > 0);
+        assertEquals("messages sent",                   400,                    report.path("writer").path("messagesSent").asInt());
+        assertEquals("messages lost",                   0,                      report.path("messagesLost").asInt());
+        assertTrue("flushed",                                                   report.path("flushed").asBoolean());
+    }
+}
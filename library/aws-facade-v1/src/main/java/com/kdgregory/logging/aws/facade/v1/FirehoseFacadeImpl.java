@@ -0,0 +1,217 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.kdgregory.logging.aws.facade.v1;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import com.amazonaws.services.kinesisfirehose.AmazonKinesisFirehose;
+import com.amazonaws.services.kinesisfirehose.model.*;
+
+import com.kdgregory.logging.aws.facade.FirehoseFacade;
+import com.kdgregory.logging.aws.facade.FirehoseFacadeException;
+import com.kdgregory.logging.aws.facade.FirehoseFacadeException.ReasonCode;
+import com.kdgregory.logging.aws.facade.v1.internal.ClientFactory;
+import com.kdgregory.logging.aws.firehose.FirehoseConstants.StreamStatus;
+import com.kdgregory.logging.aws.firehose.FirehoseWriterConfig;
+import com.kdgregory.logging.common.LogMessage;
+
+
+/**
+ *  Provides a facade over the Kinesis Data Firehose API using the v1 SDK.
+ */
+public class FirehoseFacadeImpl
+implements FirehoseFacade
+{
+    private final static Map<String,StreamStatus> STATUS_LOOKUP = new HashMap<>();
+    static
+    {
+        STATUS_LOOKUP.put("ACTIVE",          StreamStatus.ACTIVE);
+        STATUS_LOOKUP.put("CREATING",        StreamStatus.CREATING);
+        STATUS_LOOKUP.put("CREATING_FAILED", StreamStatus.CREATING_FAILED);
+        STATUS_LOOKUP.put("DELETING",        StreamStatus.DELETING);
+        STATUS_LOOKUP.put("DELETING_FAILED", StreamStatus.DELETING_FAILED);
+    }
+
+    private FirehoseWriterConfig config;
+
+    private AmazonKinesisFirehose client;
+
+    public FirehoseFacadeImpl(FirehoseWriterConfig config)
+    {
+        this.config = config;
+    }
+
+//----------------------------------------------------------------------------
+//  Public methods
+//----------------------------------------------------------------------------
+
+    @Override
+    public StreamStatus retrieveStreamStatus()
+    {
+        try
+        {
+            DescribeDeliveryStreamRequest request = new DescribeDeliveryStreamRequest().withDeliveryStreamName(config.getStreamName());
+            DescribeDeliveryStreamResult response = client().describeDeliveryStream(request);
+            return STATUS_LOOKUP.get(response.getDeliveryStreamDescription().getDeliveryStreamStatus());
+        }
+        catch (ResourceNotFoundException ex)
+        {
+            return StreamStatus.DOES_NOT_EXIST;
+        }
+        catch (LimitExceededException ex)
+        {
+            // the caller will retry on null, so no need to make them catch
+            return null;
+        }
+        catch (Exception ex)
+        {
+            throw transformException("retrieveStreamStatus", ex);
+        }
+    }
+
+
+    @Override
+    public List<LogMessage> putRecords(List<LogMessage> batch)
+    {
+        if (batch.isEmpty())
+            return batch;
+
+        try
+        {
+            PutRecordBatchRequest request = createPutRecordBatchRequest(batch);
+            PutRecordBatchResult response = client().putRecordBatch(request);
+            return extractPutRecordBatchFailures(batch, response);
+        }
+        catch (Exception ex)
+        {
+            throw transformException("putRecords", ex);
+        }
+    }
+
+
+    @Override
+    public void shutdown()
+    {
+        client().shutdown();
+    }
+
+//----------------------------------------------------------------------------
+//  Internals
+//----------------------------------------------------------------------------
+
+    /**
+     *  Returns the Firehose client, lazily constructing it if needed.
+     *  <p>
+     *  This method is not threadsafe; it should be called only from the writer thread.
+     */
+    protected AmazonKinesisFirehose client()
+    {
+        if (client == null)
+        {
+            client = new ClientFactory<>(AmazonKinesisFirehose.class, config).create();
+        }
+
+        return client;
+    }
+
+
+    /**
+     *  Creates a facade exception based on some other exception.
+     */
+    private FirehoseFacadeException transformException(String functionName, Exception ex)
+    {
+        String message;
+        ReasonCode reason;
+        boolean isRetryable;
+
+        if (ex instanceof ServiceUnavailableException)
+        {
+            message = "throttled";
+            reason = ReasonCode.THROTTLING;
+            isRetryable = true;
+        }
+        else if (ex instanceof LimitExceededException)
+        {
+            message = "limit exceeded";
+            reason = ReasonCode.LIMIT_EXCEEDED;
+            isRetryable = true;
+        }
+        else if (ex instanceof ResourceNotFoundException)
+        {
+            message = "delivery stream does not exist";
+            reason = ReasonCode.MISSING_STREAM;
+            isRetryable = false;
+        }
+        else if (ex instanceof ResourceInUseException)
+        {
+            message = "delivery stream not active";
+            reason = ReasonCode.INVALID_STATE;
+            isRetryable = true;
+        }
+        else
+        {
+            message = "unexpected exception: " + ex.getMessage();
+            reason = ReasonCode.UNEXPECTED_EXCEPTION;
+            isRetryable = false;
+        }
+
+        return new FirehoseFacadeException(
+                message, ex, reason, isRetryable,
+                functionName, config.getStreamName());
+    }
+
+
+    private PutRecordBatchRequest createPutRecordBatchRequest(List<LogMessage> batch)
+    {
+        List<Record> requestRecords = new ArrayList<>(batch.size());
+        for (LogMessage message : batch)
+        {
+            requestRecords.add(new Record().withData(ByteBuffer.wrap(message.getBytes())));
+        }
+
+        return new PutRecordBatchRequest()
+                   .withDeliveryStreamName(config.getStreamName())
+                   .withRecords(requestRecords);
+    }
+
+
+    private List<LogMessage> extractPutRecordBatchFailures(List<LogMessage> batch, PutRecordBatchResult response)
+    {
+        List<LogMessage> result = new ArrayList<>(batch.size());
+
+        if ((response.getFailedPutCount() == null) || (response.getFailedPutCount().intValue() == 0))
+            return result;
+
+        Iterator<LogMessage> lmItx = batch.iterator();
+        Iterator<PutRecordBatchResponseEntry> rspItx = response.getRequestResponses().iterator();
+        while (lmItx.hasNext() && rspItx.hasNext())
+        {
+            LogMessage logMessage = lmItx.next();
+            PutRecordBatchResponseEntry entry = rspItx.next();
+            if ((entry.getErrorCode() != null) && !entry.getErrorCode().isEmpty())
+            {
+                result.add(logMessage);
+            }
+        }
+
+        return result;
+    }
+}
@@ -0,0 +1,267 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.kdgregory.logging.aws.facade.v1;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.*;
+
+import com.kdgregory.logging.aws.facade.S3Facade;
+import com.kdgregory.logging.aws.facade.S3FacadeException;
+import com.kdgregory.logging.aws.facade.S3FacadeException.ReasonCode;
+import com.kdgregory.logging.aws.facade.v1.internal.ClientFactory;
+import com.kdgregory.logging.aws.internal.AbstractWriterConfig;
+import com.kdgregory.logging.aws.s3.S3WriterConfig;
+
+
+/**
+ *  Provides a facade over the S3 API using the v1 SDK.
+ */
+public class S3FacadeImpl
+implements S3Facade
+{
+    private AbstractWriterConfig<?> config;
+
+    private AmazonS3 client;
+
+
+    public S3FacadeImpl(AbstractWriterConfig<?> config)
+    {
+        this.config = config;
+    }
+
+//----------------------------------------------------------------------------
+//  Public methods
+//----------------------------------------------------------------------------
+
+    @Override
+    public void putObject(String key, byte[] content)
+    {
+        String bucket = bucket("putObject");
+
+        try
+        {
+            ObjectMetadata metadata = new ObjectMetadata();
+            metadata.setContentLength(content.length);
+            metadata.setContentType(contentType());
+
+            PutObjectRequest request = new PutObjectRequest(bucket, key, new ByteArrayInputStream(content), metadata);
+            client().putObject(request);
+        }
+        catch (Exception ex)
+        {
+            throw transformException("putObject", key, ex);
+        }
+    }
+
+
+    @Override
+    public String startMultipartUpload(String key)
+    {
+        String bucket = bucket("startMultipartUpload");
+
+        try
+        {
+            ObjectMetadata metadata = new ObjectMetadata();
+            metadata.setContentType(contentType());
+
+            InitiateMultipartUploadRequest request = new InitiateMultipartUploadRequest(bucket, key, metadata);
+            return client().initiateMultipartUpload(request).getUploadId();
+        }
+        catch (Exception ex)
+        {
+            throw transformException("startMultipartUpload", key, ex);
+        }
+    }
+
+
+    @Override
+    public String uploadPart(String key, String uploadId, int partNumber, byte[] content)
+    {
+        String bucket = bucket("uploadPart");
+
+        try
+        {
+            UploadPartRequest request = new UploadPartRequest()
+                                        .withBucketName(bucket)
+                                        .withKey(key)
+                                        .withUploadId(uploadId)
+                                        .withPartNumber(partNumber)
+                                        .withPartSize(content.length)
+                                        .withInputStream(new ByteArrayInputStream(content));
+            return client().uploadPart(request).getETag();
+        }
+        catch (Exception ex)
+        {
+            throw transformException("uploadPart", key, ex);
+        }
+    }
+
+
+    @Override
+    public void completeMultipartUpload(String key, String uploadId, List<String> partETags)
+    {
+        String bucket = bucket("completeMultipartUpload");
+
+        try
+        {
+            List<PartETag> parts = new ArrayList<>(partETags.size());
+            for (String etag : partETags)
+            {
+                parts.add(new PartETag(parts.size() + 1, etag));
+            }
+
+            CompleteMultipartUploadRequest request = new CompleteMultipartUploadRequest(bucket, key, uploadId, parts);
+            client().completeMultipartUpload(request);
+        }
+        catch (Exception ex)
+        {
+            throw transformException("completeMultipartUpload", key, ex);
+        }
+    }
+
+
+    @Override
+    public void abortMultipartUpload(String key, String uploadId)
+    {
+        String bucket = bucket("abortMultipartUpload");
+
+        try
+        {
+            client().abortMultipartUpload(new AbortMultipartUploadRequest(bucket, key, uploadId));
+        }
+        catch (Exception ex)
+        {
+            throw transformException("abortMultipartUpload", key, ex);
+        }
+    }
+
+
+    @Override
+    public void shutdown()
+    {
+        client().shutdown();
+    }
+
+//----------------------------------------------------------------------------
+//  Internals
+//----------------------------------------------------------------------------
+
+    protected AmazonS3 client()
+    {
+        if (client == null)
+        {
+            client = new ClientFactory<>(AmazonS3.class, config).create();
+        }
+
+        return client;
+    }
+
+
+    /**
+     *  Returns the destination bucket: for the S3 writer this is its configured
+     *  bucket, for other writers it's the bucket for oversize messages.
+     */
+    private String bucketName()
+    {
+        return (config instanceof S3WriterConfig)
+             ? ((S3WriterConfig)config).getBucketName()
+             : config.getOversizeS3Bucket();
+    }
+
+
+    /**
+     *  Returns the destination bucket, throwing if it isn't configured.
+     */
+    private String bucket(String functionName)
+    {
+        String bucket = bucketName();
+        if ((bucket == null) || bucket.isEmpty())
+            throw new S3FacadeException("bucket not configured", ReasonCode.INVALID_CONFIGURATION, false, functionName);
+
+        return bucket;
+    }
+
+
+    /**
+     *  Returns the content type for uploaded objects: the S3 writer uploads compressed
+     *  archives, other writers upload individual messages.
+     */
+    private String contentType()
+    {
+        return (config instanceof S3WriterConfig)
+             ? "application/gzip"
+             : "text/plain; charset=utf-8";
+    }
+
+
+    /**
+     *  Creates a facade exception based on some other exception. Anything that might
+     *  succeed on a later attempt, including network errors and server-side failures,
+     *  is retryable: the writer discards its current object after a non-retryable
+     *  error, so that's limited to errors that retrying can't fix.
+     */
+    private S3FacadeException transformException(String functionName, String key, Exception cause)
+    {
+        String message;
+        ReasonCode reason;
+        boolean isRetryable;
+
+        if (cause instanceof AmazonServiceException)
+        {
+            AmazonServiceException ex = (AmazonServiceException)cause;
+            if ("NoSuchBucket".equals(ex.getErrorCode()))
+            {
+                reason = ReasonCode.MISSING_BUCKET;
+                message = "bucket does not exist";
+                isRetryable = false;
+            }
+            else if ("SlowDown".equals(ex.getErrorCode()))
+            {
+                reason = ReasonCode.THROTTLING;
+                message = "request throttled";
+                isRetryable = true;
+            }
+            else
+            {
+                reason = ReasonCode.UNEXPECTED_EXCEPTION;
+                message = "service exception: " + cause.getMessage();
+                isRetryable = ! S3FacadeException.isPermanentError(ex.getErrorCode());
+            }
+        }
+        else if (cause instanceof AmazonClientException)
+        {
+            reason = ReasonCode.UNEXPECTED_EXCEPTION;
+            message = "client exception: " + cause.getMessage();
+            isRetryable = true;
+        }
+        else
+        {
+            message = "unexpected exception: " + cause.getMessage();
+            reason = ReasonCode.UNEXPECTED_EXCEPTION;
+            isRetryable = false;
+        }
+
+        return new S3FacadeException(
+                message, cause, reason, isRetryable,
+                functionName, bucketName(), key);
+    }
+}
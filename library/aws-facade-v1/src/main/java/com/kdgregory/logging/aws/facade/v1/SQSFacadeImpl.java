@@ -0,0 +1,200 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.kdgregory.logging.aws.facade.v1;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.amazonaws.services.sqs.AmazonSQS;
+import com.amazonaws.services.sqs.model.*;
+
+import com.kdgregory.logging.aws.facade.SQSFacade;
+import com.kdgregory.logging.aws.facade.SQSFacadeException;
+import com.kdgregory.logging.aws.facade.SQSFacadeException.ReasonCode;
+import com.kdgregory.logging.aws.facade.v1.internal.ClientFactory;
+import com.kdgregory.logging.aws.sqs.SQSWriterConfig;
+import com.kdgregory.logging.common.LogMessage;
+
+
+/**
+ *  Provides a facade over the SQS API using the v1 SDK.
+ */
+public class SQSFacadeImpl
+implements SQSFacade
+{
+    private SQSWriterConfig config;
+
+    private AmazonSQS client;
+
+    public SQSFacadeImpl(SQSWriterConfig config)
+    {
+        this.config = config;
+    }
+
+//----------------------------------------------------------------------------
+//  Public methods
+//----------------------------------------------------------------------------
+
+    @Override
+    public String retrieveQueueUrl()
+    {
+        try
+        {
+            GetQueueUrlRequest request = new GetQueueUrlRequest().withQueueName(config.getQueueName());
+            GetQueueUrlResult response = client().getQueueUrl(request);
+            return response.getQueueUrl();
+        }
+        catch (Exception ex)
+        {
+            SQSFacadeException ex2 = transformException("retrieveQueueUrl", ex);
+            if (ex2.getReason() == ReasonCode.THROTTLING)
+            {
+                // the caller will retry on null, so no need to make them catch
+                return null;
+            }
+            throw ex2;
+        }
+    }
+
+
+    @Override
+    public List<LogMessage> sendMessages(String queueUrl, List<LogMessage> batch)
+    {
+        if (batch.isEmpty())
+            return batch;
+
+        try
+        {
+            SendMessageBatchRequest request = createSendMessageBatchRequest(queueUrl, batch);
+            SendMessageBatchResult response = client().sendMessageBatch(request);
+            return extractSendMessageBatchFailures(batch, response);
+        }
+        catch (Exception ex)
+        {
+            throw transformException("sendMessages", ex);
+        }
+    }
+
+
+    @Override
+    public void shutdown()
+    {
+        client().shutdown();
+    }
+
+//----------------------------------------------------------------------------
+//  Internals
+//----------------------------------------------------------------------------
+
+    /**
+     *  Returns the SQS client, lazily constructing it if needed.
+     *  <p>
+     *  This method is synchronized because requests may be sent concurrently.
+     */
+    protected synchronized AmazonSQS client()
+    {
+        if (client == null)
+        {
+            client = new ClientFactory<>(AmazonSQS.class, config).create();
+        }
+
+        return client;
+    }
+
+
+    /**
+     *  Creates a facade exception based on some other exception.
+     */
+    private SQSFacadeException transformException(String functionName, Exception cause)
+    {
+        String message;
+        ReasonCode reason;
+        boolean isRetryable;
+
+        if (cause instanceof QueueDoesNotExistException)
+        {
+            reason = ReasonCode.MISSING_QUEUE;
+            message = "queue does not exist";
+            isRetryable = false;
+        }
+        else if (cause instanceof AmazonSQSException)
+        {
+            AmazonSQSException ex = (AmazonSQSException)cause;
+            if ("RequestThrottled".equals(ex.getErrorCode()) || "ThrottlingException".equals(ex.getErrorCode()))
+            {
+                reason = ReasonCode.THROTTLING;
+                message = "request throttled";
+                isRetryable = true;
+            }
+            else
+            {
+                reason = ReasonCode.UNEXPECTED_EXCEPTION;
+                message = "service exception: " + cause.getMessage();
+                isRetryable = false;
+            }
+        }
+        else
+        {
+            message = "unexpected exception: " + cause.getMessage();
+            reason = ReasonCode.UNEXPECTED_EXCEPTION;
+            isRetryable = false;
+        }
+
+        return new SQSFacadeException(
+                message, cause, reason, isRetryable,
+                functionName, config.getQueueName());
+    }
+
+
+    private SendMessageBatchRequest createSendMessageBatchRequest(String queueUrl, List<LogMessage> batch)
+    {
+        // entry IDs are the message's index in the batch, so that failures can be mapped back
+        List<SendMessageBatchRequestEntry> entries = new ArrayList<>(batch.size());
+        for (int ii = 0 ; ii < batch.size() ; ii++)
+        {
+            entries.add(new SendMessageBatchRequestEntry()
+                        .withId(String.valueOf(ii))
+                        .withMessageBody(batch.get(ii).getMessage()));
+        }
+
+        return new SendMessageBatchRequest()
+                   .withQueueUrl(queueUrl)
+                   .withEntries(entries);
+    }
+
+
+    private List<LogMessage> extractSendMessageBatchFailures(List<LogMessage> batch, SendMessageBatchResult response)
+    {
+        if ((response.getFailed() == null) || response.getFailed().isEmpty())
+            return Collections.emptyList();
+
+        // failures aren't necessarily reported in request order
+        List<Integer> indexes = new ArrayList<>(response.getFailed().size());
+        for (BatchResultErrorEntry entry : response.getFailed())
+        {
+            indexes.add(Integer.valueOf(entry.getId()));
+        }
+        Collections.sort(indexes);
+
+        List<LogMessage> result = new ArrayList<>(indexes.size());
+        for (Integer index : indexes)
+        {
+            result.add(batch.get(index.intValue()));
+        }
+        return result;
+    }
+}
@@ -21,14 +21,20 @@ import com.amazonaws.auth.AWSCredentialsProvider;
 import com.amazonaws.client.builder.AwsClientBuilder;
 import com.amazonaws.client.builder.AwsClientBuilder.EndpointConfiguration;
 import com.amazonaws.services.kinesis.AmazonKinesisClientBuilder;
+import com.amazonaws.services.kinesisfirehose.AmazonKinesisFirehoseClientBuilder;
 import com.amazonaws.services.logs.AWSLogsClientBuilder;
+import com.amazonaws.services.s3.AmazonS3ClientBuilder;
 import com.amazonaws.services.sns.AmazonSNSClientBuilder;
+import com.amazonaws.services.sqs.AmazonSQSClientBuilder;
 
 import com.kdgregory.logging.aws.cloudwatch.CloudWatchWriterConfig;
+import com.kdgregory.logging.aws.firehose.FirehoseWriterConfig;
 import com.kdgregory.logging.aws.internal.AbstractWriterConfig;
 import com.kdgregory.logging.aws.kinesis.KinesisWriterConfig;
 import com.kdgregory.logging.aws.sns.SNSWriterConfig;
+import com.kdgregory.logging.aws.sqs.SQSWriterConfig;
 import com.kdgregory.logging.common.internal.Utils;
+import com.kdgregory.logging.common.jfr.JfrEvents;
 
 
 /**
@@ -38,6 +44,8 @@ import com.kdgregory.logging.common.internal.Utils;
  */
 public class ClientFactory<T>
 {
+    private final static String S3_CLIENT_CLASSNAME = "com.amazonaws.services.s3.AmazonS3";
+
     private Class<T> clientType;
     private AbstractWriterConfig<?> config;
 
@@ -53,20 +61,23 @@ public class ClientFactory<T>
 
     public T create()
     {
+        Object jfrToken = JfrEvents.beginClientCreation();
         T client = tryInstantiateFromFactory();
-        if (client != null)
-            return client;
+        if (client == null)
+        {
+            AwsClientBuilder<?,?> builder = createClientBuilder();
+            optSetRegionOrEndpoint(builder);
 
-        AwsClientBuilder<?,?> builder = createClientBuilder();
-        optSetRegionOrEndpoint(builder);
+            String roleToAssume = config.getAssumedRole();
+            if ((roleToAssume != null) && !roleToAssume.isEmpty())
+            {
+                setAssumedRoleCredentialsProvider(builder, roleToAssume);
+            }
 
-        String roleToAssume = config.getAssumedRole();
-        if ((roleToAssume != null) && !roleToAssume.isEmpty())
-        {
-            setAssumedRoleCredentialsProvider(builder, roleToAssume);
+            client = clientType.cast(builder.build());
         }
-
-        return clientType.cast(builder.build());
+        JfrEvents.endClientCreation(jfrToken, clientType.getName());
+        return client;
     }
 
 //----------------------------------------------------------------------------
@@ -120,10 +131,20 @@ public class ClientFactory<T>
 
 
     /**
-     *  Picks an appropriate client builder, based on the configuration type.
+     *  Picks an appropriate client builder, based on the configuration type. The
+     *  exception is S3, which may be used with any configuration (to offload
+     *  oversize messages); it's identified by name so that the S3 library isn't
+     *  needed unless used.
      */
     protected AwsClientBuilder<?,?> createClientBuilder()
     {
+        if (S3_CLIENT_CLASSNAME.equals(clientType.getName()))
+        {
+            // S3-compatible stand-ins generally don't support virtual-host addressing
+            String endpoint = config.getClientEndpoint();
+            return new AmazonS3ClientBuilderBuilder().buildBuilder((endpoint != null) && ! endpoint.isEmpty());
+        }
+
         if (config instanceof CloudWatchWriterConfig)
             return new AWSLogsClientBuilderBuilder().buildBuilder();
 
@@ -133,6 +154,12 @@ public class ClientFactory<T>
         if (config instanceof SNSWriterConfig)
             return new AmazonSNSClientBuilderBuilder().buildBuilder();
 
+        if (config instanceof FirehoseWriterConfig)
+            return new AmazonKinesisFirehoseClientBuilderBuilder().buildBuilder();
+
+        if (config instanceof SQSWriterConfig)
+            return new AmazonSQSClientBuilderBuilder().buildBuilder();
+
         throw new RuntimeException("unsupported configuration type: " + config.getClass());
     }
 
@@ -215,4 +242,31 @@ public class ClientFactory<T>
             return AmazonSNSClientBuilder.standard();
         }
     }
+
+
+    private static class AmazonKinesisFirehoseClientBuilderBuilder
+    {
+        public AwsClientBuilder<?,?> buildBuilder()
+        {
+            return AmazonKinesisFirehoseClientBuilder.standard();
+        }
+    }
+
+
+    private static class AmazonSQSClientBuilderBuilder
+    {
+        public AwsClientBuilder<?,?> buildBuilder()
+        {
+            return AmazonSQSClientBuilder.standard();
+        }
+    }
+
+
+    private static class AmazonS3ClientBuilderBuilder
+    {
+        public AwsClientBuilder<?,?> buildBuilder(boolean usePathStyleAccess)
+        {
+            return AmazonS3ClientBuilder.standard().withPathStyleAccessEnabled(usePathStyleAccess);
+        }
+    }
 }
@@ -0,0 +1,382 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.kdgregory.logging.aws.facade;
+
+import static net.sf.kdgcommons.test.StringAsserts.*;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import com.amazonaws.services.kinesisfirehose.AmazonKinesisFirehose;
+import com.amazonaws.services.kinesisfirehose.model.*;
+
+import com.kdgregory.logging.aws.facade.FirehoseFacadeException.ReasonCode;
+import com.kdgregory.logging.aws.facade.v1.FirehoseFacadeImpl;
+import com.kdgregory.logging.aws.firehose.FirehoseConstants.StreamStatus;
+import com.kdgregory.logging.aws.firehose.FirehoseWriterConfig;
+import com.kdgregory.logging.aws.testhelpers.FirehoseClientMock;
+import com.kdgregory.logging.common.LogMessage;
+
+
+public class TestFirehoseFacadeImpl
+{
+    private final static String DEFAULT_STREAM_NAME = "argle";
+
+    private FirehoseWriterConfig config = new FirehoseWriterConfig().setStreamName(DEFAULT_STREAM_NAME);
+
+    // each test will also create its own mock
+    private FirehoseClientMock mock = new FirehoseClientMock();
+
+    // lazily instantiated, just like the real thing; both config and mock can be changed before first call
+    private FirehoseFacade facade = new FirehoseFacadeImpl(config)
+    {
+        private AmazonKinesisFirehose client;
+
+        @Override
+        protected AmazonKinesisFirehose client()
+        {
+            if (client == null)
+            {
+                client = mock.createClient();
+            }
+            return client;
+        }
+    };
+
+//----------------------------------------------------------------------------
+//  Helpers
+//----------------------------------------------------------------------------
+
+    /**
+     *  Verifies that an exception contains a properly structured message.
+     */
+    private void assertException(
+            FirehoseFacadeException ex,
+            String expectedFunctionName, String expectedContainedMessage,
+            ReasonCode expectedReason, boolean expectedRetryable, Throwable expectedCause)
+    {
+        assertEquals("exception reason",  expectedReason, ex.getReason());
+
+        assertRegex("exception message (was: " + ex.getMessage() + ")",
+                    expectedFunctionName + ".*" + DEFAULT_STREAM_NAME + ".*"
+                                         + expectedContainedMessage,
+                    ex.getMessage());
+
+        assertEquals("retryable", expectedRetryable, ex.isRetryable());
+
+        if (expectedCause != null)
+        {
+            assertSame("exception contains cause", expectedCause, ex.getCause());
+        }
+    }
+
+
+    /**
+     *  Returns the content of a record from the last putRecordBatch() request.
+     */
+    private String recordContent(int index)
+    {
+        Record record = mock.putRecordBatchRequest.getRecords().get(index);
+        return new String(record.getData().array(), StandardCharsets.UTF_8);
+    }
+
+//----------------------------------------------------------------------------
+//  Testcases
+//----------------------------------------------------------------------------
+
+    @Test
+    public void testRetrieveStreamStatus() throws Exception
+    {
+        assertEquals("status",                                      StreamStatus.ACTIVE,        facade.retrieveStreamStatus());
+        assertEquals("describeDeliveryStream() invocation count",   1,                          mock.describeDeliveryStreamInvocationCount);
+        assertEquals("stream name",                                 DEFAULT_STREAM_NAME,        mock.describeStreamName);
+
+        mock = new FirehoseClientMock()
+        {
+            @Override
+            protected DescribeDeliveryStreamResult describeDeliveryStream(DescribeDeliveryStreamRequest request)
+            {
+                return describeResult(DeliveryStreamStatus.CREATING_FAILED);
+            }
+        };
+
+        // note: facade caches client, so we need a new one
+        FirehoseFacade facade2 = new FirehoseFacadeImpl(config)
+        {
+            @Override
+            protected AmazonKinesisFirehose client()
+            {
+                return mock.createClient();
+            }
+        };
+
+        assertEquals("status",                                      StreamStatus.CREATING_FAILED,   facade2.retrieveStreamStatus());
+    }
+
+
+    @Test
+    public void testRetrieveStreamStatusMissingStream() throws Exception
+    {
+        mock = new FirehoseClientMock()
+        {
+            @Override
+            protected DescribeDeliveryStreamResult describeDeliveryStream(DescribeDeliveryStreamRequest request)
+            {
+                throw new ResourceNotFoundException("blah");
+            }
+        };
+
+        assertEquals("status",                                      StreamStatus.DOES_NOT_EXIST,    facade.retrieveStreamStatus());
+    }
+
+
+    @Test
+    public void testRetrieveStreamStatusLimitExceeded() throws Exception
+    {
+        mock = new FirehoseClientMock()
+        {
+            @Override
+            protected DescribeDeliveryStreamResult describeDeliveryStream(DescribeDeliveryStreamRequest request)
+            {
+                throw new LimitExceededException("blah");
+            }
+        };
+
+        assertNull("status", facade.retrieveStreamStatus());
+    }
+
+
+    @Test
+    public void testRetrieveStreamStatusException() throws Exception
+    {
+        final RuntimeException cause = new RuntimeException("test");
+        mock = new FirehoseClientMock()
+        {
+            @Override
+            protected DescribeDeliveryStreamResult describeDeliveryStream(DescribeDeliveryStreamRequest request)
+            {
+                throw cause;
+            }
+        };
+
+        try
+        {
+            facade.retrieveStreamStatus();
+            fail("should have thrown");
+        }
+        catch (FirehoseFacadeException ex)
+        {
+            assertException(ex, "retrieveStreamStatus", "unexpected exception: test", ReasonCode.UNEXPECTED_EXCEPTION, false, cause);
+        }
+    }
+
+
+    @Test
+    public void testPutRecordsHappyPath() throws Exception
+    {
+        List<LogMessage> messages = Arrays.asList(
+                                        new LogMessage(0, "message one"),
+                                        new LogMessage(1, "message two"));
+
+        List<LogMessage> result = facade.putRecords(messages);
+
+        assertEquals("putRecordBatch() invocation count",           1,                          mock.putRecordBatchInvocationCount);
+        assertEquals("stream name",                                 DEFAULT_STREAM_NAME,        mock.putRecordBatchRequest.getDeliveryStreamName());
+        assertEquals("number of records",                           2,                          mock.putRecordBatchRequest.getRecords().size());
+        assertEquals("record 0 content",                            "message one",              recordContent(0));
+        assertEquals("record 1 content",                            "message two",              recordContent(1));
+        assertEquals("no failed records",                           0,                          result.size());
+    }
+
+
+    @Test
+    public void testPutRecordsEmptyBatch() throws Exception
+    {
+        List<LogMessage> result = facade.putRecords(new ArrayList<>());
+
+        assertEquals("putRecordBatch() invocation count",           0,                          mock.putRecordBatchInvocationCount);
+        assertEquals("no failed records",                           0,                          result.size());
+    }
+
+
+    @Test
+    public void testPutRecordsPartialFailure() throws Exception
+    {
+        mock = new FirehoseClientMock()
+        {
+            @Override
+            protected PutRecordBatchResult putRecordBatch(PutRecordBatchRequest request)
+            {
+                List<PutRecordBatchResponseEntry> entries = new ArrayList<>();
+                for (int ii = 0 ; ii < request.getRecords().size() ; ii++)
+                {
+                    entries.add((ii % 2 == 0)
+                                ? new PutRecordBatchResponseEntry().withRecordId(String.valueOf(ii))
+                                : new PutRecordBatchResponseEntry().withErrorCode("ServiceUnavailableException"));
+                }
+                return new PutRecordBatchResult()
+                       .withFailedPutCount(request.getRecords().size() / 2)
+                       .withRequestResponses(entries);
+            }
+        };
+
+        List<LogMessage> messages = Arrays.asList(
+                                        new LogMessage(0, "message one"),
+                                        new LogMessage(1, "message two"),
+                                        new LogMessage(2, "message three"),
+                                        new LogMessage(3, "message four"));
+
+        List<LogMessage> result = facade.putRecords(messages);
+
+        assertEquals("number of failed records",                    2,                          result.size());
+        assertSame("first failed record",                           messages.get(1),            result.get(0));
+        assertSame("second failed record",                          messages.get(3),            result.get(1));
+    }
+
+
+    @Test
+    public void testPutRecordsThrottled() throws Exception
+    {
+        mock = new FirehoseClientMock()
+        {
+            @Override
+            protected PutRecordBatchResult putRecordBatch(PutRecordBatchRequest request)
+            {
+                throw new ServiceUnavailableException("blah");
+            }
+        };
+
+        try
+        {
+            facade.putRecords(Arrays.asList(new LogMessage(0, "message one")));
+            fail("should have thrown");
+        }
+        catch (FirehoseFacadeException ex)
+        {
+            assertException(ex, "putRecords", "throttled", ReasonCode.THROTTLING, true, null);
+        }
+    }
+
+
+    @Test
+    public void testPutRecordsLimitExceeded() throws Exception
+    {
+        mock = new FirehoseClientMock()
+        {
+            @Override
+            protected PutRecordBatchResult putRecordBatch(PutRecordBatchRequest request)
+            {
+                throw new LimitExceededException("blah");
+            }
+        };
+
+        try
+        {
+            facade.putRecords(Arrays.asList(new LogMessage(0, "message one")));
+            fail("should have thrown");
+        }
+        catch (FirehoseFacadeException ex)
+        {
+            assertException(ex, "putRecords", "limit exceeded", ReasonCode.LIMIT_EXCEEDED, true, null);
+        }
+    }
+
+
+    @Test
+    public void testPutRecordsMissingStream() throws Exception
+    {
+        mock = new FirehoseClientMock()
+        {
+            @Override
+            protected PutRecordBatchResult putRecordBatch(PutRecordBatchRequest request)
+            {
+                throw new ResourceNotFoundException("blah");
+            }
+        };
+
+        try
+        {
+            facade.putRecords(Arrays.asList(new LogMessage(0, "message one")));
+            fail("should have thrown");
+        }
+        catch (FirehoseFacadeException ex)
+        {
+            assertException(ex, "putRecords", "delivery stream does not exist", ReasonCode.MISSING_STREAM, false, null);
+        }
+    }
+
+
+    @Test
+    public void testPutRecordsStreamNotActive() throws Exception
+    {
+        mock = new FirehoseClientMock()
+        {
+            @Override
+            protected PutRecordBatchResult putRecordBatch(PutRecordBatchRequest request)
+            {
+                throw new ResourceInUseException("blah");
+            }
+        };
+
+        try
+        {
+            facade.putRecords(Arrays.asList(new LogMessage(0, "message one")));
+            fail("should have thrown");
+        }
+        catch (FirehoseFacadeException ex)
+        {
+            assertException(ex, "putRecords", "delivery stream not active", ReasonCode.INVALID_STATE, true, null);
+        }
+    }
+
+
+    @Test
+    public void testPutRecordsException() throws Exception
+    {
+        final RuntimeException cause = new RuntimeException("test");
+        mock = new FirehoseClientMock()
+        {
+            @Override
+            protected PutRecordBatchResult putRecordBatch(PutRecordBatchRequest request)
+            {
+                throw cause;
+            }
+        };
+
+        try
+        {
+            facade.putRecords(Arrays.asList(new LogMessage(0, "message one")));
+            fail("should have thrown");
+        }
+        catch (FirehoseFacadeException ex)
+        {
+            assertException(ex, "putRecords", "unexpected exception: test", ReasonCode.UNEXPECTED_EXCEPTION, false, cause);
+        }
+    }
+
+
+    @Test
+    public void testShutdown() throws Exception
+    {
+        facade.shutdown();
+
+        assertEquals("shutdown() invocation count",                 1,                          mock.shutdownInvocationCount);
+    }
+}
@@ -0,0 +1,476 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.kdgregory.logging.aws.facade;
+
+import static net.sf.kdgcommons.test.StringAsserts.*;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import com.amazonaws.SdkClientException;
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.*;
+
+import com.kdgregory.logging.aws.cloudwatch.CloudWatchWriterConfig;
+import com.kdgregory.logging.aws.facade.S3FacadeException.ReasonCode;
+import com.kdgregory.logging.aws.facade.v1.S3FacadeImpl;
+import com.kdgregory.logging.aws.s3.S3WriterConfig;
+import com.kdgregory.logging.aws.testhelpers.S3ClientMock;
+
+
+public class TestS3FacadeImpl
+{
+    private final static String DEFAULT_BUCKET = "argle";
+    private final static String DEFAULT_KEY = "bargle/12345";
+    private final static byte[] DEFAULT_CONTENT = "this is a test".getBytes(StandardCharsets.UTF_8);
+
+    // the S3 facade can be used with any writer config
+    private CloudWatchWriterConfig config = new CloudWatchWriterConfig().setOversizeS3Bucket(DEFAULT_BUCKET);
+
+    // each test will also create its own mock
+    private S3ClientMock mock = new S3ClientMock();
+
+    // lazily instantiated, just like the real thing; both config and mock can be changed before first call
+    private S3Facade facade = new S3FacadeImpl(config)
+    {
+        private AmazonS3 client;
+
+        @Override
+        protected AmazonS3 client()
+        {
+            if (client == null)
+            {
+                client = mock.createClient();
+            }
+            return client;
+        }
+    };
+
+//----------------------------------------------------------------------------
+//  Helpers
+//----------------------------------------------------------------------------
+
+    /**
+     *  Verifies that an exception contains a properly structured message.
+     */
+    private void assertException(
+            S3FacadeException ex,
+            String expectedFunctionName, String expectedContainedMessage,
+            ReasonCode expectedReason, boolean expectedRetryable, Throwable expectedCause)
+    {
+        assertEquals("exception reason",  expectedReason, ex.getReason());
+
+        assertRegex("exception message (was: " + ex.getMessage() + ")",
+                    expectedFunctionName + ".*" + expectedContainedMessage,
+                    ex.getMessage());
+
+        assertEquals("retryable", expectedRetryable, ex.isRetryable());
+
+        if (expectedCause != null)
+        {
+            assertSame("exception contains cause", expectedCause, ex.getCause());
+        }
+    }
+
+
+    /**
+     *  Constructs an exception with the specified error code, as reported by S3.
+     */
+    private static AmazonS3Exception serviceException(String errorCode, int statusCode)
+    {
+        AmazonS3Exception ex = new AmazonS3Exception(errorCode);
+        ex.setErrorCode(errorCode);
+        ex.setStatusCode(statusCode);
+        return ex;
+    }
+
+//----------------------------------------------------------------------------
+//  Testcases
+//----------------------------------------------------------------------------
+
+    @Test
+    public void testPutObjectHappyPath() throws Exception
+    {
+        facade.putObject(DEFAULT_KEY, DEFAULT_CONTENT);
+
+        assertEquals("putObject() invocation count",    1,                              mock.putObjectInvocationCount);
+        assertEquals("bucket",                          DEFAULT_BUCKET,                 mock.putObjectRequest.getBucketName());
+        assertEquals("key",                             DEFAULT_KEY,                    mock.putObjectRequest.getKey());
+        assertEquals("content length",                  DEFAULT_CONTENT.length,         mock.putObjectRequest.getMetadata().getContentLength());
+        assertEquals("content type",                    "text/plain; charset=utf-8",    mock.putObjectRequest.getMetadata().getContentType());
+        assertArrayEquals("content",                    DEFAULT_CONTENT,                mock.putObjectContent);
+        assertEquals("shutdown() invocation count",     0,                              mock.shutdownInvocationCount);
+    }
+
+
+    @Test
+    public void testPutObjectThrottling() throws Exception
+    {
+        mock = new S3ClientMock()
+        {
+            @Override
+            protected PutObjectResult putObject(PutObjectRequest request)
+            {
+                throw serviceException("SlowDown", 503);
+            }
+        };
+
+        try
+        {
+            facade.putObject(DEFAULT_KEY, DEFAULT_CONTENT);
+            fail("should have thrown");
+        }
+        catch (S3FacadeException ex)
+        {
+            assertException(ex, "putObject", "request throttled", ReasonCode.THROTTLING, true, null);
+        }
+
+        assertEquals("putObject() invocation count",    1,                              mock.putObjectInvocationCount);
+    }
+
+
+    @Test
+    public void testPutObjectNoSuchBucket() throws Exception
+    {
+        mock = new S3ClientMock()
+        {
+            @Override
+            protected PutObjectResult putObject(PutObjectRequest request)
+            {
+                throw serviceException("NoSuchBucket", 404);
+            }
+        };
+
+        try
+        {
+            facade.putObject(DEFAULT_KEY, DEFAULT_CONTENT);
+            fail("should have thrown");
+        }
+        catch (S3FacadeException ex)
+        {
+            assertException(ex, "putObject", "bucket does not exist", ReasonCode.MISSING_BUCKET, false, null);
+        }
+    }
+
+
+    @Test
+    public void testPutObjectServiceError() throws Exception
+    {
+        // server-side failures may succeed on retry
+        final AmazonS3Exception cause = serviceException("InternalError", 500);
+        mock = new S3ClientMock()
+        {
+            @Override
+            protected PutObjectResult putObject(PutObjectRequest request)
+            {
+                throw cause;
+            }
+        };
+
+        try
+        {
+            facade.putObject(DEFAULT_KEY, DEFAULT_CONTENT);
+            fail("should have thrown");
+        }
+        catch (S3FacadeException ex)
+        {
+            assertException(ex, "putObject", "service exception.*", ReasonCode.UNEXPECTED_EXCEPTION, true, cause);
+        }
+    }
+
+
+    @Test
+    public void testPutObjectAccessDenied() throws Exception
+    {
+        mock = new S3ClientMock()
+        {
+            @Override
+            protected PutObjectResult putObject(PutObjectRequest request)
+            {
+                throw serviceException("AccessDenied", 403);
+            }
+        };
+
+        try
+        {
+            facade.putObject(DEFAULT_KEY, DEFAULT_CONTENT);
+            fail("should have thrown");
+        }
+        catch (S3FacadeException ex)
+        {
+            assertException(ex, "putObject", "service exception.*", ReasonCode.UNEXPECTED_EXCEPTION, false, null);
+        }
+    }
+
+
+    @Test
+    public void testPutObjectClientException() throws Exception
+    {
+        // network errors are reported as client exceptions
+        final SdkClientException cause = new SdkClientException("connection reset");
+        mock = new S3ClientMock()
+        {
+            @Override
+            protected PutObjectResult putObject(PutObjectRequest request)
+            {
+                throw cause;
+            }
+        };
+
+        try
+        {
+            facade.putObject(DEFAULT_KEY, DEFAULT_CONTENT);
+            fail("should have thrown");
+        }
+        catch (S3FacadeException ex)
+        {
+            assertException(ex, "putObject", "client exception: connection reset", ReasonCode.UNEXPECTED_EXCEPTION, true, cause);
+        }
+    }
+
+
+    @Test
+    public void testPutObjectException() throws Exception
+    {
+        final RuntimeException cause = new RuntimeException("test");
+        mock = new S3ClientMock()
+        {
+            @Override
+            protected PutObjectResult putObject(PutObjectRequest request)
+            {
+                throw cause;
+            }
+        };
+
+        try
+        {
+            facade.putObject(DEFAULT_KEY, DEFAULT_CONTENT);
+            fail("should have thrown");
+        }
+        catch (S3FacadeException ex)
+        {
+            assertException(ex, "putObject", "unexpected exception: test", ReasonCode.UNEXPECTED_EXCEPTION, false, cause);
+        }
+    }
+
+
+    @Test
+    public void testPutObjectBucketNotConfigured() throws Exception
+    {
+        config.setOversizeS3Bucket(null);
+
+        try
+        {
+            facade.putObject(DEFAULT_KEY, DEFAULT_CONTENT);
+            fail("should have thrown");
+        }
+        catch (S3FacadeException ex)
+        {
+            assertException(ex, "putObject", "bucket not configured", ReasonCode.INVALID_CONFIGURATION, false, null);
+        }
+
+        assertEquals("putObject() invocation count",    0,                              mock.putObjectInvocationCount);
+    }
+
+
+    @Test
+    public void testMultipartUploadHappyPath() throws Exception
+    {
+        String uploadId = facade.startMultipartUpload(DEFAULT_KEY);
+        String etag = facade.uploadPart(DEFAULT_KEY, uploadId, 1, DEFAULT_CONTENT);
+        facade.completeMultipartUpload(DEFAULT_KEY, uploadId, Arrays.asList(etag, "etag-2"));
+
+        assertEquals("upload ID",                                   "upload-1",         uploadId);
+        assertEquals("returned ETag",                               "etag-1",           etag);
+
+        assertEquals("initiateMultipartUpload() invocation count",  1,                  mock.initiateMultipartUploadInvocationCount);
+        assertEquals("initiateMultipartUpload() bucket",            DEFAULT_BUCKET,     mock.initiateMultipartUploadRequest.getBucketName());
+        assertEquals("initiateMultipartUpload() key",               DEFAULT_KEY,        mock.initiateMultipartUploadRequest.getKey());
+
+        assertEquals("uploadPart() invocation count",               1,                  mock.uploadPartInvocationCount);
+        assertEquals("uploadPart() bucket",                         DEFAULT_BUCKET,     mock.uploadPartRequest.getBucketName());
+        assertEquals("uploadPart() key",                            DEFAULT_KEY,        mock.uploadPartRequest.getKey());
+        assertEquals("uploadPart() upload ID",                      uploadId,           mock.uploadPartRequest.getUploadId());
+        assertEquals("uploadPart() part number",                    1,                  mock.uploadPartRequest.getPartNumber());
+        assertEquals("uploadPart() part size",                      DEFAULT_CONTENT.length, mock.uploadPartRequest.getPartSize());
+        assertArrayEquals("uploadPart() content",                   DEFAULT_CONTENT,    mock.uploadPartContent);
+
+        List<PartETag> parts = mock.completeMultipartUploadRequest.getPartETags();
+        assertEquals("completeMultipartUpload() invocation count",  1,                  mock.completeMultipartUploadInvocationCount);
+        assertEquals("completeMultipartUpload() bucket",            DEFAULT_BUCKET,     mock.completeMultipartUploadRequest.getBucketName());
+        assertEquals("completeMultipartUpload() key",               DEFAULT_KEY,        mock.completeMultipartUploadRequest.getKey());
+        assertEquals("completeMultipartUpload() upload ID",         uploadId,           mock.completeMultipartUploadRequest.getUploadId());
+        assertEquals("completeMultipartUpload() number of parts",   2,                  parts.size());
+        assertEquals("completeMultipartUpload() part 1 number",     1,                  parts.get(0).getPartNumber());
+        assertEquals("completeMultipartUpload() part 1 ETag",       etag,               parts.get(0).getETag());
+        assertEquals("completeMultipartUpload() part 2 number",     2,                  parts.get(1).getPartNumber());
+        assertEquals("completeMultipartUpload() part 2 ETag",       "etag-2",           parts.get(1).getETag());
+
+        assertEquals("abortMultipartUpload() invocation count",     0,                  mock.abortMultipartUploadInvocationCount);
+    }
+
+
+    @Test
+    public void testAbortMultipartUpload() throws Exception
+    {
+        facade.abortMultipartUpload(DEFAULT_KEY, "upload-1");
+
+        assertEquals("abortMultipartUpload() invocation count",     1,                  mock.abortMultipartUploadInvocationCount);
+        assertEquals("abortMultipartUpload() bucket",               DEFAULT_BUCKET,     mock.abortMultipartUploadRequest.getBucketName());
+        assertEquals("abortMultipartUpload() key",                  DEFAULT_KEY,        mock.abortMultipartUploadRequest.getKey());
+        assertEquals("abortMultipartUpload() upload ID",            "upload-1",         mock.abortMultipartUploadRequest.getUploadId());
+    }
+
+
+    @Test
+    public void testStartMultipartUploadNoSuchBucket() throws Exception
+    {
+        mock = new S3ClientMock()
+        {
+            @Override
+            protected InitiateMultipartUploadResult initiateMultipartUpload(InitiateMultipartUploadRequest request)
+            {
+                throw serviceException("NoSuchBucket", 404);
+            }
+        };
+
+        try
+        {
+            facade.startMultipartUpload(DEFAULT_KEY);
+            fail("should have thrown");
+        }
+        catch (S3FacadeException ex)
+        {
+            assertException(ex, "startMultipartUpload", "bucket does not exist", ReasonCode.MISSING_BUCKET, false, null);
+        }
+    }
+
+
+    @Test
+    public void testUploadPartThrottling() throws Exception
+    {
+        mock = new S3ClientMock()
+        {
+            @Override
+            protected UploadPartResult uploadPart(UploadPartRequest request)
+            {
+                throw serviceException("SlowDown", 503);
+            }
+        };
+
+        try
+        {
+            facade.uploadPart(DEFAULT_KEY, "upload-1", 1, DEFAULT_CONTENT);
+            fail("should have thrown");
+        }
+        catch (S3FacadeException ex)
+        {
+            assertException(ex, "uploadPart", "request throttled", ReasonCode.THROTTLING, true, null);
+        }
+    }
+
+
+    @Test
+    public void testUploadPartClientException() throws Exception
+    {
+        mock = new S3ClientMock()
+        {
+            @Override
+            protected UploadPartResult uploadPart(UploadPartRequest request)
+            {
+                throw new SdkClientException("connection reset");
+            }
+        };
+
+        try
+        {
+            facade.uploadPart(DEFAULT_KEY, "upload-1", 1, DEFAULT_CONTENT);
+            fail("should have thrown");
+        }
+        catch (S3FacadeException ex)
+        {
+            assertException(ex, "uploadPart", "client exception: connection reset", ReasonCode.UNEXPECTED_EXCEPTION, true, null);
+        }
+    }
+
+
+    @Test
+    public void testCompleteMultipartUploadNoSuchUpload() throws Exception
+    {
+        // once the upload is gone, retrying can't help
+        mock = new S3ClientMock()
+        {
+            @Override
+            protected CompleteMultipartUploadResult completeMultipartUpload(CompleteMultipartUploadRequest request)
+            {
+                throw serviceException("NoSuchUpload", 404);
+            }
+        };
+
+        try
+        {
+            facade.completeMultipartUpload(DEFAULT_KEY, "upload-1", Arrays.asList("etag-1"));
+            fail("should have thrown");
+        }
+        catch (S3FacadeException ex)
+        {
+            assertException(ex, "completeMultipartUpload", "service exception.*", ReasonCode.UNEXPECTED_EXCEPTION, false, null);
+        }
+    }
+
+
+    @Test
+    public void testS3WriterConfig() throws Exception
+    {
+        // the S3 writer uses its own bucket, and uploads compressed content
+
+        S3WriterConfig writerConfig = new S3WriterConfig().setBucketName("bargle");
+        S3Facade writerFacade = new S3FacadeImpl(writerConfig)
+        {
+            private AmazonS3 client;
+
+            @Override
+            protected AmazonS3 client()
+            {
+                if (client == null)
+                {
+                    client = mock.createClient();
+                }
+                return client;
+            }
+        };
+
+        writerFacade.putObject(DEFAULT_KEY, DEFAULT_CONTENT);
+        writerFacade.startMultipartUpload(DEFAULT_KEY);
+
+        assertEquals("putObject() bucket",                          "bargle",           mock.putObjectRequest.getBucketName());
+        assertEquals("putObject() content type",                    "application/gzip", mock.putObjectRequest.getMetadata().getContentType());
+        assertEquals("initiateMultipartUpload() bucket",            "bargle",           mock.initiateMultipartUploadRequest.getBucketName());
+        assertEquals("initiateMultipartUpload() content type",      "application/gzip", mock.initiateMultipartUploadRequest.getObjectMetadata().getContentType());
+    }
+
+
+    @Test
+    public void testShutdown() throws Exception
+    {
+        facade.shutdown();
+
+        assertEquals("shutdown() invocation count",     1,                              mock.shutdownInvocationCount);
+    }
+}
@@ -0,0 +1,135 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.kdgregory.logging.aws.testhelpers;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.amazonaws.services.kinesisfirehose.AmazonKinesisFirehose;
+import com.amazonaws.services.kinesisfirehose.model.*;
+
+
+/**
+ *  Supports mock-object testing of the Firehose facade.
+ *  <p>
+ *  This is a proxy-based mock: you create an instance of the mock, and from it
+ *  create an instance of a proxy that implements the client interface. Each of
+ *  the supported client methods is implemented in the mock, and called from the
+ *  invocation handler. To test specific behaviors, subclasses should override
+ *  the method implementation.
+ *  <p>
+ *  Each method has an associated invocation counter, along with variables that
+ *  hold the last set of arguments passed to this method. These variables are
+ *  public, to minimize boilerplate code; if testcases modify the variables, they
+ *  only hurt themselves.
+ */
+public class FirehoseClientMock implements InvocationHandler
+{
+    // the following record invocations and are exposed for testing
+    public volatile int describeDeliveryStreamInvocationCount;
+    public volatile int putRecordBatchInvocationCount;
+    public volatile int shutdownInvocationCount;
+
+    // after this are the invocation arguments for the various methods
+
+    public volatile String describeStreamName;
+    public volatile PutRecordBatchRequest putRecordBatchRequest;
+
+//----------------------------------------------------------------------------
+//  Public methods
+//----------------------------------------------------------------------------
+
+    public AmazonKinesisFirehose createClient()
+    {
+        return (AmazonKinesisFirehose)Proxy.newProxyInstance(
+                                    getClass().getClassLoader(),
+                                    new Class<?>[] { AmazonKinesisFirehose.class },
+                                    FirehoseClientMock.this);
+    }
+
+//----------------------------------------------------------------------------
+//  Invocation Handler
+//----------------------------------------------------------------------------
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable
+    {
+        String methodName = method.getName();
+        switch (methodName)
+        {
+            case "describeDeliveryStream":
+                describeDeliveryStreamInvocationCount++;
+                DescribeDeliveryStreamRequest describeRequest = (DescribeDeliveryStreamRequest)args[0];
+                describeStreamName = describeRequest.getDeliveryStreamName();
+                return describeDeliveryStream(describeRequest);
+            case "putRecordBatch":
+                putRecordBatchInvocationCount++;
+                putRecordBatchRequest = (PutRecordBatchRequest)args[0];
+                return putRecordBatch(putRecordBatchRequest);
+            case "shutdown":
+                shutdownInvocationCount++;
+                return null;
+            default:
+                System.err.println("invocation handler called unexpectedly: " + methodName);
+                throw new IllegalStateException("unexpected method called: " + methodName);
+        }
+    }
+
+//----------------------------------------------------------------------------
+//  Default mock implementations -- override for specific tests
+//----------------------------------------------------------------------------
+
+    /**
+     *  Invocation handler for DescribeDeliveryStream. Default returns an active stream.
+     */
+    protected DescribeDeliveryStreamResult describeDeliveryStream(DescribeDeliveryStreamRequest request)
+    {
+        return describeResult(DeliveryStreamStatus.ACTIVE);
+    }
+
+
+    /**
+     *  Invocation handler for PutRecordBatch. Default reports that all records succeeded.
+     */
+    protected PutRecordBatchResult putRecordBatch(PutRecordBatchRequest request)
+    {
+        List<PutRecordBatchResponseEntry> entries = new ArrayList<>();
+        for (int ii = 0 ; ii < request.getRecords().size() ; ii++)
+        {
+            entries.add(new PutRecordBatchResponseEntry().withRecordId(String.valueOf(ii)));
+        }
+
+        return new PutRecordBatchResult()
+               .withFailedPutCount(0)
+               .withRequestResponses(entries);
+    }
+
+//----------------------------------------------------------------------------
+//  Helpers
+//----------------------------------------------------------------------------
+
+    /**
+     *  Creates a describe result with the given status.
+     */
+    public static DescribeDeliveryStreamResult describeResult(DeliveryStreamStatus status)
+    {
+        return new DescribeDeliveryStreamResult()
+               .withDeliveryStreamDescription(new DeliveryStreamDescription()
+                                              .withDeliveryStreamStatus(status));
+    }
+}
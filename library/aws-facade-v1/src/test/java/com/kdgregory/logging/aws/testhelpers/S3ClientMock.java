@@ -0,0 +1,194 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.kdgregory.logging.aws.testhelpers;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.*;
+
+
+/**
+ *  Supports mock-object testing of the S3 facade.
+ *  <p>
+ *  This is a proxy-based mock: you create an instance of the mock, and from it
+ *  create an instance of a proxy that implements the client interface. Each of
+ *  the supported client methods is implemented in the mock, and called from the
+ *  invocation handler. To test specific behaviors, subclasses should override
+ *  the method implementation.
+ *  <p>
+ *  Each method has an associated invocation counter, along with variables that
+ *  hold the last set of arguments passed to this method. These variables are
+ *  public, to minimize boilerplate code; if testcases modify the variables, they
+ *  only hurt themselves.
+ *  <p>
+ *  Request content is read when the method is invoked, so is available even if
+ *  the method implementation throws.
+ */
+public class S3ClientMock implements InvocationHandler
+{
+    // the following record invocations and are exposed for testing
+    public volatile int putObjectInvocationCount;
+    public volatile int initiateMultipartUploadInvocationCount;
+    public volatile int uploadPartInvocationCount;
+    public volatile int completeMultipartUploadInvocationCount;
+    public volatile int abortMultipartUploadInvocationCount;
+    public volatile int shutdownInvocationCount;
+
+    // after this are the invocation arguments for the various methods
+
+    public volatile PutObjectRequest putObjectRequest;
+    public volatile byte[] putObjectContent;
+    public volatile InitiateMultipartUploadRequest initiateMultipartUploadRequest;
+    public volatile UploadPartRequest uploadPartRequest;
+    public volatile byte[] uploadPartContent;
+    public volatile CompleteMultipartUploadRequest completeMultipartUploadRequest;
+    public volatile AbortMultipartUploadRequest abortMultipartUploadRequest;
+
+//----------------------------------------------------------------------------
+//  Public methods
+//----------------------------------------------------------------------------
+
+    public AmazonS3 createClient()
+    {
+        return (AmazonS3)Proxy.newProxyInstance(
+                                    getClass().getClassLoader(),
+                                    new Class<?>[] { AmazonS3.class },
+                                    S3ClientMock.this);
+    }
+
+//----------------------------------------------------------------------------
+//  Invocation Handler
+//----------------------------------------------------------------------------
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable
+    {
+        String methodName = method.getName();
+        switch (methodName)
+        {
+            case "putObject":
+                putObjectInvocationCount++;
+                putObjectRequest = (PutObjectRequest)args[0];
+                putObjectContent = readContent(putObjectRequest.getInputStream());
+                return putObject(putObjectRequest);
+            case "initiateMultipartUpload":
+                initiateMultipartUploadInvocationCount++;
+                initiateMultipartUploadRequest = (InitiateMultipartUploadRequest)args[0];
+                return initiateMultipartUpload(initiateMultipartUploadRequest);
+            case "uploadPart":
+                uploadPartInvocationCount++;
+                uploadPartRequest = (UploadPartRequest)args[0];
+                uploadPartContent = readContent(uploadPartRequest.getInputStream());
+                return uploadPart(uploadPartRequest);
+            case "completeMultipartUpload":
+                completeMultipartUploadInvocationCount++;
+                completeMultipartUploadRequest = (CompleteMultipartUploadRequest)args[0];
+                return completeMultipartUpload(completeMultipartUploadRequest);
+            case "abortMultipartUpload":
+                abortMultipartUploadInvocationCount++;
+                abortMultipartUploadRequest = (AbortMultipartUploadRequest)args[0];
+                abortMultipartUpload(abortMultipartUploadRequest);
+                return null;
+            case "shutdown":
+                shutdownInvocationCount++;
+                return null;
+            default:
+                System.err.println("invocation handler called unexpectedly: " + methodName);
+                throw new IllegalStateException("unexpected method called: " + methodName);
+        }
+    }
+
+//----------------------------------------------------------------------------
+//  Default mock implementations -- override for specific tests
+//----------------------------------------------------------------------------
+
+    /**
+     *  Invocation handler for PutObject. Returns a successful result.
+     */
+    protected PutObjectResult putObject(PutObjectRequest request)
+    {
+        PutObjectResult result = new PutObjectResult();
+        result.setETag("d41d8cd98f00b204e9800998ecf8427e");
+        return result;
+    }
+
+
+    /**
+     *  Invocation handler for InitiateMultipartUpload. Returns a fixed upload ID.
+     */
+    protected InitiateMultipartUploadResult initiateMultipartUpload(InitiateMultipartUploadRequest request)
+    {
+        InitiateMultipartUploadResult result = new InitiateMultipartUploadResult();
+        result.setBucketName(request.getBucketName());
+        result.setKey(request.getKey());
+        result.setUploadId("upload-1");
+        return result;
+    }
+
+
+    /**
+     *  Invocation handler for UploadPart. Returns an ETag based on the part number.
+     */
+    protected UploadPartResult uploadPart(UploadPartRequest request)
+    {
+        UploadPartResult result = new UploadPartResult();
+        result.setPartNumber(request.getPartNumber());
+        result.setETag("etag-" + request.getPartNumber());
+        return result;
+    }
+
+
+    /**
+     *  Invocation handler for CompleteMultipartUpload. Returns a successful result.
+     */
+    protected CompleteMultipartUploadResult completeMultipartUpload(CompleteMultipartUploadRequest request)
+    {
+        CompleteMultipartUploadResult result = new CompleteMultipartUploadResult();
+        result.setBucketName(request.getBucketName());
+        result.setKey(request.getKey());
+        return result;
+    }
+
+
+    /**
+     *  Invocation handler for AbortMultipartUpload. Does nothing by default.
+     */
+    protected void abortMultipartUpload(AbortMultipartUploadRequest request)
+    {
+        // nothing happening here
+    }
+
+//----------------------------------------------------------------------------
+//  Internals
+//----------------------------------------------------------------------------
+
+    private static byte[] readContent(InputStream in)
+    throws Exception
+    {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buf = new byte[8192];
+        int count;
+        while ((count = in.read(buf)) > 0)
+        {
+            out.write(buf, 0, count);
+        }
+        return out.toByteArray();
+    }
+}
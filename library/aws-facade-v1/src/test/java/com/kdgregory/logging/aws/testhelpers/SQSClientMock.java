@@ -0,0 +1,122 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.kdgregory.logging.aws.testhelpers;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.amazonaws.services.sqs.AmazonSQS;
+import com.amazonaws.services.sqs.model.*;
+
+
+/**
+ *  Supports mock-object testing of the SQS facade.
+ *  <p>
+ *  This is a proxy-based mock: you create an instance of the mock, and from it
+ *  create an instance of a proxy that implements the client interface. Each of
+ *  the supported client methods is implemented in the mock, and called from the
+ *  invocation handler. To test specific behaviors, subclasses should override
+ *  the method implementation.
+ *  <p>
+ *  Each method has an associated invocation counter, along with variables that
+ *  hold the last set of arguments passed to this method. These variables are
+ *  public, to minimize boilerplate code; if testcases modify the variables, they
+ *  only hurt themselves.
+ */
+public class SQSClientMock implements InvocationHandler
+{
+    public final static String QUEUE_URL_PREFIX = "https://sqs.us-east-1.amazonaws.com/123456789012/";
+
+    // the following record invocations and are exposed for testing
+    public volatile int getQueueUrlInvocationCount;
+    public volatile int sendMessageBatchInvocationCount;
+    public volatile int shutdownInvocationCount;
+
+    // after this are the invocation arguments for the various methods
+
+    public volatile String getQueueUrlQueueName;
+    public volatile SendMessageBatchRequest sendMessageBatchRequest;
+
+//----------------------------------------------------------------------------
+//  Public methods
+//----------------------------------------------------------------------------
+
+    public AmazonSQS createClient()
+    {
+        return (AmazonSQS)Proxy.newProxyInstance(
+                                    getClass().getClassLoader(),
+                                    new Class<?>[] { AmazonSQS.class },
+                                    SQSClientMock.this);
+    }
+
+//----------------------------------------------------------------------------
+//  Invocation Handler
+//----------------------------------------------------------------------------
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable
+    {
+        String methodName = method.getName();
+        switch (methodName)
+        {
+            case "getQueueUrl":
+                getQueueUrlInvocationCount++;
+                GetQueueUrlRequest getQueueUrlRequest = (GetQueueUrlRequest)args[0];
+                getQueueUrlQueueName = getQueueUrlRequest.getQueueName();
+                return getQueueUrl(getQueueUrlRequest);
+            case "sendMessageBatch":
+                sendMessageBatchInvocationCount++;
+                sendMessageBatchRequest = (SendMessageBatchRequest)args[0];
+                return sendMessageBatch(sendMessageBatchRequest);
+            case "shutdown":
+                shutdownInvocationCount++;
+                return null;
+            default:
+                System.err.println("invocation handler called unexpectedly: " + methodName);
+                throw new IllegalStateException("unexpected method called: " + methodName);
+        }
+    }
+
+//----------------------------------------------------------------------------
+//  Default mock implementations -- override for specific tests
+//----------------------------------------------------------------------------
+
+    /**
+     *  Invocation handler for GetQueueUrl. Default returns a URL constructed from
+     *  the queue name.
+     */
+    protected GetQueueUrlResult getQueueUrl(GetQueueUrlRequest request)
+    {
+        return new GetQueueUrlResult().withQueueUrl(QUEUE_URL_PREFIX + request.getQueueName());
+    }
+
+
+    /**
+     *  Invocation handler for SendMessageBatch. Default reports that all messages succeeded.
+     */
+    protected SendMessageBatchResult sendMessageBatch(SendMessageBatchRequest request)
+    {
+        List<SendMessageBatchResultEntry> entries = new ArrayList<>();
+        for (SendMessageBatchRequestEntry entry : request.getEntries())
+        {
+            entries.add(new SendMessageBatchResultEntry().withId(entry.getId()).withMessageId("m-" + entry.getId()));
+        }
+
+        return new SendMessageBatchResult().withSuccessful(entries);
+    }
+}
@@ -0,0 +1,222 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.kdgregory.logging.aws.facade.v2;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import software.amazon.awssdk.core.SdkBytes;
+import software.amazon.awssdk.services.firehose.FirehoseClient;
+import software.amazon.awssdk.services.firehose.model.*;
+
+import com.kdgregory.logging.aws.facade.FirehoseFacade;
+import com.kdgregory.logging.aws.facade.FirehoseFacadeException;
+import com.kdgregory.logging.aws.facade.FirehoseFacadeException.ReasonCode;
+import com.kdgregory.logging.aws.facade.v2.internal.ClientFactory;
+import com.kdgregory.logging.aws.firehose.FirehoseConstants.StreamStatus;
+import com.kdgregory.logging.aws.firehose.FirehoseWriterConfig;
+import com.kdgregory.logging.common.LogMessage;
+
+
+/**
+ *  Provides a facade over the Kinesis Data Firehose API using the v2 SDK.
+ */
+public class FirehoseFacadeImpl
+implements FirehoseFacade
+{
+    private final static Map<String,StreamStatus> STATUS_LOOKUP = new HashMap<>();
+    static
+    {
+        STATUS_LOOKUP.put("ACTIVE",          StreamStatus.ACTIVE);
+        STATUS_LOOKUP.put("CREATING",        StreamStatus.CREATING);
+        STATUS_LOOKUP.put("CREATING_FAILED", StreamStatus.CREATING_FAILED);
+        STATUS_LOOKUP.put("DELETING",        StreamStatus.DELETING);
+        STATUS_LOOKUP.put("DELETING_FAILED", StreamStatus.DELETING_FAILED);
+    }
+
+    private FirehoseWriterConfig config;
+
+    private FirehoseClient client;
+
+    public FirehoseFacadeImpl(FirehoseWriterConfig config)
+    {
+        this.config = config;
+    }
+
+//----------------------------------------------------------------------------
+//  Public methods
+//----------------------------------------------------------------------------
+
+    @Override
+    public StreamStatus retrieveStreamStatus()
+    {
+        try
+        {
+            DescribeDeliveryStreamRequest request = DescribeDeliveryStreamRequest.builder()
+                                                    .deliveryStreamName(config.getStreamName())
+                                                    .build();
+            DescribeDeliveryStreamResponse response = client().describeDeliveryStream(request);
+            return STATUS_LOOKUP.get(response.deliveryStreamDescription().deliveryStreamStatusAsString());
+        }
+        catch (ResourceNotFoundException ex)
+        {
+            return StreamStatus.DOES_NOT_EXIST;
+        }
+        catch (LimitExceededException ex)
+        {
+            // the caller will retry on null, so no need to make them catch
+            return null;
+        }
+        catch (Exception ex)
+        {
+            throw transformException("retrieveStreamStatus", ex);
+        }
+    }
+
+
+    @Override
+    public List<LogMessage> putRecords(List<LogMessage> batch)
+    {
+        if (batch.isEmpty())
+            return batch;
+
+        try
+        {
+            PutRecordBatchRequest request = createPutRecordBatchRequest(batch);
+            PutRecordBatchResponse response = client().putRecordBatch(request);
+            return extractPutRecordBatchFailures(batch, response);
+        }
+        catch (Exception ex)
+        {
+            throw transformException("putRecords", ex);
+        }
+    }
+
+
+    @Override
+    public void shutdown()
+    {
+        client().close();
+    }
+
+//----------------------------------------------------------------------------
+//  Internals
+//----------------------------------------------------------------------------
+
+    /**
+     *  Returns the Firehose client, lazily constructing it if needed.
+     *  <p>
+     *  This method is not threadsafe; it should be called only from the writer thread.
+     */
+    protected FirehoseClient client()
+    {
+        if (client == null)
+        {
+            client = new ClientFactory<>(FirehoseClient.class, config).create();
+        }
+
+        return client;
+    }
+
+
+    /**
+     *  Creates a facade exception based on some other exception.
+     */
+    private FirehoseFacadeException transformException(String functionName, Exception ex)
+    {
+        String message;
+        ReasonCode reason;
+        boolean isRetryable;
+
+        if (ex instanceof ServiceUnavailableException)
+        {
+            message = "throttled";
+            reason = ReasonCode.THROTTLING;
+            isRetryable = true;
+        }
+        else if (ex instanceof LimitExceededException)
+        {
+            message = "limit exceeded";
+            reason = ReasonCode.LIMIT_EXCEEDED;
+            isRetryable = true;
+        }
+        else if (ex instanceof ResourceNotFoundException)
+        {
+            message = "delivery stream does not exist";
+            reason = ReasonCode.MISSING_STREAM;
+            isRetryable = false;
+        }
+        else if (ex instanceof ResourceInUseException)
+        {
+            message = "delivery stream not active";
+            reason = ReasonCode.INVALID_STATE;
+            isRetryable = true;
+        }
+        else
+        {
+            message = "unexpected exception: " + ex.getMessage();
+            reason = ReasonCode.UNEXPECTED_EXCEPTION;
+            isRetryable = false;
+        }
+
+        return new FirehoseFacadeException(
+                message, ex, reason, isRetryable,
+                functionName, config.getStreamName());
+    }
+
+
+    private PutRecordBatchRequest createPutRecordBatchRequest(List<LogMessage> batch)
+    {
+        List<Record> requestRecords = new ArrayList<>(batch.size());
+        for (LogMessage message : batch)
+        {
+            Record record = Record.builder()
+                            .data(SdkBytes.fromByteArray(message.getBytes()))
+                            .build();
+            requestRecords.add(record);
+        }
+
+        return PutRecordBatchRequest.builder()
+               .deliveryStreamName(config.getStreamName())
+               .records(requestRecords)
+               .build();
+    }
+
+
+    private List<LogMessage> extractPutRecordBatchFailures(List<LogMessage> batch, PutRecordBatchResponse response)
+    {
+        List<LogMessage> result = new ArrayList<>(batch.size());
+        if ((response.failedPutCount() == null) || (response.failedPutCount().intValue() == 0))
+            return result;
+
+        Iterator<LogMessage> lmItx = batch.iterator();
+        Iterator<PutRecordBatchResponseEntry> rspItx = response.requestResponses().iterator();
+        while (lmItx.hasNext() && rspItx.hasNext())
+        {
+            LogMessage logMessage = lmItx.next();
+            PutRecordBatchResponseEntry entry = rspItx.next();
+            if ((entry.errorCode() != null) && !entry.errorCode().isEmpty())
+            {
+                result.add(logMessage);
+            }
+        }
+
+        return result;
+    }
+}
@@ -0,0 +1,284 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.kdgregory.logging.aws.facade.v2;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import software.amazon.awssdk.awscore.exception.AwsServiceException;
+import software.amazon.awssdk.core.exception.SdkClientException;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.*;
+
+import com.kdgregory.logging.aws.facade.S3Facade;
+import com.kdgregory.logging.aws.facade.S3FacadeException;
+import com.kdgregory.logging.aws.facade.S3FacadeException.ReasonCode;
+import com.kdgregory.logging.aws.facade.v2.internal.ClientFactory;
+import com.kdgregory.logging.aws.internal.AbstractWriterConfig;
+import com.kdgregory.logging.aws.s3.S3WriterConfig;
+
+
+/**
+ *  Provides a facade over the S3 API using the v2 SDK.
+ */
+public class S3FacadeImpl
+implements S3Facade
+{
+    private AbstractWriterConfig<?> config;
+
+    private S3Client client;
+
+
+    public S3FacadeImpl(AbstractWriterConfig<?> config)
+    {
+        this.config = config;
+    }
+
+//----------------------------------------------------------------------------
+//  Public methods
+//----------------------------------------------------------------------------
+
+    @Override
+    public void putObject(String key, byte[] content)
+    {
+        String bucket = bucket("putObject");
+
+        try
+        {
+            PutObjectRequest request = PutObjectRequest.builder()
+                                       .bucket(bucket)
+                                       .key(key)
+                                       .contentType(contentType())
+                                       .build();
+            client().putObject(request, RequestBody.fromBytes(content));
+        }
+        catch (Exception ex)
+        {
+            throw transformException("putObject", key, ex);
+        }
+    }
+
+
+    @Override
+    public String startMultipartUpload(String key)
+    {
+        String bucket = bucket("startMultipartUpload");
+
+        try
+        {
+            CreateMultipartUploadRequest request = CreateMultipartUploadRequest.builder()
+                                                   .bucket(bucket)
+                                                   .key(key)
+                                                   .contentType(contentType())
+                                                   .build();
+            return client().createMultipartUpload(request).uploadId();
+        }
+        catch (Exception ex)
+        {
+            throw transformException("startMultipartUpload", key, ex);
+        }
+    }
+
+
+    @Override
+    public String uploadPart(String key, String uploadId, int partNumber, byte[] content)
+    {
+        String bucket = bucket("uploadPart");
+
+        try
+        {
+            UploadPartRequest request = UploadPartRequest.builder()
+                                        .bucket(bucket)
+                                        .key(key)
+                                        .uploadId(uploadId)
+                                        .partNumber(partNumber)
+                                        .build();
+            return client().uploadPart(request, RequestBody.fromBytes(content)).eTag();
+        }
+        catch (Exception ex)
+        {
+            throw transformException("uploadPart", key, ex);
+        }
+    }
+
+
+    @Override
+    public void completeMultipartUpload(String key, String uploadId, List<String> partETags)
+    {
+        String bucket = bucket("completeMultipartUpload");
+
+        try
+        {
+            List<CompletedPart> parts = new ArrayList<>(partETags.size());
+            for (String etag : partETags)
+            {
+                parts.add(CompletedPart.builder().partNumber(parts.size() + 1).eTag(etag).build());
+            }
+
+            CompleteMultipartUploadRequest request = CompleteMultipartUploadRequest.builder()
+                                                     .bucket(bucket)
+                                                     .key(key)
+                                                     .uploadId(uploadId)
+                                                     .multipartUpload(CompletedMultipartUpload.builder().parts(parts).build())
+                                                     .build();
+            client().completeMultipartUpload(request);
+        }
+        catch (Exception ex)
+        {
+            throw transformException("completeMultipartUpload", key, ex);
+        }
+    }
+
+
+    @Override
+    public void abortMultipartUpload(String key, String uploadId)
+    {
+        String bucket = bucket("abortMultipartUpload");
+
+        try
+        {
+            AbortMultipartUploadRequest request = AbortMultipartUploadRequest.builder()
+                                                  .bucket(bucket)
+                                                  .key(key)
+                                                  .uploadId(uploadId)
+                                                  .build();
+            client().abortMultipartUpload(request);
+        }
+        catch (Exception ex)
+        {
+            throw transformException("abortMultipartUpload", key, ex);
+        }
+    }
+
+
+    @Override
+    public void shutdown()
+    {
+        client().close();
+    }
+
+//----------------------------------------------------------------------------
+//  Internals
+//----------------------------------------------------------------------------
+
+    protected S3Client client()
+    {
+        if (client == null)
+        {
+            client = new ClientFactory<>(S3Client.class, config).create();
+        }
+
+        return client;
+    }
+
+
+    /**
+     *  Returns the destination bucket: for the S3 writer this is its configured
+     *  bucket, for other writers it's the bucket for oversize messages.
+     */
+    private String bucketName()
+    {
+        return (config instanceof S3WriterConfig)
+             ? ((S3WriterConfig)config).getBucketName()
+             : config.getOversizeS3Bucket();
+    }
+
+
+    /**
+     *  Returns the destination bucket, throwing if it isn't configured.
+     */
+    private String bucket(String functionName)
+    {
+        String bucket = bucketName();
+        if ((bucket == null) || bucket.isEmpty())
+            throw new S3FacadeException("bucket not configured", ReasonCode.INVALID_CONFIGURATION, false, functionName);
+
+        return bucket;
+    }
+
+
+    /**
+     *  Returns the content type for uploaded objects: the S3 writer uploads compressed
+     *  archives, other writers upload individual messages.
+     */
+    private String contentType()
+    {
+        return (config instanceof S3WriterConfig)
+             ? "application/gzip"
+             : "text/plain; charset=utf-8";
+    }
+
+
+    /**
+     *  Creates a facade exception based on some other exception. Anything that might
+     *  succeed on a later attempt, including network errors and server-side failures,
+     *  is retryable: the writer discards its current object after a non-retryable
+     *  error, so that's limited to errors that retrying can't fix.
+     */
+    private S3FacadeException transformException(String functionName, String key, Exception cause)
+    {
+        String message;
+        ReasonCode reason;
+        boolean isRetryable;
+
+        if (cause instanceof NoSuchBucketException)
+        {
+            reason = ReasonCode.MISSING_BUCKET;
+            message = "bucket does not exist";
+            isRetryable = false;
+        }
+        else if (cause instanceof AwsServiceException)
+        {
+            AwsServiceException ex = (AwsServiceException)cause;
+            String errorCode = (ex.awsErrorDetails() != null) ? ex.awsErrorDetails().errorCode() : null;
+            if ("NoSuchBucket".equals(errorCode))
+            {
+                reason = ReasonCode.MISSING_BUCKET;
+                message = "bucket does not exist";
+                isRetryable = false;
+            }
+            else if ("SlowDown".equals(errorCode))
+            {
+                reason = ReasonCode.THROTTLING;
+                message = "request throttled";
+                isRetryable = true;
+            }
+            else
+            {
+                reason = ReasonCode.UNEXPECTED_EXCEPTION;
+                message = "service exception: " + cause.getMessage();
+                isRetryable = ! S3FacadeException.isPermanentError(errorCode);
+            }
+        }
+        else if (cause instanceof SdkClientException)
+        {
+            reason = ReasonCode.UNEXPECTED_EXCEPTION;
+            message = "client exception: " + cause.getMessage();
+            isRetryable = true;
+        }
+        else
+        {
+            message = "unexpected exception: " + cause.getMessage();
+            reason = ReasonCode.UNEXPECTED_EXCEPTION;
+            isRetryable = false;
+        }
+
+        return new S3FacadeException(
+                message, cause, reason, isRetryable,
+                functionName, bucketName(), key);
+    }
+}
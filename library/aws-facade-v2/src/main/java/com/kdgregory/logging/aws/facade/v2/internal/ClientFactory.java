@@ -17,22 +17,35 @@ package com.kdgregory.logging.aws.facade.v2.internal;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.net.URI;
+import java.time.Duration;
 
 import software.amazon.awssdk.awscore.client.builder.AwsClientBuilder;
+import software.amazon.awssdk.core.client.builder.SdkSyncClientBuilder;
+import software.amazon.awssdk.http.SdkHttpClient;
 import software.amazon.awssdk.regions.Region;
 import software.amazon.awssdk.services.cloudwatchlogs.CloudWatchLogsClient;
 import software.amazon.awssdk.services.cloudwatchlogs.CloudWatchLogsClientBuilder;
+import software.amazon.awssdk.services.firehose.FirehoseClient;
+import software.amazon.awssdk.services.firehose.FirehoseClientBuilder;
 import software.amazon.awssdk.services.kinesis.KinesisClient;
 import software.amazon.awssdk.services.kinesis.KinesisClientBuilder;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.S3ClientBuilder;
+import software.amazon.awssdk.services.s3.S3Configuration;
 import software.amazon.awssdk.services.sns.SnsClient;
 import software.amazon.awssdk.services.sns.SnsClientBuilder;
+import software.amazon.awssdk.services.sqs.SqsClient;
+import software.amazon.awssdk.services.sqs.SqsClientBuilder;
 import software.amazon.awssdk.services.sts.auth.StsAssumeRoleCredentialsProvider;
 
 import com.kdgregory.logging.aws.cloudwatch.CloudWatchWriterConfig;
+import com.kdgregory.logging.aws.firehose.FirehoseWriterConfig;
 import com.kdgregory.logging.aws.internal.AbstractWriterConfig;
 import com.kdgregory.logging.aws.kinesis.KinesisWriterConfig;
 import com.kdgregory.logging.aws.sns.SNSWriterConfig;
+import com.kdgregory.logging.aws.sqs.SQSWriterConfig;
 import com.kdgregory.logging.common.internal.Utils;
+import com.kdgregory.logging.common.jfr.JfrEvents;
 
 
 /**
@@ -42,6 +55,8 @@ import com.kdgregory.logging.common.internal.Utils;
  */
 public class ClientFactory<T>
 {
+    private final static String S3_CLIENT_CLASSNAME = "software.amazon.awssdk.services.s3.S3Client";
+
     private Class<T> clientType;
     private AbstractWriterConfig<?> config;
 
@@ -57,20 +72,24 @@ public class ClientFactory<T>
 
     public T create()
     {
+        Object jfrToken = JfrEvents.beginClientCreation();
         T client = tryInstantiateFromFactory();
-        if (client != null)
-            return client;
+        if (client == null)
+        {
+            AwsClientBuilder<?,?> builder = createClientBuilder();
+            optSetRegionOrEndpoint(builder);
+            optSetHttpClient(builder);
 
-        AwsClientBuilder<?,?> builder = createClientBuilder();
-        optSetRegionOrEndpoint(builder);
+            String roleToAssume = config.getAssumedRole();
+            if ((roleToAssume != null) && !roleToAssume.isEmpty())
+            {
+                setAssumedRoleCredentialsProvider(builder, roleToAssume);
+            }
 
-        String roleToAssume = config.getAssumedRole();
-        if ((roleToAssume != null) && !roleToAssume.isEmpty())
-        {
-            setAssumedRoleCredentialsProvider(builder, roleToAssume);
+            client = clientType.cast(builder.build());
         }
-
-        return clientType.cast(builder.build());
+        JfrEvents.endClientCreation(jfrToken, clientType.getName());
+        return client;
     }
 
 //----------------------------------------------------------------------------
@@ -124,10 +143,20 @@ public class ClientFactory<T>
 
 
     /**
-     *  Picks an appropriate client builder, based on the configuration type.
+     *  Picks an appropriate client builder, based on the configuration type. The
+     *  exception is S3, which may be used with any configuration (to offload
+     *  oversize messages); it's identified by name so that the S3 library isn't
+     *  needed unless used.
      */
     protected AwsClientBuilder<?,?> createClientBuilder()
     {
+        if (S3_CLIENT_CLASSNAME.equals(clientType.getName()))
+        {
+            // S3-compatible stand-ins generally don't support virtual-host addressing
+            String endpoint = config.getClientEndpoint();
+            return new S3ClientBuilderBuilder().buildBuilder((endpoint != null) && ! endpoint.isEmpty());
+        }
+
         if (config instanceof CloudWatchWriterConfig)
             return new CloudWatchLogsClientBuilderBuilder().buildBuilder();
 
@@ -137,6 +166,12 @@ public class ClientFactory<T>
         if (config instanceof SNSWriterConfig)
             return new SnsClientBuilderBuilder().buildBuilder();
 
+        if (config instanceof FirehoseWriterConfig)
+            return new FirehoseClientBuilderBuilder().buildBuilder();
+
+        if (config instanceof SQSWriterConfig)
+            return new SqsClientBuilderBuilder().buildBuilder();
+
         throw new RuntimeException("unsupported configuration type: " + config.getClass());
     }
 
@@ -160,6 +195,118 @@ public class ClientFactory<T>
     }
 
 
+    /**
+     *  If the configuration specifies an HTTP client type, creates a builder for
+     *  that client and attaches it to the service client builder.
+     */
+    protected void optSetHttpClient(AwsClientBuilder<?,?> builder)
+    {
+        SdkHttpClient.Builder<?> httpClientBuilder = createHttpClientBuilder();
+        if ((httpClientBuilder != null) && (builder instanceof SdkSyncClientBuilder))
+        {
+            ((SdkSyncClientBuilder<?,?>)builder).httpClientBuilder(httpClientBuilder);
+        }
+    }
+
+
+    /**
+     *  Creates and configures a builder for the configured HTTP client type. Returns
+     *  null if the configuration does not specify a type, in which case the SDK will
+     *  pick whatever client it finds on the classpath.
+     *  <p>
+     *  The client libraries are optional dependencies, so we access them via
+     *  reflection. Pool and timeout settings are only applied if the client (and
+     *  the SDK version in use) supports them; zero values leave the SDK default
+     *  in place.
+     */
+    protected SdkHttpClient.Builder<?> createHttpClientBuilder()
+    {
+        String clientType = config.getHttpClientType();
+        if ((clientType == null) || clientType.isEmpty() || "default".equalsIgnoreCase(clientType))
+            return null;
+
+        String clientClassName;
+        String maxConnectionsMethod;
+        switch (clientType.toLowerCase())
+        {
+            case "apache" :
+                clientClassName = "software.amazon.awssdk.http.apache.ApacheHttpClient";
+                maxConnectionsMethod = "maxConnections";
+                break;
+            case "urlconnection" :
+                clientClassName = "software.amazon.awssdk.http.urlconnection.UrlConnectionHttpClient";
+                maxConnectionsMethod = null;
+                break;
+            case "crt" :
+                clientClassName = "software.amazon.awssdk.http.crt.AwsCrtHttpClient";
+                maxConnectionsMethod = "maxConcurrency";
+                break;
+            default :
+                throw new RuntimeException("unsupported HTTP client type: " + clientType);
+        }
+
+        Class<?> clientClass = loadHttpClientClass(clientClassName);
+        Class<?> builderClass = loadHttpClientClass(clientClassName + "$Builder");
+        if ((clientClass == null) || (builderClass == null))
+            throw new RuntimeException("HTTP client type \"" + clientType + "\" is not available on classpath: " + clientClassName);
+
+        SdkHttpClient.Builder<?> httpClientBuilder;
+        try
+        {
+            httpClientBuilder = (SdkHttpClient.Builder<?>)clientClass.getMethod("builder").invoke(null);
+        }
+        catch (Exception ex)
+        {
+            throw new RuntimeException("unable to create HTTP client builder: " + clientClassName, ex);
+        }
+
+        if (config.getHttpMaxConnections() > 0)
+            optInvoke(httpClientBuilder, builderClass, maxConnectionsMethod, Integer.class, Integer.valueOf(config.getHttpMaxConnections()));
+        if (config.getHttpConnectionTtl() > 0)
+            optInvoke(httpClientBuilder, builderClass, "connectionTimeToLive", Duration.class, Duration.ofMillis(config.getHttpConnectionTtl()));
+        if (config.getHttpConnectionTimeout() > 0)
+            optInvoke(httpClientBuilder, builderClass, "connectionTimeout", Duration.class, Duration.ofMillis(config.getHttpConnectionTimeout()));
+        if (config.getHttpSocketTimeout() > 0)
+            optInvoke(httpClientBuilder, builderClass, "socketTimeout", Duration.class, Duration.ofMillis(config.getHttpSocketTimeout()));
+        if (config.getHttpTcpKeepAlive())
+            optInvoke(httpClientBuilder, builderClass, "tcpKeepAlive", Boolean.class, Boolean.TRUE);
+
+        return httpClientBuilder;
+    }
+
+
+    /**
+     *  Loads an HTTP client or builder class, returning null if it's not on the
+     *  classpath. This is a separate method so that tests can substitute a stub.
+     */
+    protected Class<?> loadHttpClientClass(String className)
+    {
+        return Utils.loadClass(className);
+    }
+
+
+    /**
+     *  Invokes a single-argument builder method if it exists, silently ignoring it
+     *  if not. Methods are looked up on the builder's public interface, because the
+     *  implementation class is generally not accessible.
+     */
+    private static void optInvoke(Object builder, Class<?> builderClass, String methodName, Class<?> argType, Object value)
+    {
+        Method method = Utils.findMethodIfExists(builderClass, methodName, argType);
+        if (method == null)
+            return;
+
+        try
+        {
+            method.invoke(builder, value);
+        }
+        catch (Exception ex)
+        {
+            throw new RuntimeException("unable to configure HTTP client: " + methodName + "(" + value + ")", ex);
+        }
+    }
+
+
     /**
      *  Configures the builder with an assumed-role credentials provider. The
      *  test for this is in the caller, so that we can override this method for
@@ -218,4 +365,34 @@ public class ClientFactory<T>
             return SnsClient.builder();
         }
     }
+
+
+    private static class FirehoseClientBuilderBuilder
+    {
+        public FirehoseClientBuilder buildBuilder()
+        {
+            return FirehoseClient.builder();
+        }
+    }
+
+
+    private static class SqsClientBuilderBuilder
+    {
+        public SqsClientBuilder buildBuilder()
+        {
+            return SqsClient.builder();
+        }
+    }
+
+
+    private static class S3ClientBuilderBuilder
+    {
+        public S3ClientBuilder buildBuilder(boolean usePathStyleAccess)
+        {
+            return S3Client.builder()
+                   .serviceConfiguration(S3Configuration.builder()
+                                         .pathStyleAccessEnabled(usePathStyleAccess)
+                                         .build());
+        }
+    }
 }
@@ -0,0 +1,290 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.kdgregory.logging.aws.facade.v2;
+
+import static net.sf.kdgcommons.test.StringAsserts.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import software.amazon.awssdk.services.firehose.FirehoseClient;
+import software.amazon.awssdk.services.firehose.model.*;
+
+import com.kdgregory.logging.aws.facade.FirehoseFacade;
+import com.kdgregory.logging.aws.facade.FirehoseFacadeException;
+import com.kdgregory.logging.aws.facade.FirehoseFacadeException.ReasonCode;
+import com.kdgregory.logging.aws.firehose.FirehoseConstants.StreamStatus;
+import com.kdgregory.logging.aws.firehose.FirehoseWriterConfig;
+import com.kdgregory.logging.aws.testhelpers.FirehoseClientMock;
+import com.kdgregory.logging.common.LogMessage;
+
+
+public class TestFirehoseFacadeImpl
+{
+    private final static String DEFAULT_STREAM_NAME = "argle";
+
+    private FirehoseWriterConfig config = new FirehoseWriterConfig().setStreamName(DEFAULT_STREAM_NAME);
+
+    // each test will also create its own mock
+    private FirehoseClientMock mock = new FirehoseClientMock();
+
+    // lazily instantiated, just like the real thing; both config and mock can be changed before first call
+    private FirehoseFacade facade = new FirehoseFacadeImpl(config)
+    {
+        private FirehoseClient client;
+
+        @Override
+        protected FirehoseClient client()
+        {
+            if (client == null)
+            {
+                client = mock.createClient();
+            }
+            return client;
+        }
+    };
+
+//----------------------------------------------------------------------------
+//  Helpers
+//----------------------------------------------------------------------------
+
+    /**
+     *  Verifies that an exception contains a properly structured message.
+     */
+    private void assertException(
+            FirehoseFacadeException ex,
+            String expectedFunctionName, String expectedContainedMessage,
+            ReasonCode expectedReason, boolean expectedRetryable, Throwable expectedCause)
+    {
+        assertEquals("exception reason",  expectedReason, ex.getReason());
+
+        assertRegex("exception message (was: " + ex.getMessage() + ")",
+                    expectedFunctionName + ".*" + expectedContainedMessage,
+                    ex.getMessage());
+
+        assertEquals("retryable", expectedRetryable, ex.isRetryable());
+
+        if (expectedCause != null)
+        {
+            assertSame("exception contains cause", expectedCause, ex.getCause());
+        }
+    }
+
+//----------------------------------------------------------------------------
+//  Testcases
+//----------------------------------------------------------------------------
+
+    @Test
+    public void testRetrieveStreamStatus() throws Exception
+    {
+        assertEquals("status",                                      StreamStatus.ACTIVE,        facade.retrieveStreamStatus());
+        assertEquals("describeDeliveryStream() invocation count",   1,                          mock.describeDeliveryStreamInvocationCount);
+        assertEquals("stream name",                                 DEFAULT_STREAM_NAME,        mock.describeStreamName);
+
+        mock = new FirehoseClientMock()
+        {
+            @Override
+            protected DescribeDeliveryStreamResponse describeDeliveryStream(DescribeDeliveryStreamRequest request)
+            {
+                return describeResponse(DeliveryStreamStatus.CREATING_FAILED);
+            }
+        };
+
+        // note: facade caches client, so we need a new one
+        FirehoseFacade facade2 = new FirehoseFacadeImpl(config)
+        {
+            @Override
+            protected FirehoseClient client()
+            {
+                return mock.createClient();
+            }
+        };
+
+        assertEquals("status",                                      StreamStatus.CREATING_FAILED,   facade2.retrieveStreamStatus());
+    }
+
+
+    @Test
+    public void testRetrieveStreamStatusMissingStream() throws Exception
+    {
+        mock = new FirehoseClientMock()
+        {
+            @Override
+            protected DescribeDeliveryStreamResponse describeDeliveryStream(DescribeDeliveryStreamRequest request)
+            {
+                throw ResourceNotFoundException.builder().message("blah").build();
+            }
+        };
+
+        assertEquals("status",                                      StreamStatus.DOES_NOT_EXIST,    facade.retrieveStreamStatus());
+    }
+
+
+    @Test
+    public void testRetrieveStreamStatusLimitExceeded() throws Exception
+    {
+        mock = new FirehoseClientMock()
+        {
+            @Override
+            protected DescribeDeliveryStreamResponse describeDeliveryStream(DescribeDeliveryStreamRequest request)
+            {
+                throw LimitExceededException.builder().message("blah").build();
+            }
+        };
+
+        assertNull("status", facade.retrieveStreamStatus());
+    }
+
+
+    @Test
+    public void testRetrieveStreamStatusException() throws Exception
+    {
+        final RuntimeException cause = new RuntimeException("test");
+        mock = new FirehoseClientMock()
+        {
+            @Override
+            protected DescribeDeliveryStreamResponse describeDeliveryStream(DescribeDeliveryStreamRequest request)
+            {
+                throw cause;
+            }
+        };
+
+        try
+        {
+            facade.retrieveStreamStatus();
+            fail("should have thrown");
+        }
+        catch (FirehoseFacadeException ex)
+        {
+            assertException(ex, "retrieveStreamStatus", "unexpected exception: test", ReasonCode.UNEXPECTED_EXCEPTION, false, cause);
+        }
+    }
+
+
+    @Test
+    public void testPutRecordsHappyPath() throws Exception
+    {
+        List<LogMessage> messages = Arrays.asList(
+                                        new LogMessage(0, "message one"),
+                                        new LogMessage(1, "message two"));
+
+        List<LogMessage> result = facade.putRecords(messages);
+
+        assertEquals("putRecordBatch() invocation count",           1,                          mock.putRecordBatchInvocationCount);
+        assertEquals("stream name",                                 DEFAULT_STREAM_NAME,        mock.putRecordBatchRequest.deliveryStreamName());
+        assertEquals("number of records",                           2,                          mock.putRecordBatchRequest.records().size());
+        assertEquals("record 0 content",                            "message one",              mock.putRecordBatchRequest.records().get(0).data().asUtf8String());
+        assertEquals("record 1 content",                            "message two",              mock.putRecordBatchRequest.records().get(1).data().asUtf8String());
+        assertEquals("no failed records",                           0,                          result.size());
+    }
+
+
+    @Test
+    public void testPutRecordsPartialFailure() throws Exception
+    {
+        mock = new FirehoseClientMock()
+        {
+            @Override
+            protected PutRecordBatchResponse putRecordBatch(PutRecordBatchRequest request)
+            {
+                List<PutRecordBatchResponseEntry> entries = new ArrayList<>();
+                for (int ii = 0 ; ii < request.records().size() ; ii++)
+                {
+                    entries.add((ii % 2 == 0)
+                                ? PutRecordBatchResponseEntry.builder().recordId(String.valueOf(ii)).build()
+                                : PutRecordBatchResponseEntry.builder().errorCode("ServiceUnavailableException").build());
+                }
+                return PutRecordBatchResponse.builder()
+                       .failedPutCount(request.records().size() / 2)
+                       .requestResponses(entries)
+                       .build();
+            }
+        };
+
+        List<LogMessage> messages = Arrays.asList(
+                                        new LogMessage(0, "message one"),
+                                        new LogMessage(1, "message two"),
+                                        new LogMessage(2, "message three"),
+                                        new LogMessage(3, "message four"));
+
+        List<LogMessage> result = facade.putRecords(messages);
+
+        assertEquals("number of failed records",                    2,                          result.size());
+        assertSame("first failed record",                           messages.get(1),            result.get(0));
+        assertSame("second failed record",                          messages.get(3),            result.get(1));
+    }
+
+
+    @Test
+    public void testPutRecordsThrottled() throws Exception
+    {
+        mock = new FirehoseClientMock()
+        {
+            @Override
+            protected PutRecordBatchResponse putRecordBatch(PutRecordBatchRequest request)
+            {
+                throw ServiceUnavailableException.builder().message("blah").build();
+            }
+        };
+
+        try
+        {
+            facade.putRecords(Arrays.asList(new LogMessage(0, "message one")));
+            fail("should have thrown");
+        }
+        catch (FirehoseFacadeException ex)
+        {
+            assertException(ex, "putRecords", "throttled", ReasonCode.THROTTLING, true, null);
+        }
+    }
+
+
+    @Test
+    public void testPutRecordsMissingStream() throws Exception
+    {
+        mock = new FirehoseClientMock()
+        {
+            @Override
+            protected PutRecordBatchResponse putRecordBatch(PutRecordBatchRequest request)
+            {
+                throw ResourceNotFoundException.builder().message("blah").build();
+            }
+        };
+
+        try
+        {
+            facade.putRecords(Arrays.asList(new LogMessage(0, "message one")));
+            fail("should have thrown");
+        }
+        catch (FirehoseFacadeException ex)
+        {
+            assertException(ex, "putRecords", "delivery stream does not exist", ReasonCode.MISSING_STREAM, false, null);
+        }
+    }
+
+
+    @Test
+    public void testShutdown() throws Exception
+    {
+        facade.shutdown();
+
+        assertEquals("close() invocation count",                    1,                          mock.closeInvocationCount);
+    }
+}
@@ -0,0 +1,392 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.kdgregory.logging.aws.facade.v2;
+
+import static net.sf.kdgcommons.test.StringAsserts.*;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import software.amazon.awssdk.awscore.exception.AwsErrorDetails;
+import software.amazon.awssdk.core.exception.SdkClientException;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.*;
+
+import com.kdgregory.logging.aws.cloudwatch.CloudWatchWriterConfig;
+import com.kdgregory.logging.aws.facade.S3Facade;
+import com.kdgregory.logging.aws.facade.S3FacadeException;
+import com.kdgregory.logging.aws.facade.S3FacadeException.ReasonCode;
+import com.kdgregory.logging.aws.s3.S3WriterConfig;
+import com.kdgregory.logging.aws.testhelpers.S3ClientMock;
+
+
+public class TestS3FacadeImpl
+{
+    private final static String DEFAULT_BUCKET = "argle";
+    private final static String DEFAULT_KEY = "bargle/12345";
+    private final static byte[] DEFAULT_CONTENT = "this is a test".getBytes(StandardCharsets.UTF_8);
+
+    // the S3 facade can be used with any writer config
+    private CloudWatchWriterConfig config = new CloudWatchWriterConfig().setOversizeS3Bucket(DEFAULT_BUCKET);
+
+    // each test will also create its own mock
+    private S3ClientMock mock = new S3ClientMock();
+
+    // lazily instantiated, just like the real thing; both config and mock can be changed before first call
+    private S3Facade facade = new S3FacadeImpl(config)
+    {
+        private S3Client client;
+
+        @Override
+        protected S3Client client()
+        {
+            if (client == null)
+            {
+                client = mock.createClient();
+            }
+            return client;
+        }
+    };
+
+//----------------------------------------------------------------------------
+//  Helpers
+//----------------------------------------------------------------------------
+
+    /**
+     *  Verifies that an exception contains a properly structured message.
+     */
+    private void assertException(
+            S3FacadeException ex,
+            String expectedFunctionName, String expectedContainedMessage,
+            ReasonCode expectedReason, boolean expectedRetryable, Throwable expectedCause)
+    {
+        assertEquals("exception reason",  expectedReason, ex.getReason());
+
+        assertRegex("exception message (was: " + ex.getMessage() + ")",
+                    expectedFunctionName + ".*" + expectedContainedMessage,
+                    ex.getMessage());
+
+        assertEquals("retryable", expectedRetryable, ex.isRetryable());
+
+        if (expectedCause != null)
+        {
+            assertSame("exception contains cause", expectedCause, ex.getCause());
+        }
+    }
+
+
+    /**
+     *  Constructs an exception with the specified error code.
+     */
+    private S3Exception serviceException(String errorCode)
+    {
+        AwsErrorDetails details = AwsErrorDetails.builder().errorCode(errorCode).build();
+        return (S3Exception)S3Exception.builder().message(errorCode).awsErrorDetails(details).build();
+    }
+
+//----------------------------------------------------------------------------
+//  Testcases
+//----------------------------------------------------------------------------
+
+    @Test
+    public void testPutObjectHappyPath() throws Exception
+    {
+        facade.putObject(DEFAULT_KEY, DEFAULT_CONTENT);
+
+        assertEquals("putObject() invocation count",    1,                  mock.putObjectInvocationCount);
+        assertEquals("bucket",                          DEFAULT_BUCKET,     mock.putObjectRequest.bucket());
+        assertEquals("key",                             DEFAULT_KEY,        mock.putObjectRequest.key());
+        assertArrayEquals("content",                    DEFAULT_CONTENT,    mock.putObjectContent);
+        assertEquals("close() invocation count",        0,                  mock.closeInvocationCount);
+    }
+
+
+    @Test
+    public void testPutObjectThrottling() throws Exception
+    {
+        mock = new S3ClientMock()
+        {
+            @Override
+            protected PutObjectResponse putObject(PutObjectRequest request)
+            {
+                throw serviceException("SlowDown");
+            }
+        };
+
+        try
+        {
+            facade.putObject(DEFAULT_KEY, DEFAULT_CONTENT);
+            fail("should have thrown");
+        }
+        catch (S3FacadeException ex)
+        {
+            assertException(ex, "putObject", "request throttled", ReasonCode.THROTTLING, true, null);
+        }
+
+        assertEquals("putObject() invocation count",    1,                  mock.putObjectInvocationCount);
+    }
+
+
+    @Test
+    public void testPutObjectNoSuchBucket() throws Exception
+    {
+        mock = new S3ClientMock()
+        {
+            @Override
+            protected PutObjectResponse putObject(PutObjectRequest request)
+            {
+                throw serviceException("NoSuchBucket");
+            }
+        };
+
+        try
+        {
+            facade.putObject(DEFAULT_KEY, DEFAULT_CONTENT);
+            fail("should have thrown");
+        }
+        catch (S3FacadeException ex)
+        {
+            assertException(ex, "putObject", "bucket does not exist", ReasonCode.MISSING_BUCKET, false, null);
+        }
+    }
+
+
+    @Test
+    public void testPutObjectServiceError() throws Exception
+    {
+        // server-side failures may succeed on retry
+        mock = new S3ClientMock()
+        {
+            @Override
+            protected PutObjectResponse putObject(PutObjectRequest request)
+            {
+                throw serviceException("InternalError");
+            }
+        };
+
+        try
+        {
+            facade.putObject(DEFAULT_KEY, DEFAULT_CONTENT);
+            fail("should have thrown");
+        }
+        catch (S3FacadeException ex)
+        {
+            assertException(ex, "putObject", "service exception.*", ReasonCode.UNEXPECTED_EXCEPTION, true, null);
+        }
+    }
+
+
+    @Test
+    public void testPutObjectAccessDenied() throws Exception
+    {
+        mock = new S3ClientMock()
+        {
+            @Override
+            protected PutObjectResponse putObject(PutObjectRequest request)
+            {
+                throw serviceException("AccessDenied");
+            }
+        };
+
+        try
+        {
+            facade.putObject(DEFAULT_KEY, DEFAULT_CONTENT);
+            fail("should have thrown");
+        }
+        catch (S3FacadeException ex)
+        {
+            assertException(ex, "putObject", "service exception.*", ReasonCode.UNEXPECTED_EXCEPTION, false, null);
+        }
+    }
+
+
+    @Test
+    public void testPutObjectClientException() throws Exception
+    {
+        // network errors are reported as client exceptions
+        final SdkClientException cause = SdkClientException.create("connection reset");
+        mock = new S3ClientMock()
+        {
+            @Override
+            protected PutObjectResponse putObject(PutObjectRequest request)
+            {
+                throw cause;
+            }
+        };
+
+        try
+        {
+            facade.putObject(DEFAULT_KEY, DEFAULT_CONTENT);
+            fail("should have thrown");
+        }
+        catch (S3FacadeException ex)
+        {
+            assertException(ex, "putObject", "client exception: connection reset", ReasonCode.UNEXPECTED_EXCEPTION, true, cause);
+        }
+    }
+
+
+    @Test
+    public void testPutObjectException() throws Exception
+    {
+        final RuntimeException cause = new RuntimeException("test");
+        mock = new S3ClientMock()
+        {
+            @Override
+            protected PutObjectResponse putObject(PutObjectRequest request)
+            {
+                throw cause;
+            }
+        };
+
+        try
+        {
+            facade.putObject(DEFAULT_KEY, DEFAULT_CONTENT);
+            fail("should have thrown");
+        }
+        catch (S3FacadeException ex)
+        {
+            assertException(ex, "putObject", "unexpected exception: test", ReasonCode.UNEXPECTED_EXCEPTION, false, cause);
+        }
+    }
+
+
+    @Test
+    public void testPutObjectBucketNotConfigured() throws Exception
+    {
+        config.setOversizeS3Bucket(null);
+
+        try
+        {
+            facade.putObject(DEFAULT_KEY, DEFAULT_CONTENT);
+            fail("should have thrown");
+        }
+        catch (S3FacadeException ex)
+        {
+            assertException(ex, "putObject", "bucket not configured", ReasonCode.INVALID_CONFIGURATION, false, null);
+        }
+
+        assertEquals("putObject() invocation count",    0,                  mock.putObjectInvocationCount);
+    }
+
+
+    @Test
+    public void testMultipartUploadHappyPath() throws Exception
+    {
+        String uploadId = facade.startMultipartUpload(DEFAULT_KEY);
+        String etag = facade.uploadPart(DEFAULT_KEY, uploadId, 1, DEFAULT_CONTENT);
+        facade.completeMultipartUpload(DEFAULT_KEY, uploadId, Arrays.asList(etag, "\"etag-2\""));
+
+        assertEquals("upload ID",                                   "upload-1",         uploadId);
+        assertEquals("returned ETag",                               "\"etag-1\"",       etag);
+
+        assertEquals("createMultipartUpload() invocation count",    1,                  mock.createMultipartUploadInvocationCount);
+        assertEquals("createMultipartUpload() bucket",              DEFAULT_BUCKET,     mock.createMultipartUploadRequest.bucket());
+        assertEquals("createMultipartUpload() key",                 DEFAULT_KEY,        mock.createMultipartUploadRequest.key());
+
+        assertEquals("uploadPart() invocation count",               1,                  mock.uploadPartInvocationCount);
+        assertEquals("uploadPart() upload ID",                      uploadId,           mock.uploadPartRequest.uploadId());
+        assertEquals("uploadPart() part number",                    Integer.valueOf(1), mock.uploadPartRequest.partNumber());
+        assertArrayEquals("uploadPart() content",                   DEFAULT_CONTENT,    mock.uploadPartContent);
+
+        CompletedMultipartUpload completed = mock.completeMultipartUploadRequest.multipartUpload();
+        assertEquals("completeMultipartUpload() invocation count",  1,                  mock.completeMultipartUploadInvocationCount);
+        assertEquals("completeMultipartUpload() upload ID",         uploadId,           mock.completeMultipartUploadRequest.uploadId());
+        assertEquals("completeMultipartUpload() number of parts",   2,                  completed.parts().size());
+        assertEquals("completeMultipartUpload() part 1 number",     Integer.valueOf(1), completed.parts().get(0).partNumber());
+        assertEquals("completeMultipartUpload() part 1 ETag",       etag,               completed.parts().get(0).eTag());
+        assertEquals("completeMultipartUpload() part 2 number",     Integer.valueOf(2), completed.parts().get(1).partNumber());
+    }
+
+
+    @Test
+    public void testAbortMultipartUpload() throws Exception
+    {
+        facade.abortMultipartUpload(DEFAULT_KEY, "upload-1");
+
+        assertEquals("abortMultipartUpload() invocation count",     1,                  mock.abortMultipartUploadInvocationCount);
+        assertEquals("abortMultipartUpload() bucket",               DEFAULT_BUCKET,     mock.abortMultipartUploadRequest.bucket());
+        assertEquals("abortMultipartUpload() key",                  DEFAULT_KEY,        mock.abortMultipartUploadRequest.key());
+        assertEquals("abortMultipartUpload() upload ID",            "upload-1",         mock.abortMultipartUploadRequest.uploadId());
+    }
+
+
+    @Test
+    public void testUploadPartThrottling() throws Exception
+    {
+        mock = new S3ClientMock()
+        {
+            @Override
+            protected UploadPartResponse uploadPart(UploadPartRequest request)
+            {
+                throw serviceException("SlowDown");
+            }
+        };
+
+        try
+        {
+            facade.uploadPart(DEFAULT_KEY, "upload-1", 1, DEFAULT_CONTENT);
+            fail("should have thrown");
+        }
+        catch (S3FacadeException ex)
+        {
+            assertException(ex, "uploadPart", "request throttled", ReasonCode.THROTTLING, true, null);
+        }
+    }
+
+
+    @Test
+    public void testS3WriterConfig() throws Exception
+    {
+        // the S3 writer uses its own bucket, and uploads compressed content
+
+        S3WriterConfig writerConfig = new S3WriterConfig().setBucketName("bargle");
+        S3Facade writerFacade = new S3FacadeImpl(writerConfig)
+        {
+            private S3Client client;
+
+            @Override
+            protected S3Client client()
+            {
+                if (client == null)
+                {
+                    client = mock.createClient();
+                }
+                return client;
+            }
+        };
+
+        writerFacade.putObject(DEFAULT_KEY, DEFAULT_CONTENT);
+        writerFacade.startMultipartUpload(DEFAULT_KEY);
+
+        assertEquals("putObject() bucket",                          "bargle",           mock.putObjectRequest.bucket());
+        assertEquals("putObject() content type",                    "application/gzip", mock.putObjectRequest.contentType());
+        assertEquals("createMultipartUpload() bucket",              "bargle",           mock.createMultipartUploadRequest.bucket());
+        assertEquals("createMultipartUpload() content type",        "application/gzip", mock.createMultipartUploadRequest.contentType());
+    }
+
+
+    @Test
+    public void testShutdown() throws Exception
+    {
+        facade.shutdown();
+
+        assertEquals("close() invocation count",        1,                  mock.closeInvocationCount);
+    }
+}
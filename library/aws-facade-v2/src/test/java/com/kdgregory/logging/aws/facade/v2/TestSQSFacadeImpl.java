@@ -0,0 +1,301 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.kdgregory.logging.aws.facade.v2;
+
+import static net.sf.kdgcommons.test.StringAsserts.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import software.amazon.awssdk.awscore.exception.AwsErrorDetails;
+import software.amazon.awssdk.services.sqs.SqsClient;
+import software.amazon.awssdk.services.sqs.model.*;
+
+import com.kdgregory.logging.aws.facade.SQSFacade;
+import com.kdgregory.logging.aws.facade.SQSFacadeException;
+import com.kdgregory.logging.aws.facade.SQSFacadeException.ReasonCode;
+import com.kdgregory.logging.aws.sqs.SQSWriterConfig;
+import com.kdgregory.logging.aws.testhelpers.SQSClientMock;
+import com.kdgregory.logging.common.LogMessage;
+
+
+public class TestSQSFacadeImpl
+{
+    private final static String DEFAULT_QUEUE_NAME  = "argle";
+    private final static String DEFAULT_QUEUE_URL   = SQSClientMock.QUEUE_URL_PREFIX + DEFAULT_QUEUE_NAME;
+
+    private SQSWriterConfig config = new SQSWriterConfig().setQueueName(DEFAULT_QUEUE_NAME);
+
+    // each test will also create its own mock
+    private SQSClientMock mock = new SQSClientMock();
+
+    // lazily instantiated, just like the real thing; both config and mock can be changed before first call
+    private SQSFacade facade = new SQSFacadeImpl(config)
+    {
+        private SqsClient client;
+
+        @Override
+        protected synchronized SqsClient client()
+        {
+            if (client == null)
+            {
+                client = mock.createClient();
+            }
+            return client;
+        }
+    };
+
+//----------------------------------------------------------------------------
+//  Helpers
+//----------------------------------------------------------------------------
+
+    /**
+     *  Verifies that an exception contains a properly structured message.
+     */
+    private void assertException(
+            SQSFacadeException ex,
+            String expectedFunctionName, String expectedContainedMessage,
+            ReasonCode expectedReason, boolean expectedRetryable, Throwable expectedCause)
+    {
+        assertEquals("exception reason",  expectedReason, ex.getReason());
+
+        assertRegex("exception message (was: " + ex.getMessage() + ")",
+                    expectedFunctionName + ".*" + expectedContainedMessage,
+                    ex.getMessage());
+
+        assertEquals("retryable", expectedRetryable, ex.isRetryable());
+
+        if (expectedCause != null)
+        {
+            assertSame("exception contains cause", expectedCause, ex.getCause());
+        }
+    }
+
+
+    /**
+     *  Creates the exception thrown for a throttled request.
+     */
+    private static SqsException throttlingException()
+    {
+        return (SqsException)
+               SqsException.builder()
+                           .message("Request is throttled")
+                           .awsErrorDetails(
+                           AwsErrorDetails.builder()
+                                          .errorCode("RequestThrottled")
+                                          .errorMessage("Request is throttled")
+                                          .build())
+                           .build();
+    }
+
+//----------------------------------------------------------------------------
+//  Testcases
+//----------------------------------------------------------------------------
+
+    @Test
+    public void testRetrieveQueueUrl() throws Exception
+    {
+        assertEquals("queue URL",                                   DEFAULT_QUEUE_URL,          facade.retrieveQueueUrl());
+        assertEquals("getQueueUrl() invocation count",              1,                          mock.getQueueUrlInvocationCount);
+        assertEquals("queue name",                                  DEFAULT_QUEUE_NAME,         mock.getQueueUrlQueueName);
+    }
+
+
+    @Test
+    public void testRetrieveQueueUrlMissingQueue() throws Exception
+    {
+        mock = new SQSClientMock()
+        {
+            @Override
+            protected GetQueueUrlResponse getQueueUrl(GetQueueUrlRequest request)
+            {
+                throw QueueDoesNotExistException.builder().message("blah").build();
+            }
+        };
+
+        try
+        {
+            facade.retrieveQueueUrl();
+            fail("should have thrown");
+        }
+        catch (SQSFacadeException ex)
+        {
+            assertException(ex, "retrieveQueueUrl", "queue does not exist", ReasonCode.MISSING_QUEUE, false, null);
+        }
+    }
+
+
+    @Test
+    public void testRetrieveQueueUrlThrottled() throws Exception
+    {
+        mock = new SQSClientMock()
+        {
+            @Override
+            protected GetQueueUrlResponse getQueueUrl(GetQueueUrlRequest request)
+            {
+                throw throttlingException();
+            }
+        };
+
+        assertNull("queue URL", facade.retrieveQueueUrl());
+    }
+
+
+    @Test
+    public void testRetrieveQueueUrlException() throws Exception
+    {
+        final RuntimeException cause = new RuntimeException("test");
+        mock = new SQSClientMock()
+        {
+            @Override
+            protected GetQueueUrlResponse getQueueUrl(GetQueueUrlRequest request)
+            {
+                throw cause;
+            }
+        };
+
+        try
+        {
+            facade.retrieveQueueUrl();
+            fail("should have thrown");
+        }
+        catch (SQSFacadeException ex)
+        {
+            assertException(ex, "retrieveQueueUrl", "unexpected exception: test", ReasonCode.UNEXPECTED_EXCEPTION, false, cause);
+        }
+    }
+
+
+    @Test
+    public void testSendMessagesHappyPath() throws Exception
+    {
+        List<LogMessage> messages = Arrays.asList(
+                                        new LogMessage(0, "message one"),
+                                        new LogMessage(1, "message two"));
+
+        List<LogMessage> result = facade.sendMessages(DEFAULT_QUEUE_URL, messages);
+
+        assertEquals("sendMessageBatch() invocation count",         1,                          mock.sendMessageBatchInvocationCount);
+        assertEquals("queue URL",                                   DEFAULT_QUEUE_URL,          mock.sendMessageBatchRequest.queueUrl());
+        assertEquals("number of entries",                           2,                          mock.sendMessageBatchRequest.entries().size());
+        assertEquals("entry 0 ID",                                  "0",                        mock.sendMessageBatchRequest.entries().get(0).id());
+        assertEquals("entry 0 content",                             "message one",              mock.sendMessageBatchRequest.entries().get(0).messageBody());
+        assertEquals("entry 1 ID",                                  "1",                        mock.sendMessageBatchRequest.entries().get(1).id());
+        assertEquals("entry 1 content",                             "message two",              mock.sendMessageBatchRequest.entries().get(1).messageBody());
+        assertEquals("no failed messages",                          0,                          result.size());
+    }
+
+
+    @Test
+    public void testSendMessagesPartialFailure() throws Exception
+    {
+        mock = new SQSClientMock()
+        {
+            @Override
+            protected SendMessageBatchResponse sendMessageBatch(SendMessageBatchRequest request)
+            {
+                // failures are reported in reverse order, to verify that we map them back correctly
+                List<SendMessageBatchResultEntry> successful = new ArrayList<>();
+                List<BatchResultErrorEntry> failed = new ArrayList<>();
+                for (int ii = request.entries().size() - 1 ; ii >= 0 ; ii--)
+                {
+                    String id = request.entries().get(ii).id();
+                    if (ii % 2 == 0)
+                        successful.add(SendMessageBatchResultEntry.builder().id(id).build());
+                    else
+                        failed.add(BatchResultErrorEntry.builder().id(id).code("InternalError").senderFault(false).build());
+                }
+                return SendMessageBatchResponse.builder()
+                       .successful(successful)
+                       .failed(failed)
+                       .build();
+            }
+        };
+
+        List<LogMessage> messages = Arrays.asList(
+                                        new LogMessage(0, "message one"),
+                                        new LogMessage(1, "message two"),
+                                        new LogMessage(2, "message three"),
+                                        new LogMessage(3, "message four"));
+
+        List<LogMessage> result = facade.sendMessages(DEFAULT_QUEUE_URL, messages);
+
+        assertEquals("number of failed messages",                   2,                          result.size());
+        assertSame("first failed message",                          messages.get(1),            result.get(0));
+        assertSame("second failed message",                         messages.get(3),            result.get(1));
+    }
+
+
+    @Test
+    public void testSendMessagesThrottled() throws Exception
+    {
+        mock = new SQSClientMock()
+        {
+            @Override
+            protected SendMessageBatchResponse sendMessageBatch(SendMessageBatchRequest request)
+            {
+                throw throttlingException();
+            }
+        };
+
+        try
+        {
+            facade.sendMessages(DEFAULT_QUEUE_URL, Arrays.asList(new LogMessage(0, "message one")));
+            fail("should have thrown");
+        }
+        catch (SQSFacadeException ex)
+        {
+            assertException(ex, "sendMessages", "request throttled", ReasonCode.THROTTLING, true, null);
+        }
+    }
+
+
+    @Test
+    public void testSendMessagesMissingQueue() throws Exception
+    {
+        mock = new SQSClientMock()
+        {
+            @Override
+            protected SendMessageBatchResponse sendMessageBatch(SendMessageBatchRequest request)
+            {
+                throw QueueDoesNotExistException.builder().message("blah").build();
+            }
+        };
+
+        try
+        {
+            facade.sendMessages(DEFAULT_QUEUE_URL, Arrays.asList(new LogMessage(0, "message one")));
+            fail("should have thrown");
+        }
+        catch (SQSFacadeException ex)
+        {
+            assertException(ex, "sendMessages", "queue does not exist", ReasonCode.MISSING_QUEUE, false, null);
+        }
+    }
+
+
+    @Test
+    public void testShutdown() throws Exception
+    {
+        facade.shutdown();
+
+        assertEquals("close() invocation count",                    1,                          mock.closeInvocationCount);
+    }
+}
@@ -14,8 +14,12 @@
 
 package com.kdgregory.logging.aws.facade.v2.internal;
 
+import java.lang.reflect.Field;
 import java.net.URI;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.atomic.AtomicBoolean;
 
@@ -26,10 +30,14 @@ import static org.junit.Assert.*;
 import software.amazon.awssdk.auth.credentials.AwsCredentialsProvider;
 import software.amazon.awssdk.awscore.client.builder.AwsClientBuilder;
 import software.amazon.awssdk.core.client.config.ClientOverrideConfiguration;
+import software.amazon.awssdk.http.SdkHttpClient;
+import software.amazon.awssdk.http.SdkHttpConfigurationOption;
+import software.amazon.awssdk.http.apache.ApacheHttpClient;
 import software.amazon.awssdk.regions.Region;
 import software.amazon.awssdk.services.cloudwatchlogs.CloudWatchLogsClientBuilder;
 import software.amazon.awssdk.services.kinesis.KinesisClientBuilder;
 import software.amazon.awssdk.services.sns.SnsClientBuilder;
+import software.amazon.awssdk.utils.AttributeMap;
 
 import static net.sf.kdgcommons.test.StringAsserts.*;
 
@@ -132,6 +140,55 @@ public class TestClientFactory
         }
     }
 
+//----------------------------------------------------------------------------
+//  A stand-in for UrlConnectionHttpClient, which isn't a dependency of this
+//  project; its builder has the same configuration methods as the SDK's, and
+//  records the values passed to them
+//----------------------------------------------------------------------------
+
+    public static class StubUrlConnectionHttpClient
+    {
+        public interface Builder
+        extends SdkHttpClient.Builder<Builder>
+        {
+            Builder socketTimeout(Duration value);
+            Builder connectionTimeout(Duration value);
+        }
+
+
+        public static Builder builder()
+        {
+            return new StubBuilder();
+        }
+
+
+        public static class StubBuilder
+        implements Builder
+        {
+            public Map<String,Object> values = new HashMap<>();
+
+            @Override
+            public Builder socketTimeout(Duration value)
+            {
+                values.put("socketTimeout", value);
+                return this;
+            }
+
+            @Override
+            public Builder connectionTimeout(Duration value)
+            {
+                values.put("connectionTimeout", value);
+                return this;
+            }
+
+            @Override
+            public SdkHttpClient buildWithDefaults(AttributeMap serviceDefaults)
+            {
+                throw new UnsupportedOperationException("this method should not be called");
+            }
+        }
+    }
+
 //----------------------------------------------------------------------------
 //  A testable implemntation of ClientFactory
 //----------------------------------------------------------------------------
@@ -384,4 +441,123 @@ public class TestClientFactory
         assertTrue("assumed role setter was called",                                    setterWasCalled.get());
         assertEquals("create() returned expected value",            Boolean.TRUE,       value);
     }
+
+
+    @Test
+    public void testHttpClientNotConfigured() throws Exception
+    {
+        ClientFactory<Object> factory = new ClientFactory<>(Object.class, new TestWriterConfig());
+        assertNull("no HTTP client builder when type not set", factory.createHttpClientBuilder());
+
+        ClientFactory<Object> factory2 = new ClientFactory<>(Object.class, new TestWriterConfig().setHttpClientType("default"));
+        assertNull("no HTTP client builder for explicit default", factory2.createHttpClientBuilder());
+    }
+
+
+    @Test
+    public void testHttpClientApache() throws Exception
+    {
+        TestWriterConfig config = new TestWriterConfig()
+                                  .setHttpClientType("Apache")
+                                  .setHttpMaxConnections(4)
+                                  .setHttpConnectionTtl(30000)
+                                  .setHttpConnectionTimeout(2000)
+                                  .setHttpSocketTimeout(5000)
+                                  .setHttpTcpKeepAlive(true);
+
+        ClientFactory<Object> factory = new ClientFactory<>(Object.class, config);
+        SdkHttpClient.Builder<?> builder = factory.createHttpClientBuilder();
+
+        assertTrue("created Apache builder (was: " + builder + ")", builder instanceof ApacheHttpClient.Builder);
+
+        // the builder doesn't expose its configuration, so we peek inside; tcpKeepAlive
+        // isn't supported by the SDK version that we build with, so isn't verified
+        Field optionsField = builder.getClass().getDeclaredField("standardOptions");
+        optionsField.setAccessible(true);
+        AttributeMap options = ((AttributeMap.Builder)optionsField.get(builder)).build();
+
+        assertEquals("max connections",         Integer.valueOf(4),         options.get(SdkHttpConfigurationOption.MAX_CONNECTIONS));
+        assertEquals("connection TTL",          Duration.ofMillis(30000),   options.get(SdkHttpConfigurationOption.CONNECTION_TIME_TO_LIVE));
+        assertEquals("connection timeout",      Duration.ofMillis(2000),    options.get(SdkHttpConfigurationOption.CONNECTION_TIMEOUT));
+        assertEquals("socket timeout",          Duration.ofMillis(5000),    options.get(SdkHttpConfigurationOption.READ_TIMEOUT));
+
+        // this verifies that the configured values are acceptable to the client
+        SdkHttpClient client = builder.build();
+        assertTrue("built Apache client (was: " + client + ")", client instanceof ApacheHttpClient);
+        client.close();
+    }
+
+
+    @Test
+    public void testHttpClientUrlConnection() throws Exception
+    {
+        final String realClassName = "software.amazon.awssdk.http.urlconnection.UrlConnectionHttpClient";
+        final List<String> requestedClasses = new ArrayList<>();
+
+        TestWriterConfig config = new TestWriterConfig()
+                                  .setHttpClientType("urlconnection")
+                                  .setHttpMaxConnections(4)
+                                  .setHttpConnectionTtl(30000)
+                                  .setHttpConnectionTimeout(2000)
+                                  .setHttpSocketTimeout(5000)
+                                  .setHttpTcpKeepAlive(true);
+
+        ClientFactory<Object> factory = new ClientFactory<Object>(Object.class, config)
+        {
+            @Override
+            protected Class<?> loadHttpClientClass(String className)
+            {
+                requestedClasses.add(className);
+                return super.loadHttpClientClass(className.replace(realClassName, StubUrlConnectionHttpClient.class.getName()));
+            }
+        };
+
+        SdkHttpClient.Builder<?> builder = factory.createHttpClientBuilder();
+
+        assertEquals("loaded client and builder classes",   2,                          requestedClasses.size());
+        assertEquals("client class",                        realClassName,              requestedClasses.get(0));
+        assertEquals("builder class",                       realClassName + "$Builder", requestedClasses.get(1));
+
+        assertTrue("created stub builder (was: " + builder + ")", builder instanceof StubUrlConnectionHttpClient.StubBuilder);
+
+        // the builder doesn't support pool settings or keepalive, so only sees timeouts
+        Map<String,Object> expected = new HashMap<>();
+        expected.put("connectionTimeout",   Duration.ofMillis(2000));
+        expected.put("socketTimeout",       Duration.ofMillis(5000));
+        assertEquals("configured values", expected, ((StubUrlConnectionHttpClient.StubBuilder)builder).values);
+    }
+
+
+    @Test
+    public void testHttpClientNotOnClasspath() throws Exception
+    {
+        ClientFactory<Object> factory = new ClientFactory<>(Object.class, new TestWriterConfig().setHttpClientType("crt"));
+        try
+        {
+            factory.createHttpClientBuilder();
+            fail("should have thrown");
+        }
+        catch (Exception ex)
+        {
+            assertRegex("exception message describes problem (was: " + ex.getMessage() + ")",
+                        "HTTP client type \"crt\" is not available.*AwsCrtHttpClient",
+                        ex.getMessage());
+        }
+    }
+
+
+    @Test
+    public void testHttpClientInvalidType() throws Exception
+    {
+        ClientFactory<Object> factory = new ClientFactory<>(Object.class, new TestWriterConfig().setHttpClientType("bogus"));
+        try
+        {
+            factory.createHttpClientBuilder();
+            fail("should have thrown");
+        }
+        catch (Exception ex)
+        {
+            assertEquals("exception message", "unsupported HTTP client type: bogus", ex.getMessage());
+        }
+    }
 }
@@ -0,0 +1,183 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.kdgregory.logging.aws.testhelpers;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.*;
+
+
+/**
+ *  Supports mock-object testing of the S3 facade.
+ *  <p>
+ *  This is a proxy-based mock: you create an instance of the mock, and from it
+ *  create an instance of a proxy that implements the client interface. Each of
+ *  the supported client methods is implemented in the mock, and called from the
+ *  invocation handler. To test specific behaviors, subclasses should override
+ *  the method implementation.
+ *  <p>
+ *  Each method has an associated invocation counter, along with variables that
+ *  hold the last set of arguments passed to this method. These variables are
+ *  public, to minimize boilerplate code; if testcases modify the variables, they
+ *  only hurt themselves.
+ */
+public class S3ClientMock implements InvocationHandler
+{
+    // the following record invocations and are exposed for testing
+    public volatile int putObjectInvocationCount;
+    public volatile int createMultipartUploadInvocationCount;
+    public volatile int uploadPartInvocationCount;
+    public volatile int completeMultipartUploadInvocationCount;
+    public volatile int abortMultipartUploadInvocationCount;
+    public volatile int closeInvocationCount;
+
+    // after this are the invocation arguments for the various methods
+
+    public volatile PutObjectRequest putObjectRequest;
+    public volatile byte[] putObjectContent;
+    public volatile CreateMultipartUploadRequest createMultipartUploadRequest;
+    public volatile UploadPartRequest uploadPartRequest;
+    public volatile byte[] uploadPartContent;
+    public volatile CompleteMultipartUploadRequest completeMultipartUploadRequest;
+    public volatile AbortMultipartUploadRequest abortMultipartUploadRequest;
+
+//----------------------------------------------------------------------------
+//  Public methods
+//----------------------------------------------------------------------------
+
+    public S3Client createClient()
+    {
+        return (S3Client)Proxy.newProxyInstance(
+                                getClass().getClassLoader(),
+                                new Class<?>[] { S3Client.class },
+                                S3ClientMock.this);
+    }
+
+//----------------------------------------------------------------------------
+//  Invocation Handler
+//----------------------------------------------------------------------------
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable
+    {
+        String methodName = method.getName();
+        switch (methodName)
+        {
+            case "putObject":
+                putObjectInvocationCount++;
+                putObjectRequest = (PutObjectRequest)args[0];
+                putObjectContent = readBody((RequestBody)args[1]);
+                return putObject(putObjectRequest);
+            case "createMultipartUpload":
+                createMultipartUploadInvocationCount++;
+                createMultipartUploadRequest = (CreateMultipartUploadRequest)args[0];
+                return createMultipartUpload(createMultipartUploadRequest);
+            case "uploadPart":
+                uploadPartInvocationCount++;
+                uploadPartRequest = (UploadPartRequest)args[0];
+                uploadPartContent = readBody((RequestBody)args[1]);
+                return uploadPart(uploadPartRequest);
+            case "completeMultipartUpload":
+                completeMultipartUploadInvocationCount++;
+                completeMultipartUploadRequest = (CompleteMultipartUploadRequest)args[0];
+                return completeMultipartUpload(completeMultipartUploadRequest);
+            case "abortMultipartUpload":
+                abortMultipartUploadInvocationCount++;
+                abortMultipartUploadRequest = (AbortMultipartUploadRequest)args[0];
+                return abortMultipartUpload(abortMultipartUploadRequest);
+            case "close":
+                closeInvocationCount++;
+                return null;
+            default:
+                System.err.println("invocation handler called unexpectedly: " + methodName);
+                throw new IllegalStateException("unexpected method called: " + methodName);
+        }
+    }
+
+//----------------------------------------------------------------------------
+//  Default mock implementations -- override for specific tests
+//----------------------------------------------------------------------------
+
+    /**
+     *  Invocation handler for PutObject. Returns a successful response.
+     */
+    protected PutObjectResponse putObject(PutObjectRequest request)
+    {
+        return PutObjectResponse.builder().eTag("\"d41d8cd98f00b204e9800998ecf8427e\"").build();
+    }
+
+
+    /**
+     *  Invocation handler for CreateMultipartUpload. Returns a fixed upload ID.
+     */
+    protected CreateMultipartUploadResponse createMultipartUpload(CreateMultipartUploadRequest request)
+    {
+        return CreateMultipartUploadResponse.builder().uploadId("upload-1").build();
+    }
+
+
+    /**
+     *  Invocation handler for UploadPart. Returns an ETag based on the part number.
+     */
+    protected UploadPartResponse uploadPart(UploadPartRequest request)
+    {
+        return UploadPartResponse.builder().eTag("\"etag-" + request.partNumber() + "\"").build();
+    }
+
+
+    /**
+     *  Invocation handler for CompleteMultipartUpload. Returns a successful response.
+     */
+    protected CompleteMultipartUploadResponse completeMultipartUpload(CompleteMultipartUploadRequest request)
+    {
+        return CompleteMultipartUploadResponse.builder().build();
+    }
+
+
+    /**
+     *  Invocation handler for AbortMultipartUpload. Returns a successful response.
+     */
+    protected AbortMultipartUploadResponse abortMultipartUpload(AbortMultipartUploadRequest request)
+    {
+        return AbortMultipartUploadResponse.builder().build();
+    }
+
+//----------------------------------------------------------------------------
+//  Internals
+//----------------------------------------------------------------------------
+
+    private static byte[] readBody(RequestBody body)
+    throws Exception
+    {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (InputStream in = body.contentStreamProvider().newStream())
+        {
+            byte[] buf = new byte[8192];
+            int count;
+            while ((count = in.read(buf)) > 0)
+            {
+                out.write(buf, 0, count);
+            }
+        }
+        return out.toByteArray();
+    }
+}
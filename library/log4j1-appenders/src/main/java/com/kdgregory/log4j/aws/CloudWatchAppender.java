@@ -70,6 +70,26 @@ import com.kdgregory.logging.common.util.DefaultThreadFactory;
  *           writing to the same stream, set this to false.
  *
  *  <tr VALIGN="top">
+ *      <th> optimisticMode
+ *      <td> If true, the writer does not check for the existence of the log group
+ *           and stream at startup; it sends messages immediately, and creates the
+ *           group and/or stream if CloudWatch reports them missing. This avoids
+ *           describe calls (and the throttling that they may cause) when many
+ *           processes start at once. Default is false.
+ *
+ *  <tr VALIGN="top">
+ *      <th> existenceCacheTtl
+ *      <td> If greater than zero, log groups and streams that are known to exist are
+ *           remembered for this many milliseconds, and not described again by any
+ *           writer in the process. Default is 0, which disables the cache.
+ *
+ *  <tr VALIGN="top">
+ *      <th> existenceCacheFile
+ *      <td> If set, the existence cache is persisted to this file, so that it can be
+ *           shared between processes (and survive restarts). Ignored if the cache is
+ *           disabled.
+ *
+ *  <tr VALIGN="top">
  *      <th> synchronous
  *      <td> If true, the appender will operate in synchronous mode: calls to
  *           append() execute on the caller's thread, and will not return until
@@ -264,6 +284,60 @@ extends AbstractAppender
         return appenderConfig.getDedicatedWriter();
     }
 
+
+    /**
+     *  Sets the <code>optimisticMode</code> configuration property.
+     */
+    public void setOptimisticMode(boolean value)
+    {
+        appenderConfig.setOptimisticMode(value);
+    }
+
+
+    /**
+     *  Returns the <code>optimisticMode</code> configuration property.
+     */
+    public boolean getOptimisticMode()
+    {
+        return appenderConfig.getOptimisticMode();
+    }
+
+
+    /**
+     *  Sets the <code>existenceCacheTtl</code> configuration property.
+     */
+    public void setExistenceCacheTtl(long value)
+    {
+        appenderConfig.setExistenceCacheTtl(value);
+    }
+
+
+    /**
+     *  Returns the <code>existenceCacheTtl</code> configuration property.
+     */
+    public long getExistenceCacheTtl()
+    {
+        return appenderConfig.getExistenceCacheTtl();
+    }
+
+
+    /**
+     *  Sets the <code>existenceCacheFile</code> configuration property.
+     */
+    public void setExistenceCacheFile(String value)
+    {
+        appenderConfig.setExistenceCacheFile(value);
+    }
+
+
+    /**
+     *  Returns the <code>existenceCacheFile</code> configuration property.
+     */
+    public String getExistenceCacheFile()
+    {
+        return appenderConfig.getExistenceCacheFile();
+    }
+
 //----------------------------------------------------------------------------
 //  AbstractAppender overrides
 //----------------------------------------------------------------------------
@@ -0,0 +1,269 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.kdgregory.log4j.aws;
+
+import java.util.Date;
+
+import com.kdgregory.log4j.aws.internal.AbstractAppender;
+import com.kdgregory.logging.aws.common.Substitutions;
+import com.kdgregory.logging.aws.s3.S3WriterConfig;
+import com.kdgregory.logging.aws.s3.S3WriterFactory;
+import com.kdgregory.logging.aws.s3.S3WriterStatistics;
+import com.kdgregory.logging.aws.s3.S3WriterStatisticsMXBean;
+import com.kdgregory.logging.common.util.DefaultThreadFactory;
+
+
+/**
+ *  An appender that writes to S3, as gzipped newline-delimited objects. This is
+ *  intended for archiving large volumes of log messages.
+ *  <p>
+ *  This appender supports the following configuration parameters:
+ *  <p>
+ *  <table>
+ *  <tr VALIGN="top">
+ *      <th> bucketName
+ *      <td> The name of the S3 bucket where objects are written. The bucket must
+ *           already exist.
+ *
+ *  <tr VALIGN="top">
+ *      <th> keyTemplate
+ *      <td> The template used to generate object keys. Substitutions are applied
+ *           when each object is started, and <code>{sequence}</code> is incremented
+ *           for each object.
+ *           <p>
+ *           Default is <code>{date}/{hostname}/{startupTimestamp}-{pid}-{sequence}.ndjson.gz</code>.
+ *
+ *  <tr VALIGN="top">
+ *      <th> rolloverSize
+ *      <td> The compressed size, in bytes, at which an object is completed and a new
+ *           object started.
+ *           <p>
+ *           Default is 67,108,864 (64 MiB).
+ *
+ *  <tr VALIGN="top">
+ *      <th> rolloverInterval
+ *      <td> The number of milliseconds after which an object is completed and a new
+ *           object started.
+ *           <p>
+ *           Default is 300,000 (5 minutes).
+ *
+ *  <tr VALIGN="top">
+ *      <th> batchDelay
+ *      <td> The time, in milliseconds, that the writer will wait to accumulate
+ *           messages for a batch.
+ *           <p>
+ *           The writer attempts to gather multiple logging messages into a batch,
+ *           to reduce communication with the service. The batch delay controls
+ *           the time that a message will remain in-memory while the writer builds
+ *           this batch. In a low-volume environment it will be the main determinant
+ *           of when the batch is sent; in a high volume environment it's likely
+ *           that the maximum request size will be reached before the delay elapses.
+ *           <p>
+ *           The default value is 2000, which is rather arbitrarily chosen. Note that
+ *           messages are accumulated into an object across batches; this setting
+ *           controls how often they're compressed.
+ *
+ *  <tr VALIGN="top">
+ *      <th> truncateOversizeMessages
+ *      <td> If <code>true</code> (the default), oversize messages are truncated to
+ *           the maximum length permitted by the writer (1 MiB). If <code>false</code> they are
+ *           discarded. In either case, the oversized message is reported to the
+ *           Log4J debug log.
+ *
+ *  <tr VALIGN="top">
+ *      <th> discardThreshold
+ *      <td> The number of unsent messages that will trigger message discard. A
+ *           high value is useful when network connectivity is intermittent and/or
+ *           overall AWS communication is causing throttling. However, a value that
+ *           is too high may cause out-of-memory errors.
+ *           <p>
+ *           The default, 10,000, is based on the assumptions that (1) each message
+ *           will be 1k or less, and (2) any app that uses remote logging can afford
+ *           10MB.
+ *
+ *  <tr VALIGN="top">
+ *      <th> discardAction
+ *      <td> The action to take when the number of unsent messages exceeds the
+ *           discard threshold. Values are "none" (retain all messages), "oldest"
+ *           (discard oldest messages), and "newest" (discard most recent messages).
+ *           <p>
+ *           The default is "oldest". Attempting to set an incorrect value will throw
+ *           a configuration error.
+ *
+ *  <tr VALIGN="top">
+ *      <th> assumedRole
+ *      <td> Specifies role name or ARN that will be assumed by this appender. Useful
+ *           for cross-account logging. If the appender does not have permission to
+ *           assume this role, initialization will fail.
+ *
+ *  <tr VALIGN="top">
+ *      <th> clientFactory
+ *      <td> The fully-qualified name of a static method to create the correct AWS
+ *           client, which will be called instead of the writer's internal client
+ *           factory. This is useful if you need non-default configuration, such as
+ *           using a proxy server.
+ *           <p>
+ *           The passed string is of the form <code>com.example.Classname.methodName</code>.
+ *           If this does not reference a class/method on the classpath then writer
+ *           initialization will fail.
+ *
+ *  <tr VALIGN="top">
+ *      <th> clientRegion
+ *      <td> Specifies a non-default service region. This setting is ignored if you
+ *           use a client factory.
+ *
+ *  <tr VALIGN="top">
+ *      <th> clientEndpoint
+ *      <td> Specifies a non-default service endpoint. Typically used when running in
+ *           a VPC, when the normal endpoint is not available.
+ *
+ *  <tr VALIGN="top">
+ *      <th> initializationTimeout
+ *      <td> Milliseconds to wait for appender to initialize. If this timeout expires,
+ *           the appender will shut down its writer thread and discard any future log
+ *           events. The only reason to change this is if you're deploying to a high-
+ *           contention environment (and even then, the default of 60 seconds should be
+ *           more than enough).
+ *
+ *  <tr VALIGN="top">
+ *      <th> useShutdownHook
+ *      <td> Controls whether the appender uses a shutdown hook to attempt to process
+ *           outstanding messages when the JVM exits. This is true by default; set to
+ *           false to disable.
+ *  </table>
+ *
+ *  @see <a href="https://github.com/kdgregory/log4j-aws-appenders/blob/master/docs/s3.md">Appender documentation</a>
+ */
+public class S3Appender
+extends AbstractAppender
+    <
+    S3WriterConfig,
+    S3WriterStatistics,
+    S3WriterStatisticsMXBean
+    >
+{
+    // these variables are assigned when the writer is initialized, are used
+    // to prevent attempts at reconfiguration
+
+    private String          actualBucketName;
+
+
+    /**
+     *  Base constructor: assigns default values to configuration properties.
+     */
+    public S3Appender()
+    {
+        super(new S3WriterConfig(),
+              new DefaultThreadFactory("log4j-s3"),
+              new S3WriterFactory(),
+              new S3WriterStatistics(),
+              S3WriterStatisticsMXBean.class);
+    }
+
+//----------------------------------------------------------------------------
+//  Configuration
+//----------------------------------------------------------------------------
+
+    /**
+     *  Sets the <code>bucketName</code> configuration property.
+     */
+    public void setBucketName(String value)
+    {
+        if (actualBucketName != null)
+        {
+            throw new IllegalArgumentException("appender cannot be reconfigured after processing messages");
+        }
+
+        appenderConfig.setBucketName(value);
+    }
+
+
+    /**
+     *  Returns the <code>bucketName</code> configuration property.
+     */
+    public String getBucketName()
+    {
+        return appenderConfig.getBucketName();
+    }
+
+
+    /**
+     *  Sets the <code>keyTemplate</code> configuration property.
+     */
+    public void setKeyTemplate(String value)
+    {
+        appenderConfig.setKeyTemplate(value);
+    }
+
+
+    /**
+     *  Returns the <code>keyTemplate</code> configuration property.
+     */
+    public String getKeyTemplate()
+    {
+        return appenderConfig.getKeyTemplate();
+    }
+
+
+    /**
+     *  Sets the <code>rolloverSize</code> configuration property.
+     */
+    public void setRolloverSize(long value)
+    {
+        appenderConfig.setRolloverSize(value);
+    }
+
+
+    /**
+     *  Returns the <code>rolloverSize</code> configuration property.
+     */
+    public long getRolloverSize()
+    {
+        return appenderConfig.getRolloverSize();
+    }
+
+
+    /**
+     *  Sets the <code>rolloverInterval</code> configuration property.
+     */
+    public void setRolloverInterval(long value)
+    {
+        appenderConfig.setRolloverInterval(value);
+    }
+
+
+    /**
+     *  Returns the <code>rolloverInterval</code> configuration property.
+     */
+    public long getRolloverInterval()
+    {
+        return appenderConfig.getRolloverInterval();
+    }
+
+//----------------------------------------------------------------------------
+//  AbstractAppender overrides
+//----------------------------------------------------------------------------
+
+    @Override
+    protected S3WriterConfig generateWriterConfig()
+    {
+        // the key template is rendered by the writer, for each object
+        Substitutions subs = new Substitutions(new Date(), 0);
+        actualBucketName = subs.perform(appenderConfig.getBucketName());
+
+        return ((S3WriterConfig)appenderConfig.clone())
+               .setBucketName(actualBucketName);
+    }
+}
@@ -17,11 +17,17 @@ package com.kdgregory.log4j.aws.internal;
 import java.lang.Thread.UncaughtExceptionHandler;
 
 import org.apache.log4j.AppenderSkeleton;
+import org.apache.log4j.EnhancedPatternLayout;
+import org.apache.log4j.Layout;
+import org.apache.log4j.helpers.LogLog;
+import org.apache.log4j.spi.Filter;
 import org.apache.log4j.spi.LoggingEvent;
 
+import com.kdgregory.log4j.aws.JsonLayout;
 import com.kdgregory.logging.aws.internal.AbstractWriterConfig;
 import com.kdgregory.logging.aws.internal.AbstractWriterStatistics;
 import com.kdgregory.logging.common.LogMessage;
+import com.kdgregory.logging.common.LogMessage.Severity;
 import com.kdgregory.logging.common.LogWriter;
 import com.kdgregory.logging.common.util.MessageQueue.DiscardAction;
 import com.kdgregory.logging.common.util.ThreadFactory;
@@ -39,11 +45,16 @@ import com.kdgregory.logging.common.util.WriterFactory;
  *  to support testing. If you decide to subclass and access those variables, remember
  *  that this is an internal class: they may go away.
  *  <p>
- *  Note: Log4J synchronizes calls to appenders by logger. In typical usage, this means
- *  that all calls will be synchronized and we shouldn't synchronize outself. However,
- *  it appears that there's no synchronization for loggers that use the same appender
- *  but do not share an appender list. For that reason, we use internal synchronization
- *  of critical sections.
+ *  Note: <code>AppenderSkeleton.doAppend()</code> is synchronized, which means that
+ *  all threads logging through an appender would contend for a single lock, held for
+ *  the duration of layout formatting. We override that method with one that performs
+ *  the same threshold and filter checks, without synchronization, so that formatting
+ *  happens concurrently on the caller's thread. Critical sections (initialization and
+ *  shutdown) use internal synchronization, and the writer's queue is thread-safe.
+ *  <p>
+ *  Most Log4J 1.x layouts are <em>not</em> thread-safe (for example, <code>PatternLayout</code>
+ *  reuses an internal buffer). Unless a layout is known to be thread-safe (see
+ *  {@link #isLayoutThreadSafe}), calls to it are synchronized on the layout object.
  */
 public abstract class AbstractAppender
     <
@@ -180,6 +191,78 @@ extends AppenderSkeleton
     }
 
 
+    /**
+     *  Sets the <code>splitOversizeMessages</code> configuration property.
+     */
+    public void setSplitOversizeMessages(boolean value)
+    {
+        appenderConfig.setSplitOversizeMessages(value);
+    }
+
+
+    /**
+     *  Returns the <code>splitOversizeMessages</code> configuration property.
+     */
+    public boolean getSplitOversizeMessages()
+    {
+        return appenderConfig.getSplitOversizeMessages();
+    }
+
+
+    /**
+     *  Sets the <code>oversizeS3Bucket</code> configuration property.
+     */
+    public void setOversizeS3Bucket(String value)
+    {
+        appenderConfig.setOversizeS3Bucket(value);
+    }
+
+
+    /**
+     *  Returns the <code>oversizeS3Bucket</code> configuration property.
+     */
+    public String getOversizeS3Bucket()
+    {
+        return appenderConfig.getOversizeS3Bucket();
+    }
+
+
+    /**
+     *  Sets the <code>oversizeS3Prefix</code> configuration property.
+     */
+    public void setOversizeS3Prefix(String value)
+    {
+        appenderConfig.setOversizeS3Prefix(value);
+    }
+
+
+    /**
+     *  Returns the <code>oversizeS3Prefix</code> configuration property.
+     */
+    public String getOversizeS3Prefix()
+    {
+        return appenderConfig.getOversizeS3Prefix();
+    }
+
+
+    /**
+     *  Sets the <code>oversizeS3Threads</code> configuration property.
+     */
+    public void setOversizeS3Threads(int value)
+    {
+        appenderConfig.setOversizeS3Threads(value);
+    }
+
+
+    /**
+     *  Returns the <code>oversizeS3Threads</code> configuration property.
+     */
+    public int getOversizeS3Threads()
+    {
+        return appenderConfig.getOversizeS3Threads();
+    }
+
+
     /**
      *  Sets the <code>discardThreshold</code> configuration property. This can be set
      *  while the writer is running, to change writer operation.
@@ -233,6 +316,70 @@ extends AppenderSkeleton
     }
 
 
+    /**
+     *  Sets the <code>discardByLevel</code> configuration property. This can only
+     *  be set at the time of configuration.
+     */
+    public void setDiscardByLevel(boolean value)
+    {
+        appenderConfig.setDiscardByLevel(value);
+    }
+
+
+    /**
+     *  Returns the <code>discardByLevel</code> configuration property.
+     */
+    public boolean getDiscardByLevel()
+    {
+        return appenderConfig.getDiscardByLevel();
+    }
+
+
+    /**
+     *  Sets the <code>blockTimeout</code> configuration property. This can only
+     *  be set at the time of configuration.
+     */
+    public void setBlockTimeout(long value)
+    {
+        appenderConfig.setBlockTimeout(value);
+    }
+
+
+    /**
+     *  Returns the <code>blockTimeout</code> configuration property.
+     */
+    public long getBlockTimeout()
+    {
+        return appenderConfig.getBlockTimeout();
+    }
+
+
+    /**
+     *  Sets the <code>blockFallbackAction</code> configuration property. This can
+     *  only be set at the time of configuration.
+     */
+    public void setBlockFallbackAction(String value)
+    {
+        DiscardAction tmpDiscardAction = DiscardAction.lookup(value);
+        if ((tmpDiscardAction == null) || (tmpDiscardAction == DiscardAction.block))
+        {
+            internalLogger.error("invalid block fallback action: " + value, null);
+            return;
+        }
+
+        appenderConfig.setBlockFallbackAction(tmpDiscardAction);
+    }
+
+
+    /**
+     *  Returns the <code>blockFallbackAction</code> configuration property.
+     */
+    public String getBlockFallbackAction()
+    {
+        return appenderConfig.getBlockFallbackAction().toString();
+    }
+
+
     /**
      *  Sets the <code>assumedRole</code> configuration property.
      */
@@ -323,6 +470,42 @@ extends AppenderSkeleton
     }
 
 
+    /**
+     *  Sets the <code>shutdownTimeout</code> configuration property.
+     */
+    public void setShutdownTimeout(long value)
+    {
+        appenderConfig.setShutdownTimeout(value);
+    }
+
+
+    /**
+     *  Returns the <code>shutdownTimeout</code> configuration property.
+     */
+    public long getShutdownTimeout()
+    {
+        return appenderConfig.getShutdownTimeout();
+    }
+
+
+    /**
+     *  Sets the <code>criticalOnShutdown</code> configuration property.
+     */
+    public void setCriticalOnShutdown(boolean value)
+    {
+        appenderConfig.setCriticalOnShutdown(value);
+    }
+
+
+    /**
+     *  Returns the <code>criticalOnShutdown</code> configuration property.
+     */
+    public boolean getCriticalOnShutdown()
+    {
+        return appenderConfig.getCriticalOnShutdown();
+    }
+
+
     /**
      *  Sets the <code>initializationTimeout</code> configuration property.
      */
@@ -358,6 +541,150 @@ extends AppenderSkeleton
         return appenderConfig.getEnableBatchLogging();
     }
 
+
+    /**
+     *  Sets the <code>deferInitialization</code> configuration property.
+     */
+    public void setDeferInitialization(boolean value)
+    {
+        appenderConfig.setDeferInitialization(value);
+    }
+
+
+    /**
+     *  Returns the <code>deferInitialization</code> configuration property.
+     */
+    public boolean getDeferInitialization()
+    {
+        return appenderConfig.getDeferInitialization();
+    }
+
+
+    /**
+     *  Sets the <code>deferLayout</code> configuration property.
+     */
+    public void setDeferLayout(boolean value)
+    {
+        appenderConfig.setDeferLayout(value);
+    }
+
+
+    /**
+     *  Returns the <code>deferLayout</code> configuration property.
+     */
+    public boolean getDeferLayout()
+    {
+        return appenderConfig.getDeferLayout();
+    }
+
+
+    /**
+     *  Sets the <code>httpClientType</code> configuration property.
+     */
+    public void setHttpClientType(String value)
+    {
+        appenderConfig.setHttpClientType(value);
+    }
+
+
+    /**
+     *  Returns the <code>httpClientType</code> configuration property.
+     */
+    public String getHttpClientType()
+    {
+        return appenderConfig.getHttpClientType();
+    }
+
+
+    /**
+     *  Sets the <code>httpMaxConnections</code> configuration property.
+     */
+    public void setHttpMaxConnections(int value)
+    {
+        appenderConfig.setHttpMaxConnections(value);
+    }
+
+
+    /**
+     *  Returns the <code>httpMaxConnections</code> configuration property.
+     */
+    public int getHttpMaxConnections()
+    {
+        return appenderConfig.getHttpMaxConnections();
+    }
+
+
+    /**
+     *  Sets the <code>httpConnectionTtl</code> configuration property.
+     */
+    public void setHttpConnectionTtl(long value)
+    {
+        appenderConfig.setHttpConnectionTtl(value);
+    }
+
+
+    /**
+     *  Returns the <code>httpConnectionTtl</code> configuration property.
+     */
+    public long getHttpConnectionTtl()
+    {
+        return appenderConfig.getHttpConnectionTtl();
+    }
+
+
+    /**
+     *  Sets the <code>httpConnectionTimeout</code> configuration property.
+     */
+    public void setHttpConnectionTimeout(long value)
+    {
+        appenderConfig.setHttpConnectionTimeout(value);
+    }
+
+
+    /**
+     *  Returns the <code>httpConnectionTimeout</code> configuration property.
+     */
+    public long getHttpConnectionTimeout()
+    {
+        return appenderConfig.getHttpConnectionTimeout();
+    }
+
+
+    /**
+     *  Sets the <code>httpSocketTimeout</code> configuration property.
+     */
+    public void setHttpSocketTimeout(long value)
+    {
+        appenderConfig.setHttpSocketTimeout(value);
+    }
+
+
+    /**
+     *  Returns the <code>httpSocketTimeout</code> configuration property.
+     */
+    public long getHttpSocketTimeout()
+    {
+        return appenderConfig.getHttpSocketTimeout();
+    }
+
+
+    /**
+     *  Sets the <code>httpTcpKeepAlive</code> configuration property.
+     */
+    public void setHttpTcpKeepAlive(boolean value)
+    {
+        appenderConfig.setHttpTcpKeepAlive(value);
+    }
+
+
+    /**
+     *  Returns the <code>httpTcpKeepAlive</code> configuration property.
+     */
+    public boolean getHttpTcpKeepAlive()
+    {
+        return appenderConfig.getHttpTcpKeepAlive();
+    }
+
 //----------------------------------------------------------------------------
 //  Other accessors
 //----------------------------------------------------------------------------
@@ -379,6 +706,21 @@ extends AppenderSkeleton
         return closed;
     }
 
+
+    /**
+     *  Sends all queued messages without waiting for the batch delay, and waits up to
+     *  the specified number of milliseconds for them to be acknowledged. Applications
+     *  running in Lambda should call this before returning from their handler.
+     *
+     *  @return <code>true</code> if all queued messages were sent (or the appender
+     *          has not yet started a writer), <code>false</code> otherwise.
+     */
+    public boolean flush(long millisToWait)
+    {
+        LogWriter currentWriter = writer;
+        return (currentWriter == null) || currentWriter.flush(millisToWait);
+    }
+
 //----------------------------------------------------------------------------
 //  Appender/AppenderSkeleton overrides
 //----------------------------------------------------------------------------
@@ -391,6 +733,35 @@ extends AppenderSkeleton
     }
 
 
+    /**
+     *  Replaces the synchronized superclass implementation. This performs the same
+     *  checks, in the same order, before calling {@link #append}.
+     */
+    @Override
+    public void doAppend(LoggingEvent event)
+    {
+        if (super.closed)
+        {
+            LogLog.error("Attempted to append to closed appender named [" + name + "].");
+            return;
+        }
+
+        if (! isAsSevereAsThreshold(event.getLevel()))
+            return;
+
+        for (Filter filter = getFilter() ; filter != null ; filter = filter.getNext())
+        {
+            int decision = filter.decide(event);
+            if (decision == Filter.DENY)
+                return;
+            if (decision == Filter.ACCEPT)
+                break;
+        }
+
+        append(event);
+    }
+
+
     @Override
     protected void append(LoggingEvent event)
     {
@@ -404,20 +775,45 @@ extends AppenderSkeleton
             initialize();
         }
 
-        LogMessage logMessage;
+        // the writer may be cleared by another thread (eg, after an uncaught exception),
+        // so we read it once; problems are reported, but never thrown to the caller
+        LogWriter currentWriter = writer;
         try
         {
-            logMessage = Utils.convertToLogMessage(event, getLayout());
-        }
-        catch (Exception ex)
-        {
-            internalLogger.error("unable to apply layout", ex);
-            return;
-        }
+            if (currentWriter == null)
+            {
+                internalLogger.error("unable to append event: writer is not running", null);
+                return;
+            }
 
-        try
-        {
-            internalAppend(logMessage);
+            // if the writer would discard this message, don't waste time formatting it
+            if (currentWriter.discardIfFull())
+            {
+                return;
+            }
+
+            Layout currentLayout = getLayout();
+            Severity severity = Utils.toSeverity(event.getLevel());
+            LogMessage logMessage;
+            if (appenderConfig.getDeferLayout())
+            {
+                prepareForDeferredLayout(event);
+                logMessage = new LogMessage(event.getTimeStamp(), severity, () -> applyLayout(event, currentLayout));
+            }
+            else
+            {
+                try
+                {
+                    logMessage = new LogMessage(event.getTimeStamp(), severity, applyLayout(event, currentLayout));
+                }
+                catch (Exception ex)
+                {
+                    internalLogger.error("unable to apply layout", ex);
+                    return;
+                }
+            }
+
+            internalAppend(currentWriter, logMessage);
         }
         catch (Exception ex)
         {
@@ -486,6 +882,56 @@ extends AppenderSkeleton
     }
 
 
+    /**
+     *  Determines whether the layout may be called concurrently. This is true for the
+     *  library's <code>JsonLayout</code> and for Log4J's <code>EnhancedPatternLayout</code>;
+     *  all other layouts are assumed to be unsafe.
+     *  <p>
+     *  Note: this method is protected so that subclasses can recognize other layouts.
+     */
+    protected boolean isLayoutThreadSafe(Layout layout)
+    {
+        return (layout instanceof JsonLayout)
+            || (layout instanceof EnhancedPatternLayout);
+    }
+
+
+    /**
+     *  Formats the event, synchronizing on the layout if it's not thread-safe. This
+     *  is called either by {@link #append} or, if layout is deferred, by the writer
+     *  thread.
+     */
+    private String applyLayout(LoggingEvent event, Layout currentLayout)
+    {
+        if (isLayoutThreadSafe(currentLayout))
+        {
+            return Utils.formatEvent(event, currentLayout);
+        }
+
+        synchronized (currentLayout)
+        {
+            return Utils.formatEvent(event, currentLayout);
+        }
+    }
+
+
+    /**
+     *  Captures the parts of the event that depend on the calling thread, or that
+     *  may change after the call (such as the message object). The event caches
+     *  these values, so that the layout will see them when run on the writer thread.
+     *  This is the same approach used by Log4J's <code>AsyncAppender</code>; as with
+     *  that appender, location information is not captured.
+     */
+    private static void prepareForDeferredLayout(LoggingEvent event)
+    {
+        event.getNDC();
+        event.getThreadName();
+        event.getMDCCopy();
+        event.getRenderedMessage();
+        event.getThrowableStrRep();
+    }
+
+
     /**
      *  Called by {@link #initialize} to start to a new writer. Does not
      *  shut down the old writer, if any.
@@ -512,7 +958,7 @@ extends AppenderSkeleton
 
                 if (layout.getHeader() != null)
                 {
-                    internalAppend(new LogMessage(System.currentTimeMillis(), layout.getHeader()));
+                    internalAppend(writer, new LogMessage(System.currentTimeMillis(), layout.getHeader()));
                 }
             }
             catch (Exception ex)
@@ -537,7 +983,7 @@ extends AppenderSkeleton
 
                 if (layout.getFooter() != null)
                 {
-                    internalAppend(new LogMessage(System.currentTimeMillis(), layout.getFooter()));
+                    internalAppend(writer, new LogMessage(System.currentTimeMillis(), layout.getFooter()));
                 }
 
                 writer.stop();
@@ -579,7 +1025,7 @@ extends AppenderSkeleton
     }
 
 
-    private void internalAppend(LogMessage message)
+    private void internalAppend(LogWriter currentWriter, LogMessage message)
     {
         if (message == null)
         {
@@ -587,6 +1033,6 @@ extends AppenderSkeleton
             return;
         }
 
-        writer.addMessage(message);
+        currentWriter.addMessage(message);
     }
 }
@@ -18,9 +18,11 @@ import java.io.IOException;
 import java.io.StringWriter;
 
 import org.apache.log4j.Layout;
+import org.apache.log4j.Level;
 import org.apache.log4j.spi.LoggingEvent;
 
 import com.kdgregory.logging.common.LogMessage;
+import com.kdgregory.logging.common.LogMessage.Severity;
 
 
 /**
@@ -34,6 +36,31 @@ public class Utils
      *  @throws RuntimeException if any error occurred during formatting or conversion.
      */
     public static LogMessage convertToLogMessage(LoggingEvent event, Layout layout)
+    {
+        return new LogMessage(event.getTimeStamp(), toSeverity(event.getLevel()), formatEvent(event, layout));
+    }
+
+
+    /**
+     *  Maps a Log4J level to a message severity.
+     */
+    public static Severity toSeverity(Level level)
+    {
+        int value = (level != null) ? level.toInt() : Level.INFO_INT;
+        return (value >= Level.ERROR_INT)   ? Severity.ERROR
+             : (value >= Level.WARN_INT)    ? Severity.WARN
+             : (value >= Level.INFO_INT)    ? Severity.INFO
+             :                                Severity.DEBUG;
+    }
+
+
+    /**
+     *  Applies a layout to a Log4J loggingEvent, appending the stack trace if the
+     *  layout ignores throwables.
+     *
+     *  @throws RuntimeException if any error occurred during formatting.
+     */
+    public static String formatEvent(LoggingEvent event, Layout layout)
     {
         try
         {
@@ -49,7 +76,7 @@ public class Utils
             }
             out.close();
 
-            return new LogMessage(event.getTimeStamp(), out.toString());
+            return out.toString();
         }
         catch (IOException ex)
         {
@@ -22,6 +22,7 @@ import static org.junit.Assert.*;
 import static net.sf.kdgcommons.test.StringAsserts.*;
 
 import org.apache.log4j.LogManager;
+import org.apache.log4j.MDC;
 import org.apache.log4j.helpers.LogLog;
 
 import com.kdgregory.log4j.testhelpers.HeaderFooterLayout;
@@ -29,6 +30,7 @@ import com.kdgregory.log4j.testhelpers.cloudwatch.TestableCloudWatchAppender;
 import com.kdgregory.logging.aws.cloudwatch.CloudWatchWriterStatistics;
 import com.kdgregory.logging.aws.cloudwatch.CloudWatchWriterConfig;
 import com.kdgregory.logging.common.LogMessage;
+import com.kdgregory.logging.common.LogMessage.Severity;
 import com.kdgregory.logging.common.util.DefaultThreadFactory;
 import com.kdgregory.logging.common.util.MessageQueue.DiscardAction;
 import com.kdgregory.logging.testhelpers.TestingException;
@@ -226,6 +228,90 @@ extends AbstractUnitTest<TestableCloudWatchAppender>
     }
 
 
+    @Test
+    public void testDiscardBeforeFormat() throws Exception
+    {
+        // this configuration uses a layout that throws, so we'll know if it's called
+        initialize("testExceptionInLayout");
+
+        // first message is needed to create the writer
+        logger.debug("this should trigger throwage");
+
+        MockCloudWatchWriter writer = appender.getMockWriter();
+        writer.queueFull = true;
+
+        logger.debug("this should be discarded without throwage");
+
+        assertEquals("no messages sent to writer",              0,  writer.messages.size());
+        assertEquals("discarded before formatting",             1,  writer.discardedBeforeFormatCount);
+
+        appenderInternalLogger.assertErrorLog("unable to apply layout");
+    }
+
+
+    @Test
+    public void testSeverity() throws Exception
+    {
+        initialize("testLifecycle");
+
+        logger.debug("one");
+        logger.info("two");
+        logger.warn("three");
+        logger.error("four");
+        logger.fatal("five");
+
+        MockCloudWatchWriter writer = appender.getMockWriter();
+
+        assertEquals("debug",                   Severity.DEBUG,     writer.messages.get(0).getSeverity());
+        assertEquals("info",                    Severity.INFO,      writer.messages.get(1).getSeverity());
+        assertEquals("warn",                    Severity.WARN,      writer.messages.get(2).getSeverity());
+        assertEquals("error",                   Severity.ERROR,     writer.messages.get(3).getSeverity());
+        assertEquals("fatal",                   Severity.ERROR,     writer.messages.get(4).getSeverity());
+    }
+
+
+    @Test
+    public void testFlush() throws Exception
+    {
+        initialize("testLifecycle");
+
+        logger.info("message");
+
+        MockCloudWatchWriter writer = appender.getMockWriter();
+
+        assertTrue("flush succeeded",                               appender.flush(1000));
+        assertEquals("writer flush invoked",                        1,                          writer.flushInvocationCount);
+    }
+
+
+    @Test
+    public void testDeferLayout() throws Exception
+    {
+        initialize("testDeferLayout");
+
+        assertTrue("deferLayout configured",                        appender.getDeferLayout());
+
+        MDC.put("foo", "bar");
+        logger.debug("this is a test");
+        MDC.remove("foo");
+
+        MockCloudWatchWriter writer = appender.getMockWriter();
+        LogMessage message = writer.messages.get(0);
+
+        assertTrue("message was passed to writer unformatted",                  message.isDeferred());
+        assertEquals("unformatted message size",                    0,          message.size());
+
+        String callerThreadName = Thread.currentThread().getName();
+        Thread formatThread = new Thread(message::format);
+        formatThread.start();
+        formatThread.join();
+
+        assertFalse("message no longer deferred",                               message.isDeferred());
+        assertEquals("message formatted from snapshot",             "bar " + callerThreadName + " this is a test",
+                                                                                message.getMessage());
+    }
+
+
     @Test
     public void testUncaughtExceptionHandling() throws Exception
     {
@@ -259,6 +345,37 @@ extends AbstractUnitTest<TestableCloudWatchAppender>
     }
 
 
+    @Test
+    public void testAppendAfterWriterCleared() throws Exception
+    {
+        initialize("testAppendAfterWriterCleared");
+
+        appender.setThreadFactory(new DefaultThreadFactory("test"));
+        appender.setWriterFactory(new ThrowingWriterFactory<CloudWatchWriterConfig,CloudWatchWriterStatistics>());
+
+        CloudWatchWriterStatistics appenderStats = appender.getAppenderStatistics();
+
+        logger.debug("this should trigger writer creation");
+        logger.debug("this should trigger writer throwage");
+
+        // spin-wait for writer to be cleared by uncaught exception handler
+        for (int ii = 0 ; (ii < 10) && (appenderStats.getLastError() == null) ; ii++)
+        {
+            Thread.sleep(10);
+        }
+
+        assertNull("writer has been reset",                     appender.getWriter());
+
+        // this must not throw, even though there's no writer
+        logger.debug("this message has no writer");
+
+        appenderInternalLogger.assertDebugLog();
+        appenderInternalLogger.assertErrorLog("unhandled exception in writer",
+                                              "unable to append event: writer is not running");
+        appenderInternalLogger.assertErrorThrowables(TestingException.class, null);
+    }
+
+
     @Test
     public void testReconfigureDiscardProperties() throws Exception
     {
@@ -305,6 +422,49 @@ extends AbstractUnitTest<TestableCloudWatchAppender>
     }
 
 
+    @Test
+    public void testThresholdAndFilters() throws Exception
+    {
+        initialize("testThresholdAndFilters");
+
+        logger.debug("below threshold");
+        logger.info("argle");
+        logger.info("bazzle");
+        logger.warn("argle bargle");
+        logger.error("wazzle");
+
+        MockCloudWatchWriter writer = appender.getMockWriter();
+        assertEquals("number of messages written",  2,              writer.messages.size());
+        assertEquals("first message",               "bazzle",       writer.getMessage(0));
+        assertEquals("second message",              "wazzle",       writer.getMessage(1));
+    }
+
+
+    @Test
+    public void testUnsynchronizedAppend() throws Exception
+    {
+        initialize("testLifecycle");
+
+        // initializes writer
+        logger.debug("first message");
+        MockCloudWatchWriter writer = appender.getMockWriter();
+
+        // AppenderSkeleton synchronizes on the appender instance; if we still did, the
+        // logging thread would block until we release the lock
+
+        Thread loggingThread = new Thread(() -> logger.debug("second message"));
+        synchronized (appender)
+        {
+            loggingThread.start();
+            loggingThread.join(1000);
+            assertFalse("logging thread completed while appender locked",   loggingThread.isAlive());
+        }
+
+        assertEquals("number of messages written",  2,              writer.messages.size());
+        assertRegex("second message",               ".*second message", writer.getMessage(1));
+    }
+
+
     @Test
     public void testManyThreads() throws Exception
     {
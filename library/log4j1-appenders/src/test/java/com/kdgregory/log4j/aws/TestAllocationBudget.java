@@ -0,0 +1,117 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.kdgregory.log4j.aws;
+
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import org.junit.Assume;
+
+import org.apache.log4j.Level;
+import org.apache.log4j.spi.LoggingEvent;
+
+import com.kdgregory.log4j.testhelpers.cloudwatch.TestableCloudWatchAppender;
+import com.kdgregory.logging.testhelpers.AllocationMeter;
+import com.kdgregory.logging.testhelpers.cloudwatch.MockCloudWatchWriter;
+
+
+/**
+ *  Verifies that the number of bytes allocated per <code>append()</code> stays
+ *  within a fixed budget. Events are created before measurement, so the budget
+ *  covers only the appender and layout.
+ *  <p>
+ *  Budgets are set with headroom over the values measured on JDK 8; if a change
+ *  has a good reason to allocate more, raise the budget as part of that change.
+ */
+public class TestAllocationBudget
+extends AbstractUnitTest<TestableCloudWatchAppender>
+{
+    // bytes per event
+    private final static long JSON_LAYOUT_BUDGET = 11000;
+
+    // each round appends this many events; we take the best round, after JIT warmup
+    private final static int NUM_EVENTS = 10000;
+    private final static int NUM_ROUNDS = 10;
+
+    private final static String MESSAGE = "this is a test message, of typical length for an application log; value = 12345";
+
+
+    public TestAllocationBudget()
+    {
+        super("TestAllocationBudget/", "test");
+    }
+
+//----------------------------------------------------------------------------
+//  Support code
+//----------------------------------------------------------------------------
+
+    /**
+     *  Appends rounds of events, and returns the lowest per-event allocation.
+     */
+    private long measureBytesPerEvent()
+    {
+        // the first message initializes the writer
+        logger.debug(MESSAGE);
+        MockCloudWatchWriter writer = appender.getMockWriter();
+
+        long result = Long.MAX_VALUE;
+        for (int round = 0 ; round < NUM_ROUNDS ; round++)
+        {
+            final LoggingEvent[] events = new LoggingEvent[NUM_EVENTS];
+            for (int ii = 0 ; ii < events.length ; ii++)
+            {
+                events[ii] = new LoggingEvent(getClass().getName(), logger, Level.DEBUG, MESSAGE, null);
+            }
+
+            // the mock writer retains messages; clearing it keeps the list's capacity
+            writer.messages.clear();
+
+            long bytes = AllocationMeter.allocatedBytes(() ->
+            {
+                for (LoggingEvent event : events)
+                {
+                    appender.doAppend(event);
+                }
+            });
+
+            assertEquals("round " + round + ", messages written", NUM_EVENTS, writer.messages.size());
+            result = Math.min(result, bytes / NUM_EVENTS);
+        }
+        return result;
+    }
+
+//----------------------------------------------------------------------------
+//  Testcases
+//----------------------------------------------------------------------------
+
+    @Before
+    public void setUp()
+    {
+        Assume.assumeTrue(AllocationMeter.isSupported());
+    }
+
+
+    @Test
+    public void testJsonLayout() throws Exception
+    {
+        initialize("testJsonLayout");
+
+        long bytesPerEvent = measureBytesPerEvent();
+        assertTrue("JsonLayout allocated " + bytesPerEvent + " bytes per event; budget is " + JSON_LAYOUT_BUDGET,
+                   bytesPerEvent <= JSON_LAYOUT_BUDGET);
+    }
+}
@@ -0,0 +1,137 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.kdgregory.log4j.aws;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+import org.apache.log4j.LogManager;
+import org.apache.log4j.helpers.LogLog;
+
+import com.kdgregory.log4j.testhelpers.s3.TestableS3Appender;
+import com.kdgregory.logging.common.util.MessageQueue.DiscardAction;
+import com.kdgregory.logging.testhelpers.s3.MockS3Writer;
+
+
+/**
+ *  These tests exercise appender logic specific to S3Appender, using a
+ *  mock log-writer.
+ */
+public class TestS3Appender
+extends AbstractUnitTest<TestableS3Appender>
+{
+    public TestS3Appender()
+    {
+        super("TestS3Appender/", "test");
+    }
+
+
+    @Before
+    public void setUp()
+    {
+        LogManager.resetConfiguration();
+        LogLog.setQuietMode(true);
+    }
+
+
+    @After
+    public void tearDown()
+    {
+        appender.close();
+        LogLog.setQuietMode(false);
+    }
+
+//----------------------------------------------------------------------------
+//  Tests
+//----------------------------------------------------------------------------
+
+    @Test
+    public void testConfiguration() throws Exception
+    {
+        initialize("testConfiguration");
+
+        assertEquals("bucket name",             "argle-{bargle}",                   appender.getBucketName());
+        assertEquals("key template",            "logs/{date}/{sequence}.gz",        appender.getKeyTemplate());
+        assertEquals("rollover size",           1048576L,                           appender.getRolloverSize());
+        assertEquals("rollover interval",       60000L,                             appender.getRolloverInterval());
+        assertEquals("batch delay",             1234L,                              appender.getBatchDelay());
+        assertFalse("truncate oversize messages",                                   appender.getTruncateOversizeMessages());
+        assertEquals("discard threshold",       54321,                              appender.getDiscardThreshold());
+        assertEquals("discard action",          "newest",                           appender.getDiscardAction());
+        assertFalse("synchronous mode",                                             appender.getSynchronous());
+        assertFalse("use shutdown hook",                                            appender.getUseShutdownHook());
+        assertEquals("assumed role",            "AssumableRole",                    appender.getAssumedRole());
+        assertEquals("client factory",          "com.example.Foo.bar",              appender.getClientFactory());
+        assertEquals("client region",           "us-west-1",                        appender.getClientRegion());
+        assertEquals("client endpoint",         "s3.us-west-2.amazonaws.com",       appender.getClientEndpoint());
+        assertEquals("initialization timeout",  30000,                              appender.getInitializationTimeout());
+        assertEquals("enable batch logging",    true,                               appender.getEnableBatchLogging());
+    }
+
+
+    @Test
+    public void testDefaultConfiguration() throws Exception
+    {
+        initialize("testDefaultConfiguration");
+
+        // don't test bucket name because there's no default
+        assertEquals("key template",            "{date}/{hostname}/{startupTimestamp}-{pid}-{sequence}.ndjson.gz",
+                                                                                    appender.getKeyTemplate());
+        assertEquals("rollover size",           67108864L,                          appender.getRolloverSize());
+        assertEquals("rollover interval",       300000L,                            appender.getRolloverInterval());
+        assertTrue("truncate oversize messages",                                    appender.getTruncateOversizeMessages());
+        assertEquals("batch delay",             2000L,                              appender.getBatchDelay());
+        assertEquals("discard threshold",       10000,                              appender.getDiscardThreshold());
+        assertEquals("discard action",          "oldest",                           appender.getDiscardAction());
+        assertFalse("synchronous mode",                                             appender.getSynchronous());
+        assertTrue("use shutdown hook",                                             appender.getUseShutdownHook());
+        assertEquals("assumed role",            null,                               appender.getAssumedRole());
+        assertEquals("client factory",          null,                               appender.getClientFactory());
+        assertEquals("client region",           null,                               appender.getClientRegion());
+        assertEquals("client endpoint",         null,                               appender.getClientEndpoint());
+        assertEquals("initialization timeout",  60000,                              appender.getInitializationTimeout());
+        assertEquals("enable batch logging",    false,                              appender.getEnableBatchLogging());
+    }
+
+
+    @Test
+    public void testWriterInitialization() throws Exception
+    {
+        // property has to be set before initialization
+        System.setProperty("TestS3Appender.testWriterInitialization", "example");
+
+        initialize("testWriterInitialization");
+
+        assertEquals("configured bucket name",      "my-bucket-{sysprop:TestS3Appender.testWriterInitialization}", appender.getBucketName());
+
+        logger.debug("this triggers writer creation");
+
+        MockS3Writer writer = appender.getMockWriter();
+
+        assertEquals("writer bucket name",              "my-bucket-example",                writer.config.getBucketName());
+        assertEquals("writer key template",             "{date}/{sequence}.gz",             writer.config.getKeyTemplate());
+        assertEquals("writer rollover size",            1048576L,                           writer.config.getRolloverSize());
+        assertEquals("writer rollover interval",        60000L,                             writer.config.getRolloverInterval());
+        assertEquals("writer batch delay",              1234L,                              writer.config.getBatchDelay());
+        assertEquals("writer discard threshold",        54321,                              writer.config.getDiscardThreshold());
+        assertEquals("writer discard action",           DiscardAction.newest,               writer.config.getDiscardAction());
+        assertEquals("writer client factory method",    "com.example.Foo.bar",              writer.config.getClientFactoryMethod());
+        assertEquals("writer client endpoint",          "s3.us-west-1.amazonaws.com",       writer.config.getClientEndpoint());
+    }
+}
@@ -0,0 +1,130 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.kdgregory.log4j.aws;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+import org.apache.log4j.LogManager;
+import org.apache.log4j.helpers.LogLog;
+
+import com.kdgregory.log4j.testhelpers.sqs.TestableSQSAppender;
+import com.kdgregory.logging.common.util.MessageQueue.DiscardAction;
+import com.kdgregory.logging.testhelpers.sqs.MockSQSWriter;
+
+
+/**
+ *  These tests exercise appender logic specific to SQSAppender, using a
+ *  mock log-writer.
+ */
+public class TestSQSAppender
+extends AbstractUnitTest<TestableSQSAppender>
+{
+    public TestSQSAppender()
+    {
+        super("TestSQSAppender/", "test");
+    }
+
+
+    @Before
+    public void setUp()
+    {
+        LogManager.resetConfiguration();
+        LogLog.setQuietMode(true);
+    }
+
+
+    @After
+    public void tearDown()
+    {
+        appender.close();
+        LogLog.setQuietMode(false);
+    }
+
+//----------------------------------------------------------------------------
+//  Tests
+//----------------------------------------------------------------------------
+
+    @Test
+    public void testConfiguration() throws Exception
+    {
+        initialize("testConfiguration");
+
+        assertEquals("queue name",              "argle-{bargle}",                   appender.getQueueName());
+        assertEquals("concurrent requests",     8,                                  appender.getConcurrentRequests());
+        assertEquals("batch delay",             1234L,                              appender.getBatchDelay());
+        assertFalse("truncate oversize messages",                                   appender.getTruncateOversizeMessages());
+        assertEquals("discard threshold",       54321,                              appender.getDiscardThreshold());
+        assertEquals("discard action",          "newest",                           appender.getDiscardAction());
+        assertFalse("synchronous mode",                                             appender.getSynchronous());
+        assertFalse("use shutdown hook",                                            appender.getUseShutdownHook());
+        assertEquals("assumed role",            "AssumableRole",                    appender.getAssumedRole());
+        assertEquals("client factory",          "com.example.Foo.bar",              appender.getClientFactory());
+        assertEquals("client region",           "us-west-1",                        appender.getClientRegion());
+        assertEquals("client endpoint",         "sqs.us-west-2.amazonaws.com",      appender.getClientEndpoint());
+        assertEquals("initialization timeout",  30000,                              appender.getInitializationTimeout());
+        assertEquals("enable batch logging",    true,                               appender.getEnableBatchLogging());
+    }
+
+
+    @Test
+    public void testDefaultConfiguration() throws Exception
+    {
+        initialize("testDefaultConfiguration");
+
+        // don't test queue name because there's no default
+        assertEquals("concurrent requests",     4,                                  appender.getConcurrentRequests());
+        assertTrue("truncate oversize messages",                                    appender.getTruncateOversizeMessages());
+        assertEquals("batch delay",             2000L,                              appender.getBatchDelay());
+        assertEquals("discard threshold",       10000,                              appender.getDiscardThreshold());
+        assertEquals("discard action",          "oldest",                           appender.getDiscardAction());
+        assertFalse("synchronous mode",                                             appender.getSynchronous());
+        assertTrue("use shutdown hook",                                             appender.getUseShutdownHook());
+        assertEquals("assumed role",            null,                               appender.getAssumedRole());
+        assertEquals("client factory",          null,                               appender.getClientFactory());
+        assertEquals("client region",           null,                               appender.getClientRegion());
+        assertEquals("client endpoint",         null,                               appender.getClientEndpoint());
+        assertEquals("initialization timeout",  60000,                              appender.getInitializationTimeout());
+        assertEquals("enable batch logging",    false,                              appender.getEnableBatchLogging());
+    }
+
+
+    @Test
+    public void testWriterInitialization() throws Exception
+    {
+        // property has to be set before initialization
+        System.setProperty("TestSQSAppender.testWriterInitialization", "example");
+
+        initialize("testWriterInitialization");
+
+        assertEquals("configured queue name",       "MyQueue-{sysprop:TestSQSAppender.testWriterInitialization}", appender.getQueueName());
+
+        logger.debug("this triggers writer creation");
+
+        MockSQSWriter writer = appender.getMockWriter();
+
+        assertEquals("writer queue name",               "MyQueue-example",                  writer.config.getQueueName());
+        assertEquals("writer concurrent requests",      8,                                  writer.config.getConcurrentRequests());
+        assertEquals("writer batch delay",              1234L,                              writer.config.getBatchDelay());
+        assertEquals("writer discard threshold",        54321,                              writer.config.getDiscardThreshold());
+        assertEquals("writer discard action",           DiscardAction.newest,               writer.config.getDiscardAction());
+        assertEquals("writer client factory method",    "com.example.Foo.bar",              writer.config.getClientFactoryMethod());
+        assertEquals("writer client endpoint",          "sqs.us-west-1.amazonaws.com",      writer.config.getClientEndpoint());
+    }
+}
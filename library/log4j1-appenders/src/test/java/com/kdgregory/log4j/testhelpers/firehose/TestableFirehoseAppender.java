@@ -0,0 +1,79 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.kdgregory.log4j.testhelpers.firehose;
+
+import com.kdgregory.log4j.aws.FirehoseAppender;
+import com.kdgregory.log4j.testhelpers.TestableLog4JInternalLogger;
+import com.kdgregory.logging.aws.firehose.FirehoseWriterStatistics;
+import com.kdgregory.logging.aws.firehose.FirehoseWriterConfig;
+import com.kdgregory.logging.common.LogWriter;
+import com.kdgregory.logging.common.util.ThreadFactory;
+import com.kdgregory.logging.common.util.WriterFactory;
+import com.kdgregory.logging.testhelpers.InlineThreadFactory;
+import com.kdgregory.logging.testhelpers.firehose.MockFirehoseWriter;
+import com.kdgregory.logging.testhelpers.firehose.MockFirehoseWriterFactory;
+
+
+/**
+ *  This class provides visibility into the protected variables held by
+ *  FirehoseAppender and AbstractAppender. It also updates the factories
+ *  so that we don't get a real writer.
+ */
+public class TestableFirehoseAppender
+extends FirehoseAppender
+{
+    public TestableFirehoseAppender()
+    {
+        super();
+        setThreadFactory(new InlineThreadFactory());
+        setWriterFactory(new MockFirehoseWriterFactory());
+        internalLogger = new TestableLog4JInternalLogger("");
+    }
+
+    public void setThreadFactory(ThreadFactory threadFactory)
+    {
+        this.threadFactory = threadFactory;
+    }
+
+
+    public void setWriterFactory(WriterFactory<FirehoseWriterConfig, FirehoseWriterStatistics> writerFactory)
+    {
+        this.writerFactory = writerFactory;
+    }
+
+
+    public MockFirehoseWriterFactory getWriterFactory()
+    {
+        return (MockFirehoseWriterFactory)writerFactory;
+    }
+
+
+    public LogWriter getWriter()
+    {
+        return writer;
+    }
+
+
+    public MockFirehoseWriter getMockWriter()
+    {
+        return (MockFirehoseWriter)writer;
+    }
+
+
+    public TestableLog4JInternalLogger getInternalLogger()
+    {
+        return (TestableLog4JInternalLogger)internalLogger;
+    }
+}
@@ -0,0 +1,79 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.kdgregory.log4j.testhelpers.s3;
+
+import com.kdgregory.log4j.aws.S3Appender;
+import com.kdgregory.log4j.testhelpers.TestableLog4JInternalLogger;
+import com.kdgregory.logging.aws.s3.S3WriterStatistics;
+import com.kdgregory.logging.aws.s3.S3WriterConfig;
+import com.kdgregory.logging.common.LogWriter;
+import com.kdgregory.logging.common.util.ThreadFactory;
+import com.kdgregory.logging.common.util.WriterFactory;
+import com.kdgregory.logging.testhelpers.InlineThreadFactory;
+import com.kdgregory.logging.testhelpers.s3.MockS3Writer;
+import com.kdgregory.logging.testhelpers.s3.MockS3WriterFactory;
+
+
+/**
+ *  This class provides visibility into the protected variables held by
+ *  S3Appender and AbstractAppender. It also updates the factories
+ *  so that we don't get a real writer.
+ */
+public class TestableS3Appender
+extends S3Appender
+{
+    public TestableS3Appender()
+    {
+        super();
+        setThreadFactory(new InlineThreadFactory());
+        setWriterFactory(new MockS3WriterFactory());
+        internalLogger = new TestableLog4JInternalLogger("");
+    }
+
+    public void setThreadFactory(ThreadFactory threadFactory)
+    {
+        this.threadFactory = threadFactory;
+    }
+
+
+    public void setWriterFactory(WriterFactory<S3WriterConfig, S3WriterStatistics> writerFactory)
+    {
+        this.writerFactory = writerFactory;
+    }
+
+
+    public MockS3WriterFactory getWriterFactory()
+    {
+        return (MockS3WriterFactory)writerFactory;
+    }
+
+
+    public LogWriter getWriter()
+    {
+        return writer;
+    }
+
+
+    public MockS3Writer getMockWriter()
+    {
+        return (MockS3Writer)writer;
+    }
+
+
+    public TestableLog4JInternalLogger getInternalLogger()
+    {
+        return (TestableLog4JInternalLogger)internalLogger;
+    }
+}
@@ -0,0 +1,79 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.kdgregory.log4j.testhelpers.sqs;
+
+import com.kdgregory.log4j.aws.SQSAppender;
+import com.kdgregory.log4j.testhelpers.TestableLog4JInternalLogger;
+import com.kdgregory.logging.aws.sqs.SQSWriterStatistics;
+import com.kdgregory.logging.aws.sqs.SQSWriterConfig;
+import com.kdgregory.logging.common.LogWriter;
+import com.kdgregory.logging.common.util.ThreadFactory;
+import com.kdgregory.logging.common.util.WriterFactory;
+import com.kdgregory.logging.testhelpers.InlineThreadFactory;
+import com.kdgregory.logging.testhelpers.sqs.MockSQSWriter;
+import com.kdgregory.logging.testhelpers.sqs.MockSQSWriterFactory;
+
+
+/**
+ *  This class provides visibility into the protected variables held by
+ *  SQSAppender and AbstractAppender. It also updates the factories
+ *  so that we don't get a real writer.
+ */
+public class TestableSQSAppender
+extends SQSAppender
+{
+    public TestableSQSAppender()
+    {
+        super();
+        setThreadFactory(new InlineThreadFactory());
+        setWriterFactory(new MockSQSWriterFactory());
+        internalLogger = new TestableLog4JInternalLogger("");
+    }
+
+    public void setThreadFactory(ThreadFactory threadFactory)
+    {
+        this.threadFactory = threadFactory;
+    }
+
+
+    public void setWriterFactory(WriterFactory<SQSWriterConfig, SQSWriterStatistics> writerFactory)
+    {
+        this.writerFactory = writerFactory;
+    }
+
+
+    public MockSQSWriterFactory getWriterFactory()
+    {
+        return (MockSQSWriterFactory)writerFactory;
+    }
+
+
+    public LogWriter getWriter()
+    {
+        return writer;
+    }
+
+
+    public MockSQSWriter getMockWriter()
+    {
+        return (MockSQSWriter)writer;
+    }
+
+
+    public TestableLog4JInternalLogger getInternalLogger()
+    {
+        return (TestableLog4JInternalLogger)internalLogger;
+    }
+}
@@ -81,6 +81,26 @@ import com.kdgregory.logging.common.util.InternalLogger;
  *           writing to the same stream, set this to false.
  *
  *  <tr VALIGN="top">
+ *      <th> optimisticMode
+ *      <td> If true, the writer does not check for the existence of the log group
+ *           and stream at startup; it sends messages immediately, and creates the
+ *           group and/or stream if CloudWatch reports them missing. This avoids
+ *           describe calls (and the throttling that they may cause) when many
+ *           processes start at once. Default is false.
+ *
+ *  <tr VALIGN="top">
+ *      <th> existenceCacheTtl
+ *      <td> If greater than zero, log groups and streams that are known to exist are
+ *           remembered for this many milliseconds, and not described again by any
+ *           writer in the process. Default is 0, which disables the cache.
+ *
+ *  <tr VALIGN="top">
+ *      <th> existenceCacheFile
+ *      <td> If set, the existence cache is persisted to this file, so that it can be
+ *           shared between processes (and survive restarts). Ignored if the cache is
+ *           disabled.
+ *
+ *  <tr VALIGN="top">
  *      <th> synchronous
  *      <td> If true, the appender will operate in synchronous mode: calls to
  *           append() execute on the caller's thread, and will not return until
@@ -316,6 +336,72 @@ extends AbstractAppender
         }
 
 
+        @PluginBuilderAttribute("optimisticMode")
+        private boolean optimisticMode = CloudWatchWriterConfig.DEFAULT_OPTIMISTIC_MODE;
+
+        /**
+         *  Sets the <code>optimisticMode</code> configuration property.
+         */
+        public CloudWatchAppenderBuilder setOptimisticMode(boolean value)
+        {
+            this.optimisticMode = value;
+            return this;
+        }
+
+        /**
+         *  Returns the <code>optimisticMode</code> configuration property.
+         */
+        @Override
+        public boolean isOptimisticMode()
+        {
+            return optimisticMode;
+        }
+
+
+        @PluginBuilderAttribute("existenceCacheTtl")
+        private long existenceCacheTtl = CloudWatchWriterConfig.DEFAULT_EXISTENCE_CACHE_TTL;
+
+        /**
+         *  Sets the <code>existenceCacheTtl</code> configuration property.
+         */
+        public CloudWatchAppenderBuilder setExistenceCacheTtl(long value)
+        {
+            this.existenceCacheTtl = value;
+            return this;
+        }
+
+        /**
+         *  Returns the <code>existenceCacheTtl</code> configuration property.
+         */
+        @Override
+        public long getExistenceCacheTtl()
+        {
+            return existenceCacheTtl;
+        }
+
+
+        @PluginBuilderAttribute("existenceCacheFile")
+        private String existenceCacheFile = CloudWatchWriterConfig.DEFAULT_EXISTENCE_CACHE_FILE;
+
+        /**
+         *  Sets the <code>existenceCacheFile</code> configuration property.
+         */
+        public CloudWatchAppenderBuilder setExistenceCacheFile(String value)
+        {
+            this.existenceCacheFile = value;
+            return this;
+        }
+
+        /**
+         *  Returns the <code>existenceCacheFile</code> configuration property.
+         */
+        @Override
+        public String getExistenceCacheFile()
+        {
+            return existenceCacheFile;
+        }
+
+
         @Override
         public CloudWatchAppender build()
         {
@@ -371,6 +457,9 @@ extends AbstractAppender
                .setLogGroupName(actualLogGroup)
                .setLogStreamName(actualLogStream)
                .setRetentionPeriod(retentionPeriod)
-               .setDedicatedWriter(appenderConfig.isDedicatedWriter());
+               .setDedicatedWriter(appenderConfig.isDedicatedWriter())
+               .setOptimisticMode(appenderConfig.isOptimisticMode())
+               .setExistenceCacheTtl(appenderConfig.getExistenceCacheTtl())
+               .setExistenceCacheFile(appenderConfig.getExistenceCacheFile());
     }
 }
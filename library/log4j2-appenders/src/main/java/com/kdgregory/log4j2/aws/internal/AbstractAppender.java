@@ -19,13 +19,16 @@ import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.util.concurrent.TimeUnit;
 
+import org.apache.logging.log4j.Level;
 import org.apache.logging.log4j.core.Layout;
 import org.apache.logging.log4j.core.LogEvent;
 import org.apache.logging.log4j.core.StringLayout;
+import org.apache.logging.log4j.core.impl.Log4jLogEvent;
 
 import com.kdgregory.logging.aws.internal.AbstractWriterConfig;
 import com.kdgregory.logging.aws.internal.AbstractWriterStatistics;
 import com.kdgregory.logging.common.LogMessage;
+import com.kdgregory.logging.common.LogMessage.Severity;
 import com.kdgregory.logging.common.LogWriter;
 import com.kdgregory.logging.common.util.InternalLogger;
 import com.kdgregory.logging.common.util.MessageQueue.DiscardAction;
@@ -87,6 +90,9 @@ extends org.apache.logging.log4j.core.appender.AbstractAppender
     // approach to configuration
     protected DiscardAction discardAction;
 
+    // also converted from string during construction
+    protected DiscardAction blockFallbackAction;
+
     // the current writer
     protected volatile LogWriter writer;
 
@@ -117,6 +123,13 @@ extends org.apache.logging.log4j.core.appender.AbstractAppender
             discardAction = DiscardAction.oldest;
         }
 
+        blockFallbackAction = DiscardAction.lookup(config.getBlockFallbackAction());
+        if ((blockFallbackAction == null) || (blockFallbackAction == DiscardAction.block))
+        {
+            internalLogger.error("invalid block fallback action: " + config.getBlockFallbackAction(), null);
+            blockFallbackAction = AbstractWriterConfig.DEFAULT_BLOCK_FALLBACK_ACTION;
+        }
+
         Layout<?> layout = config.getLayout();
         if (layout instanceof StringLayout)
         {
@@ -145,6 +158,21 @@ extends org.apache.logging.log4j.core.appender.AbstractAppender
         return appenderConfig;
     }
 
+
+    /**
+     *  Sends all queued messages without waiting for the batch delay, and waits up to
+     *  the specified number of milliseconds for them to be acknowledged. Applications
+     *  running in Lambda should call this before returning from their handler.
+     *
+     *  @return <code>true</code> if all queued messages were sent (or the appender
+     *          has not yet started a writer), <code>false</code> otherwise.
+     */
+    public boolean flush(long millisToWait)
+    {
+        LogWriter currentWriter = writer;
+        return (currentWriter == null) || currentWriter.flush(millisToWait);
+    }
+
 //----------------------------------------------------------------------------
 //  Appender implementation
 //----------------------------------------------------------------------------
@@ -203,20 +231,47 @@ extends org.apache.logging.log4j.core.appender.AbstractAppender
             return;
         }
 
-        String message = null;
+        // the writer may be cleared by another thread (eg, after an uncaught exception),
+        // so we read it once; problems are reported, but never thrown to the caller
+        LogWriter currentWriter = writer;
         try
         {
-            message = getConfig().getLayout().toSerializable(event);
-        }
-        catch (Exception ex)
-        {
-            internalLogger.error("unable to apply layout", ex);
-            return;
-        }
+            if (currentWriter == null)
+            {
+                internalLogger.error("unable to append event: writer is not running", null);
+                return;
+            }
 
-        try
-        {
-            internalAppend(new LogMessage(event.getTimeMillis(), message));
+            // if the writer would discard this message, don't waste time formatting it
+            if (currentWriter.discardIfFull())
+            {
+                return;
+            }
+
+            Layout<String> layout = getConfig().getLayout();
+            Severity severity = toSeverity(event.getLevel());
+            LogMessage logMessage;
+            if (appenderConfig.isDeferLayout())
+            {
+                // the passed event may be reused by the framework once we return, so we
+                // need an immutable copy (this is the same call used by AsyncAppender)
+                LogEvent snapshot = Log4jLogEvent.createMemento(event, event.isIncludeLocation());
+                logMessage = new LogMessage(snapshot.getTimeMillis(), severity, () -> layout.toSerializable(snapshot));
+            }
+            else
+            {
+                try
+                {
+                    logMessage = new LogMessage(event.getTimeMillis(), severity, layout.toSerializable(event));
+                }
+                catch (Exception ex)
+                {
+                    internalLogger.error("unable to apply layout", ex);
+                    return;
+                }
+            }
+
+            internalAppend(currentWriter, logMessage);
         }
         catch (Exception ex)
         {
@@ -240,6 +295,20 @@ extends org.apache.logging.log4j.core.appender.AbstractAppender
 //  Internals
 //----------------------------------------------------------------------------
 
+    /**
+     *  Maps a Log4J level to a message severity. Note that Log4J2 numeric levels
+     *  decrease with severity.
+     */
+    private static Severity toSeverity(Level level)
+    {
+        int value = (level != null) ? level.intLevel() : Level.INFO.intLevel();
+        return (value <= Level.ERROR.intLevel())    ? Severity.ERROR
+             : (value <= Level.WARN.intLevel())     ? Severity.WARN
+             : (value <= Level.INFO.intLevel())     ? Severity.INFO
+             :                                        Severity.DEBUG;
+    }
+
+
     /**
      *  Called by {@link #initialize}, to start a new writer running. Does not
      *  close the old writer, if any.
@@ -248,16 +317,32 @@ extends org.apache.logging.log4j.core.appender.AbstractAppender
     {
         WriterConfigType writerConfig = generateWriterConfig()
                 .setTruncateOversizeMessages(appenderConfig.getTruncateOversizeMessages())
+                .setSplitOversizeMessages(appenderConfig.isSplitOversizeMessages())
+                .setOversizeS3Bucket(appenderConfig.getOversizeS3Bucket())
+                .setOversizeS3Prefix(appenderConfig.getOversizeS3Prefix())
+                .setOversizeS3Threads(appenderConfig.getOversizeS3Threads())
                 .setSynchronousMode(appenderConfig.isSynchronous())
                 .setBatchDelay(appenderConfig.getBatchDelay())
                 .setDiscardThreshold(appenderConfig.getDiscardThreshold())
                 .setDiscardAction(discardAction)
+                .setDiscardByLevel(appenderConfig.isDiscardByLevel())
+                .setBlockTimeout(appenderConfig.getBlockTimeout())
+                .setBlockFallbackAction(blockFallbackAction)
                 .setClientFactoryMethod(appenderConfig.getClientFactory())
                 .setAssumedRole(appenderConfig.getAssumedRole())
                 .setClientRegion(appenderConfig.getClientRegion())
                 .setClientEndpoint(appenderConfig.getClientEndpoint())
                 .setInitializationTimeout(appenderConfig.getInitializationTimeout())
-                .setEnableBatchLogging(appenderConfig.isEnableBatchLogging());
+                .setShutdownTimeout(appenderConfig.getShutdownTimeout())
+                .setCriticalOnShutdown(appenderConfig.isCriticalOnShutdown())
+                .setEnableBatchLogging(appenderConfig.isEnableBatchLogging())
+                .setDeferInitialization(appenderConfig.isDeferInitialization())
+                .setHttpClientType(appenderConfig.getHttpClientType())
+                .setHttpMaxConnections(appenderConfig.getHttpMaxConnections())
+                .setHttpConnectionTtl(appenderConfig.getHttpConnectionTtl())
+                .setHttpConnectionTimeout(appenderConfig.getHttpConnectionTimeout())
+                .setHttpSocketTimeout(appenderConfig.getHttpSocketTimeout())
+                .setHttpTcpKeepAlive(appenderConfig.isHttpTcpKeepAlive());
 
         synchronized (initializationLock)
         {
@@ -280,7 +365,7 @@ extends org.apache.logging.log4j.core.appender.AbstractAppender
                     String header = new String(getLayout().getHeader(), layoutCharset);
                     if (header.length() > 0)
                     {
-                        internalAppend(new LogMessage(System.currentTimeMillis(), header));
+                        internalAppend(writer, new LogMessage(System.currentTimeMillis(), header));
                     }
                 }
             }
@@ -309,7 +394,7 @@ extends org.apache.logging.log4j.core.appender.AbstractAppender
                     String header = new String(getLayout().getFooter(), layoutCharset);
                     if (header.length() > 0)
                     {
-                        internalAppend(new LogMessage(System.currentTimeMillis(), header));
+                        internalAppend(writer, new LogMessage(System.currentTimeMillis(), header));
                     }
                 }
 
@@ -352,7 +437,7 @@ extends org.apache.logging.log4j.core.appender.AbstractAppender
     }
 
 
-    private void internalAppend(LogMessage message)
+    private void internalAppend(LogWriter currentWriter, LogMessage message)
     {
         if (message == null)
         {
@@ -360,6 +445,6 @@ extends org.apache.logging.log4j.core.appender.AbstractAppender
             return;
         }
 
-        writer.addMessage(message);
+        currentWriter.addMessage(message);
     }
 }
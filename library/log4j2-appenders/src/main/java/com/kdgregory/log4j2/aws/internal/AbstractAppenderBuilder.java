@@ -138,6 +138,94 @@ implements AbstractAppenderConfig
     }
 
 
+    @PluginBuilderAttribute("splitOversizeMessages")
+    private boolean splitOversizeMessages = AbstractWriterConfig.DEFAULT_SPLIT_OVERSIZE;
+
+    /**
+     *  Sets the <code>splitOversizeMessages</code> configuration property.
+     */
+    public T setSplitOversizeMessages(boolean value)
+    {
+        this.splitOversizeMessages = value;
+        return (T)this;
+    }
+
+    /**
+     *  Returns the <code>splitOversizeMessages</code> configuration property.
+     */
+    @Override
+    public boolean isSplitOversizeMessages()
+    {
+        return splitOversizeMessages;
+    }
+
+
+    @PluginBuilderAttribute("oversizeS3Bucket")
+    private String oversizeS3Bucket;
+
+    /**
+     *  Sets the <code>oversizeS3Bucket</code> configuration property.
+     */
+    public T setOversizeS3Bucket(String value)
+    {
+        this.oversizeS3Bucket = value;
+        return (T)this;
+    }
+
+    /**
+     *  Returns the <code>oversizeS3Bucket</code> configuration property.
+     */
+    @Override
+    public String getOversizeS3Bucket()
+    {
+        return oversizeS3Bucket;
+    }
+
+
+    @PluginBuilderAttribute("oversizeS3Prefix")
+    private String oversizeS3Prefix = AbstractWriterConfig.DEFAULT_OVERSIZE_S3_PREFIX;
+
+    /**
+     *  Sets the <code>oversizeS3Prefix</code> configuration property.
+     */
+    public T setOversizeS3Prefix(String value)
+    {
+        this.oversizeS3Prefix = value;
+        return (T)this;
+    }
+
+    /**
+     *  Returns the <code>oversizeS3Prefix</code> configuration property.
+     */
+    @Override
+    public String getOversizeS3Prefix()
+    {
+        return oversizeS3Prefix;
+    }
+
+
+    @PluginBuilderAttribute("oversizeS3Threads")
+    private int oversizeS3Threads = AbstractWriterConfig.DEFAULT_OVERSIZE_S3_THREADS;
+
+    /**
+     *  Sets the <code>oversizeS3Threads</code> configuration property.
+     */
+    public T setOversizeS3Threads(int value)
+    {
+        this.oversizeS3Threads = value;
+        return (T)this;
+    }
+
+    /**
+     *  Returns the <code>oversizeS3Threads</code> configuration property.
+     */
+    @Override
+    public int getOversizeS3Threads()
+    {
+        return oversizeS3Threads;
+    }
+
+
     @PluginBuilderAttribute("discardThreshold")
     private int discardThreshold = AbstractWriterConfig.DEFAULT_DISCARD_THRESHOLD;
 
@@ -182,6 +270,72 @@ implements AbstractAppenderConfig
     }
 
 
+    @PluginBuilderAttribute("discardByLevel")
+    private boolean discardByLevel = AbstractWriterConfig.DEFAULT_DISCARD_BY_LEVEL;
+
+    /**
+     *  Sets the <code>discardByLevel</code> configuration property.
+     */
+    public T setDiscardByLevel(boolean value)
+    {
+        this.discardByLevel = value;
+        return (T)this;
+    }
+
+    /**
+     *  Returns the <code>discardByLevel</code> configuration property.
+     */
+    @Override
+    public boolean isDiscardByLevel()
+    {
+        return discardByLevel;
+    }
+
+
+    @PluginBuilderAttribute("blockTimeout")
+    private long blockTimeout = AbstractWriterConfig.DEFAULT_BLOCK_TIMEOUT;
+
+    /**
+     *  Sets the <code>blockTimeout</code> configuration property.
+     */
+    public T setBlockTimeout(long value)
+    {
+        this.blockTimeout = value;
+        return (T)this;
+    }
+
+    /**
+     *  Returns the <code>blockTimeout</code> configuration property.
+     */
+    @Override
+    public long getBlockTimeout()
+    {
+        return blockTimeout;
+    }
+
+
+    @PluginBuilderAttribute("blockFallbackAction")
+    private String blockFallbackAction = AbstractWriterConfig.DEFAULT_BLOCK_FALLBACK_ACTION.name();
+
+    /**
+     *  Sets the <code>blockFallbackAction</code> configuration property.
+     */
+    public T setBlockFallbackAction(String value)
+    {
+        this.blockFallbackAction = value;
+        return (T)this;
+    }
+
+    /**
+     *  Returns the <code>blockFallbackAction</code> configuration property.
+     */
+    @Override
+    public String getBlockFallbackAction()
+    {
+        return blockFallbackAction;
+    }
+
+
     @PluginBuilderAttribute("assumedRole")
     private String assumedRole;
 
@@ -292,6 +446,50 @@ implements AbstractAppenderConfig
     }
 
 
+    @PluginBuilderAttribute("shutdownTimeout")
+    private long shutdownTimeout = AbstractWriterConfig.DEFAULT_SHUTDOWN_TIMEOUT;
+
+    /**
+     *  Sets the <code>shutdownTimeout</code> configuration property.
+     */
+    public T setShutdownTimeout(long value)
+    {
+        this.shutdownTimeout = value;
+        return (T)this;
+    }
+
+    /**
+     *  Returns the <code>shutdownTimeout</code> configuration property.
+     */
+    @Override
+    public long getShutdownTimeout()
+    {
+        return shutdownTimeout;
+    }
+
+
+    @PluginBuilderAttribute("criticalOnShutdown")
+    private boolean criticalOnShutdown = AbstractWriterConfig.DEFAULT_CRITICAL_ON_SHUTDOWN;
+
+    /**
+     *  Sets the <code>criticalOnShutdown</code> configuration property.
+     */
+    public T setCriticalOnShutdown(boolean value)
+    {
+        this.criticalOnShutdown = value;
+        return (T)this;
+    }
+
+    /**
+     *  Returns the <code>criticalOnShutdown</code> configuration property.
+     */
+    @Override
+    public boolean isCriticalOnShutdown()
+    {
+        return criticalOnShutdown;
+    }
+
+
     @PluginBuilderAttribute("initializationTimeout")
     private long initializationTimeout = 60000; // will be overridden by subclasses
 
@@ -334,4 +532,180 @@ implements AbstractAppenderConfig
     {
         return enableBatchLogging;
     }
+
+
+    @PluginBuilderAttribute("deferInitialization")
+    private boolean deferInitialization = AbstractWriterConfig.DEFAULT_DEFER_INITIALIZATION;
+
+    /**
+     *  Sets the <code>deferInitialization</code> configuration property.
+     */
+    public T setDeferInitialization(boolean value)
+    {
+        this.deferInitialization = value;
+        return (T)this;
+    }
+
+    /**
+     *  Returns the <code>deferInitialization</code> configuration property.
+     */
+    @Override
+    public boolean isDeferInitialization()
+    {
+        return deferInitialization;
+    }
+
+
+    @PluginBuilderAttribute("deferLayout")
+    private boolean deferLayout = AbstractWriterConfig.DEFAULT_DEFER_LAYOUT;
+
+    /**
+     *  Sets the <code>deferLayout</code> configuration property.
+     */
+    public T setDeferLayout(boolean value)
+    {
+        this.deferLayout = value;
+        return (T)this;
+    }
+
+    /**
+     *  Returns the <code>deferLayout</code> configuration property.
+     */
+    @Override
+    public boolean isDeferLayout()
+    {
+        return deferLayout;
+    }
+
+
+    @PluginBuilderAttribute("httpClientType")
+    private String httpClientType;
+
+    /**
+     *  Sets the <code>httpClientType</code> configuration property.
+     */
+    public T setHttpClientType(String value)
+    {
+        this.httpClientType = value;
+        return (T)this;
+    }
+
+    /**
+     *  Returns the <code>httpClientType</code> configuration property.
+     */
+    @Override
+    public String getHttpClientType()
+    {
+        return httpClientType;
+    }
+
+
+    @PluginBuilderAttribute("httpMaxConnections")
+    private int httpMaxConnections;
+
+    /**
+     *  Sets the <code>httpMaxConnections</code> configuration property.
+     */
+    public T setHttpMaxConnections(int value)
+    {
+        this.httpMaxConnections = value;
+        return (T)this;
+    }
+
+    /**
+     *  Returns the <code>httpMaxConnections</code> configuration property.
+     */
+    @Override
+    public int getHttpMaxConnections()
+    {
+        return httpMaxConnections;
+    }
+
+
+    @PluginBuilderAttribute("httpConnectionTtl")
+    private long httpConnectionTtl;
+
+    /**
+     *  Sets the <code>httpConnectionTtl</code> configuration property.
+     */
+    public T setHttpConnectionTtl(long value)
+    {
+        this.httpConnectionTtl = value;
+        return (T)this;
+    }
+
+    /**
+     *  Returns the <code>httpConnectionTtl</code> configuration property.
+     */
+    @Override
+    public long getHttpConnectionTtl()
+    {
+        return httpConnectionTtl;
+    }
+
+
+    @PluginBuilderAttribute("httpConnectionTimeout")
+    private long httpConnectionTimeout;
+
+    /**
+     *  Sets the <code>httpConnectionTimeout</code> configuration property.
+     */
+    public T setHttpConnectionTimeout(long value)
+    {
+        this.httpConnectionTimeout = value;
+        return (T)this;
+    }
+
+    /**
+     *  Returns the <code>httpConnectionTimeout</code> configuration property.
+     */
+    @Override
+    public long getHttpConnectionTimeout()
+    {
+        return httpConnectionTimeout;
+    }
+
+
+    @PluginBuilderAttribute("httpSocketTimeout")
+    private long httpSocketTimeout;
+
+    /**
+     *  Sets the <code>httpSocketTimeout</code> configuration property.
+     */
+    public T setHttpSocketTimeout(long value)
+    {
+        this.httpSocketTimeout = value;
+        return (T)this;
+    }
+
+    /**
+     *  Returns the <code>httpSocketTimeout</code> configuration property.
+     */
+    @Override
+    public long getHttpSocketTimeout()
+    {
+        return httpSocketTimeout;
+    }
+
+
+    @PluginBuilderAttribute("httpTcpKeepAlive")
+    private boolean httpTcpKeepAlive;
+
+    /**
+     *  Sets the <code>httpTcpKeepAlive</code> configuration property.
+     */
+    public T setHttpTcpKeepAlive(boolean value)
+    {
+        this.httpTcpKeepAlive = value;
+        return (T)this;
+    }
+
+    /**
+     *  Returns the <code>httpTcpKeepAlive</code> configuration property.
+     */
+    @Override
+    public boolean isHttpTcpKeepAlive()
+    {
+        return httpTcpKeepAlive;
+    }
 }
@@ -32,15 +32,33 @@ public interface AbstractAppenderConfig
 
     long getBatchDelay();
     boolean getTruncateOversizeMessages();
+    boolean isSplitOversizeMessages();
+    String getOversizeS3Bucket();
+    String getOversizeS3Prefix();
+    int getOversizeS3Threads();
     int getDiscardThreshold();
     String getDiscardAction();
+    boolean isDiscardByLevel();
+    long getBlockTimeout();
+    String getBlockFallbackAction();
     boolean isSynchronous();
     boolean isUseShutdownHook();        // yeah, I hate that name too
+    long getShutdownTimeout();
+    boolean isCriticalOnShutdown();
     long getInitializationTimeout();
     boolean isEnableBatchLogging();     // and that one
+    boolean isDeferInitialization();
+    boolean isDeferLayout();
 
     String getAssumedRole();
     String getClientFactory();
     String getClientRegion();
     String getClientEndpoint();
+
+    String getHttpClientType();
+    int getHttpMaxConnections();
+    long getHttpConnectionTtl();
+    long getHttpConnectionTimeout();
+    long getHttpSocketTimeout();
+    boolean isHttpTcpKeepAlive();
 }
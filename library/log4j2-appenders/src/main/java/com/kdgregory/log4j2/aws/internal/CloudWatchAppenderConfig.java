@@ -26,4 +26,7 @@ extends AbstractAppenderConfig
     String getLogStream();
     Integer getRetentionPeriod();
     boolean isDedicatedWriter();
+    boolean isOptimisticMode();
+    long getExistenceCacheTtl();
+    String getExistenceCacheFile();
 }
\ No newline at end of file
@@ -0,0 +1,143 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.kdgregory.log4j2.aws;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import com.kdgregory.log4j2.aws.FirehoseAppender.FirehoseAppenderBuilder;
+import com.kdgregory.log4j2.testhelpers.TestableFirehoseAppender;
+import com.kdgregory.log4j2.testhelpers.TestableFirehoseAppender.TestableFirehoseAppenderBuilder;
+import com.kdgregory.logging.common.util.MessageQueue.DiscardAction;
+import com.kdgregory.logging.testhelpers.firehose.MockFirehoseWriter;
+
+
+/**
+ *  These tests exercise appender logic specific to FirehoseAppender, using a
+ *  mock log-writer.
+ */
+public class TestFirehoseAppender
+extends AbstractUnitTest<TestableFirehoseAppender>
+{
+    public TestFirehoseAppender()
+    {
+        super("TestFirehoseAppender/", "TEST");
+    }
+
+//----------------------------------------------------------------------------
+//  Tests
+//----------------------------------------------------------------------------
+
+    @Test
+    public void testConfiguration() throws Exception
+    {
+        initialize("testConfiguration");
+
+        assertEquals("stream name",             "argle-{bargle}",                   appender.getConfig().getStreamName());
+        assertTrue("aggregate messages",                                            appender.getConfig().getAggregateMessages());
+        assertEquals("max delay",               1234L,                              appender.getConfig().getBatchDelay());
+        assertFalse("truncate oversize messages",                                   appender.getConfig().getTruncateOversizeMessages());
+        assertEquals("discard threshold",       54321,                              appender.getConfig().getDiscardThreshold());
+        assertEquals("discard action",          "newest",                           appender.getConfig().getDiscardAction());
+        assertFalse("synchronous mode",                                             appender.getConfig().isSynchronous());
+        assertFalse("use shutdown hook",                                            appender.getConfig().isUseShutdownHook());
+        assertEquals("assumed role",            "AssumableRole",                    appender.getConfig().getAssumedRole());
+        assertEquals("client factory",          "com.example.Foo.bar",              appender.getConfig().getClientFactory());
+        assertEquals("client region",           "us-west-1",                        appender.getConfig().getClientRegion());
+        assertEquals("client endpoint",         "firehose.us-west-2.amazonaws.com", appender.getConfig().getClientEndpoint());
+        assertEquals("initialization timeout",  30000,                              appender.getConfig().getInitializationTimeout());
+        assertEquals("enable batch logging",    true,                               appender.getConfig().isEnableBatchLogging());
+    }
+
+
+    @Test
+    public void testDefaultConfiguration() throws Exception
+    {
+        initialize("testDefaultConfiguration");
+
+        // can't test stream name because there's no default
+        assertFalse("aggregate messages",                                           appender.getConfig().getAggregateMessages());
+        assertEquals("max delay",               2000L,                              appender.getConfig().getBatchDelay());
+        assertTrue("truncate oversize messages",                                    appender.getConfig().getTruncateOversizeMessages());
+        assertEquals("discard threshold",       10000,                              appender.getConfig().getDiscardThreshold());
+        assertEquals("discard action",          "oldest",                           appender.getConfig().getDiscardAction());
+        assertFalse("synchronous mode",                                             appender.getConfig().isSynchronous());
+        assertTrue("use shutdown hook",                                             appender.getConfig().isUseShutdownHook());
+        assertEquals("assumed role",            null,                               appender.getConfig().getAssumedRole());
+        assertEquals("client factory",          null,                               appender.getConfig().getClientFactory());
+        assertEquals("client region",           null,                               appender.getConfig().getClientRegion());
+        assertEquals("client endpoint",         null,                               appender.getConfig().getClientEndpoint());
+        assertEquals("initialization timeout",  60000,                              appender.getConfig().getInitializationTimeout());
+        assertEquals("enable batch logging",    false,                              appender.getConfig().isEnableBatchLogging());
+    }
+
+
+    @Test
+    public void testManualConfiguration() throws Exception
+    {
+        FirehoseAppenderBuilder builder = new TestableFirehoseAppenderBuilder()
+                                          .setName("test")
+                                          .setStreamName("argle-{bargle}")
+                                          .setAggregateMessages(true)
+                                          .setBatchDelay(1234)
+                                          .setDiscardThreshold(54321)
+                                          .setDiscardAction(DiscardAction.newest.name())
+                                          .setClientFactory("com.example.Foo.bar")
+                                          .setClientRegion("us-west-1")
+                                          .setClientEndpoint("firehose.us-west-2.amazonaws.com")
+                                          .setSynchronous(false)
+                                          .setUseShutdownHook(false);
+
+        appender = (TestableFirehoseAppender)builder.build();
+
+        assertEquals("appender name",       "test",                             appender.getName());
+
+        assertEquals("stream name",         "argle-{bargle}",                   appender.getConfig().getStreamName());
+        assertTrue("aggregate messages",                                        appender.getConfig().getAggregateMessages());
+        assertEquals("max delay",           1234L,                              appender.getConfig().getBatchDelay());
+        assertEquals("discard threshold",   54321,                              appender.getConfig().getDiscardThreshold());
+        assertEquals("discard action",      "newest",                           appender.getConfig().getDiscardAction());
+        assertEquals("client factory",      "com.example.Foo.bar",              appender.getConfig().getClientFactory());
+        assertEquals("client region",       "us-west-1",                        appender.getConfig().getClientRegion());
+        assertEquals("client endpoint",     "firehose.us-west-2.amazonaws.com", appender.getConfig().getClientEndpoint());
+        assertFalse("synchronous mode",                                         appender.getConfig().isSynchronous());
+        assertFalse("use shutdown hook",                                        appender.getConfig().isUseShutdownHook());
+    }
+
+
+    @Test
+    public void testWriterInitialization() throws Exception
+    {
+        // property has to be set before initialization
+        System.setProperty("TestFirehoseAppender.testWriterInitialization", "example");
+
+        initialize("testWriterInitialization");
+
+        assertEquals("configured stream name",      "MyStream-{sysprop:TestFirehoseAppender.testWriterInitialization}", appender.getConfig().getStreamName());
+
+        logger.debug("this triggers writer creation");
+
+        MockFirehoseWriter writer = appender.getMockWriter();
+
+        assertEquals("writer stream name",              "MyStream-example",                 writer.config.getStreamName());
+        assertTrue("writer aggregate messages",                                             writer.config.getAggregateMessages());
+        assertEquals("writer batch delay",              1234L,                              writer.config.getBatchDelay());
+        assertEquals("writer discard threshold",        54321,                              writer.config.getDiscardThreshold());
+        assertEquals("writer discard action",           DiscardAction.newest,               writer.config.getDiscardAction());
+        assertEquals("writer client factory method",    "com.example.Foo.bar",              writer.config.getClientFactoryMethod());
+        assertEquals("writer client endpoint",          "firehose.us-west-1.amazonaws.com", writer.config.getClientEndpoint());
+    }
+}
@@ -0,0 +1,136 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.kdgregory.log4j2.testhelpers;
+
+import org.apache.logging.log4j.core.Appender;
+import org.apache.logging.log4j.core.Core;
+import org.apache.logging.log4j.core.config.plugins.Plugin;
+import org.apache.logging.log4j.core.config.plugins.PluginBuilderAttribute;
+import org.apache.logging.log4j.core.config.plugins.PluginBuilderFactory;
+
+import com.kdgregory.log4j2.aws.S3Appender;
+import com.kdgregory.log4j2.aws.internal.S3AppenderConfig;
+import com.kdgregory.logging.aws.s3.S3WriterConfig;
+import com.kdgregory.logging.aws.s3.S3WriterStatistics;
+import com.kdgregory.logging.common.LogWriter;
+import com.kdgregory.logging.common.util.DefaultThreadFactory;
+import com.kdgregory.logging.common.util.ThreadFactory;
+import com.kdgregory.logging.common.util.WriterFactory;
+import com.kdgregory.logging.testhelpers.InlineThreadFactory;
+import com.kdgregory.logging.testhelpers.s3.MockS3Writer;
+import com.kdgregory.logging.testhelpers.s3.MockS3WriterFactory;
+
+
+/**
+ *  This class provides visibility into the protected variables held by
+ *  S3Appender and AbstractAppender. It also updates the factories
+ *  so that we don't get a real writer.
+ */
+@Plugin(name = "TestableS3Appender", category = Core.CATEGORY_NAME, elementType = Appender.ELEMENT_TYPE)
+public class TestableS3Appender
+extends S3Appender
+{
+
+//----------------------------------------------------------------------------
+//  Plugin integration
+//----------------------------------------------------------------------------
+
+    @PluginBuilderFactory
+    public static TestableS3AppenderBuilder newBuilder()
+    {
+        return new TestableS3AppenderBuilder();
+    }
+
+
+    public static class TestableS3AppenderBuilder
+    extends S3AppenderBuilder
+    {
+        // since Log4J2 initializes when the appender is created, we can't switch thread factories
+        // after the fact; as a work-around, this configuration parameter will use the default
+        @PluginBuilderAttribute("useDefaultThreadFactory")
+        private boolean useDefaultThreadFactory;
+
+        public void setUseDefaultThreadFactory(boolean value)
+        {
+            this.useDefaultThreadFactory = value;
+        }
+
+        @Override
+        public TestableS3Appender build()
+        {
+            return new TestableS3Appender(this, useDefaultThreadFactory);
+        }
+    }
+
+
+//----------------------------------------------------------------------------
+//  Constructor and hooks
+//----------------------------------------------------------------------------
+
+    protected TestableS3Appender(S3AppenderConfig config, boolean useDefaultThreadFactory)
+    {
+        super(config.getName(), config, new TestableLog4J2InternalLogger());
+        setWriterFactory(new MockS3WriterFactory());
+        if (useDefaultThreadFactory)
+        {
+            setThreadFactory(new DefaultThreadFactory("test"));
+        }
+        else
+        {
+            setThreadFactory(new InlineThreadFactory());
+        }
+    }
+
+
+    public void setThreadFactory(ThreadFactory threadFactory)
+    {
+        this.threadFactory = threadFactory;
+    }
+
+
+    public void setWriterFactory(WriterFactory<S3WriterConfig,S3WriterStatistics> writerFactory)
+    {
+        this.writerFactory = writerFactory;
+    }
+
+//----------------------------------------------------------------------------
+//  Accessors
+//----------------------------------------------------------------------------
+
+    public MockS3WriterFactory getWriterFactory()
+    {
+        return (MockS3WriterFactory)writerFactory;
+    }
+
+
+    public LogWriter getWriter()
+    {
+        return writer;
+    }
+
+
+    // a convenience function so that we're not always casting
+    public MockS3Writer getMockWriter()
+    {
+        return (MockS3Writer)writer;
+    }
+
+
+    public TestableLog4J2InternalLogger getInternalLogger()
+    {
+        return (TestableLog4J2InternalLogger)internalLogger;
+    }
+
+}
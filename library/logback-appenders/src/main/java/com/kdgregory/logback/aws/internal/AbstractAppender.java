@@ -19,6 +19,7 @@ import java.lang.Thread.UncaughtExceptionHandler;
 import com.kdgregory.logging.aws.internal.AbstractWriterConfig;
 import com.kdgregory.logging.aws.internal.AbstractWriterStatistics;
 import com.kdgregory.logging.common.LogMessage;
+import com.kdgregory.logging.common.LogMessage.Severity;
 import com.kdgregory.logging.common.LogWriter;
 import com.kdgregory.logging.common.util.InternalLogger;
 import com.kdgregory.logging.common.util.MessageQueue.DiscardAction;
@@ -26,9 +27,11 @@ import com.kdgregory.logging.common.util.ThreadFactory;
 import com.kdgregory.logging.common.util.WriterFactory;
 
 import ch.qos.logback.access.spi.IAccessEvent;
+import ch.qos.logback.classic.Level;
 import ch.qos.logback.classic.spi.ILoggingEvent;
 import ch.qos.logback.core.Layout;
 import ch.qos.logback.core.UnsynchronizedAppenderBase;
+import ch.qos.logback.core.spi.DeferredProcessingAware;
 
 
 /**
@@ -192,6 +195,78 @@ extends UnsynchronizedAppenderBase<LogbackEventType>
     }
 
 
+    /**
+     *  Sets the <code>splitOversizeMessages</code> configuration property.
+     */
+    public void setSplitOversizeMessages(boolean value)
+    {
+        appenderConfig.setSplitOversizeMessages(value);
+    }
+
+
+    /**
+     *  Returns the <code>splitOversizeMessages</code> configuration property.
+     */
+    public boolean getSplitOversizeMessages()
+    {
+        return appenderConfig.getSplitOversizeMessages();
+    }
+
+
+    /**
+     *  Sets the <code>oversizeS3Bucket</code> configuration property.
+     */
+    public void setOversizeS3Bucket(String value)
+    {
+        appenderConfig.setOversizeS3Bucket(value);
+    }
+
+
+    /**
+     *  Returns the <code>oversizeS3Bucket</code> configuration property.
+     */
+    public String getOversizeS3Bucket()
+    {
+        return appenderConfig.getOversizeS3Bucket();
+    }
+
+
+    /**
+     *  Sets the <code>oversizeS3Prefix</code> configuration property.
+     */
+    public void setOversizeS3Prefix(String value)
+    {
+        appenderConfig.setOversizeS3Prefix(value);
+    }
+
+
+    /**
+     *  Returns the <code>oversizeS3Prefix</code> configuration property.
+     */
+    public String getOversizeS3Prefix()
+    {
+        return appenderConfig.getOversizeS3Prefix();
+    }
+
+
+    /**
+     *  Sets the <code>oversizeS3Threads</code> configuration property.
+     */
+    public void setOversizeS3Threads(int value)
+    {
+        appenderConfig.setOversizeS3Threads(value);
+    }
+
+
+    /**
+     *  Returns the <code>oversizeS3Threads</code> configuration property.
+     */
+    public int getOversizeS3Threads()
+    {
+        return appenderConfig.getOversizeS3Threads();
+    }
+
+
     /**
      *  Sets the <code>discardThreshold</code> configuration property.
      */
@@ -243,6 +318,70 @@ extends UnsynchronizedAppenderBase<LogbackEventType>
     }
 
 
+    /**
+     *  Sets the <code>discardByLevel</code> configuration property. This can only
+     *  be set at the time of configuration.
+     */
+    public void setDiscardByLevel(boolean value)
+    {
+        appenderConfig.setDiscardByLevel(value);
+    }
+
+
+    /**
+     *  Returns the <code>discardByLevel</code> configuration property.
+     */
+    public boolean getDiscardByLevel()
+    {
+        return appenderConfig.getDiscardByLevel();
+    }
+
+
+    /**
+     *  Sets the <code>blockTimeout</code> configuration property. This can only
+     *  be set at the time of configuration.
+     */
+    public void setBlockTimeout(long value)
+    {
+        appenderConfig.setBlockTimeout(value);
+    }
+
+
+    /**
+     *  Returns the <code>blockTimeout</code> configuration property.
+     */
+    public long getBlockTimeout()
+    {
+        return appenderConfig.getBlockTimeout();
+    }
+
+
+    /**
+     *  Sets the <code>blockFallbackAction</code> configuration property. This can
+     *  only be set at the time of configuration.
+     */
+    public void setBlockFallbackAction(String value)
+    {
+        DiscardAction tmpDiscardAction = DiscardAction.lookup(value);
+        if ((tmpDiscardAction == null) || (tmpDiscardAction == DiscardAction.block))
+        {
+            internalLogger.error("invalid block fallback action: " + value, null);
+            return;
+        }
+
+        appenderConfig.setBlockFallbackAction(tmpDiscardAction);
+    }
+
+
+    /**
+     *  Returns the <code>blockFallbackAction</code> configuration property.
+     */
+    public String getBlockFallbackAction()
+    {
+        return appenderConfig.getBlockFallbackAction().toString();
+    }
+
+
     /**
      *  Sets the <code>assumedRole</code> configuration property.
      *  <p>
@@ -338,6 +477,42 @@ extends UnsynchronizedAppenderBase<LogbackEventType>
     }
 
 
+    /**
+     *  Sets the <code>shutdownTimeout</code> configuration property.
+     */
+    public void setShutdownTimeout(long value)
+    {
+        appenderConfig.setShutdownTimeout(value);
+    }
+
+
+    /**
+     *  Returns the <code>shutdownTimeout</code> configuration property.
+     */
+    public long getShutdownTimeout()
+    {
+        return appenderConfig.getShutdownTimeout();
+    }
+
+
+    /**
+     *  Sets the <code>criticalOnShutdown</code> configuration property.
+     */
+    public void setCriticalOnShutdown(boolean value)
+    {
+        appenderConfig.setCriticalOnShutdown(value);
+    }
+
+
+    /**
+     *  Returns the <code>criticalOnShutdown</code> configuration property.
+     */
+    public boolean getCriticalOnShutdown()
+    {
+        return appenderConfig.getCriticalOnShutdown();
+    }
+
+
     /**
      *  Sets the <code>initializationTimeout</code> configuration property.
      */
@@ -373,6 +548,150 @@ extends UnsynchronizedAppenderBase<LogbackEventType>
         return appenderConfig.getEnableBatchLogging();
     }
 
+
+    /**
+     *  Sets the <code>deferInitialization</code> configuration property.
+     */
+    public void setDeferInitialization(boolean value)
+    {
+        appenderConfig.setDeferInitialization(value);
+    }
+
+
+    /**
+     *  Returns the <code>deferInitialization</code> configuration property.
+     */
+    public boolean getDeferInitialization()
+    {
+        return appenderConfig.getDeferInitialization();
+    }
+
+
+    /**
+     *  Sets the <code>deferLayout</code> configuration property.
+     */
+    public void setDeferLayout(boolean value)
+    {
+        appenderConfig.setDeferLayout(value);
+    }
+
+
+    /**
+     *  Returns the <code>deferLayout</code> configuration property.
+     */
+    public boolean getDeferLayout()
+    {
+        return appenderConfig.getDeferLayout();
+    }
+
+
+    /**
+     *  Sets the <code>httpClientType</code> configuration property.
+     */
+    public void setHttpClientType(String value)
+    {
+        appenderConfig.setHttpClientType(value);
+    }
+
+
+    /**
+     *  Returns the <code>httpClientType</code> configuration property.
+     */
+    public String getHttpClientType()
+    {
+        return appenderConfig.getHttpClientType();
+    }
+
+
+    /**
+     *  Sets the <code>httpMaxConnections</code> configuration property.
+     */
+    public void setHttpMaxConnections(int value)
+    {
+        appenderConfig.setHttpMaxConnections(value);
+    }
+
+
+    /**
+     *  Returns the <code>httpMaxConnections</code> configuration property.
+     */
+    public int getHttpMaxConnections()
+    {
+        return appenderConfig.getHttpMaxConnections();
+    }
+
+
+    /**
+     *  Sets the <code>httpConnectionTtl</code> configuration property.
+     */
+    public void setHttpConnectionTtl(long value)
+    {
+        appenderConfig.setHttpConnectionTtl(value);
+    }
+
+
+    /**
+     *  Returns the <code>httpConnectionTtl</code> configuration property.
+     */
+    public long getHttpConnectionTtl()
+    {
+        return appenderConfig.getHttpConnectionTtl();
+    }
+
+
+    /**
+     *  Sets the <code>httpConnectionTimeout</code> configuration property.
+     */
+    public void setHttpConnectionTimeout(long value)
+    {
+        appenderConfig.setHttpConnectionTimeout(value);
+    }
+
+
+    /**
+     *  Returns the <code>httpConnectionTimeout</code> configuration property.
+     */
+    public long getHttpConnectionTimeout()
+    {
+        return appenderConfig.getHttpConnectionTimeout();
+    }
+
+
+    /**
+     *  Sets the <code>httpSocketTimeout</code> configuration property.
+     */
+    public void setHttpSocketTimeout(long value)
+    {
+        appenderConfig.setHttpSocketTimeout(value);
+    }
+
+
+    /**
+     *  Returns the <code>httpSocketTimeout</code> configuration property.
+     */
+    public long getHttpSocketTimeout()
+    {
+        return appenderConfig.getHttpSocketTimeout();
+    }
+
+
+    /**
+     *  Sets the <code>httpTcpKeepAlive</code> configuration property.
+     */
+    public void setHttpTcpKeepAlive(boolean value)
+    {
+        appenderConfig.setHttpTcpKeepAlive(value);
+    }
+
+
+    /**
+     *  Returns the <code>httpTcpKeepAlive</code> configuration property.
+     */
+    public boolean getHttpTcpKeepAlive()
+    {
+        return appenderConfig.getHttpTcpKeepAlive();
+    }
+
 //----------------------------------------------------------------------------
 //  Other accessors
 //----------------------------------------------------------------------------
@@ -385,6 +704,21 @@ extends UnsynchronizedAppenderBase<LogbackEventType>
         return appenderStats;
     }
 
+
+    /**
+     *  Sends all queued messages without waiting for the batch delay, and waits up to
+     *  the specified number of milliseconds for them to be acknowledged. Applications
+     *  running in Lambda should call this before returning from their handler.
+     *
+     *  @return <code>true</code> if all queued messages were sent (or the appender
+     *          has not yet started a writer), <code>false</code> otherwise.
+     */
+    public boolean flush(long millisToWait)
+    {
+        LogWriter currentWriter = writer;
+        return (currentWriter == null) || currentWriter.flush(millisToWait);
+    }
+
 //----------------------------------------------------------------------------
 //  Appender implementation
 //----------------------------------------------------------------------------
@@ -434,26 +768,61 @@ extends UnsynchronizedAppenderBase<LogbackEventType>
             return;
         }
 
-        // it would be nice if Logback events had a shared superinterface,
-        // but they don't so we need to get ugly to get timestamp
-        long timestamp = (event instanceof ILoggingEvent) ? ((ILoggingEvent)event).getTimeStamp()
-                       : (event instanceof IAccessEvent)  ? ((IAccessEvent)event).getTimeStamp()
-                       : System.currentTimeMillis();
-
-        String message = null;
+        // the writer may be cleared by another thread (eg, after an uncaught exception),
+        // so we read it once; problems are reported, but never thrown to the caller
+        LogWriter currentWriter = writer;
         try
         {
-            message = layout.doLayout(event);
-        }
-        catch (Exception ex)
-        {
-            internalLogger.error("unable to apply layout", ex);
-            return;
-        }
+            if (currentWriter == null)
+            {
+                internalLogger.error("unable to append event: writer is not running", null);
+                return;
+            }
 
-        try
-        {
-            internalAppend(new LogMessage(timestamp, message));
+            // if the writer would discard this message, don't waste time formatting it
+            if (currentWriter.discardIfFull())
+            {
+                return;
+            }
+
+            // it would be nice if Logback events had a shared superinterface,
+            // but they don't so we need to get ugly to get timestamp
+            long timestamp = (event instanceof ILoggingEvent) ? ((ILoggingEvent)event).getTimeStamp()
+                           : (event instanceof IAccessEvent)  ? ((IAccessEvent)event).getTimeStamp()
+                           : System.currentTimeMillis();
+
+            // access events don't have a level
+            Severity severity = (event instanceof ILoggingEvent) ? toSeverity(((ILoggingEvent)event).getLevel())
+                              : LogMessage.DEFAULT_SEVERITY;
+
+            LogMessage logMessage;
+            if (appenderConfig.getDeferLayout())
+            {
+                // the event may refer to mutable per-thread state (such as the MDC); this
+                // captures a copy so that the layout produces the same output on the writer
+                // thread (caller data is not captured; see docs)
+                if (event instanceof DeferredProcessingAware)
+                {
+                    ((DeferredProcessingAware)event).prepareForDeferredProcessing();
+                }
+
+                Layout<LogbackEventType> currentLayout = layout;
+                logMessage = new LogMessage(timestamp, severity, () -> currentLayout.doLayout(event));
+            }
+            else
+            {
+                try
+                {
+                    logMessage = new LogMessage(timestamp, severity, layout.doLayout(event));
+                }
+                catch (Exception ex)
+                {
+                    internalLogger.error("unable to apply layout", ex);
+                    return;
+                }
+            }
+
+            internalAppend(currentWriter, logMessage);
         }
         catch (Exception ex)
         {
@@ -477,6 +846,19 @@ extends UnsynchronizedAppenderBase<LogbackEventType>
 //  Internals
 //----------------------------------------------------------------------------
 
+    /**
+     *  Maps a Logback level to a message severity.
+     */
+    private static Severity toSeverity(Level level)
+    {
+        int value = (level != null) ? level.toInt() : Level.INFO_INT;
+        return (value >= Level.ERROR_INT)   ? Severity.ERROR
+             : (value >= Level.WARN_INT)    ? Severity.WARN
+             : (value >= Level.INFO_INT)    ? Severity.INFO
+             :                                Severity.DEBUG;
+    }
+
+
     /**
      *  Called by {@link #initialize} to create the writer.
      */
@@ -502,7 +884,7 @@ extends UnsynchronizedAppenderBase<LogbackEventType>
 
                 if (layout.getFileHeader() != null)
                 {
-                    internalAppend(new LogMessage(System.currentTimeMillis(), layout.getFileHeader()));
+                    internalAppend(writer, new LogMessage(System.currentTimeMillis(), layout.getFileHeader()));
                 }
             }
             catch (Exception ex)
@@ -527,7 +909,7 @@ extends UnsynchronizedAppenderBase<LogbackEventType>
 
                 if (layout.getFileFooter() != null)
                 {
-                    internalAppend(new LogMessage(System.currentTimeMillis(), layout.getFileFooter()));
+                    internalAppend(writer, new LogMessage(System.currentTimeMillis(), layout.getFileFooter()));
                 }
 
                 writer.stop();
@@ -569,7 +951,7 @@ extends UnsynchronizedAppenderBase<LogbackEventType>
     }
 
 
-    private void internalAppend(LogMessage message)
+    private void internalAppend(LogWriter currentWriter, LogMessage message)
     {
         if (message == null)
         {
@@ -577,6 +959,6 @@ extends UnsynchronizedAppenderBase<LogbackEventType>
             return;
         }
 
-        writer.addMessage(message);
+        currentWriter.addMessage(message);
     }
 }
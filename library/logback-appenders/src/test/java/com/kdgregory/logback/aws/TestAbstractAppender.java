@@ -20,10 +20,12 @@ import org.junit.Test;
 import static org.junit.Assert.*;
 
 import org.slf4j.LoggerFactory;
+import org.slf4j.MDC;
 
 import com.kdgregory.logback.testhelpers.cloudwatch.TestableCloudWatchAppender;
 import com.kdgregory.logging.aws.cloudwatch.CloudWatchWriterStatistics;
 import com.kdgregory.logging.common.LogMessage;
+import com.kdgregory.logging.common.LogMessage.Severity;
 import com.kdgregory.logging.common.util.MessageQueue.DiscardAction;
 import com.kdgregory.logging.testhelpers.TestingException;
 import com.kdgregory.logging.testhelpers.cloudwatch.MockCloudWatchWriter;
@@ -207,6 +209,85 @@ extends AbstractUnitTest<TestableCloudWatchAppender>
     }
 
 
+    @Test
+    public void testDiscardBeforeFormat() throws Exception
+    {
+        // this configuration uses a layout that throws, so we'll know if it's called
+        initialize("testExceptionInLayout");
+
+        MockCloudWatchWriter writer = appender.getMockWriter();
+        writer.queueFull = true;
+
+        logger.debug("this should be discarded without throwage");
+
+        assertEquals("no messages sent to writer",              0,  writer.messages.size());
+        assertEquals("discarded before formatting",             1,  writer.discardedBeforeFormatCount);
+
+        appenderInternalLogger.assertErrorLog();
+    }
+
+
+    @Test
+    public void testSeverity() throws Exception
+    {
+        initialize("testLifecycle");
+
+        logger.debug("one");
+        logger.info("two");
+        logger.warn("three");
+        logger.error("four");
+
+        MockCloudWatchWriter writer = appender.getMockWriter();
+
+        assertEquals("debug",                   Severity.DEBUG,     writer.messages.get(0).getSeverity());
+        assertEquals("info",                    Severity.INFO,      writer.messages.get(1).getSeverity());
+        assertEquals("warn",                    Severity.WARN,      writer.messages.get(2).getSeverity());
+        assertEquals("error",                   Severity.ERROR,     writer.messages.get(3).getSeverity());
+    }
+
+
+    @Test
+    public void testFlush() throws Exception
+    {
+        initialize("testLifecycle");
+
+        logger.info("message");
+
+        MockCloudWatchWriter writer = appender.getMockWriter();
+
+        assertTrue("flush succeeded",                               appender.flush(1000));
+        assertEquals("writer flush invoked",                        1,                          writer.flushInvocationCount);
+    }
+
+
+    @Test
+    public void testDeferLayout() throws Exception
+    {
+        initialize("testDeferLayout");
+
+        assertTrue("deferLayout configured",                        appender.getDeferLayout());
+
+        MDC.put("foo", "bar");
+        logger.debug("this is {}", "a test");
+        MDC.remove("foo");
+
+        MockCloudWatchWriter writer = appender.getMockWriter();
+        LogMessage message = writer.messages.get(0);
+
+        assertTrue("message was passed to writer unformatted",                  message.isDeferred());
+        assertEquals("unformatted message size",                    0,          message.size());
+
+        String callerThreadName = Thread.currentThread().getName();
+        Thread formatThread = new Thread(message::format);
+        formatThread.start();
+        formatThread.join();
+
+        assertFalse("message no longer deferred",                               message.isDeferred());
+        assertEquals("message formatted from snapshot",             "bar " + callerThreadName + " this is a test",
+                                                                                message.getMessage());
+    }
+
+
     @Test
     public void testUncaughtExceptionHandling() throws Exception
     {
@@ -233,6 +314,34 @@ extends AbstractUnitTest<TestableCloudWatchAppender>
     }
 
 
+    @Test
+    public void testAppendAfterWriterCleared() throws Exception
+    {
+        initialize("testAppendAfterWriterCleared");
+
+        CloudWatchWriterStatistics appenderStats = appender.getAppenderStatistics();
+
+        logger.debug("first message should be processed");
+        logger.debug("this should trigger writer throwage");
+
+        // spin-wait for writer to be cleared by uncaught exception handler
+        for (int ii = 0 ; (ii < 10) && (appenderStats.getLastError() == null) ; ii++)
+        {
+            Thread.sleep(10);
+        }
+
+        assertNull("writer has been reset",                     appender.getWriter());
+
+        // this must not throw, even though there's no writer
+        logger.debug("this message has no writer");
+
+        appenderInternalLogger.assertDebugLog();
+        appenderInternalLogger.assertErrorLog("unhandled exception in writer",
+                                              "unable to append event: writer is not running");
+        appenderInternalLogger.assertErrorThrowables(TestingException.class, null);
+    }
+
+
     @Test
     public void testReconfigureDiscardProperties() throws Exception
     {
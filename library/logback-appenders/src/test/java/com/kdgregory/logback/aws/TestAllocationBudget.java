@@ -0,0 +1,204 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.kdgregory.logback.aws;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import org.junit.Assume;
+
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import com.kdgregory.logback.testhelpers.cloudwatch.TestableCloudWatchAccessAppender;
+import com.kdgregory.logback.testhelpers.cloudwatch.TestableCloudWatchAppender;
+import com.kdgregory.logging.testhelpers.AllocationMeter;
+import com.kdgregory.logging.testhelpers.cloudwatch.MockCloudWatchWriter;
+
+import ch.qos.logback.access.spi.AccessEvent;
+import ch.qos.logback.access.spi.IAccessEvent;
+import ch.qos.logback.access.spi.ServerAdapter;
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.classic.spi.LoggingEvent;
+import ch.qos.logback.core.Appender;
+import ch.qos.logback.core.ContextBase;
+
+
+/**
+ *  Verifies that the number of bytes allocated per <code>append()</code> stays
+ *  within a fixed budget. Events are created before measurement, so the budget
+ *  covers only the appender and layout.
+ *  <p>
+ *  Budgets are set with headroom over the values measured on JDK 8; if a change
+ *  has a good reason to allocate more, raise the budget as part of that change.
+ */
+public class TestAllocationBudget
+extends AbstractUnitTest<TestableCloudWatchAppender>
+{
+    // bytes per event
+    private final static long JSON_LAYOUT_BUDGET        = 8000;
+    private final static long JSON_ACCESS_LAYOUT_BUDGET = 8500;
+
+    // each round appends this many events; we take the best round, after JIT warmup
+    private final static int NUM_EVENTS = 10000;
+    private final static int NUM_ROUNDS = 10;
+
+    private final static String MESSAGE = "this is a test message, of typical length for an application log; value = 12345";
+
+
+    public TestAllocationBudget()
+    {
+        super("TestAllocationBudget/", "TEST");
+    }
+
+//----------------------------------------------------------------------------
+//  Support code
+//----------------------------------------------------------------------------
+
+    /**
+     *  Appends rounds of events, and returns the lowest per-event allocation.
+     *  The appender must already be initialized.
+     */
+    private static <E> long measureBytesPerEvent(Appender<E> appender, MockCloudWatchWriter writer, Supplier<E> eventFactory)
+    {
+        long result = Long.MAX_VALUE;
+        for (int round = 0 ; round < NUM_ROUNDS ; round++)
+        {
+            final Object[] events = new Object[NUM_EVENTS];
+            for (int ii = 0 ; ii < events.length ; ii++)
+            {
+                events[ii] = eventFactory.get();
+            }
+
+            // the mock writer retains messages; clearing it keeps the list's capacity
+            writer.messages.clear();
+
+            long bytes = AllocationMeter.allocatedBytes(() ->
+            {
+                for (Object event : events)
+                {
+                    appender.doAppend((E)event);
+                }
+            });
+
+            assertEquals("round " + round + ", messages written", NUM_EVENTS, writer.messages.size());
+            result = Math.min(result, bytes / NUM_EVENTS);
+        }
+        return result;
+    }
+
+//----------------------------------------------------------------------------
+//  Testcases
+//----------------------------------------------------------------------------
+
+    @Before
+    public void setUp()
+    {
+        Assume.assumeTrue(AllocationMeter.isSupported());
+    }
+
+
+    @Test
+    public void testJsonLayout() throws Exception
+    {
+        initialize("testJsonLayout");
+
+        // the first message initializes the writer
+        logger.debug(MESSAGE);
+
+        long bytesPerEvent = measureBytesPerEvent(
+                                appender,
+                                appender.getMockWriter(),
+                                () -> (ILoggingEvent)new LoggingEvent(getClass().getName(), logger, Level.DEBUG, MESSAGE, null, null));
+
+        assertTrue("JsonLayout allocated " + bytesPerEvent + " bytes per event; budget is " + JSON_LAYOUT_BUDGET,
+                   bytesPerEvent <= JSON_LAYOUT_BUDGET);
+    }
+
+
+    @Test
+    public void testJsonAccessLayout() throws Exception
+    {
+        ContextBase context = new ContextBase();
+
+        JsonAccessLayout layout = new JsonAccessLayout();
+        layout.setContext(context);
+        layout.start();
+
+        TestableCloudWatchAccessAppender accessAppender = new TestableCloudWatchAccessAppender();
+        accessAppender.setContext(context);
+        accessAppender.setName("TEST");
+        accessAppender.setLayout(layout);
+        accessAppender.setLogGroup("argle");
+        accessAppender.start();
+
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/example/request");
+        request.setQueryString("argle=bargle");
+        request.addParameter("argle", "bargle");
+        request.addHeader("User-Agent", "TestAllocationBudget");
+
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        response.setHeader("X-Example", "argle");
+
+        ServerAdapter serverAdapter = new ServerAdapter()
+        {
+            @Override
+            public long getRequestTimestamp()
+            {
+                return System.currentTimeMillis() - 40;
+            }
+
+            @Override
+            public long getContentLength()
+            {
+                return 1234;
+            }
+
+            @Override
+            public int getStatusCode()
+            {
+                return 200;
+            }
+
+            @Override
+            public Map<String,String> buildResponseHeaderMap()
+            {
+                return Collections.singletonMap("X-Example", "argle");
+            }
+        };
+
+        try
+        {
+            long bytesPerEvent = measureBytesPerEvent(
+                                    accessAppender,
+                                    accessAppender.getMockWriter(),
+                                    () -> (IAccessEvent)new AccessEvent(request, response, serverAdapter));
+
+            assertTrue("JsonAccessLayout allocated " + bytesPerEvent + " bytes per event; budget is " + JSON_ACCESS_LAYOUT_BUDGET,
+                       bytesPerEvent <= JSON_ACCESS_LAYOUT_BUDGET);
+        }
+        finally
+        {
+            accessAppender.stop();
+        }
+    }
+}
@@ -0,0 +1,52 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.kdgregory.logback.testhelpers.cloudwatch;
+
+import com.kdgregory.logback.aws.CloudWatchAppender;
+import com.kdgregory.logback.testhelpers.TestableLogbackInternalLogger;
+import com.kdgregory.logging.testhelpers.cloudwatch.MockCloudWatchWriter;
+import com.kdgregory.logging.testhelpers.cloudwatch.MockCloudWatchWriterFactory;
+
+import ch.qos.logback.access.spi.IAccessEvent;
+
+
+/**
+ *  A variant of {@link TestableCloudWatchAppender} that accepts access events.
+ *  It's configured programmatically rather than via Joran, so only exposes the
+ *  mock writer and internal logger.
+ */
+public class TestableCloudWatchAccessAppender
+extends CloudWatchAppender<IAccessEvent>
+{
+    public TestableCloudWatchAccessAppender()
+    {
+        super();
+        writerFactory = new MockCloudWatchWriterFactory();
+        internalLogger = new TestableLogbackInternalLogger(this);
+    }
+
+
+    public MockCloudWatchWriter getMockWriter()
+    {
+        return (MockCloudWatchWriter)writer;
+    }
+
+
+    public TestableLogbackInternalLogger getInternalLogger()
+    {
+        return (TestableLogbackInternalLogger)internalLogger;
+    }
+}
@@ -0,0 +1,81 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.kdgregory.logback.testhelpers.firehose;
+
+import com.kdgregory.logging.aws.firehose.FirehoseWriterStatistics;
+import com.kdgregory.logback.aws.FirehoseAppender;
+import com.kdgregory.logback.testhelpers.TestableLogbackInternalLogger;
+import com.kdgregory.logging.aws.firehose.FirehoseWriterConfig;
+import com.kdgregory.logging.common.LogWriter;
+import com.kdgregory.logging.common.util.ThreadFactory;
+import com.kdgregory.logging.common.util.WriterFactory;
+import com.kdgregory.logging.testhelpers.InlineThreadFactory;
+import com.kdgregory.logging.testhelpers.firehose.MockFirehoseWriter;
+import com.kdgregory.logging.testhelpers.firehose.MockFirehoseWriterFactory;
+
+import ch.qos.logback.classic.spi.ILoggingEvent;
+
+
+/**
+ *  This class provides visibility into the protected variables held by
+ *  FirehoseAppender and AbstractAppender. It also updates the factories
+ *  so that we don't get a real writer.
+ */
+public class TestableFirehoseAppender
+extends FirehoseAppender<ILoggingEvent>
+{
+    public TestableFirehoseAppender()
+    {
+        super();
+        setThreadFactory(new InlineThreadFactory());
+        setWriterFactory(new MockFirehoseWriterFactory());
+        internalLogger = new TestableLogbackInternalLogger(this);
+    }
+
+    public void setThreadFactory(ThreadFactory threadFactory)
+    {
+        this.threadFactory = threadFactory;
+    }
+
+
+    public void setWriterFactory(WriterFactory<FirehoseWriterConfig, FirehoseWriterStatistics> writerFactory)
+    {
+        this.writerFactory = writerFactory;
+    }
+
+
+    public MockFirehoseWriterFactory getWriterFactory()
+    {
+        return (MockFirehoseWriterFactory)writerFactory;
+    }
+
+
+    public LogWriter getWriter()
+    {
+        return writer;
+    }
+
+
+    public MockFirehoseWriter getMockWriter()
+    {
+        return (MockFirehoseWriter)writer;
+    }
+
+
+    public TestableLogbackInternalLogger getInternalLogger()
+    {
+        return (TestableLogbackInternalLogger)internalLogger;
+    }
+}
@@ -24,6 +24,8 @@ import com.kdgregory.logging.aws.facade.CloudWatchFacade;
 import com.kdgregory.logging.aws.facade.CloudWatchFacadeException;
 import com.kdgregory.logging.aws.internal.AbstractLogWriter;
 import com.kdgregory.logging.common.LogMessage;
+import com.kdgregory.logging.common.jfr.JfrEvents;
+import com.kdgregory.logging.common.util.ExistenceCache;
 import com.kdgregory.logging.common.util.InternalLogger;
 import com.kdgregory.logging.common.util.RetryManager2;
 
@@ -38,6 +40,9 @@ import com.kdgregory.logging.common.util.RetryManager2;
 public class CloudWatchLogWriter
 extends AbstractLogWriter<CloudWatchWriterConfig,CloudWatchWriterStatistics>
 {
+    // identifies this writer in flight recorder events
+    private final static String JFR_SERVICE_NAME = "CloudWatch";
+
     // passed into constructor
     private CloudWatchFacade facade;
 
@@ -47,6 +52,10 @@ extends AbstractLogWriter<CloudWatchWriterConfig,CloudWatchWriterStatistics>
     // this controls the retries for creating and configuring groups and streams
     protected RetryManager2 createRetry = new RetryManager2("create", Duration.ofMillis(200), true, true);
 
+    // in optimistic mode, bounds the creation of a destination that a send reported
+    // missing; this happens within the send, so doesn't use the initialization timeout
+    protected Duration optimisticCreateTimeout = Duration.ofMillis(5000);
+
     // these control the retries for PutEvents; note that sends use a duration-based timeout
     protected Duration sendTimeout = Duration.ofMillis(2000);
     protected RetryManager2 sendRetry = new RetryManager2("send", Duration.ofMillis(200), true, false);
@@ -87,29 +96,14 @@ extends AbstractLogWriter<CloudWatchWriterConfig,CloudWatchWriterStatistics>
             return false;
         }
 
-        Instant timeoutAt = Instant.now().plusMillis(config.getInitializationTimeout());
-
-        try
+        if (config.getOptimisticMode())
         {
-            logger.debug("checking for existence of CloudWatch log group: " + config.getLogGroupName());
-            if (facade.findLogGroup() == null)  // will throw if no network connection
-                createLogGroup(timeoutAt);
-            else
-                logger.debug("using existing CloudWatch log group: " + config.getLogGroupName());
-
-            logger.debug("checking for existence of CloudWatch log stream: " + config.getLogStreamName());
-            if (facade.findLogStream() == null)
-                createLogStream(timeoutAt);
-            else
-                logger.debug("using existing CloudWatch log stream: " + config.getLogStreamName());
-
+            logger.debug("optimistic mode: assuming CloudWatch log group and stream exist: "
+                         + config.getLogGroupName() + " / " + config.getLogStreamName());
             return true;
         }
-        catch (Throwable ex)
-        {
-            reportError("exception during initialization", ex);
-            return false;
-        }
+
+        return findOrCreateDestination();
     }
 
 
@@ -125,25 +119,31 @@ extends AbstractLogWriter<CloudWatchWriterConfig,CloudWatchWriterStatistics>
         if (config.getEnableBatchLogging())
             logger.debug("about to write batch of " + batch.size() + " message(s)");
 
+        Object jfrToken = JfrEvents.beginBatchSend();
+
         // CloudWatch wants all messages to be sorted by timestamp
         Collections.sort(batch);
 
         Instant timeoutAt = Instant.now().plus(sendTimeout);
         List<LogMessage> result = sendRetry.invoke(timeoutAt, () ->
         {
+            long callStart = System.currentTimeMillis();
             try
             {
                 facade.putEvents(batch);
+                stats.recordApiLatency(System.currentTimeMillis() - callStart);
                 if (config.getEnableBatchLogging())
                     logger.debug("wrote batch of " + batch.size() + " message(s)");
                 return Collections.emptyList();
             }
             catch (CloudWatchFacadeException ex)
             {
+                stats.recordApiLatency(System.currentTimeMillis() - callStart);
                 switch (ex.getReason())
                 {
                     case THROTTLING:
                         stats.incrementThrottledWrites();
+                        JfrEvents.throttled(JFR_SERVICE_NAME);
                         return null;
                     case ABORTED:
                         // my understanding of this exception is that it happens due to Thread.interrupt()
@@ -151,9 +151,17 @@ extends AbstractLogWriter<CloudWatchWriterConfig,CloudWatchWriterStatistics>
                         return batch;
                     case MISSING_LOG_GROUP:
                     case MISSING_LOG_STREAM:
-                        reportError(ex.getMessage(), ex);
-                        ensureDestinationAvailable();
-                        return batch;
+                        forgetDestination(ex.getReason());
+                        if (! config.getOptimisticMode())
+                        {
+                            reportError(ex.getMessage(), ex);
+                            ensureDestinationAvailable();
+                            return batch;
+                        }
+                        // in optimistic mode this is the expected way to find a new destination,
+                        // so we retry the send (with backoff) once it's been created
+                        logger.debug(ex.getMessage() + "; attempting to create");
+                        return createMissingDestination(ex.getReason()) ? null : batch;
                     default:
                         reportError("failed to send: " + ex.getMessage(), ex.getCause());
                         return batch;
@@ -169,11 +177,13 @@ extends AbstractLogWriter<CloudWatchWriterConfig,CloudWatchWriterStatistics>
         // empty list on success, original batch on failure
         if (result != null)
         {
+            JfrEvents.endBatchSend(jfrToken, JFR_SERVICE_NAME, batch, result);
             return result;
         }
 
         // if we got here, we dropped out of the retry loop
         logger.warn("batch failed: repeated throttling");
+        JfrEvents.endBatchSend(jfrToken, JFR_SERVICE_NAME, batch, batch);
         return batch;
     }
 
@@ -210,6 +220,162 @@ extends AbstractLogWriter<CloudWatchWriterConfig,CloudWatchWriterStatistics>
 //  Internals
 //----------------------------------------------------------------------------
 
+    /**
+     *  Verifies that the log group and stream exist, creating them if necessary.
+     *  If the existence cache is enabled, it's consulted before making describe
+     *  calls, and updated once the destination is known to exist.
+     */
+    private boolean findOrCreateDestination()
+    {
+        Instant timeoutAt = Instant.now().plusMillis(config.getInitializationTimeout());
+        ExistenceCache cache = existenceCache();
+
+        try
+        {
+            if ((cache != null) && cache.contains(logGroupCacheKey()))
+            {
+                logger.debug("using cached CloudWatch log group: " + config.getLogGroupName());
+            }
+            else
+            {
+                logger.debug("checking for existence of CloudWatch log group: " + config.getLogGroupName());
+                if (facade.findLogGroup() == null)  // will throw if no network connection
+                    createLogGroup(timeoutAt);
+                else
+                    logger.debug("using existing CloudWatch log group: " + config.getLogGroupName());
+
+                if (cache != null)
+                    cache.add(logGroupCacheKey(), config.getExistenceCacheTtl());
+            }
+
+            if ((cache != null) && cache.contains(logStreamCacheKey()))
+            {
+                logger.debug("using cached CloudWatch log stream: " + config.getLogStreamName());
+            }
+            else
+            {
+                logger.debug("checking for existence of CloudWatch log stream: " + config.getLogStreamName());
+                if (facade.findLogStream() == null)
+                    createLogStream(timeoutAt);
+                else
+                    logger.debug("using existing CloudWatch log stream: " + config.getLogStreamName());
+
+                if (cache != null)
+                    cache.add(logStreamCacheKey(), config.getExistenceCacheTtl());
+            }
+
+            return true;
+        }
+        catch (Throwable ex)
+        {
+            reportError("exception during initialization", ex);
+            return false;
+        }
+    }
+
+
+    /**
+     *  Removes the destination from the existence cache after a send has told us
+     *  that it's missing. A missing group implies a missing stream.
+     */
+    private void forgetDestination(CloudWatchFacadeException.ReasonCode reason)
+    {
+        ExistenceCache cache = existenceCache();
+        if (cache == null)
+            return;
+
+        if (reason == CloudWatchFacadeException.ReasonCode.MISSING_LOG_GROUP)
+            cache.remove(logGroupCacheKey());
+        cache.remove(logStreamCacheKey());
+    }
+
+
+    /**
+     *  Creates the destination after a send has told us that it's missing, for
+     *  optimistic mode. This doesn't describe the group or stream, since avoiding
+     *  those calls is the point of optimistic mode; the facade treats an "already
+     *  exists" response as success. Returns false if unable to create within
+     *  {@link #optimisticCreateTimeout}.
+     */
+    private boolean createMissingDestination(CloudWatchFacadeException.ReasonCode reason)
+    {
+        Instant timeoutAt = Instant.now().plus(optimisticCreateTimeout);
+        try
+        {
+            if (reason == CloudWatchFacadeException.ReasonCode.MISSING_LOG_GROUP)
+            {
+                logger.debug("creating CloudWatch log group: " + config.getLogGroupName());
+                if (createRetry.invoke(timeoutAt, () -> { facade.createLogGroup(); return Boolean.TRUE; }, new DefaultExceptionHandler()) == null)
+                {
+                    reportError("timed out while creating CloudWatch log group", null);
+                    return false;
+                }
+                setRetentionPeriod();
+            }
+
+            logger.debug("creating CloudWatch log stream: " + config.getLogStreamName());
+            if (createRetry.invoke(timeoutAt, () -> { facade.createLogStream(); return Boolean.TRUE; }, new DefaultExceptionHandler()) == null)
+            {
+                reportError("timed out while creating CloudWatch log stream", null);
+                return false;
+            }
+
+            ExistenceCache cache = existenceCache();
+            if (cache != null)
+            {
+                cache.add(logGroupCacheKey(), config.getExistenceCacheTtl());
+                cache.add(logStreamCacheKey(), config.getExistenceCacheTtl());
+            }
+            return true;
+        }
+        catch (Exception ex)
+        {
+            reportError("unable to create CloudWatch log group/stream", ex);
+            return false;
+        }
+    }
+
+
+    /**
+     *  Returns the shared existence cache, null if it's disabled.
+     */
+    private ExistenceCache existenceCache()
+    {
+        return (config.getExistenceCacheTtl() > 0)
+             ? ExistenceCache.getInstance(config.getExistenceCacheFile())
+             : null;
+    }
+
+
+    // cache keys identify the destination and where it lives; names can't contain
+    // colons, so the location (which may) goes at the end
+
+    private String logGroupCacheKey()
+    {
+        return "logGroup:" + config.getLogGroupName() + ":" + cacheKeyLocation();
+    }
+
+
+    private String logStreamCacheKey()
+    {
+        return "logStream:" + config.getLogGroupName() + ":" + config.getLogStreamName() + ":" + cacheKeyLocation();
+    }
+
+
+    // only uses configured values: resolving the default region or account would
+    // mean calls to AWS (and the info facade) for every writer that uses the cache
+
+    private String cacheKeyLocation()
+    {
+        String location = (config.getClientEndpoint() != null) ? config.getClientEndpoint()
+                        : (config.getClientRegion() != null)   ? config.getClientRegion()
+                        : "";
+        return (config.getAssumedRole() != null)
+             ? location + "|" + config.getAssumedRole()
+             : location;
+    }
+
+
     private void createLogGroup(Instant timeoutAt)
     {
         logger.debug("creating CloudWatch log group: " + config.getLogGroupName());
@@ -226,6 +392,12 @@ extends AbstractLogWriter<CloudWatchWriterConfig,CloudWatchWriterStatistics>
             throw new RuntimeException("timed out while waiting for CloudWatch log group");
         }
 
+        setRetentionPeriod();
+    }
+
+
+    private void setRetentionPeriod()
+    {
         try
         {
             if (config.getRetentionPeriod() != null)
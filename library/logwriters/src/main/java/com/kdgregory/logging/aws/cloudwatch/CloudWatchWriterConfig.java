@@ -32,12 +32,18 @@ extends AbstractWriterConfig<CloudWatchWriterConfig>
     public final static String          DEFAULT_LOG_STREAM_NAME     = "{startupTimestamp}";
     public final static Integer         DEFAULT_RETENTION_PERIOD    = null; // unlimited
     public final static boolean         DEFAULT_DEDICATED_WRITER    = true;
+    public final static boolean         DEFAULT_OPTIMISTIC_MODE     = false;
+    public final static long            DEFAULT_EXISTENCE_CACHE_TTL = 0;    // disabled
+    public final static String          DEFAULT_EXISTENCE_CACHE_FILE = null; // memory-only
 
 
     private String                      logGroupName;
     private String                      logStreamName               = DEFAULT_LOG_STREAM_NAME;
     private Integer                     retentionPeriod             = DEFAULT_RETENTION_PERIOD;
     private boolean                     dedicatedWriter             = DEFAULT_DEDICATED_WRITER;
+    private boolean                     optimisticMode              = DEFAULT_OPTIMISTIC_MODE;
+    private long                        existenceCacheTtl           = DEFAULT_EXISTENCE_CACHE_TTL;
+    private String                      existenceCacheFile          = DEFAULT_EXISTENCE_CACHE_FILE;
 
 
     public CloudWatchWriterConfig()
@@ -94,6 +100,42 @@ extends AbstractWriterConfig<CloudWatchWriterConfig>
     }
 
 
+    public boolean getOptimisticMode()
+    {
+        return optimisticMode;
+    }
+
+    public CloudWatchWriterConfig setOptimisticMode(boolean value)
+    {
+        optimisticMode = value;
+        return this;
+    }
+
+
+    public long getExistenceCacheTtl()
+    {
+        return existenceCacheTtl;
+    }
+
+    public CloudWatchWriterConfig setExistenceCacheTtl(long value)
+    {
+        existenceCacheTtl = value;
+        return this;
+    }
+
+
+    public String getExistenceCacheFile()
+    {
+        return existenceCacheFile;
+    }
+
+    public CloudWatchWriterConfig setExistenceCacheFile(String value)
+    {
+        existenceCacheFile = value;
+        return this;
+    }
+
+
     /**
      *  Validates the configuration, returning a list of any validation errors.
      *  An empty list indicates a valid config.
@@ -58,7 +58,7 @@ implements CloudWatchWriterStatisticsMXBean
 
 
     @Override
-    public int getMessagesDiscarded()
+    public long getMessagesDiscarded()
     {
         return super.getMessagesDiscarded();
     }
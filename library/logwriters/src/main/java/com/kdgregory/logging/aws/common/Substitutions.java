@@ -21,13 +21,14 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Date;
-import java.util.Iterator;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.TimeZone;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 
-import com.kdgregory.logging.aws.facade.FacadeFactory;
+import com.kdgregory.logging.aws.facade.CachingInfoFacade;
 import com.kdgregory.logging.aws.facade.InfoFacade;
 
 
@@ -36,33 +37,30 @@ import com.kdgregory.logging.aws.facade.InfoFacade;
  *  that needs substitutions applied (otherwise the timestamp would become stale).
  *  See docs for a complete explanation of how substitions work.
  *  <p>
+ *  Input strings are compiled into a template, consisting of literal text and the
+ *  tags to be substituted, and that template is cached for use by any subsequent
+ *  instance. Tags are looked up in a per-instance registry of substitutors.
+ *  <p>
  *  All values are lazily retrieved. This includes an <code>InfoFacade</code>, used
- *  for any substitutions that require knowledge of the AWS environment.
+ *  for any substitutions that require knowledge of the AWS environment; by default
+ *  this is the shared {@link CachingInfoFacade}.
  *  <p>
  *  Instances are thread-safe, but not thread-optimized (concurrent lazy retrieves of
  *  the same value are possible).
  */
 public class Substitutions
 {
+    // compiled templates are shared by all instances; the limit is a guard against
+    // unexpected usage (for example, a Log4J2 lookup on every event)
+    private final static int MAX_CACHED_TEMPLATES = 1000;
+    private static ConcurrentHashMap<String,List<TemplateSegment>> compiledTemplates = new ConcurrentHashMap<>();
+
     // provides access to bits of information about deployment environment
     private InfoFacade infoFacade;
 
-    // all substitutors are created by constructor, most lazily compute their value
-    private SequenceSubstitutor sequenceSubstitutor;
-    private DateSubstitutor dateSubstitutor;
-    private TimestampSubstitutor timestampSubstitutor;
-    private HourlyTimestampSubstitutor hourlyTimestampSubstitutor;
-    private StartupTimestampSubstitutor startupTimestampSubstitutor;
-    private PidSubstitutor pidSubstitutor;
-    private HostnameSubstitutor hostnameSubstitutor;
-    private UUIDSubstitutor uuidSubstitutor;
-    private SyspropSubstitutor syspropSubstitutor;
-    private EnvarSubstitutor envarSubstitutor;
-    private AwsAccountIdSubstitutor awsAccountIdSubstitutor;
-    private EC2InstanceIdSubstitutor ec2InstanceIdSubstitutor;
-    private EC2RegionSubstitutor ec2RegionSubstitutor;
-    private EC2TagSubstitutor ec2TagSubstitutor;
-    private SSMSubstitutor ssmSubstitutor;
+    // all substitutors are created by constructor, most lazily compute their value;
+    // they're keyed by the tags that they recognize
+    private Map<String,AbstractSubstitutor> registry = new HashMap<>();
 
 
     /**
@@ -75,21 +73,21 @@ public class Substitutions
 
         RuntimeMXBean runtimeMx = ManagementFactory.getRuntimeMXBean();
 
-        sequenceSubstitutor = new SequenceSubstitutor(sequence);
-        dateSubstitutor = new DateSubstitutor(now);
-        timestampSubstitutor = new TimestampSubstitutor(now);
-        hourlyTimestampSubstitutor = new HourlyTimestampSubstitutor(now);
-        startupTimestampSubstitutor = new StartupTimestampSubstitutor(runtimeMx);
-        pidSubstitutor = new PidSubstitutor(runtimeMx);
-        hostnameSubstitutor = new HostnameSubstitutor(runtimeMx);
-        uuidSubstitutor = new UUIDSubstitutor();
-        syspropSubstitutor = new SyspropSubstitutor();
-        envarSubstitutor = new EnvarSubstitutor();
-        awsAccountIdSubstitutor = new AwsAccountIdSubstitutor();
-        ec2InstanceIdSubstitutor = new EC2InstanceIdSubstitutor();
-        ec2RegionSubstitutor = new EC2RegionSubstitutor();
-        ec2TagSubstitutor = new EC2TagSubstitutor();
-        ssmSubstitutor = new SSMSubstitutor();
+        register(new SequenceSubstitutor(sequence));
+        register(new DateSubstitutor(now));
+        register(new TimestampSubstitutor(now));
+        register(new HourlyTimestampSubstitutor(now));
+        register(new StartupTimestampSubstitutor(runtimeMx));
+        register(new PidSubstitutor(runtimeMx));
+        register(new HostnameSubstitutor(runtimeMx));
+        register(new UUIDSubstitutor());
+        register(new SyspropSubstitutor());
+        register(new EnvarSubstitutor());
+        register(new AwsAccountIdSubstitutor());
+        register(new EC2InstanceIdSubstitutor());
+        register(new EC2RegionSubstitutor());
+        register(new EC2TagSubstitutor());
+        register(new SSMSubstitutor());
     }
 
 
@@ -107,44 +105,110 @@ public class Substitutions
 //----------------------------------------------------------------------------
 
     /**
-     *  Applies all substitutions. This is not particularly performant, but it
-     *  won't be called frequently. If passed <code>null</code> returns same.
+     *  Applies all substitutions. If passed <code>null</code> returns same.
      */
     public String perform(String input)
     {
         if (input == null)
             return null;
 
-        StringBuilder sb = new StringBuilder(512);
+        StringBuilder sb = new StringBuilder(input.length() + 64);
+        for (TemplateSegment segment : compile(input))
+        {
+            String value = (segment.tag != null)
+                         ? registry.get(segment.tag).perform(segment)
+                         : null;
+            sb.append((value != null) ? value : segment.text);
+        }
+
+        return sb.toString();
+    }
+
+//----------------------------------------------------------------------------
+//  Templates
+//----------------------------------------------------------------------------
+
+    /**
+     *  A component of a compiled template: either literal text, or a tag with
+     *  an optional embedded key and default value. The original text is retained
+     *  for tags, so that it can be emitted if there's no substitution.
+     */
+    private static class TemplateSegment
+    {
+        public final String text;
+        public final String tag;
+        public final String embeddedKey;
+        public final String defaultValue;
+
+        public TemplateSegment(String text)
+        {
+            this(text, null, null, null);
+        }
+
+        public TemplateSegment(String text, String tag, String embeddedKey, String defaultValue)
+        {
+            this.text = text;
+            this.tag = tag;
+            this.embeddedKey = embeddedKey;
+            this.defaultValue = defaultValue;
+        }
+    }
+
+
+    /**
+     *  Returns the compiled form of the input string, either from cache or by
+     *  parsing it. Since all instances register the same tags, it doesn't matter
+     *  which instance compiles the template.
+     */
+    private List<TemplateSegment> compile(String input)
+    {
+        List<TemplateSegment> template = compiledTemplates.get(input);
+        if (template != null)
+            return template;
+
+        template = new ArrayList<>();
         for (String token : tokenize(input))
         {
-            if (token.startsWith("{"))
-            {
-                sb.append(
-                        sequenceSubstitutor.perform(
-                        dateSubstitutor.perform(
-                        timestampSubstitutor.perform(
-                        hourlyTimestampSubstitutor.perform(
-                        startupTimestampSubstitutor.perform(
-                        pidSubstitutor.perform(
-                        hostnameSubstitutor.perform(
-                        uuidSubstitutor.perform(
-                        syspropSubstitutor.perform(
-                        envarSubstitutor.perform(
-                        awsAccountIdSubstitutor.perform(
-                        ec2InstanceIdSubstitutor.perform(
-                        ec2RegionSubstitutor.perform(
-                        ec2TagSubstitutor.perform(
-                        ssmSubstitutor.perform(
-                        token))))))))))))))));
-            }
-            else
+            template.add(token.startsWith("{") ? compileTag(token) : new TemplateSegment(token));
+        }
+        template = Collections.unmodifiableList(template);
+
+        if (compiledTemplates.size() >= MAX_CACHED_TEMPLATES)
+            compiledTemplates.clear();
+        compiledTemplates.put(input, template);
+        return template;
+    }
+
+
+    /**
+     *  Identifies the tag represented by a token. Tags are either an exact match
+     *  for the token (eg, "{date}"), or a leading component that ends in a colon
+     *  (eg, "{sysprop:"), followed by an embedded key and optional default value.
+     *  Tokens that don't match any tag are treated as literal text.
+     */
+    private TemplateSegment compileTag(String token)
+    {
+        if (registry.containsKey(token))
+            return new TemplateSegment(token, token, null, null);
+
+        for (int colon = token.indexOf(':') ; colon >= 0 ; colon = token.indexOf(':', colon + 1))
+        {
+            String tag = token.substring(0, colon + 1);
+            if (registry.containsKey(tag))
             {
-                sb.append(token);
+                String embeddedKey = token.substring(colon + 1).replace("}", "");
+                String defaultValue = "";
+                int splitPoint = embeddedKey.indexOf(':');
+                if (splitPoint >= 0)
+                {
+                    defaultValue = embeddedKey.substring(splitPoint + 1);
+                    embeddedKey = embeddedKey.substring(0, splitPoint);
+                }
+                return new TemplateSegment(token, tag, embeddedKey, defaultValue);
             }
         }
 
-        return sb.toString();
+        return new TemplateSegment(token);
     }
 
 //----------------------------------------------------------------------------
@@ -156,16 +220,17 @@ public class Substitutions
      *  <p>
      *  Subclasses provide the tags that they recognize, either as a full tag
      *  (opening and closing braces) or as a leading component ("{tag:") for
-     *  those tags that support embedded lookups. The {@link #perform} method
-     *  tries to match each of the tags in turn (most subclasses only provide
-     *  one, but some that support legacy tags provide multiple).
+     *  those tags that support embedded lookups. Most subclasses only provide
+     *  one, but some that support legacy tags provide multiple.
      *  <p>
-     *  If a tag is matched, <code>perform()</code> next looks for a cached
-     *  value. If one is set, then that value is returned.
+     *  When invoked, {@link #perform} first looks for a cached value. If one is
+     *  set, then that value is returned.
      *  <p>
      *  If there's no cached value, <code>retrieveValue()</code> is called, and
-     *  its result is returned. It will be provided with any embedded tags, and
-     *  is permitted to cache the value.
+     *  its result is returned. It will be provided with any embedded key, and
+     *  is permitted to cache the value. If it returns null, the segment's default
+     *  value is returned (or null, to indicate no substitution, if there is no
+     *  default).
      */
     private abstract class AbstractSubstitutor
     {
@@ -177,48 +242,24 @@ public class Substitutions
             this.tags = Arrays.asList(tags);
         }
 
-        public String perform(String input)
+        public List<String> getTags()
         {
-            if (input == null)
-                return "";
-
-            String result = null;
-            for (Iterator<String> itx = tags.iterator() ; itx.hasNext() && (result == null) ; )
-            {
-                String tag = itx.next();
-                if (input.equals(tag))
-                {
-                    result = cachedValue != null
-                           ? cachedValue
-                           : retrieveValue(null);
-                }
-                else if (input.startsWith(tag))
-                {
-                    result = cachedValue != null
-                           ? cachedValue
-                           : trySubstitution(input, tag);
-                }
-            }
-
-            return (result == null) ? input : result;
+            return tags;
         }
 
-        private String trySubstitution(String input, String tag)
+        public String perform(TemplateSegment segment)
         {
-            String embeddedKey = input.replace(tag, "").replace("}", "");
-            String defaultValue = "";
-            int splitPoint = embeddedKey.indexOf(':');
-            if (splitPoint >= 0)
-            {
-                defaultValue = embeddedKey.substring(splitPoint + 1);
-                embeddedKey = embeddedKey.substring(0, splitPoint);
-            }
+            if (cachedValue != null)
+                return cachedValue;
 
-            String result = retrieveValue(embeddedKey);
+            if (segment.embeddedKey == null)
+                return retrieveValue(null);
+
+            String result = retrieveValue(segment.embeddedKey);
             if (result != null)
                 return result;
 
-            return defaultValue.isEmpty() ? null : defaultValue;
+            return segment.defaultValue.isEmpty() ? null : segment.defaultValue;
         }
 
         // some subclasses set the cached value in their constructor; rather than
@@ -535,6 +576,18 @@ public class Substitutions
 //  Other internals
 //----------------------------------------------------------------------------
 
+    /**
+     *  Adds a substitutor to the registry, under all of its tags.
+     */
+    private void register(AbstractSubstitutor substitutor)
+    {
+        for (String tag : substitutor.getTags())
+        {
+            registry.put(tag, substitutor);
+        }
+    }
+
+
     /**
      *  Returns/creates the <code>InfoFacade</code>. Used only by substitutors
      *  that need access to the AWS environment.
@@ -543,7 +596,7 @@ public class Substitutions
     {
         if (infoFacade == null)
         {
-            infoFacade = FacadeFactory.createFacade(InfoFacade.class);
+            infoFacade = CachingInfoFacade.getInstance();
         }
         return infoFacade;
     }
@@ -0,0 +1,323 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.kdgregory.logging.aws.facade;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+import com.kdgregory.logging.common.util.AtomicFileWriter;
+
+
+/**
+ *  A process-wide cache for <code>InfoFacade</code> lookups, so that multiple
+ *  appenders and layouts don't repeatedly call the EC2 metadata service, STS,
+ *  and so on. Each value is retained for a configurable time-to-live.
+ *  <p>
+ *  The shared instance is created on first use, and at that time starts a
+ *  background thread to retrieve the values that are most commonly used in
+ *  substitutions (account ID, instance ID, and region). Optionally, those
+ *  values (and the default region) are persisted to a file, so that other
+ *  processes on the same machine can use them without making any calls.
+ *  EC2 tags and Parameter Store values are only cached in memory.
+ *  <p>
+ *  Because there's no appender configuration that applies to the process as
+ *  a whole, the shared instance is configured using system properties:
+ *  <ul>
+ *  <li> {@value #PROP_TTL}: the number of milliseconds to retain a value.
+ *  <li> {@value #PROP_FILE}: the file used to persist values; default is to
+ *       not persist.
+ *  <li> {@value #PROP_PREFETCH}: set to "false" to disable prefetch.
+ *  </ul>
+ *  <p>
+ *  Failed lookups (which throw) are not cached. "Not available" values, such as
+ *  a null instance ID when not running on EC2, are cached in memory but never
+ *  persisted.
+ */
+public class CachingInfoFacade
+implements InfoFacade
+{
+    public final static String PROP_TTL         = "com.kdgregory.logging.aws.infoCache.ttl";
+    public final static String PROP_FILE        = "com.kdgregory.logging.aws.infoCache.file";
+    public final static String PROP_PREFETCH    = "com.kdgregory.logging.aws.infoCache.prefetch";
+
+    public final static long DEFAULT_TTL        = 15 * 60 * 1000;
+
+    // keys for persistable values; these are also the property names in the file
+    private final static String KEY_ACCOUNT_ID      = "accountId";
+    private final static String KEY_DEFAULT_REGION  = "defaultRegion";
+    private final static String KEY_INSTANCE_ID     = "ec2InstanceId";
+    private final static String KEY_EC2_REGION      = "ec2Region";
+    private final static List<String> PERSISTED_KEYS = Arrays.asList(KEY_ACCOUNT_ID, KEY_DEFAULT_REGION, KEY_INSTANCE_ID, KEY_EC2_REGION);
+
+    // suffix for the file property that holds a value's expiration time
+    private final static String EXPIRATION_SUFFIX   = ".expiresAt";
+
+    private static CachingInfoFacade instance;
+
+
+    /**
+     *  Returns the shared instance, creating it (and starting prefetch) if needed.
+     *
+     *  @throws IllegalArgumentException if unable to create the underlying facade
+     *          (see {@link FacadeFactory}).
+     */
+    public static synchronized InfoFacade getInstance()
+    {
+        if (instance == null)
+        {
+            InfoFacade delegate = FacadeFactory.createFacade(InfoFacade.class);
+            long ttl = Long.getLong(PROP_TTL, DEFAULT_TTL).longValue();
+            String filename = System.getProperty(PROP_FILE);
+            instance = new CachingInfoFacade(delegate, ttl, ((filename != null) && ! filename.isEmpty()) ? new File(filename) : null);
+
+            if (! "false".equalsIgnoreCase(System.getProperty(PROP_PREFETCH)))
+                instance.prefetch();
+        }
+        return instance;
+    }
+
+//----------------------------------------------------------------------------
+//  Instance variables and constructor
+//----------------------------------------------------------------------------
+
+    private InfoFacade delegate;
+    private long ttl;
+    private File file;
+
+    private Map<String,CacheEntry> entries = new ConcurrentHashMap<>();
+
+
+    /**
+     *  Creates an instance that is not shared. This is intended for testing;
+     *  normal code should call {@link #getInstance}.
+     *
+     *  @param  delegate    The facade that actually retrieves values.
+     *  @param  ttl         Milliseconds to retain a retrieved value.
+     *  @param  file        If not null, the file used to persist values.
+     */
+    public CachingInfoFacade(InfoFacade delegate, long ttl, File file)
+    {
+        this.delegate = delegate;
+        this.ttl = ttl;
+        this.file = file;
+        readFile();
+    }
+
+//----------------------------------------------------------------------------
+//  Public methods
+//----------------------------------------------------------------------------
+
+    /**
+     *  Starts a daemon thread that retrieves commonly-used values. Any errors
+     *  are ignored; they'll happen again when the value is actually requested.
+     */
+    public void prefetch()
+    {
+        Thread thread = new Thread(() ->
+        {
+            for (Runnable fn : Arrays.<Runnable>asList(this::retrieveEC2InstanceId, this::retrieveEC2Region, this::retrieveAccountId))
+            {
+                try
+                {
+                    fn.run();
+                }
+                catch (Throwable ignored)
+                {
+                    // see method doc
+                }
+            }
+        });
+        thread.setName("com-kdgregory-aws-infocache-prefetch");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+//----------------------------------------------------------------------------
+//  InfoFacade
+//----------------------------------------------------------------------------
+
+    @Override
+    public String retrieveAccountId()
+    {
+        return (String)lookup(KEY_ACCOUNT_ID, delegate::retrieveAccountId);
+    }
+
+
+    @Override
+    public String retrieveDefaultRegion()
+    {
+        return (String)lookup(KEY_DEFAULT_REGION, delegate::retrieveDefaultRegion);
+    }
+
+
+    @Override
+    public String retrieveEC2InstanceId()
+    {
+        return (String)lookup(KEY_INSTANCE_ID, delegate::retrieveEC2InstanceId);
+    }
+
+
+    @Override
+    public String retrieveEC2Region()
+    {
+        return (String)lookup(KEY_EC2_REGION, delegate::retrieveEC2Region);
+    }
+
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public Map<String,String> retrieveEC2Tags(String instanceId)
+    {
+        return (Map<String,String>)lookup("ec2Tags:" + instanceId, () ->
+        {
+            Map<String,String> tags = delegate.retrieveEC2Tags(instanceId);
+            return (tags != null) ? Collections.unmodifiableMap(tags) : Collections.emptyMap();
+        });
+    }
+
+
+    @Override
+    public String retrieveParameter(String parameterName)
+    {
+        return (String)lookup("ssm:" + parameterName, () -> delegate.retrieveParameter(parameterName));
+    }
+
+//----------------------------------------------------------------------------
+//  Internals
+//----------------------------------------------------------------------------
+
+    /**
+     *  Holds a single value. Loading is synchronized on the entry, so that the
+     *  prefetch thread and a caller don't both make the same call.
+     */
+    private static class CacheEntry
+    {
+        public Object value;
+        public long expiresAt;
+    }
+
+
+    private Object lookup(String key, Supplier<Object> loader)
+    {
+        CacheEntry entry = entries.computeIfAbsent(key, k -> new CacheEntry());
+        Object value;
+        synchronized (entry)
+        {
+            if (entry.expiresAt > System.currentTimeMillis())
+                return entry.value;
+
+            value = loader.get();
+            entry.value = value;
+            entry.expiresAt = System.currentTimeMillis() + ttl;
+        }
+
+        if (PERSISTED_KEYS.contains(key) && isPersistable(value))
+            writeFile();
+
+        return value;
+    }
+
+
+    /**
+     *  Determines whether a value represents a successful lookup, and can be
+     *  shared with other processes.
+     */
+    private static boolean isPersistable(Object value)
+    {
+        return (value != null) && ! "unknown".equals(value);
+    }
+
+
+    private void readFile()
+    {
+        if ((file == null) || ! file.exists())
+            return;
+
+        Properties props = new Properties();
+        try (InputStream in = Files.newInputStream(file.toPath()))
+        {
+            props.load(in);
+        }
+        catch (IOException ignored)
+        {
+            // the cache is an optimization; an unreadable file is the same as no file
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+        for (String key : PERSISTED_KEYS)
+        {
+            String value = props.getProperty(key);
+            String expiresAt = props.getProperty(key + EXPIRATION_SUFFIX);
+            if ((value == null) || (expiresAt == null))
+                continue;
+
+            try
+            {
+                CacheEntry entry = new CacheEntry();
+                entry.value = value;
+                entry.expiresAt = Long.parseLong(expiresAt);
+                if (entry.expiresAt > now)
+                    entries.put(key, entry);
+            }
+            catch (NumberFormatException ignored)
+            {
+                // corrupted entry will be retrieved normally
+            }
+        }
+    }
+
+
+    private synchronized void writeFile()
+    {
+        if (file == null)
+            return;
+
+        Properties props = new Properties();
+        for (String key : PERSISTED_KEYS)
+        {
+            CacheEntry entry = entries.get(key);
+            if (entry == null)
+                continue;
+
+            synchronized (entry)
+            {
+                if (isPersistable(entry.value) && (entry.expiresAt > System.currentTimeMillis()))
+                {
+                    props.setProperty(key, String.valueOf(entry.value));
+                    props.setProperty(key + EXPIRATION_SUFFIX, String.valueOf(entry.expiresAt));
+                }
+            }
+        }
+
+        try
+        {
+            AtomicFileWriter.write(file, out -> props.store(out, "cached by " + getClass().getName()));
+        }
+        catch (IOException ignored)
+        {
+            // the cache is an optimization; failing to write it just means more lookups
+        }
+    }
+}
@@ -0,0 +1,55 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.kdgregory.logging.aws.facade;
+
+import java.util.List;
+
+import com.kdgregory.logging.aws.firehose.FirehoseConstants.StreamStatus;
+import com.kdgregory.logging.common.LogMessage;
+
+
+/**
+ *  Exposes the Kinesis Data Firehose APIs used by <code>FirehoseLogWriter</code>.
+ *  <p>
+ *  Instances are created by {@link FacadeFactory}, and are tied to a single
+ *  writer's configuration.
+ *  <p>
+ *  All operations may throw {@link FirehoseFacadeException}. Callers are expected
+ *  to catch this exception, and take action based on the reason code that it
+ *  exposes.
+ */
+public interface FirehoseFacade
+{
+    /**
+     *  Returns the current status of the delivery stream, null if the status cannot
+     *  be determined due to a retryable condition.
+     */
+    StreamStatus retrieveStreamStatus();
+
+
+    /**
+     *  Attempts to send records to the delivery stream, one record per message. The
+     *  entire call may fail, or individual records may be rejected. The returned list
+     *  contains any records that were not successfully written.
+     */
+    List<LogMessage> putRecords(List<LogMessage> batch);
+
+
+    /**
+     *  Shuts down the underlying client.
+     */
+    void shutdown();
+}
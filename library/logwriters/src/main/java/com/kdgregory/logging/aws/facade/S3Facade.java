@@ -0,0 +1,83 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.kdgregory.logging.aws.facade;
+
+import java.util.List;
+
+
+/**
+ *  Exposes the S3 APIs used by the S3 log-writer, and to offload oversize messages
+ *  from any log-writer.
+ *  <p>
+ *  Instances are created by {@link FacadeFactory}, and are tied to a single
+ *  writer's configuration (which provides the client configuration, such as
+ *  region and endpoint, as well as the destination bucket). For the S3 writer,
+ *  the destination is its configured bucket; for all other writers it's the
+ *  bucket used for oversize messages.
+ *  <p>
+ *  All operations may throw {@link S3FacadeException}. Callers are expected to
+ *  catch this exception, and take action based on the reason code that it exposes.
+ */
+public interface S3Facade
+{
+    /**
+     *  Writes the provided content to the specified key in the configured bucket.
+     *  <p>
+     *  Throws if unable, including throttling.
+     */
+    void putObject(String key, byte[] content);
+
+
+    /**
+     *  Starts a multipart upload for the specified key, returning its upload ID.
+     *  <p>
+     *  Throws if unable, including throttling.
+     */
+    String startMultipartUpload(String key);
+
+
+    /**
+     *  Uploads a single part of a multipart upload, returning the part's ETag.
+     *  Part numbers start at 1; all parts other than the last must be at least
+     *  5 MiB.
+     *  <p>
+     *  Throws if unable, including throttling.
+     */
+    String uploadPart(String key, String uploadId, int partNumber, byte[] content);
+
+
+    /**
+     *  Completes a multipart upload. The passed list contains the ETags of the
+     *  uploaded parts, in order.
+     *  <p>
+     *  Throws if unable, including throttling.
+     */
+    void completeMultipartUpload(String key, String uploadId, List<String> partETags);
+
+
+    /**
+     *  Aborts a multipart upload, releasing any uploaded parts.
+     *  <p>
+     *  Throws if unable, including throttling.
+     */
+    void abortMultipartUpload(String key, String uploadId);
+
+
+    /**
+     *  Shuts down the underlying client.
+     */
+    void shutdown();
+}
@@ -0,0 +1,128 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.kdgregory.logging.aws.facade;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+
+/**
+ *  This exception is thown by {@link S3Facade} for any situation that
+ *  requires intervention by the caller. Each instance has a reason code, and
+ *  an indication of whether the condition is retryable. Where relevant, it may
+ *  wrap an underlying SDK-specific cause.
+ */
+public class S3FacadeException
+extends FacadeException
+{
+    private static final long serialVersionUID = 1L;
+
+    public enum ReasonCode
+    {
+        /**
+         *  An exception that isn't expected to be corrected by the caller (just
+         *  throw it on up).
+         */
+        UNEXPECTED_EXCEPTION,
+
+
+        /**
+         *  An invalid configuration value (these shouldn't happen if you validate
+         *  your configuration!). The message will indicate the problem.
+         */
+        INVALID_CONFIGURATION,
+
+
+        /**
+         *  The configured S3 bucket does not exist.
+         */
+        MISSING_BUCKET,
+
+
+        /**
+         *  The API call was throttled; caller should retry.
+         */
+        THROTTLING
+    }
+
+//----------------------------------------------------------------------------
+//  Error classification
+//----------------------------------------------------------------------------
+
+    // S3 error codes for conditions that retrying won't fix
+    private final static Set<String> PERMANENT_ERROR_CODES = new HashSet<>(Arrays.asList(
+            "AccessDenied", "AccountProblem", "AllAccessDisabled", "EntityTooLarge",
+            "InvalidAccessKeyId", "InvalidBucketName", "InvalidPart", "InvalidPartOrder",
+            "NoSuchBucket", "NoSuchUpload", "SignatureDoesNotMatch"));
+
+
+    /**
+     *  Determines whether an S3 error code represents a permanent failure. This is
+     *  used by the facade implementations to decide retryability; an unknown code
+     *  is assumed to be transient.
+     */
+    public static boolean isPermanentError(String errorCode)
+    {
+        return PERMANENT_ERROR_CODES.contains(errorCode);
+    }
+
+//----------------------------------------------------------------------------
+//  Implementation
+//----------------------------------------------------------------------------
+
+    private ReasonCode reasonCode;
+
+
+    /**
+     *  Base constructor.
+     */
+    public S3FacadeException(String message, Throwable cause, ReasonCode reasonCode, boolean isRetryable, String functionName, Object... args)
+    {
+        super(message, cause, isRetryable, functionName, args);
+        this.reasonCode = reasonCode;
+    }
+
+
+    /**
+     *  Convenience constructor, for conditions where there is no underlying exception,
+     *  or where it's irrelevant.
+     */
+    public S3FacadeException(String message, ReasonCode reasonCode, boolean isRetryable, String functionName, Object... args)
+    {
+        this(message, null, reasonCode, isRetryable, functionName, args);
+    }
+
+
+    /**
+     *  Convenience constructor for testing. Do not use in normal code!
+     */
+    public S3FacadeException(ReasonCode reasonCode, boolean isRetryable, Throwable cause)
+    {
+        this("use for testing only", cause, reasonCode, isRetryable, null);
+    }
+
+//----------------------------------------------------------------------------
+//  Accessors
+//----------------------------------------------------------------------------
+
+    /**
+     *  Returns a code that can be used by the application to dispatch exception handling.
+     */
+    public ReasonCode getReason()
+    {
+        return reasonCode;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,57 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.kdgregory.logging.aws.facade;
+
+import java.util.List;
+
+import com.kdgregory.logging.common.LogMessage;
+
+
+/**
+ *  Exposes the SQS APIs used by <code>SQSLogWriter</code>.
+ *  <p>
+ *  Instances are created by {@link FacadeFactory}, and are tied to a single
+ *  writer's configuration. Unlike the other facades, <code>sendMessages()</code>
+ *  may be called concurrently from multiple threads.
+ *  <p>
+ *  All operations may throw {@link SQSFacadeException}. Callers are expected
+ *  to catch this exception, and take action based on the reason code that it
+ *  exposes.
+ */
+public interface SQSFacade
+{
+    /**
+     *  Returns the URL of the configured queue, null if the URL cannot be determined
+     *  due to a retryable condition. Throws with reason <code>MISSING_QUEUE</code> if
+     *  the queue does not exist.
+     */
+    String retrieveQueueUrl();
+
+
+    /**
+     *  Attempts to send messages to the queue identified by the passed URL, using a
+     *  single <code>SendMessageBatch</code> request. The entire call may fail, or
+     *  individual messages may be rejected. The returned list contains any messages
+     *  that were not successfully written.
+     */
+    List<LogMessage> sendMessages(String queueUrl, List<LogMessage> batch);
+
+
+    /**
+     *  Shuts down the underlying client.
+     */
+    void shutdown();
+}
@@ -0,0 +1,62 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.kdgregory.logging.aws.firehose;
+
+
+/**
+ *  Holds limits and other constants for Kinesis Data Firehose.
+ *  <p>
+ *  See https://docs.aws.amazon.com/firehose/latest/APIReference/API_PutRecordBatch.html
+ *  and https://docs.aws.amazon.com/firehose/latest/dev/limits.html
+ */
+public class FirehoseConstants
+{
+
+    /**
+     *  Maximum number of records in a single batch.
+     */
+    public final static int MAX_BATCH_COUNT = 500;
+
+
+    /**
+     *  Maximum number of bytes in a batch.
+     */
+    public final static int MAX_BATCH_BYTES = 4 * 1024 * 1024;
+
+
+    /**
+     *  Maximum number of bytes in a single record.
+     */
+    public final static int MAX_RECORD_BYTES = 1000 * 1024;
+
+
+    /**
+     *  Allowed characters for delivery stream name.
+     */
+    public final static String ALLOWED_STREAM_NAME_REGEX = "[a-zA-Z0-9_.-]{1,64}";
+
+
+    /**
+     *  An SDK-independent enumeration of delivery stream status codes as returned
+     *  by <code>DescribeDeliveryStream</code>, with the addition of a status
+     *  indicating that the stream does not exist.
+     */
+    public enum StreamStatus
+    {
+        DOES_NOT_EXIST, CREATING, CREATING_FAILED, DELETING, DELETING_FAILED, ACTIVE
+    }
+
+}
@@ -0,0 +1,324 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.kdgregory.logging.aws.firehose;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.kdgregory.logging.aws.facade.FirehoseFacade;
+import com.kdgregory.logging.aws.facade.FirehoseFacadeException;
+import com.kdgregory.logging.aws.facade.FirehoseFacadeException.ReasonCode;
+import com.kdgregory.logging.aws.firehose.FirehoseConstants.StreamStatus;
+import com.kdgregory.logging.aws.internal.AbstractLogWriter;
+import com.kdgregory.logging.common.LogMessage;
+import com.kdgregory.logging.common.jfr.JfrEvents;
+import com.kdgregory.logging.common.util.InternalLogger;
+import com.kdgregory.logging.common.util.RetryManager2;
+
+
+/**
+ *  Writes log messages to a Kinesis Data Firehose delivery stream. The stream
+ *  must already exist (creating it requires destination configuration that's
+ *  outside the scope of a logging library).
+ *  <p>
+ *  By default each message is written as a separate record. If configured to
+ *  aggregate messages, the messages in a batch are combined into as few records
+ *  as possible, each message terminated by a newline. This reduces cost, as
+ *  Firehose charges by record (rounded up to 5 KB).
+ *  <p>
+ *  Implementation note: protected instance variables are replaced by tests.
+ */
+public class FirehoseLogWriter
+extends AbstractLogWriter<FirehoseWriterConfig,FirehoseWriterStatistics>
+{
+    // identifies this writer in flight recorder events
+    private final static String JFR_SERVICE_NAME = "Firehose";
+
+    // passed into constructor
+    private FirehoseFacade facade;
+
+    // this controls retries for DescribeDeliveryStream, which should be fast
+    protected RetryManager2 describeRetry = new RetryManager2("describe", Duration.ofMillis(50));
+
+    // this controls retries while waiting for a newly-created stream to become active
+    protected RetryManager2 postCreateRetry = new RetryManager2("describe", Duration.ofMillis(200), false, true);
+
+    // these control retries for PutRecordBatch; note that we use a duration-based timeout
+    protected Duration sendTimeout = Duration.ofMillis(2000);
+    protected RetryManager2 sendRetry = new RetryManager2("send", Duration.ofMillis(200));
+
+
+    public FirehoseLogWriter(FirehoseWriterConfig config, FirehoseWriterStatistics stats, InternalLogger logger, FirehoseFacade facade)
+    {
+        super(config, stats, logger);
+
+        this.facade = facade;
+
+        stats.setActualStreamName(config.getStreamName());
+    }
+
+//----------------------------------------------------------------------------
+//  LogWriter overrides
+//----------------------------------------------------------------------------
+
+    @Override
+    public int maxMessageSize()
+    {
+        // when aggregating, we may have to add a newline
+        return config.getAggregateMessages()
+             ? FirehoseConstants.MAX_RECORD_BYTES - 1
+             : FirehoseConstants.MAX_RECORD_BYTES;
+    }
+
+//----------------------------------------------------------------------------
+//  Hooks for superclass
+//----------------------------------------------------------------------------
+
+    @Override
+    protected boolean ensureDestinationAvailable()
+    {
+        List<String> configErrors = config.validate();
+        if (! configErrors.isEmpty())
+        {
+            for (String error : configErrors)
+                reportError("configuration error: " + error, null);
+            return false;
+        }
+
+        Instant timeoutAt = Instant.now().plusMillis(config.getInitializationTimeout());
+
+        try
+        {
+            logger.debug("checking status of delivery stream: " + config.getStreamName());
+            StreamStatus status = describeRetry.invoke(timeoutAt, () -> facade.retrieveStreamStatus());
+            if (status == null)
+            {
+                reportError("timeout retrieving status of delivery stream \"" + config.getStreamName() + "\"", null);
+                return false;
+            }
+
+            switch (status)
+            {
+                case ACTIVE :
+                    return true;
+                case CREATING :
+                    return waitForStreamToBeActive(timeoutAt);
+                case DOES_NOT_EXIST :
+                    reportError("delivery stream \"" + config.getStreamName() + "\" does not exist", null);
+                    return false;
+                default :
+                    reportError("delivery stream \"" + config.getStreamName() + "\" is not usable; status: " + status, null);
+                    return false;
+            }
+        }
+        catch (Exception ex)
+        {
+            reportError("exception during initialization", ex);
+            return false;
+        }
+    }
+
+
+    @Override
+    protected List<LogMessage> sendBatch(List<LogMessage> currentBatch)
+    {
+        stats.setLastBatchSize(currentBatch.size());
+        if (config.getEnableBatchLogging())
+            logger.debug("about to write batch of " + currentBatch.size() + " message(s)");
+
+        // this should never happen (we wait for at least one message in queue)
+        if (currentBatch.isEmpty())
+            return currentBatch;
+
+        Map<LogMessage,List<LogMessage>> aggregates = config.getAggregateMessages()
+                                                    ? aggregate(currentBatch)
+                                                    : null;
+        List<LogMessage> records = (aggregates != null)
+                                 ? new ArrayList<LogMessage>(aggregates.keySet())
+                                 : currentBatch;
+
+        Object jfrToken = JfrEvents.beginBatchSend();
+        try
+        {
+            List<LogMessage> result = sendRetry.invoke(sendTimeout, () ->
+            {
+                long callStart = System.currentTimeMillis();
+                try
+                {
+                    List<LogMessage> unsent = facade.putRecords(records);
+                    stats.recordApiLatency(System.currentTimeMillis() - callStart);
+                    if (config.getEnableBatchLogging())
+                        logger.debug("wrote batch of " + records.size() + " record(s); " + unsent.size() + " rejected");
+                    return unsent;
+                }
+                catch (FirehoseFacadeException ex)
+                {
+                    stats.recordApiLatency(System.currentTimeMillis() - callStart);
+                    if (ex.getReason() == ReasonCode.THROTTLING)
+                    {
+                        stats.incrementThrottledWrites();
+                        JfrEvents.throttled(JFR_SERVICE_NAME);
+                        return null;
+                    }
+                    if (! ex.isRetryable())
+                    {
+                        throw ex;
+                    }
+                    return null;
+                }
+            });
+
+            if (result == null)
+            {
+                logger.warn("timeout while sending batch");
+                JfrEvents.endBatchSend(jfrToken, JFR_SERVICE_NAME, currentBatch, currentBatch);
+                return currentBatch;
+            }
+
+            List<LogMessage> unsent = disaggregate(result, aggregates);
+            JfrEvents.endBatchSend(jfrToken, JFR_SERVICE_NAME, currentBatch, unsent);
+            return unsent;
+        }
+        catch (Exception ex)
+        {
+            logger.error("exception while sending batch", ex);
+            JfrEvents.endBatchSend(jfrToken, JFR_SERVICE_NAME, currentBatch, currentBatch);
+            return currentBatch;
+        }
+    }
+
+
+    @Override
+    protected int effectiveSize(LogMessage message)
+    {
+        // when aggregating we assume the worst case, that we have to add a newline
+        return config.getAggregateMessages()
+             ? message.size() + 1
+             : message.size();
+    }
+
+
+    @Override
+    protected boolean withinServiceLimits(int batchBytes, int numMessages)
+    {
+        // when aggregating, the number of records is far below the limit (each
+        // record other than the last is at least half full)
+        return (batchBytes < FirehoseConstants.MAX_BATCH_BYTES)
+            && (config.getAggregateMessages() || (numMessages <= FirehoseConstants.MAX_BATCH_COUNT));
+    }
+
+
+    @Override
+    protected void stopAWSClient()
+    {
+        facade.shutdown();
+    }
+
+//----------------------------------------------------------------------------
+//  Internals
+//----------------------------------------------------------------------------
+
+    /**
+     *  Waits for stream to become active, logging a message if it doesn't.
+     */
+    private boolean waitForStreamToBeActive(Instant timeoutAt)
+    {
+        logger.debug("waiting for delivery stream " + config.getStreamName() + " to become active");
+        StreamStatus status = postCreateRetry.invoke(timeoutAt, () ->
+        {
+            StreamStatus check = facade.retrieveStreamStatus();
+            return (check == StreamStatus.ACTIVE) ? check : null;
+        });
+
+        if (status != StreamStatus.ACTIVE)
+        {
+            reportError("timeout waiting for delivery stream " + config.getStreamName() + " to become active", null);
+            return false;
+        }
+
+        return true;
+    }
+
+
+    /**
+     *  Combines the messages in a batch into as few records as possible, each
+     *  message terminated by a newline. Returns a map from each record to the
+     *  messages that it contains (so that rejected records can be requeued),
+     *  in the order that the records were created.
+     *  <p>
+     *  Note that <code>LogMessage</code> does not override <code>equals()</code>,
+     *  so the map is keyed by identity.
+     */
+    private static Map<LogMessage,List<LogMessage>> aggregate(List<LogMessage> batch)
+    {
+        Map<LogMessage,List<LogMessage>> result = new LinkedHashMap<LogMessage,List<LogMessage>>();
+
+        StringBuilder text = new StringBuilder(8192);
+        List<LogMessage> contents = new ArrayList<LogMessage>();
+        int recordBytes = 0;
+        for (LogMessage message : batch)
+        {
+            String messageText = message.getMessage();
+            boolean needsNewline = ! messageText.endsWith("\n");
+            int messageBytes = message.size() + (needsNewline ? 1 : 0);
+
+            if (recordBytes + messageBytes > FirehoseConstants.MAX_RECORD_BYTES)
+            {
+                createRecord(result, text, contents);
+                text.setLength(0);
+                contents = new ArrayList<LogMessage>();
+                recordBytes = 0;
+            }
+
+            text.append(messageText);
+            if (needsNewline)
+                text.append('\n');
+            contents.add(message);
+            recordBytes += messageBytes;
+        }
+        createRecord(result, text, contents);
+
+        return result;
+    }
+
+
+    private static void createRecord(Map<LogMessage,List<LogMessage>> map, StringBuilder text, List<LogMessage> contents)
+    {
+        LogMessage record = new LogMessage(contents.get(0).getTimestamp(), text.toString());
+        map.put(record, contents);
+    }
+
+
+    /**
+     *  Translates a list of unsent records into the messages that they contain.
+     */
+    private static List<LogMessage> disaggregate(List<LogMessage> unsent, Map<LogMessage,List<LogMessage>> aggregates)
+    {
+        if ((aggregates == null) || unsent.isEmpty())
+            return unsent;
+
+        List<LogMessage> result = new ArrayList<LogMessage>();
+        for (LogMessage record : unsent)
+        {
+            result.addAll(aggregates.get(record));
+        }
+        return result;
+    }
+}
@@ -0,0 +1,103 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.kdgregory.logging.aws.firehose;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import com.kdgregory.logging.aws.internal.AbstractWriterConfig;
+
+
+/**
+ *  Configuration for FirehoseLogWriter.
+ */
+public class FirehoseWriterConfig
+extends AbstractWriterConfig<FirehoseWriterConfig>
+{
+    public final static long            DEFAULT_INITIALIZATION_TIMEOUT  = 60000;
+
+    public final static boolean         DEFAULT_AGGREGATE_MESSAGES      = false;
+
+
+    private String                      streamName;
+    private boolean                     aggregateMessages               = DEFAULT_AGGREGATE_MESSAGES;
+
+
+    public FirehoseWriterConfig()
+    {
+        super(DEFAULT_INITIALIZATION_TIMEOUT);
+    }
+
+//----------------------------------------------------------------------------
+//  Accessors
+//----------------------------------------------------------------------------
+
+    public String getStreamName()
+    {
+        return streamName;
+    }
+
+    public FirehoseWriterConfig setStreamName(String value)
+    {
+        streamName = value;
+        return this;
+    }
+
+
+    public boolean getAggregateMessages()
+    {
+        return aggregateMessages;
+    }
+
+    public FirehoseWriterConfig setAggregateMessages(boolean value)
+    {
+        aggregateMessages = value;
+        return this;
+    }
+
+//----------------------------------------------------------------------------
+//  Other public methods
+//----------------------------------------------------------------------------
+
+    /**
+     *  Validates the configuration, returning a list of any validation errors.
+     *  An empty list indicates a valid config.
+     */
+    public List<String> validate()
+    {
+        List<String> result = new ArrayList<>();
+
+        if (streamName == null)
+        {
+            result.add("missing stream name");
+        }
+        else if (streamName.isEmpty())
+        {
+            result.add("blank stream name");
+        }
+        else if (streamName.length() > 64)
+        {
+            result.add("stream name too long");
+        }
+        else if (! Pattern.matches(FirehoseConstants.ALLOWED_STREAM_NAME_REGEX, streamName))
+        {
+            result.add("invalid stream name: " + streamName);
+        }
+
+        return result;
+    }
+}
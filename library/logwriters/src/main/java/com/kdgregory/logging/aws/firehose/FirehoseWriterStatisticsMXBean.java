@@ -0,0 +1,271 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.kdgregory.logging.aws.firehose;
+
+import java.util.Date;
+import java.util.List;
+
+import javax.management.MXBean;
+
+
+/**
+ *  Defines the JMX Bean interface for {@link FirehoseWriterStatistics}.
+ */
+@MXBean
+public interface FirehoseWriterStatisticsMXBean
+{
+    /**
+     *  Returns the actual delivery stream name used by the writer.
+     */
+    String getActualStreamName();
+
+
+    /**
+     *  Returns the most recent error from the writer. This will be null if there
+     *  have been no errors.
+     */
+    String getLastErrorMessage();
+
+
+    /**
+     *  Returns the timestamp of the most recent error from the writer. This will be
+     *  null if there have been no errors.
+     */
+    Date getLastErrorTimestamp();
+
+
+    /**
+     *  Returns the stack trace of the most recent error from the writer. This will be
+     *  null if there have been no errors or if the error did not have an associated
+     *  exception.
+     */
+    List<String> getLastErrorStacktrace();
+
+
+    /**
+     *  Returns the number of batches that were retried due to throttling. If this is
+     *  more than single digits, you should contact AWS to increase your quota.
+     */
+    long getThrottledWrites();
+
+
+    /**
+     *  Returns the number of messages that were either dropped or truncated because
+     *  they were too large for the service to accept.
+     */
+    long getOversizeMessages();
+
+
+    /**
+     *  Returns the number of messages successfully sent to the stream.
+     */
+    long getMessagesSent();
+
+
+    /**
+     *  Returns the number of messages in the most recent batch.
+     */
+    int getLastBatchSize();
+
+
+    /**
+     *  Returns the number of messages successfully sent to the stream in the last
+     *  batch. This should be at least 1; higher values indicate how many messages
+     *  will be lost if the program shuts down unexpectedly.
+     */
+    int getMessagesSentLastBatch();
+
+
+    /**
+     *  Returns the number of messages requeued because they could not be sent. This
+     *  should be 0; non-zero values indicate throttling or error. If you are able to
+     *  send some messages but not all, it indicates that the delivery stream is at
+     *  its throughput quota.
+     */
+    int getMessagesRequeuedLastBatch();
+
+
+    /**
+     *  Returns the number of messages discarded by the writer's message queue.
+     */
+    long getMessagesDiscarded();
+
+
+    /**
+     *  Returns the total size, in bytes, of the messages discarded by the writer's
+     *  message queue.
+     */
+    long getBytesDiscarded();
+
+
+    /**
+     *  Returns the number of times that a message could not be added to the queue
+     *  without waiting, because the discard action is <code>block</code> and the
+     *  queue was at its threshold.
+     */
+    long getBlockedEnqueues();
+
+
+    /**
+     *  Returns the total time, in milliseconds, that application threads have spent
+     *  waiting to add messages to the queue.
+     */
+    long getBlockedTime();
+
+
+    /**
+     *  Returns the number of times that a blocked thread waited for the full block
+     *  timeout, after which the fallback discard action was applied.
+     */
+    long getBlockTimeouts();
+
+
+    /**
+     *  Returns the total size, in bytes, of the messages successfully sent. This is
+     *  the UTF-8 size of the message text, and does not include any overhead added
+     *  by the service.
+     */
+    long getBytesSent();
+
+
+    /**
+     *  Returns the number of batches in which at least one message was sent.
+     */
+    long getBatchesSent();
+
+
+    /**
+     *  Returns the rate, in messages per second, at which messages are being sent.
+     *  This is a moving average over approximately the last minute.
+     */
+    double getMessagesSentRate();
+
+
+    /**
+     *  Returns the rate, in bytes per second, at which messages are being sent.
+     *  This is a moving average over approximately the last minute.
+     */
+    double getBytesSentRate();
+
+
+    /**
+     *  Returns the rate, in messages per second, at which messages are being
+     *  discarded. This is a moving average over approximately the last minute.
+     */
+    double getMessagesDiscardedRate();
+
+
+    /**
+     *  Returns the age, in milliseconds, of the oldest message that has not yet been
+     *  sent; 0 if there are no unsent messages. This is how far behind real time the
+     *  destination is.
+     */
+    long getOldestMessageAge();
+
+
+    /**
+     *  Returns the number of messages currently waiting in the writer's queue.
+     */
+    int getQueueDepth();
+
+
+    /**
+     *  Returns the largest number of messages that have been in the writer's queue.
+     */
+    int getQueueDepthHighWater();
+
+
+    /**
+     *  Returns the total size, in bytes, of the messages currently waiting in the
+     *  writer's queue.
+     */
+    long getQueueBytes();
+
+
+    /**
+     *  Returns the largest total size, in bytes, of the messages that have been in
+     *  the writer's queue.
+     */
+    long getQueueBytesHighWater();
+
+
+    /**
+     *  Returns the median time, in milliseconds, between a message's creation and
+     *  its successful send.
+     */
+    long getQueueResidencyP50();
+
+
+    /**
+     *  Returns the 99th percentile time, in milliseconds, between a message's
+     *  creation and its successful send.
+     */
+    long getQueueResidencyP99();
+
+
+    /**
+     *  Returns the 99.9th percentile time, in milliseconds, between a message's
+     *  creation and its successful send.
+     */
+    long getQueueResidencyP999();
+
+
+    /**
+     *  Returns the median elapsed time, in milliseconds, of a call to the service.
+     */
+    long getApiLatencyP50();
+
+
+    /**
+     *  Returns the 99th percentile elapsed time, in milliseconds, of a call to the
+     *  service.
+     */
+    long getApiLatencyP99();
+
+
+    /**
+     *  Returns the 99.9th percentile elapsed time, in milliseconds, of a call to the
+     *  service.
+     */
+    long getApiLatencyP999();
+
+
+    /**
+     *  Returns the median time, in milliseconds, to build a batch. This includes
+     *  the batch delay, so a value below that delay indicates that batches are
+     *  being limited by the service's size or count limits.
+     */
+    long getBatchBuildTimeP50();
+
+
+    /**
+     *  Returns the 99th percentile time, in milliseconds, to build a batch.
+     */
+    long getBatchBuildTimeP99();
+
+
+    /**
+     *  Returns the 99.9th percentile time, in milliseconds, to build a batch.
+     */
+    long getBatchBuildTimeP999();
+
+
+    /**
+     *  Sends all queued messages without waiting for the batch delay, waiting up to
+     *  the specified number of milliseconds for them to be acknowledged. Returns
+     *  <code>true</code> if all messages were sent.
+     */
+    boolean flush(long millisToWait);
+}
@@ -16,10 +16,26 @@ package com.kdgregory.logging.aws.internal;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
-
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.kdgregory.logging.aws.facade.FacadeFactory;
+import com.kdgregory.logging.aws.facade.S3Facade;
 import com.kdgregory.logging.common.LogMessage;
 import com.kdgregory.logging.common.LogWriter;
+import com.kdgregory.logging.common.internal.JsonConverter;
+import com.kdgregory.logging.common.jfr.JfrEvents;
 import com.kdgregory.logging.common.util.InternalLogger;
 import com.kdgregory.logging.common.util.MessageQueue;
 import com.kdgregory.logging.common.util.MessageQueue.DiscardAction;
@@ -38,6 +54,10 @@ implements LogWriter
     // flag value for shutdownTime
     private final static long NEVER_SHUTDOWN = Long.MAX_VALUE;
 
+    // limits for offloading oversize messages to S3
+    private final static int OVERSIZE_S3_MAX_PENDING = 100;
+    private final static int OVERSIZE_S3_PREVIEW_SIZE = 256;
+
     // these three are provided to constructor, used both here and in subclass
     protected ConfigType config;
     protected StatsType stats;
@@ -50,9 +70,9 @@ implements LogWriter
     // updated by stop()
     private volatile long shutdownTime = NEVER_SHUTDOWN;
 
-    // this is set when shutdown hooks are in effect, so that the writer
-    // can remove it as part of cleanup
-    private volatile Thread shutdownHook;
+    // this is set when the writer is registered with the shutdown coordinator,
+    // so that it can deregister as part of cleanup
+    private volatile boolean registeredForShutdown;
 
     // intended for testing; set to true on either success or failure
     private volatile boolean initializationComplete;
@@ -63,6 +83,33 @@ implements LogWriter
     // exposed for testing
     private volatile int batchCount;
 
+    // set by processBatch, used when draining the queue
+    private volatile int lastBatchSize;
+    private volatile boolean lastBatchHadFailures;
+
+    // synchronous-mode group commit: each message gets a ticket after it's enqueued;
+    // the leader sends everything in the queue, then marks all tickets that were
+    // issued before it started as complete
+    private final Object commitLock = new Object();
+    private final AtomicLong commitTickets = new AtomicLong();
+    private long committedTickets;
+    private boolean commitInProgress;
+
+    // explicit flush: callers increment the request count and wait for the writer
+    // thread to drain the queue and update the completed count
+    private final Object flushLock = new Object();
+    private final AtomicLong flushRequests = new AtomicLong();
+    private volatile long flushesCompleted;
+    private boolean lastFlushSucceeded;
+    private boolean writerExited;
+
+    // oversize messages may be uploaded to S3 using a bounded pool, so that uploads
+    // don't delay either the application or the writer thread; both are created on
+    // first use
+    private final Object uploadLock = new Object();
+    private S3Facade s3Facade;
+    private ThreadPoolExecutor uploadExecutor;
+
 
     public AbstractLogWriter(ConfigType config, StatsType appenderStats, InternalLogger logger)
     {
@@ -71,7 +118,11 @@ implements LogWriter
         this.logger = logger;
 
         messageQueue = new MessageQueue(config.getDiscardThreshold(), config.getDiscardAction());
+        messageQueue.setDiscardByLevel(config.getDiscardByLevel());
+        messageQueue.setBlockTimeout(config.getBlockTimeout());
+        messageQueue.setBlockFallbackAction(config.getBlockFallbackAction());
         this.stats.setMessageQueue(messageQueue);
+        this.stats.setWriter(this);
     }
 
 //----------------------------------------------------------------------------
@@ -105,6 +156,19 @@ implements LogWriter
         return batchCount;
     }
 
+
+    /**
+     *  Sets the facade used to upload oversize messages. This is intended for
+     *  testing; normally the facade is created when first needed.
+     */
+    public void setS3Facade(S3Facade value)
+    {
+        synchronized (uploadLock)
+        {
+            s3Facade = value;
+        }
+    }
+
 //----------------------------------------------------------------------------
 //  Implementation of LogWriter
 //----------------------------------------------------------------------------
@@ -117,6 +181,7 @@ implements LogWriter
         if (! initialize())
         {
             logger.error("log writer failed to initialize (thread: " + Thread.currentThread().getName() + ")", null);
+            releaseFlushWaiters();
             return;
         }
 
@@ -129,7 +194,17 @@ implements LogWriter
         dispatchThread = Thread.currentThread();
 
         if (config.getSynchronousMode())
+        {
+            // if initialization was deferred, appenders may have queued messages
+            // while we were initializing; they won't be sent until the next append
+            // unless we send them now (but if a send fails, we don't retry here:
+            // the requeued messages will go out with that append)
+            if (config.getDeferInitialization())
+            {
+                drainQueue();
+            }
             return;
+        }
 
         // the do-while loop ensures that we attempt to process at least one batch, even if
         // the writer is started and immediately stopped; that's not likely to happen in the
@@ -138,14 +213,22 @@ implements LogWriter
 
         do
         {
-            processBatch(shutdownTime);
+            processBatch(Math.min(shutdownTime, bufferDeadline()));
+            writeBuffers(false);
+            completeFlush();
         }
         while (keepRunning());
 
         // note that these won't be called in synchronous mode
 
+        finishUploads();
+        if (! writeBuffers(true))
+        {
+            reportError("unable to write buffered messages at shutdown", null);
+        }
         cleanup();
         isRunning = false;
+        releaseFlushWaiters();
         logger.debug("log-writer shut down (thread: " + Thread.currentThread().getName()
                      + " (#" + Thread.currentThread().getId() + ")");
     }
@@ -178,6 +261,13 @@ implements LogWriter
     }
 
 
+    @Override
+    public boolean isInitializationDeferred()
+    {
+        return config.getDeferInitialization();
+    }
+
+
     @Override
     public boolean waitUntilInitialized(long millisToWait)
     {
@@ -197,35 +287,92 @@ implements LogWriter
     }
 
 
+    @Override
+    public boolean discardIfFull()
+    {
+        return messageQueue.discardIfFull();
+    }
+
+
     @Override
     public void addMessage(LogMessage message)
     {
-        if (message.size() == 0)
+        // deferred messages are checked by the writer thread, after formatting
+        if (message.isDeferred())
+        {
+            messageQueue.enqueue(message);
+        }
+        else if (isOffloadRequired(message))
+        {
+            // the pointer is queued when the upload completes, which will normally
+            // be on another thread
+            if (! offloadMessage(message))
+                return;
+        }
+        else if (isSplitRequired(message))
+        {
+            messageQueue.enqueueAll(splitMessage(message));
+        }
+        else if (checkMessageSize(message))
+        {
+            messageQueue.enqueue(message);
+        }
+        else
         {
-            logger.warn("discarded empty message");
             return;
         }
 
-        if (message.size() > maxMessageSize())
+        // if initialization is deferred, the writer thread will send anything
+        // that was queued before it finished
+        if (config.getSynchronousMode() && (isRunning || ! config.getDeferInitialization()))
         {
-            stats.incrementOversizeMessages();
-            if (config.getTruncateOversizeMessages())
-            {
-                logger.warn("truncated oversize message (" + message.size() + " bytes to " + maxMessageSize() + ")");
-                message.truncate(maxMessageSize());
-            }
-            else
+            commitSynchronously(commitTickets.incrementAndGet());
+        }
+    }
+
+
+    @Override
+    public boolean flush(long millisToWait)
+    {
+        long timeoutAt = System.currentTimeMillis() + millisToWait;
+
+        if (config.getSynchronousMode())
+        {
+            // if initialization is deferred, the background thread might be sending
+            if (! waitUntilInitialized(millisToWait))
+                return false;
+
+            // each pass takes a new ticket: one that's already been committed would
+            // return immediately, without resending messages requeued by a failed batch
+            while (isRunning && ! messageQueue.isEmpty() && (System.currentTimeMillis() < timeoutAt))
             {
-                logger.warn("discarded oversize message (" + message.size() + " bytes, limit is " + maxMessageSize() + ")");
-                return;
+                commitSynchronously(commitTickets.incrementAndGet());
             }
+            return isRunning && messageQueue.isEmpty();
         }
 
-        messageQueue.enqueue(message);
+        long request = flushRequests.incrementAndGet();
+        messageQueue.wakeup();
 
-        if (config.getSynchronousMode())
+        synchronized (flushLock)
         {
-            processBatch(System.currentTimeMillis());
+            while (flushesCompleted < request)
+            {
+                long waitTime = timeoutAt - System.currentTimeMillis();
+                if ((waitTime <= 0) || writerExited)
+                    return false;
+
+                try
+                {
+                    flushLock.wait(waitTime);
+                }
+                catch (InterruptedException ex)
+                {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }
+            return lastFlushSucceeded;
         }
     }
 
@@ -276,12 +423,39 @@ implements LogWriter
     }
 
 
+    /**
+     *  Returns the time at which the writer thread should stop waiting for messages
+     *  and call {@link #writeBuffers}. The default implementation never does; this
+     *  is overridden by writers that accumulate messages across batches.
+     */
+    protected long bufferDeadline()
+    {
+        return Long.MAX_VALUE;
+    }
+
+
+    /**
+     *  Called by the writer thread after every batch (including empty batches), with
+     *  <code>force</code> false, and after a flush or at shutdown with <code>force</code>
+     *  true. Writers that accumulate messages across batches override this to write
+     *  those messages to the destination; the default does nothing.
+     *
+     *  @return <code>true</code> if successful (or there was nothing to write),
+     *          <code>false</code> if unable to write buffered messages.
+     */
+    protected boolean writeBuffers(boolean force)
+    {
+        return true;
+    }
+
+
     /**
      *  Called before the main loop, to ensure that the writer is able to perform
      *  its job. If unable, reconfigures the writer to discard all message.
      */
     protected boolean initialize()
     {
+        Object jfrToken = JfrEvents.beginWriterInitialization();
         boolean success = true;
 
         try
@@ -304,6 +478,7 @@ implements LogWriter
             messageQueue.setDiscardAction(DiscardAction.oldest);
         }
 
+        JfrEvents.endWriterInitialization(jfrToken, getClass().getName(), success);
         initializationComplete = true;
         return success;
     }
@@ -323,8 +498,15 @@ implements LogWriter
         if (currentBatch.size() > 0)
         {
             batchCount++;
+            stats.setInFlightTimestamp(oldestTimestamp(currentBatch));
             List<LogMessage> failures = sendBatch(currentBatch);
+            lastBatchSize = currentBatch.size();
+            lastBatchHadFailures = ! failures.isEmpty();
+            updateSendStatistics(currentBatch, failures);
             requeueMessages(failures);
+            if (! failures.isEmpty())
+                JfrEvents.requeued(failures.size());
+            stats.setInFlightTimestamp(0);
 
             // note: order of updates is important to avoid race conditions in tests
             stats.setMessagesRequeuedLastBatch(failures.size());
@@ -349,16 +531,22 @@ implements LogWriter
         List<LogMessage> batch = new ArrayList<LogMessage>(512);
 
         // we'll wait "forever" unless there's a shutdown timestamp in effect
-        LogMessage message = waitForMessage(waitUntil);
+        LogMessage message = nextMessage(waitUntil);
         if (message == null)
             return batch;
 
-        long batchTimeout = System.currentTimeMillis() + config.getBatchDelay();
+        Object jfrToken = JfrEvents.beginBatchBuild();
+        // if there's a pending flush, we take whatever's in the queue right now
+        long batchStart = System.currentTimeMillis();
+        long batchTimeout = (flushRequests.get() > flushesCompleted)
+                          ? batchStart
+                          : batchStart + config.getBatchDelay();
         int batchBytes = 0;
         int batchMsgs = 0;
         while (message != null)
         {
-            batchBytes += effectiveSize(message);
+            int messageSize = effectiveSize(message);
+            batchBytes += messageSize;
             batchMsgs++;
 
             // if this message would exceed the batch limits, push it back onto the queue
@@ -367,104 +555,593 @@ implements LogWriter
             if (! withinServiceLimits(batchBytes, batchMsgs))
             {
                 messageQueue.requeue(message);
+                batchBytes -= messageSize;
                 break;
             }
 
             batch.add(message);
-            message = waitForMessage(batchTimeout);
+            message = nextMessage(batchTimeout);
         }
 
+        stats.recordBatchBuildTime(System.currentTimeMillis() - batchStart);
+        JfrEvents.endBatchBuild(jfrToken, batch.size(), batchBytes);
         return batch;
     }
 
 
     /**
      *  Attempts to read the message queue, waiting until the specified timestamp
-     *  (not elapsed time!).
+     *  (not elapsed time!). If that time has already passed, does not wait (this
+     *  is always the case in synchronous mode, which has a batch delay of 0).
      */
     private LogMessage waitForMessage(long waitUntil)
     {
-        long waitTime = Math.max(1, waitUntil - System.currentTimeMillis());
-        return messageQueue.dequeue(waitTime);
+        long waitTime = waitUntil - System.currentTimeMillis();
+        return (waitTime > 0)
+             ? messageQueue.dequeue(waitTime)
+             : messageQueue.dequeue();
     }
 
 
     /**
-     *  Requeues all messages in the passed list, preserving order (ie, the first
-     *  passed message in the list will be the first in the queue).
+     *  Implements synchronous mode as a "group commit": if no other thread is sending,
+     *  the calling thread becomes the leader, and sends everything that's in the queue
+     *  (including messages added by other threads). If a send is in progress, waits
+     *  for it to complete; if that send included this thread's message (ie, the ticket
+     *  was issued before the leader started), returns. Otherwise, tries again to be
+     *  the leader. This means that concurrent callers share a single request, rather
+     *  than each waiting for the previous caller's request.
+     *  <p>
+     *  As before, "complete" means that the message was part of an attempted send; it
+     *  may have failed and been requeued, in which case the next caller will retry it.
      */
-    private void requeueMessages(List<LogMessage> messages)
+    private void commitSynchronously(long ticket)
     {
-        Collections.reverse(messages);
-        for (LogMessage message : messages)
+        while (true)
         {
-            messageQueue.requeue(message);
+            long leaderTicket;
+            synchronized (commitLock)
+            {
+                while (commitInProgress && (ticket > committedTickets))
+                {
+                    try
+                    {
+                        commitLock.wait();
+                    }
+                    catch (InterruptedException ex)
+                    {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                }
+
+                if (ticket <= committedTickets)
+                    return;
+
+                commitInProgress = true;
+                leaderTicket = commitTickets.get();
+            }
+
+            try
+            {
+                drainQueue();
+            }
+            finally
+            {
+                synchronized (commitLock)
+                {
+                    committedTickets = Math.max(committedTickets, leaderTicket);
+                    commitInProgress = false;
+                    commitLock.notifyAll();
+                }
+            }
         }
     }
 
 
     /**
-     *  Called after the main loop exits, to shut down the AWS client. Also removes
-     *  any shutdown hook (this is only relevant when the logging framework has been
-     *  shut down before the JVM).
+     *  Sends batches until all messages that were in the queue when called have been
+     *  sent, a batch has failures (which will have been requeued), or there's nothing
+     *  to send (which can happen if the writer has failed). Messages added while this
+     *  is running are left for the next batch, so that a steady stream of messages
+     *  can't keep the caller here forever.
+     *
+     *  @return <code>false</code> if a batch had failures, <code>true</code> otherwise.
      */
-    private void cleanup()
+    private boolean drainQueue()
     {
-        stopAWSClient();
+        int remaining = messageQueue.size();
+        while (remaining > 0)
+        {
+            int previousBatchCount = batchCount;
+            processBatch(System.currentTimeMillis());
+            if (batchCount == previousBatchCount)
+                break;
+            if (lastBatchHadFailures)
+                return false;
+            remaining -= lastBatchSize;
+        }
+        return true;
+    }
+
+
+    /**
+     *  Called by the writer thread after each batch: if there are outstanding flush
+     *  requests, sends everything that's in the queue and notifies the callers.
+     */
+    private void completeFlush()
+    {
+        long request = flushRequests.get();
+        if (request == flushesCompleted)
+            return;
+
+        boolean success = drainQueue() && writeBuffers(true);
+        synchronized (flushLock)
+        {
+            flushesCompleted = request;
+            lastFlushSucceeded = success;
+            flushLock.notifyAll();
+        }
+    }
+
 
-        if (shutdownHook != null)
+    /**
+     *  Called when the writer thread exits, so that callers waiting for a flush will
+     *  see that it isn't running.
+     */
+    private void releaseFlushWaiters()
+    {
+        synchronized (flushLock)
+        {
+            writerExited = true;
+            flushLock.notifyAll();
+        }
+    }
+
+
+    /**
+     *  Reads the message queue as above, formatting any deferred messages. Deferred
+     *  messages that can't be formatted, or that fail the size checks, are dropped,
+     *  and the next message is read.
+     */
+    private LogMessage nextMessage(long waitUntil)
+    {
+        while (true)
         {
+            LogMessage message = waitForMessage(waitUntil);
+            if ((message == null) || ! message.isDeferred())
+                return message;
+
             try
             {
-                Runtime.getRuntime().removeShutdownHook(shutdownHook);
+                message.format();
             }
-            catch (Exception ignored)
+            catch (Exception ex)
             {
-                // we expect an IllegalThreadStateException
+                reportError("unable to apply layout", ex);
+                continue;
             }
-            finally
+
+            if (isOffloadRequired(message))
+            {
+                offloadMessage(message);
+                continue;
+            }
+
+            if (isSplitRequired(message))
             {
-                shutdownHook = null;
+                // the remaining parts go back on the front of the queue, so will be next
+                List<LogMessage> parts = splitMessage(message);
+                for (int ii = parts.size() - 1 ; ii > 0 ; ii--)
+                {
+                    messageQueue.requeue(parts.get(ii));
+                }
+                return parts.get(0);
             }
+
+            if (checkMessageSize(message))
+                return message;
         }
     }
 
 
     /**
-     *  If the writer is configured to use shutdown hooks, adds one.
+     *  Determines whether a message should be uploaded to S3 rather than split,
+     *  truncated, or discarded.
      */
-    private void optAddShutdownHook()
+    private boolean isOffloadRequired(LogMessage message)
     {
-        if (config.getUseShutdownHook() && !config.getSynchronousMode())
+        String bucket = config.getOversizeS3Bucket();
+        return (bucket != null) && ! bucket.isEmpty() && (message.size() > maxMessageSize());
+    }
+
+
+    /**
+     *  Uploads an oversize message to S3 and queues a pointer to it. In synchronous
+     *  mode this happens on the calling thread; otherwise the upload is handed to
+     *  the upload pool. If the pool is full, applies the configured split/truncate
+     *  behavior instead.
+     *
+     *  @return <code>true</code> if a message was added to the queue before
+     *          returning, <code>false</code> if not (including when the upload
+     *          is still pending).
+     */
+    private boolean offloadMessage(final LogMessage message)
+    {
+        if (config.getSynchronousMode())
         {
-            shutdownHook = new Thread(new Runnable()
+            uploadOversizeMessage(message);
+            return true;
+        }
+
+        try
+        {
+            uploadExecutor().execute(new Runnable()
             {
                 @Override
                 public void run()
                 {
-                    logger.debug("shutdown hook " + Thread.currentThread().getName() + " invoked");
-                    setBatchDelay(1);
-                    AbstractLogWriter.this.stop();
-                    try
-                    {
-                        if (dispatchThread != null)
-                        {
-                            logger.debug("shutdown hook " + Thread.currentThread().getName() + " waiting on writer thread");
-                            dispatchThread.join();
-                        }
-                    }
-                    catch (InterruptedException e)
-                    {
-                        // we've done our best, que sera sera
-                    }
-                    logger.debug("shutdown hook " + Thread.currentThread().getName() + " complete");
+                    uploadOversizeMessage(message);
                 }
             });
-            shutdownHook.setName(Thread.currentThread().getName() + "-shutdownHook");
-            Runtime.getRuntime().addShutdownHook(shutdownHook);
+            return false;
+        }
+        catch (RejectedExecutionException ex)
+        {
+            logger.warn("unable to upload oversize message to S3: too many pending uploads");
+            return enqueueWithoutOffload(message);
         }
     }
 
+
+    /**
+     *  Performs the actual upload, and queues the pointer message. Falls back to
+     *  the split/truncate behavior if unable to upload.
+     */
+    private void uploadOversizeMessage(LogMessage message)
+    {
+        String key = config.getOversizeS3Prefix() + UUID.randomUUID().toString();
+        try
+        {
+            s3Facade().putObject(key, message.getBytes());
+        }
+        catch (Exception ex)
+        {
+            reportError("failed to upload oversize message to S3", ex);
+            enqueueWithoutOffload(message);
+            return;
+        }
+
+        messageQueue.enqueue(createPointerMessage(message, key));
+        stats.incrementOversizeMessages();
+        logger.debug("uploaded oversize message (" + message.size() + " bytes) to s3://" + config.getOversizeS3Bucket() + "/" + key);
+    }
+
+
+    /**
+     *  Creates the message that's written in place of an oversize message: a JSON
+     *  object containing the S3 location of the original message, its size, and
+     *  the start of its text.
+     */
+    private LogMessage createPointerMessage(LogMessage message, String key)
+    {
+        LogMessage preview = new LogMessage(message.getTimestamp(), message.getMessage());
+        preview.truncate(OVERSIZE_S3_PREVIEW_SIZE);
+
+        Map<String,Object> pointer = new LinkedHashMap<String,Object>();
+        pointer.put("s3Bucket", config.getOversizeS3Bucket());
+        pointer.put("s3Key", key);
+        pointer.put("size", Integer.valueOf(message.size()));
+        pointer.put("preview", preview.getMessage());
+        return new LogMessage(message.getTimestamp(), message.getSeverity(), new JsonConverter().convert(pointer));
+    }
+
+
+    /**
+     *  Applies the split/truncate/discard behavior to a message that couldn't be
+     *  uploaded, and queues the result. Returns false if the message was discarded.
+     */
+    private boolean enqueueWithoutOffload(LogMessage message)
+    {
+        if (isSplitRequired(message))
+        {
+            messageQueue.enqueueAll(splitMessage(message));
+            return true;
+        }
+        if (checkMessageSize(message))
+        {
+            messageQueue.enqueue(message);
+            return true;
+        }
+        return false;
+    }
+
+
+    /**
+     *  Returns the S3 facade, creating it if necessary.
+     */
+    private S3Facade s3Facade()
+    {
+        synchronized (uploadLock)
+        {
+            if (s3Facade == null)
+            {
+                s3Facade = FacadeFactory.createFacade(S3Facade.class, config);
+            }
+            return s3Facade;
+        }
+    }
+
+
+    /**
+     *  Returns the upload pool, creating it if necessary. The pool has a fixed
+     *  number of daemon threads, which exit when idle, and a bounded queue.
+     */
+    private ThreadPoolExecutor uploadExecutor()
+    {
+        synchronized (uploadLock)
+        {
+            if (uploadExecutor == null)
+            {
+                final AtomicInteger threadNumber = new AtomicInteger();
+                uploadExecutor = new ThreadPoolExecutor(
+                        config.getOversizeS3Threads(), config.getOversizeS3Threads(),
+                        60, TimeUnit.SECONDS,
+                        new ArrayBlockingQueue<Runnable>(OVERSIZE_S3_MAX_PENDING),
+                        new ThreadFactory()
+                        {
+                            @Override
+                            public Thread newThread(Runnable runnable)
+                            {
+                                Thread thread = new Thread(runnable, "log-writer-s3-upload-" + threadNumber.incrementAndGet());
+                                thread.setDaemon(true);
+                                return thread;
+                            }
+                        });
+                uploadExecutor.allowCoreThreadTimeOut(true);
+            }
+            return uploadExecutor;
+        }
+    }
+
+
+    /**
+     *  Called when the main loop exits: waits (up to the shutdown timeout) for any
+     *  pending uploads, and sends the pointer messages that they queue.
+     */
+    private void finishUploads()
+    {
+        synchronized (uploadLock)
+        {
+            if (uploadExecutor == null)
+                return;
+            uploadExecutor.shutdown();
+        }
+
+        // stop() interrupts this thread to end its wait for messages; if that
+        // wait had already finished, the interrupt is still pending
+        Thread.interrupted();
+        try
+        {
+            if (! uploadExecutor.awaitTermination(config.getShutdownTimeout(), TimeUnit.MILLISECONDS))
+            {
+                logger.warn("S3 uploads still pending at shutdown");
+            }
+        }
+        catch (InterruptedException ex)
+        {
+            logger.warn("interrupted while waiting for S3 uploads");
+        }
+
+        drainQueue();
+    }
+
+
+    /**
+     *  Determines whether a message should be split rather than truncated or discarded.
+     */
+    private boolean isSplitRequired(LogMessage message)
+    {
+        return config.getSplitOversizeMessages() && (message.size() > maxMessageSize());
+    }
+
+
+    /**
+     *  Splits an oversize message into parts that share a correlation ID.
+     */
+    private List<LogMessage> splitMessage(LogMessage message)
+    {
+        stats.incrementOversizeMessages();
+        List<LogMessage> parts = message.split(maxMessageSize(), UUID.randomUUID().toString());
+        logger.debug("split oversize message (" + message.size() + " bytes into " + parts.size() + " parts)");
+        return parts;
+    }
+
+
+    /**
+     *  Verifies that a message is not empty, and either discards or truncates it if
+     *  it exceeds the service's size limit. Returns false if the message should be
+     *  discarded.
+     */
+    private boolean checkMessageSize(LogMessage message)
+    {
+        if (message.size() == 0)
+        {
+            logger.warn("discarded empty message");
+            return false;
+        }
+
+        if (message.size() > maxMessageSize())
+        {
+            stats.incrementOversizeMessages();
+            if (config.getTruncateOversizeMessages())
+            {
+                logger.warn("truncated oversize message (" + message.size() + " bytes to " + maxMessageSize() + ")");
+                message.truncate(maxMessageSize());
+            }
+            else
+            {
+                logger.warn("discarded oversize message (" + message.size() + " bytes, limit is " + maxMessageSize() + ")");
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+
+    /**
+     *  Returns the earliest timestamp in a batch. We can't rely on batch order: the
+     *  writer may sort, and the appender may have been passed out-of-order events.
+     */
+    private static long oldestTimestamp(List<LogMessage> batch)
+    {
+        long oldest = Long.MAX_VALUE;
+        for (LogMessage message : batch)
+        {
+            oldest = Math.min(oldest, message.getTimestamp());
+        }
+        return oldest;
+    }
+
+
+    /**
+     *  Updates the statistics that depend on individual sent messages: bytes sent,
+     *  and the time between creation and send. Failures are identified by identity,
+     *  since messages don't define equality (and a batch may legitimately contain
+     *  two identical messages).
+     */
+    private void updateSendStatistics(List<LogMessage> batch, List<LogMessage> failures)
+    {
+        if (failures.size() == batch.size())
+            return;
+
+        Set<LogMessage> failed = Collections.newSetFromMap(new IdentityHashMap<LogMessage,Boolean>());
+        failed.addAll(failures);
+
+        long now = System.currentTimeMillis();
+        long bytesSent = 0;
+        for (LogMessage message : batch)
+        {
+            if (! failed.contains(message))
+            {
+                bytesSent += message.size();
+                stats.recordQueueResidency(now - message.getTimestamp());
+            }
+        }
+
+        stats.updateBytesSent(bytesSent);
+        stats.incrementBatchesSent();
+    }
+
+
+    /**
+     *  Requeues all messages in the passed list, preserving order (ie, the first
+     *  passed message in the list will be the first in the queue).
+     */
+    private void requeueMessages(List<LogMessage> messages)
+    {
+        Collections.reverse(messages);
+        for (LogMessage message : messages)
+        {
+            messageQueue.requeue(message);
+        }
+    }
+
+
+    /**
+     *  Called after the main loop exits, to shut down the AWS client. Also removes
+     *  the writer from the shutdown coordinator (this is only relevant when the
+     *  logging framework has been shut down before the JVM).
+     */
+    private void cleanup()
+    {
+        stopAWSClient();
+
+        synchronized (uploadLock)
+        {
+            if (s3Facade != null)
+                s3Facade.shutdown();
+        }
+
+        if (registeredForShutdown)
+        {
+            ShutdownCoordinator.getInstance().unregister(this);
+            registeredForShutdown = false;
+        }
+    }
+
+
+    /**
+     *  If the writer is configured to use shutdown hooks, registers with the
+     *  shutdown coordinator (which manages a single hook for all writers).
+     */
+    private void optAddShutdownHook()
+    {
+        if (config.getUseShutdownHook() && !config.getSynchronousMode())
+        {
+            ShutdownCoordinator.getInstance().register(this);
+            registeredForShutdown = true;
+        }
+    }
+
+//----------------------------------------------------------------------------
+//  Shutdown coordinator support
+//----------------------------------------------------------------------------
+
+    /**
+     *  Returns whether this writer should be given priority at shutdown.
+     */
+    boolean isCriticalOnShutdown()
+    {
+        return config.getCriticalOnShutdown();
+    }
+
+
+    /**
+     *  Returns the maximum time, in milliseconds, that this writer wants to wait
+     *  at shutdown.
+     */
+    long getShutdownTimeout()
+    {
+        return config.getShutdownTimeout();
+    }
+
+
+    /**
+     *  Called by the shutdown coordinator to stop the writer without waiting for
+     *  the configured batch delay.
+     */
+    void beginShutdown()
+    {
+        logger.debug("stopping writer for JVM shutdown");
+        setBatchDelay(1);
+        stop();
+    }
+
+
+    /**
+     *  Returns the number of messages that are waiting to be sent.
+     */
+    int unsentMessageCount()
+    {
+        return messageQueue.size();
+    }
+
+
+    /**
+     *  Called by the shutdown coordinator if the writer is still running at its
+     *  deadline.
+     */
+    void reportShutdownIncomplete(int unsentMessages)
+    {
+        String message = "shutdown timeout expired with " + unsentMessages + " message(s) unsent";
+        if (isCriticalOnShutdown())
+            logger.error(message, null);
+        else
+            logger.warn(message);
+    }
+
 //----------------------------------------------------------------------------
 //  Subclass hooks
 //----------------------------------------------------------------------------
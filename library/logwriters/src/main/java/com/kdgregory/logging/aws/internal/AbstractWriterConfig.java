@@ -14,6 +14,7 @@
 
 package com.kdgregory.logging.aws.internal;
 
+import com.kdgregory.logging.common.util.MessageQueue;
 import com.kdgregory.logging.common.util.MessageQueue.DiscardAction;
 
 
@@ -28,26 +29,54 @@ public class AbstractWriterConfig<T extends AbstractWriterConfig<T>>
 implements Cloneable
 {
     public final static boolean         DEFAULT_TRUNCATE_OVERSIZE       = true;
+    public final static boolean         DEFAULT_SPLIT_OVERSIZE          = false;
+    public final static String          DEFAULT_OVERSIZE_S3_PREFIX      = "";
+    public final static int             DEFAULT_OVERSIZE_S3_THREADS     = 2;
     public final static boolean         DEFAULT_IS_SYNCHRONOUS          = false;    // making this explicit
     public final static long            DEFAULT_BATCH_DELAY             = 2000;
     public final static int             DEFAULT_DISCARD_THRESHOLD       = 10000;
     public final static DiscardAction   DEFAULT_DISCARD_ACTION          = DiscardAction.oldest;
+    public final static boolean         DEFAULT_DISCARD_BY_LEVEL        = false;
+    public final static long            DEFAULT_BLOCK_TIMEOUT           = MessageQueue.DEFAULT_BLOCK_TIMEOUT;
+    public final static DiscardAction   DEFAULT_BLOCK_FALLBACK_ACTION   = MessageQueue.DEFAULT_BLOCK_FALLBACK_ACTION;
     public final static boolean         DEFAULT_USE_SHUTDOWN_HOOK       = true;
+    public final static long            DEFAULT_SHUTDOWN_TIMEOUT        = 25000;
+    public final static boolean         DEFAULT_CRITICAL_ON_SHUTDOWN    = false;
     public final static boolean         DEFAULT_ENABLE_BATCH_LOGGING    = false;
+    public final static String          DEFAULT_HTTP_CLIENT_TYPE        = null;     // SDK-selected client
+    public final static boolean         DEFAULT_DEFER_INITIALIZATION    = false;
+    public final static boolean         DEFAULT_DEFER_LAYOUT            = false;
 
 
     private boolean                     truncateOversizeMessages        = DEFAULT_TRUNCATE_OVERSIZE;
+    private boolean                     splitOversizeMessages           = DEFAULT_SPLIT_OVERSIZE;
+    private String                      oversizeS3Bucket;
+    private String                      oversizeS3Prefix                = DEFAULT_OVERSIZE_S3_PREFIX;
+    private int                         oversizeS3Threads               = DEFAULT_OVERSIZE_S3_THREADS;
     private boolean                     isSynchronous                   = DEFAULT_IS_SYNCHRONOUS;
     private volatile long               batchDelay                      = DEFAULT_BATCH_DELAY;
     private volatile int                discardThreshold                = DEFAULT_DISCARD_THRESHOLD;
     private volatile DiscardAction      discardAction                   = DEFAULT_DISCARD_ACTION;
+    private boolean                     discardByLevel                  = DEFAULT_DISCARD_BY_LEVEL;
+    private long                        blockTimeout                    = DEFAULT_BLOCK_TIMEOUT;
+    private DiscardAction               blockFallbackAction             = DEFAULT_BLOCK_FALLBACK_ACTION;
     private String                      clientFactoryMethod;
     private String                      assumedRole;
     private String                      clientRegion;
     private String                      clientEndpoint;
     private boolean                     useShutdownHook                 = DEFAULT_USE_SHUTDOWN_HOOK;
+    private long                        shutdownTimeout                 = DEFAULT_SHUTDOWN_TIMEOUT;
+    private boolean                     criticalOnShutdown              = DEFAULT_CRITICAL_ON_SHUTDOWN;
     private long                        initializationTimeout;          // default is per destination
     private boolean                     enableBatchLogging              = DEFAULT_ENABLE_BATCH_LOGGING;
+    private String                      httpClientType                  = DEFAULT_HTTP_CLIENT_TYPE;
+    private int                         httpMaxConnections;             // 0 means SDK default
+    private long                        httpConnectionTtl;              // 0 means SDK default
+    private long                        httpConnectionTimeout;          // 0 means SDK default
+    private long                        httpSocketTimeout;              // 0 means SDK default
+    private boolean                     httpTcpKeepAlive;
+    private boolean                     deferInitialization             = DEFAULT_DEFER_INITIALIZATION;
+    private boolean                     deferLayout                     = DEFAULT_DEFER_LAYOUT;
 
 
     protected AbstractWriterConfig(long initializationTimeout)
@@ -83,6 +112,54 @@ implements Cloneable
     }
 
 
+    public boolean getSplitOversizeMessages()
+    {
+        return splitOversizeMessages;
+    }
+
+    public T setSplitOversizeMessages(boolean value)
+    {
+        splitOversizeMessages = value;
+        return (T)this;
+    }
+
+
+    public String getOversizeS3Bucket()
+    {
+        return oversizeS3Bucket;
+    }
+
+    public T setOversizeS3Bucket(String value)
+    {
+        oversizeS3Bucket = value;
+        return (T)this;
+    }
+
+
+    public String getOversizeS3Prefix()
+    {
+        return oversizeS3Prefix;
+    }
+
+    public T setOversizeS3Prefix(String value)
+    {
+        oversizeS3Prefix = (value != null) ? value : DEFAULT_OVERSIZE_S3_PREFIX;
+        return (T)this;
+    }
+
+
+    public int getOversizeS3Threads()
+    {
+        return oversizeS3Threads;
+    }
+
+    public T setOversizeS3Threads(int value)
+    {
+        oversizeS3Threads = (value > 0) ? value : DEFAULT_OVERSIZE_S3_THREADS;
+        return (T)this;
+    }
+
+
     public boolean getSynchronousMode()
     {
         return isSynchronous;
@@ -145,6 +222,42 @@ implements Cloneable
     }
 
 
+    public boolean getDiscardByLevel()
+    {
+        return discardByLevel;
+    }
+
+    public T setDiscardByLevel(boolean value)
+    {
+        discardByLevel = value;
+        return (T)this;
+    }
+
+
+    public long getBlockTimeout()
+    {
+        return blockTimeout;
+    }
+
+    public T setBlockTimeout(long value)
+    {
+        blockTimeout = value;
+        return (T)this;
+    }
+
+
+    public DiscardAction getBlockFallbackAction()
+    {
+        return blockFallbackAction;
+    }
+
+    public T setBlockFallbackAction(DiscardAction value)
+    {
+        blockFallbackAction = value;
+        return (T)this;
+    }
+
+
     public String getClientFactoryMethod()
     {
         return clientFactoryMethod;
@@ -205,6 +318,30 @@ implements Cloneable
     }
 
 
+    public long getShutdownTimeout()
+    {
+        return shutdownTimeout;
+    }
+
+    public T setShutdownTimeout(long value)
+    {
+        shutdownTimeout = value;
+        return (T)this;
+    }
+
+
+    public boolean getCriticalOnShutdown()
+    {
+        return criticalOnShutdown;
+    }
+
+    public T setCriticalOnShutdown(boolean value)
+    {
+        criticalOnShutdown = value;
+        return (T)this;
+    }
+
+
     public long getInitializationTimeout()
     {
         return initializationTimeout;
@@ -227,4 +364,100 @@ implements Cloneable
         enableBatchLogging = value;
         return (T)this;
     }
+
+
+    public boolean getDeferInitialization()
+    {
+        return deferInitialization;
+    }
+
+    public T setDeferInitialization(boolean value)
+    {
+        deferInitialization = value;
+        return (T)this;
+    }
+
+
+    public boolean getDeferLayout()
+    {
+        return deferLayout;
+    }
+
+    public T setDeferLayout(boolean value)
+    {
+        deferLayout = value;
+        return (T)this;
+    }
+
+
+    public String getHttpClientType()
+    {
+        return httpClientType;
+    }
+
+    public T setHttpClientType(String value)
+    {
+        httpClientType = value;
+        return (T)this;
+    }
+
+
+    public int getHttpMaxConnections()
+    {
+        return httpMaxConnections;
+    }
+
+    public T setHttpMaxConnections(int value)
+    {
+        httpMaxConnections = value;
+        return (T)this;
+    }
+
+
+    public long getHttpConnectionTtl()
+    {
+        return httpConnectionTtl;
+    }
+
+    public T setHttpConnectionTtl(long value)
+    {
+        httpConnectionTtl = value;
+        return (T)this;
+    }
+
+
+    public long getHttpConnectionTimeout()
+    {
+        return httpConnectionTimeout;
+    }
+
+    public T setHttpConnectionTimeout(long value)
+    {
+        httpConnectionTimeout = value;
+        return (T)this;
+    }
+
+
+    public long getHttpSocketTimeout()
+    {
+        return httpSocketTimeout;
+    }
+
+    public T setHttpSocketTimeout(long value)
+    {
+        httpSocketTimeout = value;
+        return (T)this;
+    }
+
+
+    public boolean getHttpTcpKeepAlive()
+    {
+        return httpTcpKeepAlive;
+    }
+
+    public T setHttpTcpKeepAlive(boolean value)
+    {
+        httpTcpKeepAlive = value;
+        return (T)this;
+    }
 }
@@ -17,8 +17,11 @@ package com.kdgregory.logging.aws.internal;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 
+import com.kdgregory.logging.common.LogWriter;
+import com.kdgregory.logging.common.util.EwmaRate;
+import com.kdgregory.logging.common.util.LatencyHistogram;
 import com.kdgregory.logging.common.util.MessageQueue;
 
 
@@ -34,6 +37,14 @@ import com.kdgregory.logging.common.util.MessageQueue;
  *  the possibility of multiple writers. In that case, implement an override
  *  in the subclass and synchronize there.
  *  <p>
+ *  Counters are the exception: they may be updated by multiple threads, and must
+ *  not overflow in a long-running process, so are held as <code>LongAdder</code>s.
+ *  Rates are exponentially weighted moving averages of those counters, which are
+ *  calculated when read.
+ *  <p>
+ *  Latencies are recorded in fixed-size histograms, and reported as percentiles
+ *  (in milliseconds). They accumulate over the life of the writer.
+ *  <p>
  *  Note: the MXBean interface implemented by subclasses must explicitly expose
  *  any desired getters (we can't use a superinterface because JMX introspection
  *  only looks at declared methods).
@@ -41,20 +52,32 @@ import com.kdgregory.logging.common.util.MessageQueue;
 public abstract class AbstractWriterStatistics
 {
     private volatile MessageQueue messageQueue;
+    private volatile LogWriter writer;
 
     private volatile Throwable lastError;
     private volatile String lastErrorMessage;
     private volatile Date lastErrorTimestamp;
     private volatile List<String> lastErrorStacktrace;
 
-    private volatile int messageSizeViolations;
+    private LongAdder messageSizeViolations = new LongAdder();
+    private LongAdder messagesSent = new LongAdder();
+    private LongAdder bytesSent = new LongAdder();
+    private LongAdder batchesSent = new LongAdder();
+    private LongAdder throttledWrites = new LongAdder();
+
+    private volatile long inFlightTimestamp;
 
-    private volatile int messagesSent;
     private volatile int messagesSentLastBatch;
     private volatile int messagesRequeuedLastBatch;
     private volatile int lastBatchSize;
 
-    private AtomicInteger throttledWrites = new AtomicInteger();
+    private EwmaRate messagesSentRate = new EwmaRate(this::getMessagesSent);
+    private EwmaRate bytesSentRate = new EwmaRate(this::getBytesSent);
+    private EwmaRate messagesDiscardedRate = new EwmaRate(this::getMessagesDiscarded);
+
+    private LatencyHistogram queueResidency = new LatencyHistogram();
+    private LatencyHistogram apiLatency = new LatencyHistogram();
+    private LatencyHistogram batchBuildTime = new LatencyHistogram();
 
 
     /**
@@ -67,6 +90,28 @@ public abstract class AbstractWriterStatistics
     }
 
 
+    /**
+     *  Stores the current writer, so that it can be flushed via JMX. This should
+     *  be called during writer initialization.
+     */
+    public void setWriter(LogWriter writer)
+    {
+        this.writer = writer;
+    }
+
+
+    /**
+     *  Flushes the current writer, waiting up to the specified number of milliseconds
+     *  for queued messages to be sent. Returns <code>false</code> if there's no writer
+     *  or if the flush did not complete. This is exposed as a JMX operation.
+     */
+    public boolean flush(long millisToWait)
+    {
+        LogWriter currentWriter = writer;
+        return (currentWriter != null) && currentWriter.flush(millisToWait);
+    }
+
+
     /**
      *  Sets the last error. Either the message or the throwable may be null (but
      *  not both).
@@ -122,15 +167,15 @@ public abstract class AbstractWriterStatistics
     }
 
 
-    public synchronized void incrementOversizeMessages()
+    public void incrementOversizeMessages()
     {
-        messageSizeViolations++;
+        messageSizeViolations.increment();
     }
 
 
-    public int getOversizeMessages()
+    public long getOversizeMessages()
     {
-        return messageSizeViolations;
+        return messageSizeViolations.sum();
     }
 
 
@@ -138,15 +183,58 @@ public abstract class AbstractWriterStatistics
      *  Updates the number of messages sent with the given count. This should only
      *  be called after all failures have been identified.
      */
-    public synchronized void updateMessagesSent(int count)
+    public void updateMessagesSent(int count)
+    {
+        messagesSent.add(count);
+    }
+
+
+    public long getMessagesSent()
+    {
+        return messagesSent.sum();
+    }
+
+
+    public double getMessagesSentRate()
+    {
+        return messagesSentRate.getRate();
+    }
+
+
+    /**
+     *  Updates the number of bytes sent (as reported by <code>LogMessage.size()</code>).
+     *  This should only be called after all failures have been identified.
+     */
+    public void updateBytesSent(long count)
+    {
+        bytesSent.add(count);
+    }
+
+
+    public long getBytesSent()
     {
-        messagesSent += count;
+        return bytesSent.sum();
     }
 
 
-    public int getMessagesSent()
+    public double getBytesSentRate()
     {
-        return messagesSent;
+        return bytesSentRate.getRate();
+    }
+
+
+    /**
+     *  Increments the number of batches in which at least one message was sent.
+     */
+    public void incrementBatchesSent()
+    {
+        batchesSent.increment();
+    }
+
+
+    public long getBatchesSent()
+    {
+        return batchesSent.sum();
     }
 
 
@@ -186,20 +274,201 @@ public abstract class AbstractWriterStatistics
     }
 
 
-    public int getMessagesDiscarded()
+    public long getMessagesDiscarded()
+    {
+        MessageQueue queue = messageQueue;
+        return (queue != null) ? queue.getDroppedMessageCount() : 0;
+    }
+
+
+    public long getBlockedEnqueues()
+    {
+        MessageQueue queue = messageQueue;
+        return (queue != null) ? queue.getBlockedCount() : 0;
+    }
+
+
+    public long getBlockedTime()
+    {
+        MessageQueue queue = messageQueue;
+        return (queue != null) ? queue.getBlockedTime() : 0;
+    }
+
+
+    public long getBlockTimeouts()
+    {
+        MessageQueue queue = messageQueue;
+        return (queue != null) ? queue.getBlockTimeoutCount() : 0;
+    }
+
+
+    /**
+     *  Sets the timestamp of the oldest message in the batch that's currently being
+     *  sent, so that it's included in {@link #getOldestMessageAge}. The writer sets
+     *  this before sending a batch, and clears it (sets to 0) afterward.
+     */
+    public void setInFlightTimestamp(long value)
+    {
+        inFlightTimestamp = value;
+    }
+
+
+    /**
+     *  Returns the age, in milliseconds, of the oldest message that has not yet been
+     *  sent, whether it's in the queue or in the current batch. Returns 0 if there
+     *  are no unsent messages.
+     *  <p>
+     *  For the queue, this looks only at the head message, which will be the oldest
+     *  unless the logging framework delivers events out of order. That keeps this
+     *  an O(1) operation, cheap enough to be read on every batch.
+     */
+    public long getOldestMessageAge()
+    {
+        MessageQueue queue = messageQueue;
+        long queueTimestamp = (queue != null) ? queue.oldestTimestamp() : 0;
+        long batchTimestamp = inFlightTimestamp;
+
+        long oldest = (queueTimestamp == 0) ? batchTimestamp
+                    : (batchTimestamp == 0) ? queueTimestamp
+                    : Math.min(queueTimestamp, batchTimestamp);
+
+        return (oldest == 0) ? 0 : Math.max(0, System.currentTimeMillis() - oldest);
+    }
+
+
+    public int getQueueDepth()
     {
-        return messageQueue.getDroppedMessageCount();
+        MessageQueue queue = messageQueue;
+        return (queue != null) ? queue.size() : 0;
     }
 
 
-    public int getThrottledWrites()
+    public int getQueueDepthHighWater()
     {
-        return throttledWrites.get();
+        MessageQueue queue = messageQueue;
+        return (queue != null) ? queue.getHighWaterMessageCount() : 0;
+    }
+
+
+    public long getQueueBytes()
+    {
+        MessageQueue queue = messageQueue;
+        return (queue != null) ? queue.byteCount() : 0;
+    }
+
+
+    public long getQueueBytesHighWater()
+    {
+        MessageQueue queue = messageQueue;
+        return (queue != null) ? queue.getHighWaterByteCount() : 0;
+    }
+
+
+    public double getMessagesDiscardedRate()
+    {
+        return messagesDiscardedRate.getRate();
+    }
+
+
+    public long getBytesDiscarded()
+    {
+        MessageQueue queue = messageQueue;
+        return (queue != null) ? queue.getDroppedByteCount() : 0;
+    }
+
+
+    public long getThrottledWrites()
+    {
+        return throttledWrites.sum();
     }
 
 
     public void incrementThrottledWrites()
     {
-        throttledWrites.incrementAndGet();
+        throttledWrites.increment();
+    }
+
+
+    /**
+     *  Records the time that a message spent between creation and being successfully
+     *  sent. Called by the writer for each sent message.
+     */
+    public void recordQueueResidency(long millis)
+    {
+        queueResidency.record(millis);
+    }
+
+
+    public long getQueueResidencyP50()
+    {
+        return queueResidency.getPercentile(0.50);
+    }
+
+
+    public long getQueueResidencyP99()
+    {
+        return queueResidency.getPercentile(0.99);
+    }
+
+
+    public long getQueueResidencyP999()
+    {
+        return queueResidency.getPercentile(0.999);
+    }
+
+
+    /**
+     *  Records the elapsed time of a single call to the service, whether or not
+     *  it succeeded.
+     */
+    public void recordApiLatency(long millis)
+    {
+        apiLatency.record(millis);
+    }
+
+
+    public long getApiLatencyP50()
+    {
+        return apiLatency.getPercentile(0.50);
+    }
+
+
+    public long getApiLatencyP99()
+    {
+        return apiLatency.getPercentile(0.99);
+    }
+
+
+    public long getApiLatencyP999()
+    {
+        return apiLatency.getPercentile(0.999);
+    }
+
+
+    /**
+     *  Records the time taken to build a batch, from the time that the first message
+     *  was taken from the queue.
+     */
+    public void recordBatchBuildTime(long millis)
+    {
+        batchBuildTime.record(millis);
+    }
+
+
+    public long getBatchBuildTimeP50()
+    {
+        return batchBuildTime.getPercentile(0.50);
+    }
+
+
+    public long getBatchBuildTimeP99()
+    {
+        return batchBuildTime.getPercentile(0.99);
+    }
+
+
+    public long getBatchBuildTimeP999()
+    {
+        return batchBuildTime.getPercentile(0.999);
     }
 }
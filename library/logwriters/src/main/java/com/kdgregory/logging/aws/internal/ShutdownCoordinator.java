@@ -0,0 +1,179 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.kdgregory.logging.aws.internal;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+
+/**
+ *  Manages a single JVM shutdown hook for all log-writers that are configured to
+ *  use one. When the JVM shuts down, the hook stops all registered writers at the
+ *  same time, and then waits for them to finish sending their queued messages, up
+ *  to a single deadline (the longest <code>shutdownTimeout</code> of any registered
+ *  writer). This replaces per-writer hooks, which each waited without limit.
+ *  <p>
+ *  Writers that are configured with <code>criticalOnShutdown</code> are stopped
+ *  before, and waited for before, the others. Since all writers run in parallel,
+ *  this primarily affects the order of reporting: any writer that's still running
+ *  at the deadline reports the number of messages that it didn't send, as an error
+ *  if critical and a warning otherwise.
+ *  <p>
+ *  Writers register themselves after successful initialization, and deregister
+ *  when their writer thread exits.
+ */
+public class ShutdownCoordinator
+{
+    private final static ShutdownCoordinator INSTANCE = new ShutdownCoordinator();
+
+    private Set<AbstractLogWriter<?,?>> writers = new LinkedHashSet<AbstractLogWriter<?,?>>();
+    private Thread shutdownHook;
+
+
+    /**
+     *  Returns the process-wide instance.
+     */
+    public static ShutdownCoordinator getInstance()
+    {
+        return INSTANCE;
+    }
+
+
+    private ShutdownCoordinator()
+    {
+        // only the singleton
+    }
+
+//----------------------------------------------------------------------------
+//  Public methods
+//----------------------------------------------------------------------------
+
+    /**
+     *  Registers a writer to be stopped at JVM shutdown. Installs the shutdown hook
+     *  if it hasn't already been installed.
+     */
+    public synchronized void register(AbstractLogWriter<?,?> writer)
+    {
+        writers.add(writer);
+        if (shutdownHook == null)
+        {
+            shutdownHook = new Thread(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    shutdown(maxShutdownTimeout());
+                }
+            });
+            shutdownHook.setName("log-writer-shutdownHook");
+            Runtime.getRuntime().addShutdownHook(shutdownHook);
+        }
+    }
+
+
+    /**
+     *  Deregisters a writer. This is a no-op if the writer isn't registered. The
+     *  shutdown hook remains installed, because removing it is not possible once
+     *  the JVM has started to shut down (which is when most writers exit).
+     */
+    public synchronized void unregister(AbstractLogWriter<?,?> writer)
+    {
+        writers.remove(writer);
+    }
+
+
+    /**
+     *  Returns whether the passed writer is registered. This is intended for testing.
+     */
+    public synchronized boolean isRegistered(AbstractLogWriter<?,?> writer)
+    {
+        return writers.contains(writer);
+    }
+
+
+    /**
+     *  Stops all registered writers, and waits up to the specified number of milliseconds
+     *  for them to finish. This is called by the shutdown hook, and exposed for testing.
+     *
+     *  @return The writers that were still running when the timeout expired, along with
+     *          the number of messages remaining in their queues. Empty if all writers
+     *          stopped.
+     */
+    public Map<AbstractLogWriter<?,?>,Integer> shutdown(long timeout)
+    {
+        long deadline = System.currentTimeMillis() + timeout;
+        List<AbstractLogWriter<?,?>> ordered = prioritizedWriters();
+
+        for (AbstractLogWriter<?,?> writer : ordered)
+        {
+            writer.beginShutdown();
+        }
+
+        Map<AbstractLogWriter<?,?>,Integer> result = new LinkedHashMap<AbstractLogWriter<?,?>,Integer>();
+        for (AbstractLogWriter<?,?> writer : ordered)
+        {
+            // Thread.join(0) means "wait forever", so never pass it
+            writer.waitUntilStopped(Math.max(1, deadline - System.currentTimeMillis()));
+            if (writer.isRunning())
+            {
+                int unsent = writer.unsentMessageCount();
+                writer.reportShutdownIncomplete(unsent);
+                result.put(writer, Integer.valueOf(unsent));
+            }
+        }
+        return result;
+    }
+
+//----------------------------------------------------------------------------
+//  Internals
+//----------------------------------------------------------------------------
+
+    /**
+     *  Returns a snapshot of the registered writers, with critical writers first.
+     */
+    private synchronized List<AbstractLogWriter<?,?>> prioritizedWriters()
+    {
+        List<AbstractLogWriter<?,?>> result = new ArrayList<AbstractLogWriter<?,?>>(writers.size());
+        for (AbstractLogWriter<?,?> writer : writers)
+        {
+            if (writer.isCriticalOnShutdown())
+                result.add(writer);
+        }
+        for (AbstractLogWriter<?,?> writer : writers)
+        {
+            if (! writer.isCriticalOnShutdown())
+                result.add(writer);
+        }
+        return result;
+    }
+
+
+    /**
+     *  Returns the longest shutdown timeout of any registered writer.
+     */
+    private synchronized long maxShutdownTimeout()
+    {
+        long result = 0;
+        for (AbstractLogWriter<?,?> writer : writers)
+        {
+            result = Math.max(result, writer.getShutdownTimeout());
+        }
+        return result;
+    }
+}
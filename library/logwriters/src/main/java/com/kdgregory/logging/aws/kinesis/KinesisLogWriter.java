@@ -25,6 +25,7 @@ import com.kdgregory.logging.aws.facade.KinesisFacadeException.ReasonCode;
 import com.kdgregory.logging.aws.internal.AbstractLogWriter;
 import com.kdgregory.logging.aws.kinesis.KinesisConstants.StreamStatus;
 import com.kdgregory.logging.common.LogMessage;
+import com.kdgregory.logging.common.jfr.JfrEvents;
 import com.kdgregory.logging.common.util.InternalLogger;
 import com.kdgregory.logging.common.util.RetryManager2;
 
@@ -43,6 +44,9 @@ extends AbstractLogWriter<KinesisWriterConfig,KinesisWriterStatistics>
      */
     public final static String RANDOM_PARTITION_KEY_CONFIG = "{random}";
 
+    // identifies this writer in flight recorder events
+    private final static String JFR_SERVICE_NAME = "Kinesis";
+
     // passed into constructor
     private KinesisFacade facade;
 
@@ -140,22 +144,27 @@ extends AbstractLogWriter<KinesisWriterConfig,KinesisWriterStatistics>
         if (currentBatch.isEmpty())
             return currentBatch;
 
+        Object jfrToken = JfrEvents.beginBatchSend();
         try
         {
             List<LogMessage> result = sendRetry.invoke(sendTimeout, () ->
             {
+                long callStart = System.currentTimeMillis();
                 try
                 {
                     List<LogMessage> unsent = facade.putRecords(currentBatch);
+                    stats.recordApiLatency(System.currentTimeMillis() - callStart);
                     if (config.getEnableBatchLogging())
                         logger.debug("wrote batch of " + currentBatch.size() + " message(s); " + unsent.size() + " rejected");
                     return unsent;
                 }
                 catch (KinesisFacadeException ex)
                 {
+                    stats.recordApiLatency(System.currentTimeMillis() - callStart);
                     if (ex.getReason() == ReasonCode.THROTTLING)
                     {
                         stats.incrementThrottledWrites();
+                        JfrEvents.throttled(JFR_SERVICE_NAME);
                         return null;
                     }
                     if (! ex.isRetryable())
@@ -169,13 +178,16 @@ extends AbstractLogWriter<KinesisWriterConfig,KinesisWriterStatistics>
             if (result == null)
             {
                 logger.warn("timeout while sending batch");
+                JfrEvents.endBatchSend(jfrToken, JFR_SERVICE_NAME, currentBatch, currentBatch);
                 return currentBatch;
             }
+            JfrEvents.endBatchSend(jfrToken, JFR_SERVICE_NAME, currentBatch, result);
             return result;  // either empty or partial list of source messages
         }
         catch (Exception ex)
         {
             logger.error("exception while sending batch", ex);
+            JfrEvents.endBatchSend(jfrToken, JFR_SERVICE_NAME, currentBatch, currentBatch);
             return currentBatch;
         }
     }
@@ -0,0 +1,60 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.kdgregory.logging.aws.s3;
+
+
+/**
+ *  Holds limits and other constants for the S3 log-writer.
+ *  <p>
+ *  See https://docs.aws.amazon.com/AmazonS3/latest/userguide/qfacts.html
+ *  and https://docs.aws.amazon.com/AmazonS3/latest/userguide/bucketnamingrules.html
+ */
+public class S3Constants
+{
+    /**
+     *  Minimum size of a multipart upload part (other than the last). The writer
+     *  uploads a part whenever it has accumulated this much compressed data.
+     */
+    public final static int MIN_PART_BYTES = 5 * 1024 * 1024;
+
+
+    /**
+     *  Maximum size of a single message. This is not an S3 limit; it bounds the
+     *  amount of memory used by a single message.
+     */
+    public final static int MAX_MESSAGE_BYTES = 1024 * 1024;
+
+
+    /**
+     *  Maximum number of (uncompressed) bytes in a batch. Again, not an S3 limit;
+     *  it bounds the amount of memory used by a batch.
+     */
+    public final static int MAX_BATCH_BYTES = 8 * 1024 * 1024;
+
+
+    /**
+     *  Maximum number of compressed bytes that will be held in memory waiting for
+     *  upload. If uploads fail, the writer stops accepting batches once it holds
+     *  this much data, and messages remain in (or are discarded from) the queue.
+     */
+    public final static int MAX_BUFFERED_BYTES = 4 * MIN_PART_BYTES;
+
+
+    /**
+     *  Allowed characters for bucket name (length is checked separately).
+     */
+    public final static String ALLOWED_BUCKET_NAME_REGEX = "[a-z0-9][a-z0-9.-]*[a-z0-9]";
+}
@@ -0,0 +1,499 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.kdgregory.logging.aws.s3;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import com.kdgregory.logging.aws.common.Substitutions;
+import com.kdgregory.logging.aws.facade.S3Facade;
+import com.kdgregory.logging.aws.facade.S3FacadeException;
+import com.kdgregory.logging.aws.facade.S3FacadeException.ReasonCode;
+import com.kdgregory.logging.aws.internal.AbstractLogWriter;
+import com.kdgregory.logging.common.LogMessage;
+import com.kdgregory.logging.common.jfr.JfrEvents;
+import com.kdgregory.logging.common.util.InternalLogger;
+
+
+/**
+ *  Writes log messages to S3, as gzipped newline-delimited objects. This is meant
+ *  for archiving, where latency is less important than cost.
+ *  <p>
+ *  Unlike the other writers, this writer accumulates messages across batches: each
+ *  batch is compressed into the "current" object, which is uploaded in parts (using
+ *  a multipart upload) as it grows. The object is completed when it reaches the
+ *  configured size or age, when the writer is flushed, and when the writer shuts
+ *  down. Object keys are generated from a template when the object is started,
+ *  using substitutions with a per-writer sequence number.
+ *  <p>
+ *  Messages are counted as sent once they've been compressed into the current
+ *  object; they will be lost if the application exits without stopping the writer.
+ *  If an upload fails with a retryable error, it's retried after a delay; while the
+ *  writer can't upload, it continues to accept batches until it holds a limited
+ *  amount of data, after which messages remain in the queue. A non-retryable error
+ *  (such as a missing bucket) discards the current object.
+ *  <p>
+ *  Implementation note: protected instance variables are replaced by tests.
+ */
+public class S3LogWriter
+extends AbstractLogWriter<S3WriterConfig,S3WriterStatistics>
+{
+    // identifies this writer in flight recorder events
+    private final static String JFR_SERVICE_NAME = "S3";
+
+    // number of attempts to upload the current object when flushing or shutting down
+    private final static int FORCED_UPLOAD_ATTEMPTS = 3;
+
+    // passed into constructor
+    private S3Facade facade;
+
+    // the object currently being written, null if there isn't one
+    private ArchiveObject current;
+
+    // used for the {sequence} substitution in object keys
+    private int objectSequence;
+
+    // if an upload fails with a retryable error, we won't retry before this time
+    private long retryAt;
+
+    // the time to wait before retrying a failed upload
+    protected long retryDelay = 1000;
+
+
+    public S3LogWriter(S3WriterConfig config, S3WriterStatistics stats, InternalLogger logger, S3Facade facade)
+    {
+        super(config, stats, logger);
+
+        this.facade = facade;
+
+        stats.setActualBucketName(config.getBucketName());
+    }
+
+//----------------------------------------------------------------------------
+//  LogWriter overrides
+//----------------------------------------------------------------------------
+
+    @Override
+    public int maxMessageSize()
+    {
+        // we may have to add a newline
+        return S3Constants.MAX_MESSAGE_BYTES - 1;
+    }
+
+//----------------------------------------------------------------------------
+//  Hooks for superclass
+//----------------------------------------------------------------------------
+
+    @Override
+    protected boolean ensureDestinationAvailable()
+    {
+        List<String> configErrors = config.validate();
+        if (! configErrors.isEmpty())
+        {
+            for (String error : configErrors)
+                reportError("configuration error: " + error, null);
+            return false;
+        }
+
+        // we don't verify that the bucket exists, because that requires an additional
+        // permission; a missing bucket will be reported on the first upload
+        logger.debug("writing to bucket: " + config.getBucketName());
+        return true;
+    }
+
+
+    @Override
+    protected List<LogMessage> sendBatch(List<LogMessage> currentBatch)
+    {
+        stats.setLastBatchSize(currentBatch.size());
+        if (config.getEnableBatchLogging())
+            logger.debug("about to write batch of " + currentBatch.size() + " message(s)");
+
+        // this should never happen (we wait for at least one message in queue)
+        if (currentBatch.isEmpty())
+            return currentBatch;
+
+        // if we can't upload what we already have, leave the batch in the queue
+        if ((current != null) && ! current.isWritable())
+        {
+            waitForRetry();
+            uploadCurrentObject();
+            if ((current != null) && ! current.isWritable())
+            {
+                if (config.getEnableBatchLogging())
+                    logger.debug("unable to write batch: upload pending");
+                return currentBatch;
+            }
+        }
+
+        Object jfrToken = JfrEvents.beginBatchSend();
+        try
+        {
+            if (current == null)
+                current = new ArchiveObject(nextKey());
+
+            for (LogMessage message : currentBatch)
+            {
+                current.write(message);
+            }
+        }
+        catch (Exception ex)
+        {
+            // this shouldn't happen, since we're writing to memory; the object may
+            // contain some of the messages, but it's unusable
+            reportError("exception while compressing batch", ex);
+            current = null;
+            JfrEvents.endBatchSend(jfrToken, JFR_SERVICE_NAME, currentBatch, currentBatch);
+            return currentBatch;
+        }
+
+        if (config.getEnableBatchLogging())
+            logger.debug("wrote batch of " + currentBatch.size() + " message(s) to " + current.key);
+        JfrEvents.endBatchSend(jfrToken, JFR_SERVICE_NAME, currentBatch, Collections.<LogMessage>emptyList());
+        return Collections.emptyList();
+    }
+
+
+    @Override
+    protected int effectiveSize(LogMessage message)
+    {
+        // assume the worst case, that we have to add a newline
+        return message.size() + 1;
+    }
+
+
+    @Override
+    protected boolean withinServiceLimits(int batchBytes, int numMessages)
+    {
+        return batchBytes <= S3Constants.MAX_BATCH_BYTES;
+    }
+
+
+    @Override
+    protected long bufferDeadline()
+    {
+        if (current == null)
+            return Long.MAX_VALUE;
+
+        long rolloverAt = current.isFinished()
+                        ? 0
+                        : current.createdAt + config.getRolloverInterval();
+        return Math.max(rolloverAt, retryAt);
+    }
+
+
+    @Override
+    protected boolean writeBuffers(boolean force)
+    {
+        if (current == null)
+            return true;
+
+        if (! force)
+        {
+            if (isRolloverDue())
+                current.finish();
+            return (System.currentTimeMillis() < retryAt)
+                 ? false
+                 : uploadCurrentObject();
+        }
+
+        current.finish();
+        for (int attempt = 0 ; attempt < FORCED_UPLOAD_ATTEMPTS ; attempt++)
+        {
+            waitForRetry();
+            if (uploadCurrentObject())
+                return true;
+            if (current == null)
+                return false;
+        }
+        return false;
+    }
+
+
+    @Override
+    protected void stopAWSClient()
+    {
+        facade.shutdown();
+    }
+
+//----------------------------------------------------------------------------
+//  Internals
+//----------------------------------------------------------------------------
+
+    /**
+     *  Generates the key for a new object.
+     */
+    private String nextKey()
+    {
+        Substitutions subs = new Substitutions(new Date(), objectSequence++);
+        return subs.perform(config.getKeyTemplate());
+    }
+
+
+    /**
+     *  Determines whether the current object has reached its size or age limits.
+     */
+    private boolean isRolloverDue()
+    {
+        return (current.size() >= config.getRolloverSize())
+            || (System.currentTimeMillis() >= current.createdAt + config.getRolloverInterval());
+    }
+
+
+    /**
+     *  If a previous upload failed, sleeps until it may be retried. Returns early if
+     *  interrupted (which happens when the writer is stopped).
+     */
+    private void waitForRetry()
+    {
+        long sleepTime = retryAt - System.currentTimeMillis();
+        if (sleepTime <= 0)
+            return;
+
+        try
+        {
+            Thread.sleep(sleepTime);
+        }
+        catch (InterruptedException ignored)
+        {
+            // stop() interrupts the writer thread, so it can exit without waiting
+        }
+    }
+
+
+    /**
+     *  Uploads as much of the current object as possible: if it's finished, uploads
+     *  the entire object (or final part), otherwise uploads a part if there's enough
+     *  data.
+     *
+     *  @return <code>true</code> if successful, <code>false</code> if the upload
+     *          failed (in which case the current object may be discarded).
+     */
+    private boolean uploadCurrentObject()
+    {
+        long callStart = System.currentTimeMillis();
+        try
+        {
+            if (current.isFinished())
+            {
+                current.complete();
+                stats.recordApiLatency(System.currentTimeMillis() - callStart);
+                stats.incrementObjectsWritten();
+                stats.setLastObjectKey(current.key);
+                logger.debug("wrote object: " + current.key);
+                current = null;
+            }
+            else if (current.bufferedBytes() >= S3Constants.MIN_PART_BYTES)
+            {
+                current.uploadPart();
+                stats.recordApiLatency(System.currentTimeMillis() - callStart);
+            }
+            retryAt = 0;
+            return true;
+        }
+        catch (S3FacadeException ex)
+        {
+            stats.recordApiLatency(System.currentTimeMillis() - callStart);
+            if (ex.getReason() == ReasonCode.THROTTLING)
+            {
+                stats.incrementThrottledWrites();
+                JfrEvents.throttled(JFR_SERVICE_NAME);
+            }
+
+            if (ex.isRetryable())
+            {
+                logger.warn("unable to upload " + current.key + "; will retry: " + ex.getMessage());
+                retryAt = System.currentTimeMillis() + retryDelay;
+                return false;
+            }
+
+            reportError("unable to upload " + current.key + "; discarding " + current.messageCount + " message(s)", ex);
+            current.abort();
+            current = null;
+            retryAt = 0;
+            return false;
+        }
+    }
+
+//----------------------------------------------------------------------------
+//  Internal Classes
+//----------------------------------------------------------------------------
+
+    /**
+     *  Manages a single object: compresses messages into an in-memory buffer, and
+     *  uploads that buffer. Objects start as single-part uploads, and switch to
+     *  multipart if they reach the minimum part size. This is not thread-safe; it
+     *  is only accessed by the writer thread.
+     */
+    private class ArchiveObject
+    {
+        public final String key;
+        public final long createdAt = System.currentTimeMillis();
+
+        private ByteArrayOutputStream buffer = new ByteArrayOutputStream(64 * 1024);
+        private GZIPOutputStream gzip;
+        private boolean finished;
+
+        private int messageCount;
+        private long uploadedBytes;
+        private String uploadId;
+        private List<String> partETags = new ArrayList<String>();
+
+        public ArchiveObject(String key)
+        throws IOException
+        {
+            this.key = key;
+            this.gzip = new GZIPOutputStream(buffer, 8192);
+        }
+
+
+        /**
+         *  Compresses a message into the buffer, adding a trailing newline if needed.
+         */
+        public void write(LogMessage message)
+        throws IOException
+        {
+            byte[] bytes = message.getBytes();
+            gzip.write(bytes);
+            if ((bytes.length == 0) || (bytes[bytes.length - 1] != '\n'))
+                gzip.write('\n');
+            messageCount++;
+        }
+
+
+        /**
+         *  Writes the gzip trailer. After this, the object can't be written.
+         */
+        public void finish()
+        {
+            if (finished)
+                return;
+
+            try
+            {
+                gzip.finish();
+            }
+            catch (IOException ex)
+            {
+                // can't happen with a ByteArrayOutputStream
+                throw new IllegalStateException("unable to finish compression", ex);
+            }
+            finished = true;
+        }
+
+
+        public boolean isFinished()
+        {
+            return finished;
+        }
+
+
+        /**
+         *  Returns whether messages may be written to the object: it must not be
+         *  finished, and the buffer must have room.
+         */
+        public boolean isWritable()
+        {
+            return ! finished && (buffer.size() < S3Constants.MAX_BUFFERED_BYTES);
+        }
+
+
+        /**
+         *  Returns the number of compressed bytes that are waiting to be uploaded.
+         *  Note that the compressor holds data internally, so this will lag the
+         *  actual size.
+         */
+        public int bufferedBytes()
+        {
+            return buffer.size();
+        }
+
+
+        /**
+         *  Returns the total number of compressed bytes in the object.
+         */
+        public long size()
+        {
+            return uploadedBytes + buffer.size();
+        }
+
+
+        /**
+         *  Uploads the buffered data as the next part of a multipart upload, starting
+         *  that upload if necessary.
+         */
+        public void uploadPart()
+        {
+            if (uploadId == null)
+            {
+                uploadId = facade.startMultipartUpload(key);
+            }
+
+            byte[] content = buffer.toByteArray();
+            String etag = facade.uploadPart(key, uploadId, partETags.size() + 1, content);
+            partETags.add(etag);
+            uploadedBytes += content.length;
+            buffer.reset();
+        }
+
+
+        /**
+         *  Uploads a finished object. If no parts have been uploaded, this is a
+         *  single upload; otherwise uploads the remaining data as the final part
+         *  (if there is any) and completes the multipart upload.
+         */
+        public void complete()
+        {
+            if (uploadId == null)
+            {
+                facade.putObject(key, buffer.toByteArray());
+                uploadedBytes = buffer.size();
+                buffer.reset();
+                return;
+            }
+
+            if (buffer.size() > 0)
+            {
+                uploadPart();
+            }
+            facade.completeMultipartUpload(key, uploadId, partETags);
+        }
+
+
+        /**
+         *  Discards the object, aborting any multipart upload.
+         */
+        public void abort()
+        {
+            if (uploadId == null)
+                return;
+
+            try
+            {
+                facade.abortMultipartUpload(key, uploadId);
+            }
+            catch (Exception ex)
+            {
+                logger.warn("unable to abort multipart upload for " + key + ": " + ex.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,157 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.kdgregory.logging.aws.s3;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import com.kdgregory.logging.aws.internal.AbstractWriterConfig;
+
+
+/**
+ *  Configuration for S3LogWriter.
+ */
+public class S3WriterConfig
+extends AbstractWriterConfig<S3WriterConfig>
+{
+    public final static long            DEFAULT_INITIALIZATION_TIMEOUT  = 60000;
+
+    public final static String          DEFAULT_KEY_TEMPLATE            = "{date}/{hostname}/{startupTimestamp}-{pid}-{sequence}.ndjson.gz";
+    public final static long            DEFAULT_ROLLOVER_SIZE           = 64 * 1024 * 1024;
+    public final static long            DEFAULT_ROLLOVER_INTERVAL       = 300000;
+
+
+    private String                      bucketName;
+    private String                      keyTemplate                     = DEFAULT_KEY_TEMPLATE;
+    private long                        rolloverSize                    = DEFAULT_ROLLOVER_SIZE;
+    private long                        rolloverInterval                = DEFAULT_ROLLOVER_INTERVAL;
+
+
+    public S3WriterConfig()
+    {
+        super(DEFAULT_INITIALIZATION_TIMEOUT);
+    }
+
+//----------------------------------------------------------------------------
+//  Accessors
+//----------------------------------------------------------------------------
+
+    public String getBucketName()
+    {
+        return bucketName;
+    }
+
+    public S3WriterConfig setBucketName(String value)
+    {
+        bucketName = value;
+        return this;
+    }
+
+
+    public String getKeyTemplate()
+    {
+        return keyTemplate;
+    }
+
+    public S3WriterConfig setKeyTemplate(String value)
+    {
+        keyTemplate = value;
+        return this;
+    }
+
+
+    public long getRolloverSize()
+    {
+        return rolloverSize;
+    }
+
+    public S3WriterConfig setRolloverSize(long value)
+    {
+        rolloverSize = value;
+        return this;
+    }
+
+
+    public long getRolloverInterval()
+    {
+        return rolloverInterval;
+    }
+
+    public S3WriterConfig setRolloverInterval(long value)
+    {
+        rolloverInterval = value;
+        return this;
+    }
+
+//----------------------------------------------------------------------------
+//  Other public methods
+//----------------------------------------------------------------------------
+
+    /**
+     *  Validates the configuration, returning a list of any validation errors.
+     *  An empty list indicates a valid config.
+     */
+    public List<String> validate()
+    {
+        List<String> result = new ArrayList<>();
+
+        if (bucketName == null)
+        {
+            result.add("missing bucket name");
+        }
+        else if (bucketName.isEmpty())
+        {
+            result.add("blank bucket name");
+        }
+        else if ((bucketName.length() < 3) || (bucketName.length() > 63))
+        {
+            result.add("invalid bucket name length: " + bucketName);
+        }
+        else if (! Pattern.matches(S3Constants.ALLOWED_BUCKET_NAME_REGEX, bucketName))
+        {
+            result.add("invalid bucket name: " + bucketName);
+        }
+
+        if ((keyTemplate == null) || keyTemplate.isEmpty())
+        {
+            result.add("missing key template");
+        }
+
+        if (rolloverSize <= 0)
+        {
+            result.add("invalid rollover size: " + rolloverSize);
+        }
+
+        if (rolloverInterval <= 0)
+        {
+            result.add("invalid rollover interval: " + rolloverInterval);
+        }
+
+        if (getSynchronousMode())
+        {
+            result.add("synchronous mode is not supported");
+        }
+
+        // messages are limited by our own buffer, so there's no reason to offload them
+        if ((getOversizeS3Bucket() != null) && ! getOversizeS3Bucket().isEmpty())
+        {
+            result.add("oversize message upload is not supported");
+        }
+
+        return result;
+    }
+}
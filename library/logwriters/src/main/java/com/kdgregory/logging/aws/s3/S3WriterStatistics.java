@@ -0,0 +1,69 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.kdgregory.logging.aws.s3;
+
+import java.util.concurrent.atomic.LongAdder;
+
+import com.kdgregory.logging.aws.internal.AbstractWriterStatistics;
+
+
+/**
+ *  Statistics specific to S3LogWriter.
+ */
+public class S3WriterStatistics
+extends AbstractWriterStatistics
+implements S3WriterStatisticsMXBean
+{
+    private volatile String actualBucketName;
+    private volatile String lastObjectKey;
+    private LongAdder objectsWritten = new LongAdder();
+
+
+    public void setActualBucketName(String value)
+    {
+        actualBucketName = value;
+    }
+
+    @Override
+    public String getActualBucketName()
+    {
+        return actualBucketName;
+    }
+
+
+    public void setLastObjectKey(String value)
+    {
+        lastObjectKey = value;
+    }
+
+    @Override
+    public String getLastObjectKey()
+    {
+        return lastObjectKey;
+    }
+
+
+    public void incrementObjectsWritten()
+    {
+        objectsWritten.increment();
+    }
+
+    @Override
+    public long getObjectsWritten()
+    {
+        return objectsWritten.sum();
+    }
+}
@@ -22,6 +22,7 @@ import java.util.List;
 import com.kdgregory.logging.aws.facade.SNSFacade;
 import com.kdgregory.logging.aws.internal.AbstractLogWriter;
 import com.kdgregory.logging.common.LogMessage;
+import com.kdgregory.logging.common.jfr.JfrEvents;
 import com.kdgregory.logging.common.util.InternalLogger;
 import com.kdgregory.logging.common.util.RetryManager2;
 
@@ -33,6 +34,9 @@ import com.kdgregory.logging.common.util.RetryManager2;
 public class SNSLogWriter
 extends AbstractLogWriter<SNSWriterConfig,SNSWriterStatistics>
 {
+    // identifies this writer in flight recorder events
+    private final static String JFR_SERVICE_NAME = "SNS";
+
     // provided by constructor
     private SNSFacade facade;
 
@@ -124,22 +128,27 @@ extends AbstractLogWriter<SNSWriterConfig,SNSWriterStatistics>
         if (currentBatch.isEmpty())
             return currentBatch;
 
+        Object jfrToken = JfrEvents.beginBatchSend();
         List<LogMessage> failures = new ArrayList<LogMessage>();
         for (LogMessage message : currentBatch)
         {
+            long callStart = System.currentTimeMillis();
             try
             {
                 // don't retry; just let messages accumulate
                 facade.publish(message);
+                stats.recordApiLatency(System.currentTimeMillis() - callStart);
                 if (config.getEnableBatchLogging())
                     logger.debug("published 1 message");
             }
             catch (Exception ex)
             {
+                stats.recordApiLatency(System.currentTimeMillis() - callStart);
                 reportError("failed to publish: " + ex.getMessage(), ex);
                 failures.add(message);
             }
         }
+        JfrEvents.endBatchSend(jfrToken, JFR_SERVICE_NAME, currentBatch, failures);
         return failures;
     }
 
@@ -70,13 +70,13 @@ public interface SNSWriterStatisticsMXBean
      *  Returns the number of messages that were either dropped or truncated because
      *  they were too large for the service to accept.
      */
-    int getOversizeMessages();
+    long getOversizeMessages();
 
 
     /**
      *  Returns the number of messages successfully sent to the topic.
      */
-    int getMessagesSent();
+    long getMessagesSent();
 
 
     /**
@@ -104,5 +104,172 @@ public interface SNSWriterStatisticsMXBean
     /**
      *  Returns the number of messages discarded by the writer's message queue.
      */
-    int getMessagesDiscarded();
+    long getMessagesDiscarded();
+
+
+    /**
+     *  Returns the total size, in bytes, of the messages discarded by the writer's
+     *  message queue.
+     */
+    long getBytesDiscarded();
+
+
+    /**
+     *  Returns the number of times that a message could not be added to the queue
+     *  without waiting, because the discard action is <code>block</code> and the
+     *  queue was at its threshold.
+     */
+    long getBlockedEnqueues();
+
+
+    /**
+     *  Returns the total time, in milliseconds, that application threads have spent
+     *  waiting to add messages to the queue.
+     */
+    long getBlockedTime();
+
+
+    /**
+     *  Returns the number of times that a blocked thread waited for the full block
+     *  timeout, after which the fallback discard action was applied.
+     */
+    long getBlockTimeouts();
+
+
+    /**
+     *  Returns the total size, in bytes, of the messages successfully sent. This is
+     *  the UTF-8 size of the message text, and does not include any overhead added
+     *  by the service.
+     */
+    long getBytesSent();
+
+
+    /**
+     *  Returns the number of batches in which at least one message was sent.
+     */
+    long getBatchesSent();
+
+
+    /**
+     *  Returns the rate, in messages per second, at which messages are being sent.
+     *  This is a moving average over approximately the last minute.
+     */
+    double getMessagesSentRate();
+
+
+    /**
+     *  Returns the rate, in bytes per second, at which messages are being sent.
+     *  This is a moving average over approximately the last minute.
+     */
+    double getBytesSentRate();
+
+
+    /**
+     *  Returns the rate, in messages per second, at which messages are being
+     *  discarded. This is a moving average over approximately the last minute.
+     */
+    double getMessagesDiscardedRate();
+
+
+    /**
+     *  Returns the age, in milliseconds, of the oldest message that has not yet been
+     *  sent; 0 if there are no unsent messages. This is how far behind real time the
+     *  destination is.
+     */
+    long getOldestMessageAge();
+
+
+    /**
+     *  Returns the number of messages currently waiting in the writer's queue.
+     */
+    int getQueueDepth();
+
+
+    /**
+     *  Returns the largest number of messages that have been in the writer's queue.
+     */
+    int getQueueDepthHighWater();
+
+
+    /**
+     *  Returns the total size, in bytes, of the messages currently waiting in the
+     *  writer's queue.
+     */
+    long getQueueBytes();
+
+
+    /**
+     *  Returns the largest total size, in bytes, of the messages that have been in
+     *  the writer's queue.
+     */
+    long getQueueBytesHighWater();
+
+
+    /**
+     *  Returns the median time, in milliseconds, between a message's creation and
+     *  its successful send.
+     */
+    long getQueueResidencyP50();
+
+
+    /**
+     *  Returns the 99th percentile time, in milliseconds, between a message's
+     *  creation and its successful send.
+     */
+    long getQueueResidencyP99();
+
+
+    /**
+     *  Returns the 99.9th percentile time, in milliseconds, between a message's
+     *  creation and its successful send.
+     */
+    long getQueueResidencyP999();
+
+
+    /**
+     *  Returns the median elapsed time, in milliseconds, of a call to the service.
+     */
+    long getApiLatencyP50();
+
+
+    /**
+     *  Returns the 99th percentile elapsed time, in milliseconds, of a call to the
+     *  service.
+     */
+    long getApiLatencyP99();
+
+
+    /**
+     *  Returns the 99.9th percentile elapsed time, in milliseconds, of a call to the
+     *  service.
+     */
+    long getApiLatencyP999();
+
+
+    /**
+     *  Returns the median time, in milliseconds, to build a batch. This includes
+     *  the batch delay, so a value below that delay indicates that batches are
+     *  being limited by the service's size or count limits.
+     */
+    long getBatchBuildTimeP50();
+
+
+    /**
+     *  Returns the 99th percentile time, in milliseconds, to build a batch.
+     */
+    long getBatchBuildTimeP99();
+
+
+    /**
+     *  Returns the 99.9th percentile time, in milliseconds, to build a batch.
+     */
+    long getBatchBuildTimeP999();
+
+
+    /**
+     *  Sends all queued messages without waiting for the batch delay, waiting up to
+     *  the specified number of milliseconds for them to be acknowledged. Returns
+     *  <code>true</code> if all messages were sent.
+     */
+    boolean flush(long millisToWait);
 }
@@ -0,0 +1,59 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.kdgregory.logging.aws.sqs;
+
+
+/**
+ *  Holds limits and other constants for SQS.
+ *  <p>
+ *  See https://docs.aws.amazon.com/AWSSimpleQueueService/latest/APIReference/API_SendMessageBatch.html
+ *  and https://docs.aws.amazon.com/AWSSimpleQueueService/latest/SQSDeveloperGuide/quotas-messages.html
+ */
+public class SQSConstants
+{
+
+    /**
+     *  Maximum number of messages in a single <code>SendMessageBatch</code> request.
+     */
+    public final static int MAX_REQUEST_COUNT = 10;
+
+
+    /**
+     *  Maximum number of bytes in a single <code>SendMessageBatch</code> request
+     *  (this is the sum of the message bodies).
+     */
+    public final static int MAX_REQUEST_BYTES = 256 * 1024;
+
+
+    /**
+     *  Maximum number of bytes in a single message.
+     */
+    public final static int MAX_MESSAGE_BYTES = 256 * 1024;
+
+
+    /**
+     *  Maximum number of requests that the writer will have in flight at once.
+     */
+    public final static int MAX_CONCURRENT_REQUESTS = 16;
+
+
+    /**
+     *  Allowed characters for queue name. Note that this excludes FIFO queues,
+     *  whose names end with ".fifo".
+     */
+    public final static String ALLOWED_QUEUE_NAME_REGEX = "[a-zA-Z0-9_-]{1,80}";
+
+}
@@ -0,0 +1,375 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.kdgregory.logging.aws.sqs;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.kdgregory.logging.aws.facade.SQSFacade;
+import com.kdgregory.logging.aws.facade.SQSFacadeException;
+import com.kdgregory.logging.aws.facade.SQSFacadeException.ReasonCode;
+import com.kdgregory.logging.aws.internal.AbstractLogWriter;
+import com.kdgregory.logging.common.LogMessage;
+import com.kdgregory.logging.common.jfr.JfrEvents;
+import com.kdgregory.logging.common.util.InternalLogger;
+import com.kdgregory.logging.common.util.RetryManager2;
+
+
+/**
+ *  Writes log messages to an SQS queue, one SQS message per log message. The
+ *  queue must already exist.
+ *  <p>
+ *  Each batch is divided into <code>SendMessageBatch</code> requests (up to 10
+ *  messages and 256 KiB per request), which are sent concurrently. The batch is
+ *  limited to the configured number of concurrent requests, so a single slow or
+ *  throttled request will delay at most that many others.
+ *  <p>
+ *  SQS rejects messages that contain certain control characters (for example,
+ *  the escape sequences used for colorized console output). These characters
+ *  are replaced by question marks before sending, rather than causing the
+ *  message to be rejected (and retried) indefinitely.
+ *  <p>
+ *  Implementation note: protected instance variables are replaced by tests.
+ */
+public class SQSLogWriter
+extends AbstractLogWriter<SQSWriterConfig,SQSWriterStatistics>
+{
+    // identifies this writer in flight recorder events
+    private final static String JFR_SERVICE_NAME = "SQS";
+
+    // passed into constructor
+    private SQSFacade facade;
+
+    // set by initialization
+    private String queueUrl;
+
+    // used to send requests concurrently; null if configured for one request at a time
+    private ExecutorService executor;
+
+    // this controls retries for GetQueueUrl, which should be fast
+    protected RetryManager2 describeRetry = new RetryManager2("describe", Duration.ofMillis(50));
+
+    // these control retries for SendMessageBatch; note that we use a duration-based timeout
+    protected Duration sendTimeout = Duration.ofMillis(2000);
+    protected RetryManager2 sendRetry = new RetryManager2("send", Duration.ofMillis(200));
+
+
+    public SQSLogWriter(SQSWriterConfig config, SQSWriterStatistics stats, InternalLogger logger, SQSFacade facade)
+    {
+        super(config, stats, logger);
+
+        this.facade = facade;
+
+        stats.setActualQueueName(config.getQueueName());
+    }
+
+//----------------------------------------------------------------------------
+//  LogWriter overrides
+//----------------------------------------------------------------------------
+
+    @Override
+    public int maxMessageSize()
+    {
+        return SQSConstants.MAX_MESSAGE_BYTES;
+    }
+
+//----------------------------------------------------------------------------
+//  Hooks for superclass
+//----------------------------------------------------------------------------
+
+    @Override
+    protected boolean ensureDestinationAvailable()
+    {
+        List<String> configErrors = config.validate();
+        if (! configErrors.isEmpty())
+        {
+            for (String error : configErrors)
+                reportError("configuration error: " + error, null);
+            return false;
+        }
+
+        Instant timeoutAt = Instant.now().plusMillis(config.getInitializationTimeout());
+
+        try
+        {
+            logger.debug("retrieving URL for queue: " + config.getQueueName());
+            queueUrl = describeRetry.invoke(timeoutAt, () -> facade.retrieveQueueUrl());
+            if (queueUrl == null)
+            {
+                reportError("timeout retrieving URL for queue \"" + config.getQueueName() + "\"", null);
+                return false;
+            }
+        }
+        catch (SQSFacadeException ex)
+        {
+            if (ex.getReason() == ReasonCode.MISSING_QUEUE)
+                reportError("queue \"" + config.getQueueName() + "\" does not exist", null);
+            else
+                reportError("exception during initialization", ex);
+            return false;
+        }
+        catch (Exception ex)
+        {
+            reportError("exception during initialization", ex);
+            return false;
+        }
+
+        stats.setActualQueueUrl(queueUrl);
+        if (config.getConcurrentRequests() > 1)
+        {
+            executor = Executors.newFixedThreadPool(config.getConcurrentRequests(), new SenderThreadFactory());
+        }
+        return true;
+    }
+
+
+    @Override
+    protected List<LogMessage> sendBatch(List<LogMessage> currentBatch)
+    {
+        stats.setLastBatchSize(currentBatch.size());
+        if (config.getEnableBatchLogging())
+            logger.debug("about to write batch of " + currentBatch.size() + " message(s)");
+
+        // this should never happen (we wait for at least one message in queue)
+        if (currentBatch.isEmpty())
+            return currentBatch;
+
+        List<List<LogMessage>> requests = partition(currentBatch);
+        List<LogMessage> unsent = new ArrayList<LogMessage>();
+
+        Object jfrToken = JfrEvents.beginBatchSend();
+        if ((executor == null) || (requests.size() == 1))
+        {
+            for (List<LogMessage> request : requests)
+            {
+                unsent.addAll(sendRequest(request));
+            }
+        }
+        else
+        {
+            List<Future<List<LogMessage>>> futures = new ArrayList<Future<List<LogMessage>>>(requests.size());
+            for (List<LogMessage> request : requests)
+            {
+                futures.add(executor.submit(() -> sendRequest(request)));
+            }
+            for (int ii = 0 ; ii < requests.size() ; ii++)
+            {
+                try
+                {
+                    unsent.addAll(futures.get(ii).get());
+                }
+                catch (Exception ex)
+                {
+                    // sendRequest() catches everything, so this means we were interrupted
+                    logger.error("exception while sending batch", ex);
+                    unsent.addAll(requests.get(ii));
+                }
+            }
+        }
+        JfrEvents.endBatchSend(jfrToken, JFR_SERVICE_NAME, currentBatch, unsent);
+        return unsent;
+    }
+
+
+    @Override
+    protected int effectiveSize(LogMessage message)
+    {
+        return message.size();
+    }
+
+
+    @Override
+    protected boolean withinServiceLimits(int batchBytes, int numMessages)
+    {
+        // a batch holds as many requests as we can send at once
+        int concurrentRequests = config.getConcurrentRequests();
+        return (batchBytes <= SQSConstants.MAX_REQUEST_BYTES * concurrentRequests)
+            && (numMessages <= SQSConstants.MAX_REQUEST_COUNT * concurrentRequests);
+    }
+
+
+    @Override
+    protected void stopAWSClient()
+    {
+        if (executor != null)
+            executor.shutdown();
+        facade.shutdown();
+    }
+
+//----------------------------------------------------------------------------
+//  Internals
+//----------------------------------------------------------------------------
+
+    /**
+     *  Divides a batch into lists of messages that fit in a single request,
+     *  preserving order.
+     */
+    private static List<List<LogMessage>> partition(List<LogMessage> batch)
+    {
+        List<List<LogMessage>> result = new ArrayList<List<LogMessage>>();
+
+        List<LogMessage> request = new ArrayList<LogMessage>(SQSConstants.MAX_REQUEST_COUNT);
+        int requestBytes = 0;
+        for (LogMessage message : batch)
+        {
+            if ((request.size() == SQSConstants.MAX_REQUEST_COUNT)
+                || (requestBytes + message.size() > SQSConstants.MAX_REQUEST_BYTES))
+            {
+                result.add(request);
+                request = new ArrayList<LogMessage>(SQSConstants.MAX_REQUEST_COUNT);
+                requestBytes = 0;
+            }
+            request.add(message);
+            requestBytes += message.size();
+        }
+        result.add(request);
+
+        return result;
+    }
+
+
+    /**
+     *  Sends a single request, with retries. This may be called on any thread.
+     *  Returns the messages that could not be sent.
+     */
+    private List<LogMessage> sendRequest(List<LogMessage> messages)
+    {
+        // the superclass tracks messages by identity, so we have to translate any
+        // unsent replacement messages back to the originals
+        Map<LogMessage,LogMessage> replacements = new IdentityHashMap<LogMessage,LogMessage>();
+        List<LogMessage> request = new ArrayList<LogMessage>(messages.size());
+        for (LogMessage message : messages)
+        {
+            LogMessage sanitized = sanitize(message);
+            if (sanitized != message)
+                replacements.put(sanitized, message);
+            request.add(sanitized);
+        }
+
+        try
+        {
+            List<LogMessage> result = sendRetry.invoke(sendTimeout, () ->
+            {
+                long callStart = System.currentTimeMillis();
+                try
+                {
+                    List<LogMessage> unsent = facade.sendMessages(queueUrl, request);
+                    stats.recordApiLatency(System.currentTimeMillis() - callStart);
+                    if (config.getEnableBatchLogging())
+                        logger.debug("wrote request of " + request.size() + " message(s); " + unsent.size() + " rejected");
+                    return unsent;
+                }
+                catch (SQSFacadeException ex)
+                {
+                    stats.recordApiLatency(System.currentTimeMillis() - callStart);
+                    if (ex.getReason() == ReasonCode.THROTTLING)
+                    {
+                        stats.incrementThrottledWrites();
+                        JfrEvents.throttled(JFR_SERVICE_NAME);
+                        return null;
+                    }
+                    if (! ex.isRetryable())
+                    {
+                        throw ex;
+                    }
+                    return null;
+                }
+            });
+
+            if (result == null)
+            {
+                logger.warn("timeout while sending batch");
+                return messages;
+            }
+
+            if (replacements.isEmpty())
+                return result;
+
+            List<LogMessage> unsent = new ArrayList<LogMessage>(result.size());
+            for (LogMessage message : result)
+            {
+                LogMessage original = replacements.get(message);
+                unsent.add((original != null) ? original : message);
+            }
+            return unsent;
+        }
+        catch (Exception ex)
+        {
+            logger.error("exception while sending batch", ex);
+            return messages;
+        }
+    }
+
+
+    /**
+     *  Returns a copy of the passed message with any characters that SQS does not
+     *  accept replaced by question marks, or the original message if it doesn't
+     *  contain such characters.
+     */
+    private static LogMessage sanitize(LogMessage message)
+    {
+        String text = message.getMessage();
+        StringBuilder sb = null;
+        for (int ii = 0 ; ii < text.length() ; ii++)
+        {
+            char c = text.charAt(ii);
+            boolean allowed = (c >= 0x20)
+                            ? (c != 0xFFFE) && (c != 0xFFFF)
+                            : (c == '\t') || (c == '\n') || (c == '\r');
+            if (allowed && (sb == null))
+                continue;
+
+            if (sb == null)
+            {
+                sb = new StringBuilder(text.length());
+                sb.append(text, 0, ii);
+            }
+            sb.append(allowed ? c : '?');
+        }
+
+        return (sb == null)
+             ? message
+             : new LogMessage(message.getTimestamp(), message.getSeverity(), sb.toString());
+    }
+
+
+    /**
+     *  Creates daemon threads for sending requests, so that they don't prevent
+     *  the JVM from exiting.
+     */
+    private static class SenderThreadFactory
+    implements ThreadFactory
+    {
+        private AtomicInteger threadNumber = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable)
+        {
+            Thread thread = new Thread(runnable, "log-writer-sqs-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
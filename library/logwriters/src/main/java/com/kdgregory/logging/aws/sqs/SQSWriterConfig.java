@@ -0,0 +1,112 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.kdgregory.logging.aws.sqs;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import com.kdgregory.logging.aws.internal.AbstractWriterConfig;
+
+
+/**
+ *  Configuration for SQSLogWriter.
+ */
+public class SQSWriterConfig
+extends AbstractWriterConfig<SQSWriterConfig>
+{
+    public final static long            DEFAULT_INITIALIZATION_TIMEOUT  = 60000;
+
+    public final static int             DEFAULT_CONCURRENT_REQUESTS     = 4;
+
+
+    private String                      queueName;
+    private int                         concurrentRequests              = DEFAULT_CONCURRENT_REQUESTS;
+
+
+    public SQSWriterConfig()
+    {
+        super(DEFAULT_INITIALIZATION_TIMEOUT);
+    }
+
+//----------------------------------------------------------------------------
+//  Accessors
+//----------------------------------------------------------------------------
+
+    public String getQueueName()
+    {
+        return queueName;
+    }
+
+    public SQSWriterConfig setQueueName(String value)
+    {
+        queueName = value;
+        return this;
+    }
+
+
+    public int getConcurrentRequests()
+    {
+        return concurrentRequests;
+    }
+
+    public SQSWriterConfig setConcurrentRequests(int value)
+    {
+        concurrentRequests = value;
+        return this;
+    }
+
+//----------------------------------------------------------------------------
+//  Other public methods
+//----------------------------------------------------------------------------
+
+    /**
+     *  Validates the configuration, returning a list of any validation errors.
+     *  An empty list indicates a valid config.
+     */
+    public List<String> validate()
+    {
+        List<String> result = new ArrayList<>();
+
+        if (queueName == null)
+        {
+            result.add("missing queue name");
+        }
+        else if (queueName.isEmpty())
+        {
+            result.add("blank queue name");
+        }
+        else if (queueName.endsWith(".fifo"))
+        {
+            result.add("FIFO queues are not supported: " + queueName);
+        }
+        else if (queueName.length() > 80)
+        {
+            result.add("queue name too long");
+        }
+        else if (! Pattern.matches(SQSConstants.ALLOWED_QUEUE_NAME_REGEX, queueName))
+        {
+            result.add("invalid queue name: " + queueName);
+        }
+
+        if ((concurrentRequests < 1) || (concurrentRequests > SQSConstants.MAX_CONCURRENT_REQUESTS))
+        {
+            result.add("invalid concurrent requests: " + concurrentRequests);
+        }
+
+        return result;
+    }
+}
@@ -15,31 +15,93 @@
 package com.kdgregory.logging.common;
 
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
 
 
 /**
  *  Holder for an in-queue logging message. Each instance has a timestamp and a
  *  message body. The latter is held both as a string and as UTF-8 encoded bytes.
+ *  <p>
+ *  A message may also be constructed with a <em>formatter</em>: a function that
+ *  produces the message body from a snapshot of the logging event. This allows the
+ *  appender to defer layout to the writer thread, which calls {@link #format} after
+ *  taking the message from the queue. Until then, the message has no body and its
+ *  size is zero.
  */
 public class LogMessage
 implements Comparable<LogMessage>
 {
+    /**
+     *  The severity of the event that produced a message, used to decide which
+     *  messages to discard. These are ordered from least to most severe; logging
+     *  framework levels are mapped to the closest value (so TRACE is reported as
+     *  DEBUG, and FATAL as ERROR).
+     */
+    public enum Severity
+    {
+        DEBUG, INFO, WARN, ERROR
+    }
+
+    /**
+     *  The severity assigned to messages that don't specify one.
+     */
+    public final static Severity DEFAULT_SEVERITY = Severity.INFO;
+
+
     private long timestamp;
+    private Severity severity;
     private String message;
     private byte[] messageBytes;
+    private Supplier<String> formatter;
 
 
     /**
-     *  Constructs an instance from a simple string.
+     *  Constructs an instance from a simple string, with default severity.
      */
     public LogMessage(long timestamp, String message)
+    {
+        this(timestamp, DEFAULT_SEVERITY, message);
+    }
+
+
+    /**
+     *  Constructs an instance from a simple string.
+     */
+    public LogMessage(long timestamp, Severity severity, String message)
     {
         this.timestamp = timestamp;
+        this.severity = (severity != null) ? severity : DEFAULT_SEVERITY;
         this.message = message;
         this.messageBytes = message.getBytes(StandardCharsets.UTF_8);
     }
 
 
+    /**
+     *  Constructs an instance whose body will be produced by the passed formatter,
+     *  with default severity.
+     */
+    public LogMessage(long timestamp, Supplier<String> formatter)
+    {
+        this(timestamp, DEFAULT_SEVERITY, formatter);
+    }
+
+
+    /**
+     *  Constructs an instance whose body will be produced by the passed formatter.
+     *  The formatter must not depend on any mutable state of the caller's thread.
+     */
+    public LogMessage(long timestamp, Severity severity, Supplier<String> formatter)
+    {
+        this.timestamp = timestamp;
+        this.severity = (severity != null) ? severity : DEFAULT_SEVERITY;
+        this.message = "";
+        this.messageBytes = new byte[0];
+        this.formatter = formatter;
+    }
+
+
     /**
      *  Returns the timestamp.
      */
@@ -49,6 +111,45 @@ implements Comparable<LogMessage>
     }
 
 
+    /**
+     *  Returns the severity.
+     */
+    public Severity getSeverity()
+    {
+        return severity;
+    }
+
+
+    /**
+     *  Returns true if this message has a formatter that has not yet been invoked.
+     */
+    public boolean isDeferred()
+    {
+        return formatter != null;
+    }
+
+
+    /**
+     *  Invokes the formatter, if any, to produce the message body. This is called by
+     *  the writer thread, and must only be called when the message is not in a queue
+     *  (because the queue tracks the size of its messages).
+     *
+     *  @throws RuntimeException if the formatter fails. The message is left without
+     *          a body, and is no longer deferred.
+     */
+    public void format()
+    {
+        if (formatter == null)
+            return;
+
+        Supplier<String> currentFormatter = formatter;
+        formatter = null;
+
+        message = currentFormatter.get();
+        messageBytes = message.getBytes(StandardCharsets.UTF_8);
+    }
+
+
     /**
      *  Returns the size of the UTF-8 representation.
      */
@@ -120,6 +221,57 @@ implements Comparable<LogMessage>
     }
 
 
+    /**
+     *  Splits this message into parts that are no more than the specified number of
+     *  bytes, without breaking UTF-8 character sequences (with the same caveats as
+     *  {@link #truncate}). Each part starts with a header that identifies the original
+     *  message and the part's position, so that the parts can be reassembled:
+     *  <pre>
+     *      [CORRELATION_ID INDEX/COUNT] TEXT
+     *  </pre>
+     *  Indexes start at 1. All parts have the same timestamp and severity as this
+     *  message.
+     *
+     *  @throws IllegalArgumentException if the maximum size is too small to hold the
+     *          header and at least one character.
+     */
+    public List<LogMessage> split(int maxSize, String correlationId)
+    {
+        // the header size depends on the number of parts, which we don't know until
+        // we've split; the number of bytes is an upper bound on that number
+
+        int maxHeaderSize = splitHeader(correlationId, messageBytes.length, messageBytes.length)
+                            .getBytes(StandardCharsets.UTF_8).length;
+        int available = maxSize - maxHeaderSize;
+        if (available < 4)
+            throw new IllegalArgumentException("maximum size too small to split message: " + maxSize);
+
+        List<String> chunks = new ArrayList<String>();
+        int start = 0;
+        while (start < messageBytes.length)
+        {
+            int end = Math.min(messageBytes.length, start + available);
+
+            // back up to the start of any UTF-8 sequence that crosses the boundary
+            while ((end < messageBytes.length) && ((messageBytes[end] & 0x00C0) == 0x0080))
+            {
+                end--;
+            }
+
+            chunks.add(new String(messageBytes, start, end - start, StandardCharsets.UTF_8));
+            start = end;
+        }
+
+        List<LogMessage> result = new ArrayList<LogMessage>(chunks.size());
+        for (int ii = 0 ; ii < chunks.size() ; ii++)
+        {
+            String header = splitHeader(correlationId, ii + 1, chunks.size());
+            result.add(new LogMessage(timestamp, severity, header + chunks.get(ii)));
+        }
+        return result;
+    }
+
+
     /**
      *  Compares instances based on their timestamp.
      *  <p>
@@ -137,4 +289,13 @@ implements Comparable<LogMessage>
                : (this.timestamp > that.timestamp) ? 1
                : 0;
     }
+
+//----------------------------------------------------------------------------
+//  Internals
+//----------------------------------------------------------------------------
+
+    private static String splitHeader(String correlationId, int index, int count)
+    {
+        return "[" + correlationId + " " + index + "/" + count + "] ";
+    }
 }
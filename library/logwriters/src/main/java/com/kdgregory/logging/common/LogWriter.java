@@ -57,6 +57,14 @@ extends Runnable
     boolean isSynchronous();
 
 
+    /**
+     *  Returns a flag to indicate whether initialization should happen on a background
+     *  thread. This is only relevant for synchronous mode: messages are queued until the
+     *  writer is initialized, and then sent on the thread that appends them.
+     */
+    boolean isInitializationDeferred();
+
+
     /**
      *  Returns the maximum allowed UTF-8 message size for the destination.
      */
@@ -73,6 +81,21 @@ extends Runnable
     boolean waitUntilInitialized(long millisToWait);
 
 
+    /**
+     *  Determines whether a message added now would be immediately discarded (for
+     *  example, because the queue is full and the discard action is "newest"). If
+     *  yes, counts it as discarded. Appenders call this before formatting an event,
+     *  so that they don't spend time formatting messages that won't be sent.
+     *  <p>
+     *  This is a point-in-time check: the writer may dequeue messages immediately
+     *  after it returns. However, it's only true when the queue has reached its
+     *  discard threshold, so the caller would be likely to lose messages anyway.
+     *
+     *  @return <code>true</code> if the caller should not format and add the message.
+     */
+    boolean discardIfFull();
+
+
     /**
      *  Adds a message to the writer's message queue. If in synchronous mode, this
      *  also triggers batch processing.
@@ -84,6 +107,23 @@ extends Runnable
     void addMessage(LogMessage message);
 
 
+    /**
+     *  Sends all queued messages, without waiting for the batch delay, and waits up
+     *  to the specified amount of time for the destination to acknowledge them. This
+     *  is intended for environments such as Lambda, where the process may be frozen
+     *  before the writer has a chance to send its next batch.
+     *  <p>
+     *  In synchronous mode, this sends any messages that remain in the queue (for
+     *  example, because a previous send failed) on the calling thread.
+     *
+     *  @return <code>true</code> if all messages that were queued when this method
+     *          was called have been sent; <code>false</code> if any could not be
+     *          sent, the timeout expired, the writer isn't running, or the calling
+     *          thread was interrupted.
+     */
+    boolean flush(long millisToWait);
+
+
     /**
      *  Signals the writer that it will no longer receive batches. It should, however,
      *  make a best effort to send any batches that it already has before exiting its
@@ -0,0 +1,42 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.kdgregory.logging.common.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+
+/**
+ *  A batch of messages was taken from the queue; duration includes the batch delay.
+ */
+@Name("com.kdgregory.logging.BatchBuilt")
+@Label("Batch Built")
+@Category({ "AWS Appenders" })
+@Description("A batch of messages was taken from the queue; duration includes the batch delay.")
+class BatchBuiltEvent
+extends Event
+{
+    @Label("Message Count")
+    int messageCount;
+
+    @Label("Effective Size")
+    @Description("Size of the batch, including per-message overhead imposed by the service")
+    @DataAmount
+    long bytes;
+}
@@ -0,0 +1,49 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.kdgregory.logging.common.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+
+/**
+ *  A batch of messages was sent to the destination; duration includes retries.
+ */
+@Name("com.kdgregory.logging.BatchSent")
+@Label("Batch Sent")
+@Category({ "AWS Appenders" })
+@Description("A batch of messages was sent to the destination; duration includes retries.")
+class BatchSentEvent
+extends Event
+{
+    @Label("Service")
+    String service;
+
+    @Label("Message Count")
+    int messageCount;
+
+    @Label("Failed Count")
+    @Description("Number of messages that could not be sent, and will be requeued")
+    int failedCount;
+
+    @Label("Bytes Sent")
+    @Description("Size of the messages that were successfully sent")
+    @DataAmount
+    long bytes;
+}
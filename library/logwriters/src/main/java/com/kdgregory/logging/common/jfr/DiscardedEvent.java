@@ -0,0 +1,44 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.kdgregory.logging.common.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+
+/**
+ *  Messages were discarded because the queue exceeded its discard threshold.
+ */
+@Name("com.kdgregory.logging.Discarded")
+@Label("Messages Discarded")
+@Category({ "AWS Appenders" })
+@Description("Messages were discarded because the queue exceeded its discard threshold.")
+class DiscardedEvent
+extends Event
+{
+    @Label("Message Count")
+    int messageCount;
+
+    @Label("Bytes")
+    @DataAmount
+    long bytes;
+
+    @Label("Discard Action")
+    String discardAction;
+}
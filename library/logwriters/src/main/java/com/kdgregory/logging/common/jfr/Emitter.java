@@ -0,0 +1,41 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.kdgregory.logging.common.jfr;
+
+import java.util.List;
+
+import com.kdgregory.logging.common.LogMessage;
+
+
+/**
+ *  The operations that {@link JfrEvents} delegates to the JFR-dependent code. This
+ *  interface doesn't reference JFR, so {@link JfrEvents} can be compiled (and used)
+ *  when the implementation isn't present; see the <code>no-jfr</code> build profile.
+ */
+interface Emitter
+{
+    Object beginBatchBuilt();
+    void endBatchBuilt(Object token, int messageCount, long bytes);
+    Object beginBatchSent();
+    void endBatchSent(Object token, String service, List<LogMessage> batch, List<LogMessage> failed);
+    void throttled(String service);
+    void requeued(int messageCount);
+    void discarded(int messageCount, long bytes, String discardAction);
+    Object beginWriterInitialized();
+    void endWriterInitialized(Object token, String writer, boolean success);
+    Object beginClientCreated();
+    void endClientCreated(Object token, String clientType);
+}
@@ -0,0 +1,202 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.kdgregory.logging.common.jfr;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+import com.kdgregory.logging.common.LogMessage;
+
+
+/**
+ *  Creates and commits the actual events. This class is the only place that the
+ *  event classes are referenced; {@link JfrEvents} instantiates it reflectively,
+ *  so that it (and the event classes) can be omitted from builds on a JDK that
+ *  doesn't provide JFR.
+ */
+class EventEmitter
+implements Emitter
+{
+    /**
+     *  Forces the event classes to be loaded, so that failures are reported
+     *  during availability check rather than in use.
+     */
+    public EventEmitter()
+    {
+        new BatchBuiltEvent().isEnabled();
+        new BatchSentEvent().isEnabled();
+        new ThrottledEvent().isEnabled();
+        new RequeuedEvent().isEnabled();
+        new DiscardedEvent().isEnabled();
+        new WriterInitializedEvent().isEnabled();
+        new ClientCreatedEvent().isEnabled();
+    }
+
+
+    @Override
+    public Object beginBatchBuilt()
+    {
+        BatchBuiltEvent event = new BatchBuiltEvent();
+        if (! event.isEnabled())
+            return null;
+
+        event.begin();
+        return event;
+    }
+
+
+    @Override
+    public void endBatchBuilt(Object token, int messageCount, long bytes)
+    {
+        BatchBuiltEvent event = (BatchBuiltEvent)token;
+        event.end();
+        if (event.shouldCommit())
+        {
+            event.messageCount = messageCount;
+            event.bytes = bytes;
+            event.commit();
+        }
+    }
+
+
+    @Override
+    public Object beginBatchSent()
+    {
+        BatchSentEvent event = new BatchSentEvent();
+        if (! event.isEnabled())
+            return null;
+
+        event.begin();
+        return event;
+    }
+
+
+    @Override
+    public void endBatchSent(Object token, String service, List<LogMessage> batch, List<LogMessage> failed)
+    {
+        BatchSentEvent event = (BatchSentEvent)token;
+        event.end();
+        if (event.shouldCommit())
+        {
+            Set<LogMessage> failedSet = Collections.newSetFromMap(new IdentityHashMap<LogMessage,Boolean>());
+            failedSet.addAll(failed);
+
+            long bytes = 0;
+            for (LogMessage message : batch)
+            {
+                if (! failedSet.contains(message))
+                    bytes += message.size();
+            }
+
+            event.service = service;
+            event.messageCount = batch.size();
+            event.failedCount = failed.size();
+            event.bytes = bytes;
+            event.commit();
+        }
+    }
+
+
+    @Override
+    public void throttled(String service)
+    {
+        ThrottledEvent event = new ThrottledEvent();
+        if (event.shouldCommit())
+        {
+            event.service = service;
+            event.commit();
+        }
+    }
+
+
+    @Override
+    public void requeued(int messageCount)
+    {
+        RequeuedEvent event = new RequeuedEvent();
+        if (event.shouldCommit())
+        {
+            event.messageCount = messageCount;
+            event.commit();
+        }
+    }
+
+
+    @Override
+    public void discarded(int messageCount, long bytes, String discardAction)
+    {
+        DiscardedEvent event = new DiscardedEvent();
+        if (event.shouldCommit())
+        {
+            event.messageCount = messageCount;
+            event.bytes = bytes;
+            event.discardAction = discardAction;
+            event.commit();
+        }
+    }
+
+
+    @Override
+    public Object beginWriterInitialized()
+    {
+        WriterInitializedEvent event = new WriterInitializedEvent();
+        if (! event.isEnabled())
+            return null;
+
+        event.begin();
+        return event;
+    }
+
+
+    @Override
+    public void endWriterInitialized(Object token, String writer, boolean success)
+    {
+        WriterInitializedEvent event = (WriterInitializedEvent)token;
+        event.end();
+        if (event.shouldCommit())
+        {
+            event.writer = writer;
+            event.success = success;
+            event.commit();
+        }
+    }
+
+
+    @Override
+    public Object beginClientCreated()
+    {
+        ClientCreatedEvent event = new ClientCreatedEvent();
+        if (! event.isEnabled())
+            return null;
+
+        event.begin();
+        return event;
+    }
+
+
+    @Override
+    public void endClientCreated(Object token, String clientType)
+    {
+        ClientCreatedEvent event = (ClientCreatedEvent)token;
+        event.end();
+        if (event.shouldCommit())
+        {
+            event.clientType = clientType;
+            event.commit();
+        }
+    }
+}
@@ -0,0 +1,204 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.kdgregory.logging.common.jfr;
+
+import java.util.List;
+
+import com.kdgregory.logging.common.LogMessage;
+
+
+/**
+ *  Emits Java Flight Recorder events for the writer pipeline, so that logging
+ *  activity can be correlated with GC, CPU, and so on in the same recording.
+ *  <p>
+ *  The library targets Java 8, and not all Java 8 runtimes provide JFR, so the
+ *  event classes are only referenced from <code>EventEmitter</code>. This class
+ *  loads the emitter reflectively, and only uses it if it (and the events) could
+ *  be loaded; the emitter is omitted entirely if the library was built on a JDK
+ *  without JFR. If JFR isn't available, or an event isn't enabled in the current
+ *  recording, the methods here are no-ops: the cost is a static check and (for
+ *  events with a duration) an allocation that escape analysis usually eliminates.
+ *  <p>
+ *  Duration events are started with a <code>beginXXX()</code> method, which
+ *  returns an opaque token (null if the event is disabled) that must be passed
+ *  to the corresponding <code>endXXX()</code> method.
+ */
+public final class JfrEvents
+{
+    private final static Emitter EMITTER = loadEmitter();
+    private final static boolean AVAILABLE = (EMITTER != null);
+
+
+    /**
+     *  Returns true if JFR events can be emitted in this JVM. This doesn't mean
+     *  that a recording is in progress.
+     */
+    public static boolean isAvailable()
+    {
+        return AVAILABLE;
+    }
+
+
+    /**
+     *  Called when the writer has taken the first message of a batch from the queue.
+     */
+    public static Object beginBatchBuild()
+    {
+        return AVAILABLE ? EMITTER.beginBatchBuilt() : null;
+    }
+
+
+    /**
+     *  Called when the writer has assembled a batch.
+     *
+     *  @param  token           The value returned by {@link #beginBatchBuild}.
+     *  @param  messageCount    The number of messages in the batch.
+     *  @param  bytes           The effective size of the batch (including service overhead).
+     */
+    public static void endBatchBuild(Object token, int messageCount, long bytes)
+    {
+        if (token != null)
+            EMITTER.endBatchBuilt(token, messageCount, bytes);
+    }
+
+
+    /**
+     *  Called by <code>sendBatch()</code> before doing anything else.
+     */
+    public static Object beginBatchSend()
+    {
+        return AVAILABLE ? EMITTER.beginBatchSent() : null;
+    }
+
+
+    /**
+     *  Called by <code>sendBatch()</code> before returning.
+     *
+     *  @param  token       The value returned by {@link #beginBatchSend}.
+     *  @param  service     Identifies the destination service.
+     *  @param  batch       The messages that were passed to <code>sendBatch()</code>.
+     *  @param  failed      The messages that will be returned for requeue.
+     */
+    public static void endBatchSend(Object token, String service, List<LogMessage> batch, List<LogMessage> failed)
+    {
+        if (token != null)
+            EMITTER.endBatchSent(token, service, batch, failed);
+    }
+
+
+    /**
+     *  Called when a service call is throttled.
+     */
+    public static void throttled(String service)
+    {
+        if (AVAILABLE)
+            EMITTER.throttled(service);
+    }
+
+
+    /**
+     *  Called when messages are returned to the queue after a failed send.
+     */
+    public static void requeued(int messageCount)
+    {
+        if (AVAILABLE)
+            EMITTER.requeued(messageCount);
+    }
+
+
+    /**
+     *  Called when the message queue discards messages.
+     */
+    public static void discarded(int messageCount, long bytes, String discardAction)
+    {
+        if (AVAILABLE)
+            EMITTER.discarded(messageCount, bytes, discardAction);
+    }
+
+
+    /**
+     *  Called when a writer starts initialization.
+     */
+    public static Object beginWriterInitialization()
+    {
+        return AVAILABLE ? EMITTER.beginWriterInitialized() : null;
+    }
+
+
+    /**
+     *  Called when a writer completes initialization.
+     *
+     *  @param  token       The value returned by {@link #beginWriterInitialization}.
+     *  @param  writer      The writer's class name.
+     *  @param  success     Whether initialization succeeded.
+     */
+    public static void endWriterInitialization(Object token, String writer, boolean success)
+    {
+        if (token != null)
+            EMITTER.endWriterInitialized(token, writer, success);
+    }
+
+
+    /**
+     *  Called by a client factory before it starts creating a client.
+     */
+    public static Object beginClientCreation()
+    {
+        return AVAILABLE ? EMITTER.beginClientCreated() : null;
+    }
+
+
+    /**
+     *  Called by a client factory after it has created a client.
+     *
+     *  @param  token       The value returned by {@link #beginClientCreation}.
+     *  @param  clientType  The name of the client class.
+     */
+    public static void endClientCreation(Object token, String clientType)
+    {
+        if (token != null)
+            EMITTER.endClientCreated(token, clientType);
+    }
+
+//----------------------------------------------------------------------------
+//  Internals
+//----------------------------------------------------------------------------
+
+    private JfrEvents()
+    {
+        // this is a static class
+    }
+
+
+    /**
+     *  Attempts to load the emitter, which in turn loads and registers the event
+     *  classes. Any failure means that JFR isn't supported by this JVM, or that
+     *  the library was built without JFR support.
+     */
+    private static Emitter loadEmitter()
+    {
+        try
+        {
+            Class.forName("jdk.jfr.Event");
+            return (Emitter)Class.forName(JfrEvents.class.getPackage().getName() + ".EventEmitter")
+                                 .newInstance();
+        }
+        catch (Throwable ex)
+        {
+            return null;
+        }
+    }
+}
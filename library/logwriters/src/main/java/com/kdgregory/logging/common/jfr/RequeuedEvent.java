@@ -0,0 +1,36 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.kdgregory.logging.common.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+
+/**
+ *  Messages that could not be sent were returned to the queue.
+ */
+@Name("com.kdgregory.logging.Requeued")
+@Label("Messages Requeued")
+@Category({ "AWS Appenders" })
+@Description("Messages that could not be sent were returned to the queue.")
+class RequeuedEvent
+extends Event
+{
+    @Label("Message Count")
+    int messageCount;
+}
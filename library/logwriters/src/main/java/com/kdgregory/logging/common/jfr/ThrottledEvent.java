@@ -0,0 +1,36 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.kdgregory.logging.common.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+
+/**
+ *  A call to the destination service was throttled, and will be retried.
+ */
+@Name("com.kdgregory.logging.Throttled")
+@Label("Throttled")
+@Category({ "AWS Appenders" })
+@Description("A call to the destination service was throttled, and will be retried.")
+class ThrottledEvent
+extends Event
+{
+    @Label("Service")
+    String service;
+}
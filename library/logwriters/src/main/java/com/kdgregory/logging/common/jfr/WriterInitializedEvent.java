@@ -0,0 +1,39 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.kdgregory.logging.common.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+
+/**
+ *  A log writer completed initialization, successfully or not.
+ */
+@Name("com.kdgregory.logging.WriterInitialized")
+@Label("Writer Initialized")
+@Category({ "AWS Appenders" })
+@Description("A log writer completed initialization, successfully or not.")
+class WriterInitializedEvent
+extends Event
+{
+    @Label("Writer")
+    String writer;
+
+    @Label("Success")
+    boolean success;
+}
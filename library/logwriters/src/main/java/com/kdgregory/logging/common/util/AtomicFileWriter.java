@@ -0,0 +1,79 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.kdgregory.logging.common.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+
+/**
+ *  Replaces the contents of a file that may be read concurrently by other
+ *  processes. Content is written to a temporary file in the same directory,
+ *  which is then renamed over the destination, so that readers see either the
+ *  old contents or the new, never a partial file.
+ */
+public class AtomicFileWriter
+{
+    /**
+     *  Writes content to an output stream. Implementations should not close the
+     *  stream.
+     */
+    @FunctionalInterface
+    public interface ContentWriter
+    {
+        void write(OutputStream out) throws IOException;
+    }
+
+
+    private AtomicFileWriter()
+    {
+        // this is a static class
+    }
+
+
+    /**
+     *  Writes the file, creating its parent directory if necessary.
+     *
+     *  @throws IOException if unable to write or rename; the destination is
+     *                      unchanged, and the temporary file is removed.
+     */
+    public static void write(File file, ContentWriter writer)
+    throws IOException
+    {
+        File tempFile = null;
+        try
+        {
+            File dir = file.getAbsoluteFile().getParentFile();
+            if (dir != null)
+                dir.mkdirs();
+            tempFile = File.createTempFile("." + file.getName() + "-", ".tmp", dir);
+            try (OutputStream out = Files.newOutputStream(tempFile.toPath()))
+            {
+                writer.write(out);
+            }
+            Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        catch (IOException ex)
+        {
+            if (tempFile != null)
+                tempFile.delete();
+            throw ex;
+        }
+    }
+}
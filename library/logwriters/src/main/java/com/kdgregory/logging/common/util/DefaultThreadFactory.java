@@ -22,7 +22,8 @@ import com.kdgregory.logging.common.LogWriter;
 
 /**
  *  The standard {@link ThreadFactory}: launches a daemon thread to run normal
- *  writers, runs synchronous writers inline.
+ *  writers, runs synchronous writers inline (unless they defer initialization,
+ *  in which case they're also run on a daemon thread).
  */
 public class DefaultThreadFactory implements ThreadFactory
 {
@@ -40,7 +41,7 @@ public class DefaultThreadFactory implements ThreadFactory
     @Override
     public void startWriterThread(final LogWriter writer, UncaughtExceptionHandler exceptionHandler)
     {
-        if (writer.isSynchronous())
+        if (writer.isSynchronous() && ! writer.isInitializationDeferred())
         {
             try
             {
@@ -0,0 +1,97 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.kdgregory.logging.common.util;
+
+import java.util.function.LongSupplier;
+
+
+/**
+ *  Reports the per-second rate of change of a counter, as an exponentially
+ *  weighted moving average with a one-minute time constant (the same approach
+ *  as the Unix load average).
+ *  <p>
+ *  The counter is sampled at five-second intervals, but there is no background
+ *  thread: sampling happens when the rate is read. If one or more intervals have
+ *  passed since the last read, the change in the counter is spread evenly over
+ *  them. This means that the cost is paid by the (infrequent) reader, not the
+ *  code that updates the counter.
+ */
+public class EwmaRate
+{
+    private final static long   INTERVAL        = 5000;
+    private final static double ALPHA           = 1 - Math.exp(-5.0 / 60.0);
+
+    // after this many intervals, the old average contributes effectively nothing
+    private final static long   MAX_CATCHUP     = 100;
+
+    private LongSupplier counter;
+    private LongSupplier clock;
+
+    private long lastTick;
+    private long lastCount;
+    private double rate;
+
+
+    /**
+     *  Creates an instance that reads the passed counter.
+     */
+    public EwmaRate(LongSupplier counter)
+    {
+        this(counter, System::currentTimeMillis);
+    }
+
+
+    /**
+     *  Creates an instance that uses an explicit clock. This is intended for testing.
+     */
+    public EwmaRate(LongSupplier counter, LongSupplier clock)
+    {
+        this.counter = counter;
+        this.clock = clock;
+        this.lastTick = clock.getAsLong();
+        this.lastCount = counter.getAsLong();
+    }
+
+
+    /**
+     *  Returns the current rate, in events per second.
+     */
+    public synchronized double getRate()
+    {
+        long now = clock.getAsLong();
+        long intervals = (now - lastTick) / INTERVAL;
+        if (intervals <= 0)
+            return rate;
+
+        long count = counter.getAsLong();
+        double intervalRate = (double)(count - lastCount) / intervals / (INTERVAL / 1000.0);
+
+        if (intervals > MAX_CATCHUP)
+        {
+            rate = intervalRate;
+        }
+        else
+        {
+            for (long ii = 0 ; ii < intervals ; ii++)
+            {
+                rate += ALPHA * (intervalRate - rate);
+            }
+        }
+
+        lastTick += intervals * INTERVAL;
+        lastCount = count;
+        return rate;
+    }
+}
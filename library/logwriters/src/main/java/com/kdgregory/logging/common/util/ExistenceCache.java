@@ -0,0 +1,198 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.kdgregory.logging.common.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+
+/**
+ *  Remembers destinations (log groups, streams, and so on) that are known to exist,
+ *  so that writers can skip the describe calls that would otherwise verify them.
+ *  Each entry has its own expiration time, after which it's treated as unknown.
+ *  <p>
+ *  Instances are shared: all callers that pass the same filename (or null, for a
+ *  memory-only cache) get the same instance. If a file is specified, it's read when
+ *  the instance is created and rewritten whenever an entry is added or removed.
+ *  When rewriting, unexpired entries from the existing file are merged with those
+ *  held in memory, so that multiple processes may share the same file.
+ *  <p>
+ *  The cache is an optimization: if the file can't be read or written, the cache
+ *  behaves as if it were empty (or memory-only), rather than throwing.
+ *  <p>
+ *  The file contains one entry per line: the expiration timestamp (millis since
+ *  epoch), a tab, and the key. Keys must not contain tabs or newlines.
+ */
+public class ExistenceCache
+{
+    private static Map<String,ExistenceCache> instances = new HashMap<>();
+
+    /**
+     *  Returns the shared instance for the specified file, creating it if necessary.
+     *
+     *  @param  filename    The file used to persist the cache. May be null or empty,
+     *                      in which case the cache is held only in memory.
+     */
+    public static synchronized ExistenceCache getInstance(String filename)
+    {
+        String mapKey = (filename == null) ? "" : filename;
+        ExistenceCache instance = instances.get(mapKey);
+        if (instance == null)
+        {
+            instance = new ExistenceCache(mapKey.isEmpty() ? null : new File(mapKey));
+            instances.put(mapKey, instance);
+        }
+        return instance;
+    }
+
+//----------------------------------------------------------------------------
+//  Instance variables and constructor
+//----------------------------------------------------------------------------
+
+    private File file;
+    private Map<String,Long> entries = new HashMap<>();
+    private Set<String> removed = new HashSet<>();
+
+
+    /**
+     *  Creates an instance that is not shared. This is intended for testing;
+     *  normal code should call {@link #getInstance}.
+     */
+    public ExistenceCache(File file)
+    {
+        this.file = file;
+        entries.putAll(readFile());
+    }
+
+//----------------------------------------------------------------------------
+//  Public methods
+//----------------------------------------------------------------------------
+
+    /**
+     *  Returns true if the key has been added and not yet expired or removed.
+     */
+    public synchronized boolean contains(String key)
+    {
+        Long expiresAt = entries.get(key);
+        if (expiresAt == null)
+            return false;
+
+        if (expiresAt.longValue() > System.currentTimeMillis())
+            return true;
+
+        entries.remove(key);
+        return false;
+    }
+
+
+    /**
+     *  Adds a key, which will be retained for the specified number of milliseconds.
+     */
+    public synchronized void add(String key, long ttl)
+    {
+        if ((key.indexOf('\t') >= 0) || (key.indexOf('\n') >= 0))
+            return;
+
+        entries.put(key, Long.valueOf(System.currentTimeMillis() + ttl));
+        removed.remove(key);
+        writeFile();
+    }
+
+
+    /**
+     *  Removes a key; this is called when a destination is found to be missing.
+     */
+    public synchronized void remove(String key)
+    {
+        entries.remove(key);
+        removed.add(key);
+        writeFile();
+    }
+
+//----------------------------------------------------------------------------
+//  Internals
+//----------------------------------------------------------------------------
+
+    private Map<String,Long> readFile()
+    {
+        Map<String,Long> result = new HashMap<>();
+        if ((file == null) || ! file.exists())
+            return result;
+
+        long now = System.currentTimeMillis();
+        try
+        {
+            for (String line : Files.readAllLines(file.toPath(), StandardCharsets.UTF_8))
+            {
+                int tabIdx = line.indexOf('\t');
+                if (tabIdx <= 0)
+                    continue;
+
+                try
+                {
+                    long expiresAt = Long.parseLong(line.substring(0, tabIdx));
+                    if (expiresAt > now)
+                        result.put(line.substring(tabIdx + 1), Long.valueOf(expiresAt));
+                }
+                catch (NumberFormatException ignored)
+                {
+                    // a corrupted line just means one more describe
+                }
+            }
+        }
+        catch (IOException ignored)
+        {
+            // see class docs
+        }
+        return result;
+    }
+
+
+    private void writeFile()
+    {
+        if (file == null)
+            return;
+
+        Map<String,Long> merged = readFile();
+        merged.keySet().removeAll(removed);
+        for (Map.Entry<String,Long> entry : entries.entrySet())
+        {
+            Long existing = merged.get(entry.getKey());
+            if ((existing == null) || (existing.longValue() < entry.getValue().longValue()))
+                merged.put(entry.getKey(), entry.getValue());
+        }
+
+        StringBuilder content = new StringBuilder(merged.size() * 64);
+        for (Map.Entry<String,Long> entry : merged.entrySet())
+        {
+            content.append(entry.getValue()).append('\t').append(entry.getKey()).append('\n');
+        }
+
+        try
+        {
+            AtomicFileWriter.write(file, out -> out.write(content.toString().getBytes(StandardCharsets.UTF_8)));
+        }
+        catch (IOException ignored)
+        {
+            // see class docs
+        }
+    }
+}
@@ -0,0 +1,139 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.kdgregory.logging.common.util;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+
+/**
+ *  A fixed-size histogram for recording latencies, used to report percentiles
+ *  via JMX. Values are non-negative longs (the caller decides the unit); values
+ *  less than 16 are recorded exactly, larger values are recorded in log-linear
+ *  buckets: each power of two is divided into 16 sub-buckets, so the reported
+ *  value is within approximately 6% of the actual value.
+ *  <p>
+ *  Recording is lock-free and allocation-free, so may be called from the writer
+ *  thread on every batch. Reads are not atomic with respect to writes, but the
+ *  worst case is a percentile that's off by a handful of recent values.
+ *  <p>
+ *  The histogram accumulates all values recorded since it was created (or last
+ *  reset). Negative values are recorded as 0; values larger than 2^40 are
+ *  recorded in the highest bucket.
+ */
+public class LatencyHistogram
+{
+    private final static int SUB_BUCKET_BITS    = 4;
+    private final static int SUB_BUCKET_COUNT   = 1 << SUB_BUCKET_BITS;
+    private final static int MAX_MAGNITUDE      = 40;
+    private final static int BUCKET_COUNT       = (MAX_MAGNITUDE - SUB_BUCKET_BITS + 2) * SUB_BUCKET_COUNT;
+
+    private AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+
+
+    /**
+     *  Records a single value.
+     */
+    public void record(long value)
+    {
+        counts.incrementAndGet(bucketFor(value));
+    }
+
+
+    /**
+     *  Returns the total number of values recorded.
+     */
+    public long getCount()
+    {
+        long total = 0;
+        for (int ii = 0 ; ii < BUCKET_COUNT ; ii++)
+        {
+            total += counts.get(ii);
+        }
+        return total;
+    }
+
+
+    /**
+     *  Returns the value at the specified percentile (expressed as a fraction,
+     *  so 0.99 is the 99th percentile). This is the highest value that would be
+     *  recorded in the same bucket as the actual value. Returns 0 if no values
+     *  have been recorded.
+     */
+    public long getPercentile(double percentile)
+    {
+        long total = getCount();
+        if (total == 0)
+            return 0;
+
+        long target = Math.max(1, (long)Math.ceil(total * percentile));
+        long cumulative = 0;
+        for (int ii = 0 ; ii < BUCKET_COUNT ; ii++)
+        {
+            cumulative += counts.get(ii);
+            if (cumulative >= target)
+                return highestValueInBucket(ii);
+        }
+
+        // only reachable if values were recorded while we were counting
+        return highestValueInBucket(BUCKET_COUNT - 1);
+    }
+
+
+    /**
+     *  Clears all recorded values.
+     */
+    public void reset()
+    {
+        for (int ii = 0 ; ii < BUCKET_COUNT ; ii++)
+        {
+            counts.set(ii, 0);
+        }
+    }
+
+//----------------------------------------------------------------------------
+//  Internals
+//----------------------------------------------------------------------------
+
+    /**
+     *  Values below the sub-bucket count map directly to a bucket. Above that,
+     *  the bucket is determined by the position of the highest set bit (which
+     *  identifies the "group"), and the following bits (which identify the
+     *  bucket within that group).
+     */
+    private static int bucketFor(long value)
+    {
+        if (value < SUB_BUCKET_COUNT)
+            return (value < 0) ? 0 : (int)value;
+
+        int magnitude = 63 - Long.numberOfLeadingZeros(value);
+        if (magnitude > MAX_MAGNITUDE)
+            return BUCKET_COUNT - 1;
+
+        int shift = magnitude - SUB_BUCKET_BITS;
+        int subBucket = (int)(value >>> shift) - SUB_BUCKET_COUNT;
+        return (shift + 1) * SUB_BUCKET_COUNT + subBucket;
+    }
+
+
+    private static long highestValueInBucket(int bucket)
+    {
+        if (bucket < SUB_BUCKET_COUNT)
+            return bucket;
+
+        int shift = (bucket / SUB_BUCKET_COUNT) - 1;
+        long base = (bucket % SUB_BUCKET_COUNT) + SUB_BUCKET_COUNT;
+        return ((base + 1) << shift) - 1;
+    }
+}
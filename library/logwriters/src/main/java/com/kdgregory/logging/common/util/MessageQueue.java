@@ -14,22 +14,40 @@
 
 package com.kdgregory.logging.common.util;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
-import java.util.concurrent.LinkedBlockingDeque;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
 
 import com.kdgregory.logging.common.LogMessage;
+import com.kdgregory.logging.common.LogMessage.Severity;
+import com.kdgregory.logging.common.jfr.JfrEvents;
 
 
 /**
  *  A thread-safe message queue that keeps track of the current number of entries
  *  and optionally discards messages after its size reaches a given threshold.
  *  <p>
- *  Implementation note: all operations are coded as update queue followed by update
- *  count. This means that it is possible that {@link #size()} may not reflect the
- *  actual size of the queue at any given point in time (but usually will).
+ *  Messages are held in one deque per {@link Severity}, with a sequence number
+ *  that records their position in the overall queue. Dequeue takes the message
+ *  with the lowest sequence number from the heads of those deques, so messages
+ *  are returned in the order that they were added (allowing for requeues). When
+ *  "discard by level" is enabled, the discard action is applied to the lowest
+ *  severity that has messages, so that (for example) DEBUG messages are dropped
+ *  before any ERROR messages. In either case, each operation examines a fixed
+ *  number of deques, so is O(1).
+ *  <p>
+ *  Implementation note: all operations happen under a single lock (as they did
+ *  with the <code>LinkedBlockingDeque</code> that this class previously used).
+ *  The counters are also updated under that lock, but are read without it, so
+ *  {@link #size()} and {@link #byteCount()} may be slightly out of date when
+ *  read from another thread.
  */
 public class MessageQueue
 {
@@ -51,7 +69,14 @@ public class MessageQueue
         /**
          *  Discard newest messages once threshold is reached.
          */
-        newest;
+        newest,
+
+        /**
+         *  Block the thread adding a message until there's space in the queue, for up
+         *  to a configured timeout, then apply a secondary action. Messages that are
+         *  requeued by the writer thread are never blocked.
+         */
+        block;
 
 
         public static DiscardAction lookup(String value)
@@ -70,22 +95,62 @@ public class MessageQueue
         }
     }
 
+    /**
+     *  The default time, in milliseconds, that <code>enqueue()</code> will wait
+     *  for space when the discard action is <code>block</code>.
+     */
+    public final static long DEFAULT_BLOCK_TIMEOUT = 1000;
+
+    /**
+     *  The default action taken when <code>enqueue()</code> has waited for the
+     *  block timeout without space becoming available.
+     */
+    public final static DiscardAction DEFAULT_BLOCK_FALLBACK_ACTION = DiscardAction.oldest;
+
 //----------------------------------------------------------------------------
 //  Instance variables and constructor
 //----------------------------------------------------------------------------
 
-    private LinkedBlockingDeque<LogMessage> messageQueue = new LinkedBlockingDeque<LogMessage>();
+    private ReentrantLock lock = new ReentrantLock();
+    private Condition notEmpty = lock.newCondition();
+    private Condition notFull = lock.newCondition();
+
+    // indexed by severity ordinal; each deque is ordered by sequence number
+    private List<ArrayDeque<Entry>> queues = new ArrayList<ArrayDeque<Entry>>();
+
+    // enqueue counts up, requeue counts down; only accessed while locked
+    private long nextSequence = 0;
+    private long prevSequence = -1;
+
+    // set by wakeup(), cleared by a timed dequeue that returns null; only accessed while locked
+    private boolean wakeupPending;
+
     private AtomicInteger messageCount = new AtomicInteger();
-    private AtomicInteger droppedMessageCount = new AtomicInteger();
+    private AtomicLong byteCount = new AtomicLong();
+    private AtomicInteger messageCountHighWater = new AtomicInteger();
+    private AtomicLong byteCountHighWater = new AtomicLong();
+    private LongAdder droppedMessageCount = new LongAdder();
+    private LongAdder droppedByteCount = new LongAdder();
+    private LongAdder blockedCount = new LongAdder();
+    private LongAdder blockedNanos = new LongAdder();
+    private LongAdder blockTimeoutCount = new LongAdder();
 
     private volatile int discardThreshold;
     private volatile DiscardAction discardAction;
+    private volatile boolean discardByLevel;
+    private volatile long blockTimeout = DEFAULT_BLOCK_TIMEOUT;
+    private volatile DiscardAction blockFallbackAction = DEFAULT_BLOCK_FALLBACK_ACTION;
 
 
     public MessageQueue(int discardThreshold, DiscardAction discardAction)
     {
         this.discardThreshold = discardThreshold;
         this.discardAction = discardAction;
+
+        for (int ii = 0 ; ii < Severity.values().length ; ii++)
+        {
+            queues.add(new ArrayDeque<Entry>());
+        }
     }
 
 
@@ -99,6 +164,7 @@ public class MessageQueue
     public void setDiscardThreshold(int value)
     {
         discardThreshold = value;
+        wakeBlockedThreads();
     }
 
 
@@ -117,6 +183,7 @@ public class MessageQueue
     public void setDiscardAction(DiscardAction value)
     {
         discardAction = value;
+        wakeBlockedThreads();
     }
 
 
@@ -129,12 +196,124 @@ public class MessageQueue
     }
 
 
+    /**
+     *  Changes whether messages are discarded by level (lowest severity first).
+     */
+    public void setDiscardByLevel(boolean value)
+    {
+        discardByLevel = value;
+    }
+
+
+    /**
+     *  Returns whether messages are discarded by level; this is intended for testing.
+     */
+    public boolean getDiscardByLevel()
+    {
+        return discardByLevel;
+    }
+
+
+    /**
+     *  Changes the maximum time, in milliseconds, that <code>enqueue()</code> will
+     *  wait for space when the discard action is <code>block</code>.
+     */
+    public void setBlockTimeout(long value)
+    {
+        blockTimeout = value;
+    }
+
+
+    /**
+     *  Returns the current block timeout; this is intended for testing.
+     */
+    public long getBlockTimeout()
+    {
+        return blockTimeout;
+    }
+
+
+    /**
+     *  Changes the action taken if there's still no space in the queue after the
+     *  block timeout. If passed <code>block</code>, uses the default.
+     */
+    public void setBlockFallbackAction(DiscardAction value)
+    {
+        blockFallbackAction = (value == DiscardAction.block) ? DEFAULT_BLOCK_FALLBACK_ACTION : value;
+    }
+
+
+    /**
+     *  Returns the current block fallback action; this is intended for testing.
+     */
+    public DiscardAction getBlockFallbackAction()
+    {
+        return blockFallbackAction;
+    }
+
+
+    /**
+     *  Returns the number of times that <code>enqueue()</code> had to wait for space.
+     */
+    public long getBlockedCount()
+    {
+        return blockedCount.sum();
+    }
+
+
+    /**
+     *  Returns the total time, in milliseconds, that <code>enqueue()</code> has spent
+     *  waiting for space.
+     */
+    public long getBlockedTime()
+    {
+        return TimeUnit.NANOSECONDS.toMillis(blockedNanos.sum());
+    }
+
+
+    /**
+     *  Returns the number of times that <code>enqueue()</code> waited for the full block
+     *  timeout, and then applied the fallback action.
+     */
+    public long getBlockTimeoutCount()
+    {
+        return blockTimeoutCount.sum();
+    }
+
+
     /**
      *  Returns the number of messages that have been dropped.
      */
-    public int getDroppedMessageCount()
+    public long getDroppedMessageCount()
+    {
+        return droppedMessageCount.sum();
+    }
+
+
+    /**
+     *  Returns the total size, in bytes, of the messages that have been dropped.
+     */
+    public long getDroppedByteCount()
+    {
+        return droppedByteCount.sum();
+    }
+
+
+    /**
+     *  Returns the largest number of messages that have been in the queue at one time.
+     */
+    public int getHighWaterMessageCount()
     {
-        return droppedMessageCount.get();
+        return messageCountHighWater.get();
+    }
+
+
+    /**
+     *  Returns the largest number of bytes that have been in the queue at one time.
+     */
+    public long getHighWaterByteCount()
+    {
+        return byteCountHighWater.get();
     }
 
 
@@ -148,7 +327,38 @@ public class MessageQueue
      */
     public boolean isEmpty()
     {
-        return (messageQueue.peek() == null);
+        return size() == 0;
+    }
+
+
+    /**
+     *  Determines whether a message enqueued now would be discarded by the current
+     *  discard policy and, if yes, counts it as dropped. This allows the caller to
+     *  avoid constructing the message (the size of such messages isn't known, so
+     *  they aren't included in {@link #getDroppedByteCount}).
+     *  <p>
+     *  When discarding by level, whether the new message would be discarded depends
+     *  on its severity, which isn't known to this method; it will only return true
+     *  if the queue is discarding everything.
+     */
+    public boolean discardIfFull()
+    {
+        DiscardAction action = discardAction;
+        int threshold = discardThreshold;
+
+        // a zero threshold (which is used after writer initialization fails) drops
+        // everything; otherwise, only "newest" drops the message being added
+        boolean willDiscard = (action != DiscardAction.none)
+                           && ((threshold <= 0)
+                               || ((action == DiscardAction.newest) && ! discardByLevel && (size() >= threshold)));
+
+        if (willDiscard)
+        {
+            droppedMessageCount.increment();
+            JfrEvents.discarded(1, 0, String.valueOf(action));
+        }
+
+        return willDiscard;
     }
 
 
@@ -156,13 +366,62 @@ public class MessageQueue
      *  Adds a message to the end of the queue.
      *  <p>
      *  Note: discard policy is checked after adding the message. If the policy is
-     *  "newest", then this message will be removed.
+     *  "newest", then this message will be removed. If the policy is "block", this
+     *  method first waits for space in the queue, and applies the fallback policy
+     *  if there's still no space after the timeout.
      */
     public void enqueue(LogMessage message)
     {
-        messageQueue.addLast(message);
-        messageCount.incrementAndGet();
-        applyDiscard();
+        lock.lock();
+        try
+        {
+            if (discardAction == DiscardAction.block)
+            {
+                waitForSpace();
+            }
+
+            queueFor(message).addLast(new Entry(nextSequence++, message));
+            recordAdd(message);
+            applyDiscard();
+            notEmpty.signal();
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+
+    /**
+     *  Adds multiple messages to the end of the queue, in order, without any other
+     *  messages between them. This is used for the parts of a split message.
+     *  <p>
+     *  Note: discard policy is checked after adding all messages, so may remove some
+     *  of them. If the policy is "block", this method waits for space for at least
+     *  one message.
+     */
+    public void enqueueAll(List<LogMessage> messages)
+    {
+        lock.lock();
+        try
+        {
+            if (discardAction == DiscardAction.block)
+            {
+                waitForSpace();
+            }
+
+            for (LogMessage message : messages)
+            {
+                queueFor(message).addLast(new Entry(nextSequence++, message));
+                recordAdd(message);
+            }
+            applyDiscard();
+            notEmpty.signalAll();
+        }
+        finally
+        {
+            lock.unlock();
+        }
     }
 
 
@@ -171,13 +430,27 @@ public class MessageQueue
      *  <p>
      *  Note: discard policy is checked after adding the message. If the policy is
      *  "oldest", then this message will be removed (assuming that someone else
-     *  has not dequeued it).
+     *  has not dequeued it). If the policy is "block", the message is added even
+     *  if the queue is over its threshold: this method is called by the writer
+     *  thread, which must not block.
      */
     public void requeue(LogMessage message)
     {
-        messageQueue.addFirst(message);
-        messageCount.incrementAndGet();
-        applyDiscard();
+        lock.lock();
+        try
+        {
+            queueFor(message).addFirst(new Entry(prevSequence--, message));
+            recordAdd(message);
+            if (discardAction != DiscardAction.block)
+            {
+                applyDiscard();
+            }
+            notEmpty.signal();
+        }
+        finally
+        {
+            lock.unlock();
+        }
     }
 
 
@@ -186,19 +459,22 @@ public class MessageQueue
      */
     public LogMessage dequeue()
     {
-        LogMessage message = messageQueue.poll();
-        if (message != null)
+        lock.lock();
+        try
         {
-            messageCount.decrementAndGet();
+            return removeFirst();
+        }
+        finally
+        {
+            lock.unlock();
         }
-        return message;
     }
 
 
     /**
      *  Removes a message from the front of the queue, waiting for a specified number of
      *  milliseconds if the queue is empty. Returns null if there are no messages in the
-     *  desired time, or if the thread is interrupted.
+     *  desired time, if the thread is interrupted, or if {@link #wakeup} is called.
      */
     public LogMessage dequeue(long waitTime)
     {
@@ -207,12 +483,26 @@ public class MessageQueue
 
         try
         {
-            LogMessage message = messageQueue.poll(waitTime, TimeUnit.MILLISECONDS);
-            if (message != null)
+            long nanosRemaining = TimeUnit.MILLISECONDS.toNanos(waitTime);
+            lock.lockInterruptibly();
+            try
+            {
+                LogMessage message = removeFirst();
+                while ((message == null) && (nanosRemaining > 0) && ! wakeupPending)
+                {
+                    nanosRemaining = notEmpty.awaitNanos(nanosRemaining);
+                    message = removeFirst();
+                }
+                // a wakeup is only consumed by a dequeue that it cut short, so that a
+                // reader that's draining messages will still see it when the queue empties
+                if (message == null)
+                    wakeupPending = false;
+                return message;
+            }
+            finally
             {
-                messageCount.decrementAndGet();
+                lock.unlock();
             }
-            return message;
         }
         catch (InterruptedException ex)
         {
@@ -221,6 +511,27 @@ public class MessageQueue
     }
 
 
+    /**
+     *  Causes a thread that's waiting in {@link #dequeue(long)} to return immediately,
+     *  without waiting for the queue to become non-empty. If no thread is waiting, the
+     *  next timed dequeue that finds the queue empty will not wait. This is used to
+     *  flush the queue without waiting for the batch delay.
+     */
+    public void wakeup()
+    {
+        lock.lock();
+        try
+        {
+            wakeupPending = true;
+            notEmpty.signalAll();
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+
     /**
      *  Returns the current number of elements in the queue, as recorded by the atomic
      *  counter. This is an O(1) operation, but might not be exact.
@@ -231,22 +542,85 @@ public class MessageQueue
     }
 
 
+    /**
+     *  Returns the total size, in bytes, of the messages in the queue, as recorded by
+     *  an atomic counter.
+     */
+    public long byteCount()
+    {
+        return byteCount.get();
+    }
+
+
+    /**
+     *  Returns the timestamp of the message at the head of the queue, 0 if the queue
+     *  is empty. This is an O(1) operation.
+     */
+    public long oldestTimestamp()
+    {
+        lock.lock();
+        try
+        {
+            ArrayDeque<Entry> queue = firstQueue();
+            return (queue != null) ? queue.peekFirst().message.getTimestamp() : 0;
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+
     /**
      *  Returns the current number of elements in the queue, as recorded by the queue
      *  itself. This is an O(N) operation. This is intended for testing.
      */
     public int queueSize()
     {
-        return messageQueue.size();
+        lock.lock();
+        try
+        {
+            int size = 0;
+            for (ArrayDeque<Entry> queue : queues)
+            {
+                size += queue.size();
+            }
+            return size;
+        }
+        finally
+        {
+            lock.unlock();
+        }
     }
 
 
     /**
-     *  Copies the current queue contents into a List. This is intended for testing.
+     *  Copies the current queue contents into a List, in the order that they would
+     *  be dequeued. This is intended for testing.
      */
     public List<LogMessage> toList()
     {
-        return new ArrayList<LogMessage>(messageQueue);
+        List<Entry> entries = new ArrayList<Entry>();
+        lock.lock();
+        try
+        {
+            for (ArrayDeque<Entry> queue : queues)
+            {
+                entries.addAll(queue);
+            }
+        }
+        finally
+        {
+            lock.unlock();
+        }
+
+        Collections.sort(entries);
+        List<LogMessage> result = new ArrayList<LogMessage>(entries.size());
+        for (Entry entry : entries)
+        {
+            result.add(entry.message);
+        }
+        return result;
     }
 
 
@@ -254,31 +628,224 @@ public class MessageQueue
 //  Internals
 //----------------------------------------------------------------------------
 
+    /**
+     *  Returns the deque that holds messages of the given message's severity.
+     */
+    private ArrayDeque<Entry> queueFor(LogMessage message)
+    {
+        return queues.get(message.getSeverity().ordinal());
+    }
+
+
+    /**
+     *  Returns the deque whose head has the lowest sequence number (ie, holds the
+     *  first message in the queue), null if all are empty. Must be called while
+     *  holding the lock.
+     */
+    private ArrayDeque<Entry> firstQueue()
+    {
+        ArrayDeque<Entry> result = null;
+        for (ArrayDeque<Entry> queue : queues)
+        {
+            if (queue.isEmpty())
+                continue;
+            if ((result == null) || (queue.peekFirst().sequence < result.peekFirst().sequence))
+                result = queue;
+        }
+        return result;
+    }
+
+
+    /**
+     *  Returns the deque whose tail has the highest sequence number (ie, holds the
+     *  last message in the queue), null if all are empty. Must be called while
+     *  holding the lock.
+     */
+    private ArrayDeque<Entry> lastQueue()
+    {
+        ArrayDeque<Entry> result = null;
+        for (ArrayDeque<Entry> queue : queues)
+        {
+            if (queue.isEmpty())
+                continue;
+            if ((result == null) || (queue.peekLast().sequence > result.peekLast().sequence))
+                result = queue;
+        }
+        return result;
+    }
+
+
+    /**
+     *  Returns the non-empty deque with the lowest severity, null if all are empty.
+     *  Must be called while holding the lock.
+     */
+    private ArrayDeque<Entry> lowestSeverityQueue()
+    {
+        for (ArrayDeque<Entry> queue : queues)
+        {
+            if (! queue.isEmpty())
+                return queue;
+        }
+        return null;
+    }
+
+
+    /**
+     *  Removes and returns the first message in the queue, null if the queue is
+     *  empty. Must be called while holding the lock.
+     */
+    private LogMessage removeFirst()
+    {
+        ArrayDeque<Entry> queue = firstQueue();
+        if (queue == null)
+            return null;
+
+        LogMessage message = queue.pollFirst().message;
+        recordRemove(message);
+        notFull.signal();
+        return message;
+    }
+
+
+    /**
+     *  Waits until there's space for a new message, or the block timeout expires,
+     *  and updates the blocking statistics. Must be called while holding the lock.
+     *  <p>
+     *  If the thread is interrupted, stops waiting and resets the interrupt flag.
+     */
+    private void waitForSpace()
+    {
+        if (size() < discardThreshold)
+            return;
+
+        long start = System.nanoTime();
+        long nanosRemaining = TimeUnit.MILLISECONDS.toNanos(blockTimeout);
+        try
+        {
+            while ((discardAction == DiscardAction.block) && (size() >= discardThreshold) && (nanosRemaining > 0))
+            {
+                nanosRemaining = notFull.awaitNanos(nanosRemaining);
+            }
+        }
+        catch (InterruptedException ex)
+        {
+            Thread.currentThread().interrupt();
+        }
+
+        blockedCount.increment();
+        blockedNanos.add(System.nanoTime() - start);
+        if ((discardAction == DiscardAction.block) && (size() >= discardThreshold))
+        {
+            blockTimeoutCount.increment();
+        }
+    }
+
+
+    /**
+     *  Called when the discard configuration changes, so that any threads waiting
+     *  for space can re-evaluate.
+     */
+    private void wakeBlockedThreads()
+    {
+        lock.lock();
+        try
+        {
+            notFull.signalAll();
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+
     /**
      *  Checks the current queue size, and applies the discard policy if it's
-     *  above the threshold.
+     *  above the threshold. Must be called while holding the lock.
      */
     private void applyDiscard()
     {
-        if (discardAction == DiscardAction.none) return;
-        if (size() <= discardThreshold) return;
+        DiscardAction action = (discardAction == DiscardAction.block) ? blockFallbackAction : discardAction;
 
-        // note: with concurrent enqueues/dequeues, there is a race condition
-        // between size() and actual queue size -- however, it's close enough
-        // if we're at the point of discarding to not be concerned (and the
-        // actual queue size, which is an O(N) operation, would have its own
-        // race condition)
+        if (action == DiscardAction.none) return;
+        if (size() <= discardThreshold) return;
 
+        boolean oldest = (action == DiscardAction.oldest);
+        int discardCount = 0;
+        long discardBytes = 0;
         while (size() > discardThreshold)
         {
-            LogMessage discarded = (discardAction == DiscardAction.oldest)
-                                 ? messageQueue.pollFirst()
-                                 : messageQueue.pollLast();
-            if (discarded != null)
-            {
-                messageCount.decrementAndGet();
-                droppedMessageCount.incrementAndGet();
-            }
+            ArrayDeque<Entry> queue = discardByLevel ? lowestSeverityQueue()
+                                    : oldest         ? firstQueue()
+                                    :                  lastQueue();
+            if (queue == null)
+                break;
+
+            LogMessage discarded = oldest ? queue.pollFirst().message
+                                 :          queue.pollLast().message;
+
+            recordRemove(discarded);
+            droppedMessageCount.increment();
+            droppedByteCount.add(discarded.size());
+            discardCount++;
+            discardBytes += discarded.size();
+        }
+
+        if (discardCount > 0)
+            JfrEvents.discarded(discardCount, discardBytes, String.valueOf(action));
+    }
+
+
+    /**
+     *  Updates counters after a message has been added to the queue. High-water
+     *  marks are only written when exceeded, so in the normal case this is just
+     *  a volatile read.
+     */
+    private void recordAdd(LogMessage message)
+    {
+        int count = messageCount.incrementAndGet();
+        long bytes = byteCount.addAndGet(message.size());
+
+        int countHighWater = messageCountHighWater.get();
+        while ((count > countHighWater) && ! messageCountHighWater.compareAndSet(countHighWater, count))
+        {
+            countHighWater = messageCountHighWater.get();
+        }
+
+        long bytesHighWater = byteCountHighWater.get();
+        while ((bytes > bytesHighWater) && ! byteCountHighWater.compareAndSet(bytesHighWater, bytes))
+        {
+            bytesHighWater = byteCountHighWater.get();
+        }
+    }
+
+
+    private void recordRemove(LogMessage message)
+    {
+        messageCount.decrementAndGet();
+        byteCount.addAndGet(- message.size());
+    }
+
+
+    /**
+     *  Associates a message with its position in the queue.
+     */
+    private static class Entry
+    implements Comparable<Entry>
+    {
+        public final long sequence;
+        public final LogMessage message;
+
+        public Entry(long sequence, LogMessage message)
+        {
+            this.sequence = sequence;
+            this.message = message;
+        }
+
+        @Override
+        public int compareTo(Entry that)
+        {
+            return Long.compare(this.sequence, that.sequence);
         }
     }
 }
@@ -171,7 +171,7 @@ public abstract class AbstractLogWriterTest
      */
     protected void assertStatisticsTotalMessagesSent(String message, int expected)
     {
-        int actual = 0;
+        long actual = 0;
         for (int ii = 0 ; ii < 10 ; ii++)
         {
             actual = ((AbstractWriterStatistics)stats).getMessagesSent();
@@ -0,0 +1,193 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.kdgregory.logging.aws;
+
+import java.io.File;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import com.kdgregory.logging.aws.facade.CachingInfoFacade;
+import com.kdgregory.logging.testhelpers.MockInfoFacade;
+
+
+public class TestCachingInfoFacade
+{
+    private File cacheFile;
+
+    // counts all calls to the mock, regardless of method
+    private AtomicInteger invocationCount = new AtomicInteger();
+
+    private MockInfoFacade mock = new MockInfoFacade()
+    {
+        @Override
+        public String retrieveAccountId()
+        {
+            invocationCount.incrementAndGet();
+            return super.retrieveAccountId();
+        }
+
+        @Override
+        public String retrieveEC2InstanceId()
+        {
+            invocationCount.incrementAndGet();
+            return super.retrieveEC2InstanceId();
+        }
+
+        @Override
+        public String retrieveEC2Region()
+        {
+            invocationCount.incrementAndGet();
+            return super.retrieveEC2Region();
+        }
+
+        @Override
+        public Map<String,String> retrieveEC2Tags(String instanceId)
+        {
+            invocationCount.incrementAndGet();
+            return super.retrieveEC2Tags(instanceId);
+        }
+
+        @Override
+        public String retrieveParameter(String parameterName)
+        {
+            invocationCount.incrementAndGet();
+            return super.retrieveParameter(parameterName);
+        }
+    };
+
+
+    @Before
+    public void setUp() throws Exception
+    {
+        cacheFile = File.createTempFile("TestCachingInfoFacade-", ".properties");
+        cacheFile.delete();
+
+        mock.accountId = "123456789012";
+        mock.ec2InstanceId = "i-12345678";
+        mock.ec2Region = "us-east-1";
+        mock.ec2InstanceTags.put("Name", "example");
+        mock.parameterValues.put("foo", "bar");
+    }
+
+
+    @After
+    public void tearDown() throws Exception
+    {
+        cacheFile.delete();
+    }
+
+//----------------------------------------------------------------------------
+//  Testcases
+//----------------------------------------------------------------------------
+
+    @Test
+    public void testCachesValues() throws Exception
+    {
+        CachingInfoFacade facade = new CachingInfoFacade(mock, 60000, null);
+
+        for (int ii = 0 ; ii < 3 ; ii++)
+        {
+            assertEquals("account ID",          "123456789012",     facade.retrieveAccountId());
+            assertEquals("instance ID",         "i-12345678",       facade.retrieveEC2InstanceId());
+            assertEquals("region",              "us-east-1",        facade.retrieveEC2Region());
+            assertEquals("tags",                "example",          facade.retrieveEC2Tags("i-12345678").get("Name"));
+            assertEquals("parameter",           "bar",              facade.retrieveParameter("foo"));
+            assertEquals("missing parameter",   null,               facade.retrieveParameter("baz"));
+        }
+
+        assertEquals("delegate invocations",    6,                  invocationCount.get());
+    }
+
+
+    @Test
+    public void testExpiration() throws Exception
+    {
+        CachingInfoFacade facade = new CachingInfoFacade(mock, 50, null);
+
+        assertEquals("initial retrieve",        "123456789012",     facade.retrieveAccountId());
+
+        mock.accountId = "210987654321";
+        assertEquals("before expiration",       "123456789012",     facade.retrieveAccountId());
+
+        Thread.sleep(100);
+        assertEquals("after expiration",        "210987654321",     facade.retrieveAccountId());
+        assertEquals("delegate invocations",    2,                  invocationCount.get());
+    }
+
+
+    @Test
+    public void testPersistence() throws Exception
+    {
+        CachingInfoFacade facade1 = new CachingInfoFacade(mock, 60000, cacheFile);
+        facade1.retrieveAccountId();
+        facade1.retrieveEC2InstanceId();
+        facade1.retrieveParameter("foo");
+
+        assertTrue("file was written",          cacheFile.exists());
+        assertEquals("delegate invocations",    3,                  invocationCount.get());
+
+        CachingInfoFacade facade2 = new CachingInfoFacade(mock, 60000, cacheFile);
+        assertEquals("account ID",              "123456789012",     facade2.retrieveAccountId());
+        assertEquals("instance ID",             "i-12345678",       facade2.retrieveEC2InstanceId());
+        assertEquals("delegate invocations",    3,                  invocationCount.get());
+
+        // parameters aren't persisted
+        assertEquals("parameter",               "bar",              facade2.retrieveParameter("foo"));
+        assertEquals("delegate invocations",    4,                  invocationCount.get());
+    }
+
+
+    @Test
+    public void testUnavailableValuesNotPersisted() throws Exception
+    {
+        mock.accountId = "unknown";
+        mock.ec2InstanceId = null;
+
+        CachingInfoFacade facade1 = new CachingInfoFacade(mock, 60000, cacheFile);
+        assertEquals("account ID",              "unknown",          facade1.retrieveAccountId());
+        assertEquals("instance ID",             null,               facade1.retrieveEC2InstanceId());
+        assertEquals("instance ID, cached",     null,               facade1.retrieveEC2InstanceId());
+        assertEquals("delegate invocations",    2,                  invocationCount.get());
+
+        mock.accountId = "123456789012";
+
+        CachingInfoFacade facade2 = new CachingInfoFacade(mock, 60000, cacheFile);
+        assertEquals("account ID",              "123456789012",     facade2.retrieveAccountId());
+        assertEquals("delegate invocations",    3,                  invocationCount.get());
+    }
+
+
+    @Test
+    public void testPrefetch() throws Exception
+    {
+        CachingInfoFacade facade = new CachingInfoFacade(mock, 60000, null);
+        facade.prefetch();
+
+        for (int ii = 0 ; ii < 50 && invocationCount.get() < 3 ; ii++)
+        {
+            Thread.sleep(20);
+        }
+
+        assertEquals("account ID",              "123456789012",     facade.retrieveAccountId());
+        assertEquals("instance ID",             "i-12345678",       facade.retrieveEC2InstanceId());
+        assertEquals("region",                  "us-east-1",        facade.retrieveEC2Region());
+        assertEquals("delegate invocations",    3,                  invocationCount.get());
+    }
+}
@@ -14,10 +14,20 @@
 
 package com.kdgregory.logging.aws;
 
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.junit.After;
 import org.junit.Before;
@@ -35,12 +45,19 @@ import com.kdgregory.logging.aws.facade.CloudWatchFacadeException;
 import com.kdgregory.logging.aws.facade.CloudWatchFacadeException.ReasonCode;
 import com.kdgregory.logging.aws.cloudwatch.CloudWatchLogWriter;
 import com.kdgregory.logging.aws.cloudwatch.CloudWatchWriterConfig;
+import com.kdgregory.logging.aws.internal.AbstractLogWriter;
+import com.kdgregory.logging.aws.internal.ShutdownCoordinator;
 import com.kdgregory.logging.common.LogMessage;
 import com.kdgregory.logging.common.LogWriter;
 import com.kdgregory.logging.common.internal.Utils;
+import com.kdgregory.logging.common.util.DefaultThreadFactory;
 import com.kdgregory.logging.common.util.InternalLogger;
+import com.kdgregory.logging.common.util.MessageQueue;
 import com.kdgregory.logging.common.util.MessageQueue.DiscardAction;
 import com.kdgregory.logging.common.util.WriterFactory;
+import com.kdgregory.logging.testhelpers.MockS3Facade;
+import com.kdgregory.logging.testhelpers.TestableInternalLogger;
+import com.kdgregory.logging.testhelpers.TestingException;
 import com.kdgregory.logging.testhelpers.cloudwatch.MockCloudWatchFacade;
 import com.kdgregory.logging.testhelpers.cloudwatch.TestableCloudWatchLogWriter;
 
@@ -199,6 +216,25 @@ extends AbstractLogWriterTest<CloudWatchLogWriter,CloudWatchWriterConfig,CloudWa
 
         assertEquals("updated discard threshold",   456,                    messageQueue.getDiscardThreshold());
         assertEquals("updated discard action",      DiscardAction.newest,   messageQueue.getDiscardAction());
+        assertEquals("block timeout",               1000L,                  messageQueue.getBlockTimeout());
+        assertEquals("block fallback action",       DiscardAction.oldest,   messageQueue.getBlockFallbackAction());
+    }
+
+
+    @Test
+    public void testBlockConfiguration() throws Exception
+    {
+        config.setDiscardAction(DiscardAction.block);
+        config.setBlockTimeout(250);
+        config.setBlockFallbackAction(DiscardAction.newest);
+
+        mock = new MockCloudWatchFacade(config);
+        createWriter();
+
+        assertEquals("discard action",              DiscardAction.block,    messageQueue.getDiscardAction());
+        assertEquals("block timeout",               250L,                   messageQueue.getBlockTimeout());
+        assertEquals("block fallback action",       DiscardAction.newest,   messageQueue.getBlockFallbackAction());
+        assertEquals("statistics: blocked enqueues",    0,                  stats.getBlockedEnqueues());
     }
 
 
@@ -854,6 +890,8 @@ extends AbstractLogWriterTest<CloudWatchLogWriter,CloudWatchWriterConfig,CloudWa
         assertStatisticsTotalMessagesSent(3);
         assertEquals("statistics: last batch size",                 2,                      stats.getLastBatchSize());
         assertEquals("statistics: last batch messages sent",        2,                      stats.getMessagesSentLastBatch());
+        assertEquals("statistics: total bytes sent",                35,                     stats.getBytesSent());
+        assertEquals("statistics: total batches sent",              2,                      stats.getBatchesSent());
 
         assertEquals("all messages processed", Arrays.asList("message one", "message two", "message three"), mock.allMessagesSent);
 
@@ -1206,6 +1244,229 @@ extends AbstractLogWriterTest<CloudWatchLogWriter,CloudWatchWriterConfig,CloudWa
     }
 
 
+    @Test
+    public void testOptimisticMode() throws Exception
+    {
+        config.setOptimisticMode(true);
+        mock = new MockCloudWatchFacade(config)
+        {
+            @Override
+            public void sendMessages(List<LogMessage> messages)
+            throws CloudWatchFacadeException
+            {
+                if (putEventsInvocationCount == 1)
+                    throw new CloudWatchFacadeException("log group missing", null, ReasonCode.MISSING_LOG_GROUP, false, null);
+
+                super.sendMessages(messages);
+            }
+        };
+
+        createWriter();
+
+        assertEquals("findLogGroup: invocation count after init",   0,                      mock.findLogGroupInvocationCount);
+        assertEquals("findLogStream: invocation count after init",  0,                      mock.findLogStreamInvocationCount);
+
+        writer.addMessage(new LogMessage(System.currentTimeMillis(), "message one"));
+        waitForWriterThread();
+
+        // the writer creates group and stream after the first send fails, without
+        // describing either, then retries the send
+
+        assertEquals("findLogGroup: invocation count",              0,                      mock.findLogGroupInvocationCount);
+        assertEquals("findLogStream: invocation count",             0,                      mock.findLogStreamInvocationCount);
+        assertEquals("createLogGroup: invocation count",            1,                      mock.createLogGroupInvocationCount);
+        assertEquals("createLogStream: invocation count",           1,                      mock.createLogStreamInvocationCount);
+
+        assertEquals("putEvents: invocation count",                 2,                      mock.putEventsInvocationCount);
+        assertEquals("messages sent",                               Arrays.asList("message one"), mock.allMessagesSent);
+        assertEquals("message queue is empty",                      0,                      messageQueue.size());
+
+        internalLogger.assertInternalDebugLog("log writer starting.*",
+                                              "optimistic mode: assuming CloudWatch log group and stream exist: argle / bargle",
+                                              "log writer initialization complete.*",
+                                              "log group missing.*; attempting to create",
+                                              "creating CloudWatch log group: argle",
+                                              "creating CloudWatch log stream: bargle");
+        internalLogger.assertInternalWarningLog();
+        internalLogger.assertInternalErrorLog();
+    }
+
+
+    @Test
+    public void testOptimisticModeMissingStream() throws Exception
+    {
+        config.setOptimisticMode(true);
+        mock = new MockCloudWatchFacade(config)
+        {
+            @Override
+            public void sendMessages(List<LogMessage> messages)
+            throws CloudWatchFacadeException
+            {
+                if (putEventsInvocationCount == 1)
+                    throw new CloudWatchFacadeException("log stream missing", null, ReasonCode.MISSING_LOG_STREAM, false, null);
+
+                super.sendMessages(messages);
+            }
+        };
+
+        createWriter();
+
+        writer.addMessage(new LogMessage(System.currentTimeMillis(), "message one"));
+        waitForWriterThread();
+
+        // a missing stream doesn't mean a missing group
+
+        assertEquals("findLogGroup: invocation count",              0,                      mock.findLogGroupInvocationCount);
+        assertEquals("findLogStream: invocation count",             0,                      mock.findLogStreamInvocationCount);
+        assertEquals("createLogGroup: invocation count",            0,                      mock.createLogGroupInvocationCount);
+        assertEquals("createLogStream: invocation count",           1,                      mock.createLogStreamInvocationCount);
+
+        assertEquals("putEvents: invocation count",                 2,                      mock.putEventsInvocationCount);
+        assertEquals("messages sent",                               Arrays.asList("message one"), mock.allMessagesSent);
+
+        internalLogger.assertInternalDebugLog("log writer starting.*",
+                                              "optimistic mode: assuming CloudWatch log group and stream exist: argle / bargle",
+                                              "log writer initialization complete.*",
+                                              "log stream missing.*; attempting to create",
+                                              "creating CloudWatch log stream: bargle");
+        internalLogger.assertInternalWarningLog();
+        internalLogger.assertInternalErrorLog();
+    }
+
+
+    @Test
+    public void testOptimisticModeCreateTimeout() throws Exception
+    {
+        config.setOptimisticMode(true);
+        mock = new MockCloudWatchFacade(config)
+        {
+            @Override
+            public void createLogStream() throws CloudWatchFacadeException
+            {
+                throw new CloudWatchFacadeException("throttled", null, ReasonCode.THROTTLING, true, null);
+            }
+
+            @Override
+            public void sendMessages(List<LogMessage> messages)
+            throws CloudWatchFacadeException
+            {
+                if (putEventsInvocationCount == 1)
+                    throw new CloudWatchFacadeException("log stream missing", null, ReasonCode.MISSING_LOG_STREAM, false, null);
+
+                super.sendMessages(messages);
+            }
+        };
+
+        createWriter();
+
+        writer.addMessage(new LogMessage(System.currentTimeMillis(), "message one"));
+        waitForWriterThread();
+
+        // creation is bounded by its own timeout, then the batch goes back on the queue
+
+        assertInRange("createLogStream: invocation count",          2, 5,                   mock.createLogStreamInvocationCount);
+        assertEquals("putEvents: invocation count",                 1,                      mock.putEventsInvocationCount);
+        assertEquals("message has been requeued",                   1,                      messageQueue.size());
+
+        internalLogger.assertInternalErrorLog("timed out while creating CloudWatch log stream");
+    }
+
+
+    @Test
+    public void testExistenceCache() throws Exception
+    {
+        File cacheFile = File.createTempFile("TestCloudWatchLogWriter-", ".cache");
+        cacheFile.delete();
+        cacheFile.deleteOnExit();
+
+        config.setExistenceCacheTtl(60000)
+              .setExistenceCacheFile(cacheFile.getPath());
+
+        mock = new MockCloudWatchFacade(config);
+        createWriter();
+
+        assertEquals("first writer: findLogGroup invocation count",     1,                  mock.findLogGroupInvocationCount);
+        assertEquals("first writer: findLogStream invocation count",    1,                  mock.findLogStreamInvocationCount);
+
+        String cacheContents = new String(Files.readAllBytes(cacheFile.toPath()), StandardCharsets.UTF_8);
+        assertRegex("cache file contains log group",    "(?s).*\\d+\tlogGroup:argle:\n.*",          cacheContents);
+        assertRegex("cache file contains log stream",   "(?s).*\\d+\tlogStream:argle:bargle:\n.*",  cacheContents);
+
+        writer.stop();
+        ((TestableCloudWatchLogWriter)writer).releaseWriterThread();
+
+        // second writer should use cached values
+
+        internalLogger = new TestableInternalLogger();
+        mock = new MockCloudWatchFacade(config);
+        createWriter();
+
+        assertEquals("second writer: findLogGroup invocation count",    0,                  mock.findLogGroupInvocationCount);
+        assertEquals("second writer: findLogStream invocation count",   0,                  mock.findLogStreamInvocationCount);
+
+        internalLogger.assertInternalDebugLog("log writer starting.*",
+                                              "using cached CloudWatch log group: argle",
+                                              "using cached CloudWatch log stream: bargle",
+                                              "log writer initialization complete.*");
+        internalLogger.assertInternalWarningLog();
+        internalLogger.assertInternalErrorLog();
+    }
+
+
+    @Test
+    public void testExistenceCacheDistinguishesLocation() throws Exception
+    {
+        File cacheFile = File.createTempFile("TestCloudWatchLogWriter-", ".cache");
+        cacheFile.delete();
+        cacheFile.deleteOnExit();
+
+        config.setExistenceCacheTtl(60000)
+              .setExistenceCacheFile(cacheFile.getPath())
+              .setClientRegion("us-east-1");
+
+        mock = new MockCloudWatchFacade(config);
+        createWriter();
+
+        assertEquals("initial writer: findLogGroup invocation count",       1,  mock.findLogGroupInvocationCount);
+
+        writer.stop();
+        ((TestableCloudWatchLogWriter)writer).releaseWriterThread();
+
+        // different region, so cache doesn't apply
+
+        config.setClientRegion("us-west-2");
+        mock = new MockCloudWatchFacade(config);
+        createWriter();
+
+        assertEquals("different region: findLogGroup invocation count",     1,  mock.findLogGroupInvocationCount);
+
+        writer.stop();
+        ((TestableCloudWatchLogWriter)writer).releaseWriterThread();
+
+        // same region, but assumed role, so cache doesn't apply
+
+        config.setAssumedRole("arn:aws:iam::123456789012:role/Example");
+        mock = new MockCloudWatchFacade(config);
+        createWriter();
+
+        assertEquals("assumed role: findLogGroup invocation count",         1,  mock.findLogGroupInvocationCount);
+
+        writer.stop();
+        ((TestableCloudWatchLogWriter)writer).releaseWriterThread();
+
+        // same region and role as previous writer, so cache applies
+
+        mock = new MockCloudWatchFacade(config);
+        createWriter();
+
+        assertEquals("same location: findLogGroup invocation count",        0,  mock.findLogGroupInvocationCount);
+
+        String cacheContents = new String(Files.readAllBytes(cacheFile.toPath()), StandardCharsets.UTF_8);
+        assertRegex("cache file identifies region",         "(?s).*\\tlogGroup:argle:us-west-2\n.*",                                             cacheContents);
+        assertRegex("cache file identifies region and role","(?s).*\\tlogGroup:argle:us-west-2\\|arn:aws:iam::123456789012:role/Example\n.*",   cacheContents);
+    }
+
+
     @Test
     public void testWriteAborted() throws Exception
     {
@@ -1292,6 +1553,86 @@ extends AbstractLogWriterTest<CloudWatchLogWriter,CloudWatchWriterConfig,CloudWa
     }
 
 
+    @Test
+    public void testLatencyStatistics() throws Exception
+    {
+        mock = new MockCloudWatchFacade(config)
+        {
+            @Override
+            public void sendMessages(List<LogMessage> messages)
+            throws CloudWatchFacadeException
+            {
+                try
+                {
+                    Thread.sleep(50);
+                }
+                catch (InterruptedException ignored)
+                {
+                    // shouldn't happen
+                }
+                super.sendMessages(messages);
+            }
+        };
+        createWriter();
+
+        assertEquals("before write: queue residency",               0,                      stats.getQueueResidencyP50());
+        assertEquals("before write: API latency",                   0,                      stats.getApiLatencyP50());
+        assertEquals("before write: batch build time",              0,                      stats.getBatchBuildTimeP50());
+
+        // message timestamp is used as creation time, so backdating it gives a predictable residency
+        writer.addMessage(new LogMessage(System.currentTimeMillis() - 1000, "message one"));
+        waitForWriterThread();
+
+        // histogram buckets are approximately 6% wide, and they report their highest value
+        assertInRange("queue residency",                            1100,   1500,           stats.getQueueResidencyP50());
+        assertInRange("API latency",                                50,     100,            stats.getApiLatencyP99());
+        assertInRange("batch build time",                           100,    150,            stats.getBatchBuildTimeP999());
+    }
+
+
+    @Test
+    public void testQueueStatistics() throws Exception
+    {
+        final AtomicLong oldestAgeDuringSend = new AtomicLong(-1);
+        final AtomicInteger queueDepthDuringSend = new AtomicInteger(-1);
+
+        mock = new MockCloudWatchFacade(config)
+        {
+            @Override
+            public void sendMessages(List<LogMessage> messages)
+            throws CloudWatchFacadeException
+            {
+                oldestAgeDuringSend.set(stats.getOldestMessageAge());
+                queueDepthDuringSend.set(stats.getQueueDepth());
+                super.sendMessages(messages);
+            }
+        };
+        createWriter();
+
+        assertEquals("before write: oldest message age",            0,                      stats.getOldestMessageAge());
+
+        // age is based on the head of the queue, which is normally the oldest message
+        writer.addMessage(new LogMessage(System.currentTimeMillis() - 1000, "message one"));
+        writer.addMessage(new LogMessage(System.currentTimeMillis(), "message two"));
+
+        assertInRange("before send: oldest message age",            1000,   1100,           stats.getOldestMessageAge());
+        assertEquals("before send: queue depth",                    2,                      stats.getQueueDepth());
+        assertEquals("before send: queue bytes",                    22,                     stats.getQueueBytes());
+
+        waitForWriterThread();
+
+        // the batch has been removed from the queue, but still counts for age
+        assertInRange("during send: oldest message age",            1000,   1300,           oldestAgeDuringSend.get());
+        assertEquals("during send: queue depth",                    0,                      queueDepthDuringSend.get());
+
+        assertEquals("after send: oldest message age",              0,                      stats.getOldestMessageAge());
+        assertEquals("after send: queue depth",                     0,                      stats.getQueueDepth());
+        assertEquals("after send: queue bytes",                     0,                      stats.getQueueBytes());
+        assertEquals("after send: queue depth high-water mark",     2,                      stats.getQueueDepthHighWater());
+        assertEquals("after send: queue bytes high-water mark",     22,                     stats.getQueueBytesHighWater());
+    }
+
+
     @Test
     public void testDiscardEmptyMessages() throws Exception
     {
@@ -1387,6 +1728,180 @@ extends AbstractLogWriterTest<CloudWatchLogWriter,CloudWatchWriterConfig,CloudWa
     }
 
 
+    @Test
+    public void testSplitOversizeMessages() throws Exception
+    {
+        final int cloudwatchMaximumMessageSize  = 256 * 1024 - 26;
+        final String bigMessage                 = StringUtil.repeat('X', cloudwatchMaximumMessageSize * 2) + "Y";
+
+        config.setSplitOversizeMessages(true);
+        mock = new MockCloudWatchFacade(config);
+        createWriter();
+
+        writer.addMessage(new LogMessage(System.currentTimeMillis(), "before"));
+        writer.addMessage(new LogMessage(System.currentTimeMillis(), bigMessage));
+        writer.addMessage(new LogMessage(System.currentTimeMillis(), "after"));
+
+        internalLogger.assertInternalDebugLogContains("split oversize message.*3 parts.*");
+
+        waitForWriterThread();
+
+        assertEquals("putEvents: invocation count",                 1,              mock.putEventsInvocationCount);
+        assertEquals("putEvents: last call #/messages",             5,              mock.putEventsMessages.size());
+        assertEquals("putEvents: first message",                    "before",       mock.putEventsMessages.get(0).getMessage());
+        assertEquals("putEvents: last message",                     "after",        mock.putEventsMessages.get(4).getMessage());
+        assertEquals("stats: oversize messages",                    1,              stats.getOversizeMessages());
+
+        StringBuilder reassembled = new StringBuilder();
+        String correlationId = null;
+        for (int ii = 1 ; ii <= 3 ; ii++)
+        {
+            LogMessage part = mock.putEventsMessages.get(ii);
+            assertTrue("part " + ii + " within size limit",                                     part.size() <= cloudwatchMaximumMessageSize);
+
+            String text = part.getMessage();
+            String header = text.substring(0, text.indexOf("] ") + 2);
+            String[] headerFields = header.substring(1, header.length() - 2).split(" ");
+            if (correlationId == null)
+                correlationId = headerFields[0];
+
+            assertEquals("part " + ii + " correlation ID",          correlationId,  headerFields[0]);
+            assertEquals("part " + ii + " index",                   ii + "/3",      headerFields[1]);
+            reassembled.append(text.substring(header.length()));
+        }
+        assertEquals("reassembled message",                         bigMessage,     reassembled.toString());
+
+        internalLogger.assertInternalWarningLog();
+        internalLogger.assertInternalErrorLog();
+    }
+
+
+    @Test
+    public void testOffloadOversizeMessages() throws Exception
+    {
+        final int cloudwatchMaximumMessageSize  = 256 * 1024 - 26;
+        final String bigMessage                 = StringUtil.repeat('X', cloudwatchMaximumMessageSize) + "Y";
+
+        config.setOversizeS3Bucket("example")
+              .setOversizeS3Prefix("oversize/");
+        mock = new MockCloudWatchFacade(config);
+        createWriter();
+
+        MockS3Facade s3mock = new MockS3Facade();
+        writer.setS3Facade(s3mock);
+
+        writer.addMessage(new LogMessage(System.currentTimeMillis(), "before"));
+        writer.addMessage(new LogMessage(System.currentTimeMillis(), bigMessage));
+
+        // the upload happens on a pool thread; the pointer is queued before stats are updated
+        for (int ii = 0 ; (ii < 100) && (stats.getOversizeMessages() == 0) ; ii++)
+        {
+            Thread.sleep(10);
+        }
+
+        writer.addMessage(new LogMessage(System.currentTimeMillis(), "after"));
+
+        waitForWriterThread();
+
+        assertEquals("S3: number of uploads",                       1,              s3mock.uploads.size());
+        String key = s3mock.uploads.keySet().iterator().next();
+        assertRegex("S3: key",                                      "oversize/[0-9a-f-]{36}",
+                                                                    key);
+        assertEquals("S3: content",                                 bigMessage,     new String(s3mock.uploads.get(key), StandardCharsets.UTF_8));
+
+        assertEquals("putEvents: invocation count",                 1,              mock.putEventsInvocationCount);
+        assertEquals("putEvents: last call #/messages",             3,              mock.putEventsMessages.size());
+        assertEquals("putEvents: first message",                    "before",       mock.putEventsMessages.get(0).getMessage());
+        assertEquals("putEvents: pointer message",                  "{\"s3Bucket\":\"example\",\"s3Key\":\"" + key + "\","
+                                                                    + "\"size\":" + bigMessage.length() + ","
+                                                                    + "\"preview\":\"" + StringUtil.repeat('X', 256) + "\"}",
+                                                                    mock.putEventsMessages.get(1).getMessage());
+        assertEquals("putEvents: last message",                     "after",        mock.putEventsMessages.get(2).getMessage());
+        assertEquals("stats: oversize messages",                    1,              stats.getOversizeMessages());
+
+        internalLogger.assertInternalWarningLog();
+        internalLogger.assertInternalErrorLog();
+    }
+
+
+    @Test
+    public void testOffloadOversizeMessagesFailure() throws Exception
+    {
+        final int cloudwatchMaximumMessageSize  = 256 * 1024 - 26;
+        final String bigMessage                 = StringUtil.repeat('X', cloudwatchMaximumMessageSize) + "Y";
+
+        config.setOversizeS3Bucket("example");
+        mock = new MockCloudWatchFacade(config);
+        createWriter();
+
+        MockS3Facade s3mock = new MockS3Facade();
+        s3mock.exception = new TestingException("denied");
+        writer.setS3Facade(s3mock);
+
+        writer.addMessage(new LogMessage(System.currentTimeMillis(), bigMessage));
+
+        // on failure, the writer falls back to truncation (the default), on the pool thread
+        for (int ii = 0 ; (ii < 100) && (stats.getOversizeMessages() == 0) ; ii++)
+        {
+            Thread.sleep(10);
+        }
+
+        waitForWriterThread();
+
+        assertEquals("S3: number of uploads",                       0,              s3mock.uploads.size());
+        assertEquals("putEvents: invocation count",                 1,              mock.putEventsInvocationCount);
+        assertEquals("putEvents: message was truncated",            cloudwatchMaximumMessageSize,
+                                                                    mock.putEventsMessages.get(0).size());
+        assertEquals("stats: oversize messages",                    1,              stats.getOversizeMessages());
+
+        internalLogger.assertInternalWarningLog("truncated oversize message.*");
+        internalLogger.assertInternalErrorLog("failed to upload oversize message to S3");
+        assertEquals("stats: last error",                           "failed to upload oversize message to S3",
+                                                                    stats.getLastErrorMessage());
+    }
+
+
+    @Test
+    public void testDeferredMessages() throws Exception
+    {
+        // note: this actually tests superclass behavior
+
+        final int cloudwatchMaximumMessageSize  = 256 * 1024 - 26;
+        final String bigMessage                 = StringUtil.repeat('X', cloudwatchMaximumMessageSize - 1) + "Y";
+        final String biggerMessage              = bigMessage + "X";
+
+        AtomicReference<Thread> formatThread = new AtomicReference<>();
+
+        mock = new MockCloudWatchFacade(config);
+        createWriter();
+
+        writer.addMessage(new LogMessage(System.currentTimeMillis(), () -> { formatThread.set(Thread.currentThread()); return "message one"; }));
+        writer.addMessage(new LogMessage(System.currentTimeMillis(), () -> { throw new TestingException("test"); }));
+        writer.addMessage(new LogMessage(System.currentTimeMillis(), () -> ""));
+        writer.addMessage(new LogMessage(System.currentTimeMillis(), () -> biggerMessage));
+        writer.addMessage(new LogMessage(System.currentTimeMillis(), () -> "message two"));
+
+        // size checks are deferred along with formatting
+        internalLogger.assertInternalWarningLog();
+
+        waitForWriterThread();
+
+        assertEquals("putEvents: invocation count",                 1,                          mock.putEventsInvocationCount);
+        assertEquals("putEvents: last call #/messages",             3,                          mock.putEventsMessages.size());
+        assertEquals("putEvents: first message",                    "message one",              mock.putEventsMessages.get(0).getMessage());
+        assertEquals("putEvents: second message",                   bigMessage,                 mock.putEventsMessages.get(1).getMessage());
+        assertEquals("putEvents: third message",                    "message two",              mock.putEventsMessages.get(2).getMessage());
+        assertSame("formatted on writer thread",                    mock.putEventsThread,       formatThread.get());
+
+        assertEquals("statistics: oversize messages",               1,                          stats.getOversizeMessages());
+        assertEquals("statistics: queue bytes after send",          0,                          stats.getQueueBytes());
+
+        internalLogger.assertInternalWarningLog("discarded empty message",
+                                                "truncated oversize message.*");
+        internalLogger.assertInternalErrorLog("unable to apply layout");
+    }
+
+
     @Test
     public void testBatchConstructionByRecordCount() throws Exception
     {
@@ -1519,6 +2034,276 @@ extends AbstractLogWriterTest<CloudWatchLogWriter,CloudWatchWriterConfig,CloudWa
     }
 
 
+    @Test
+    public void testSynchronousOperationWithDeferredInitialization() throws Exception
+    {
+        config.setSynchronousMode(true);
+        config.setDeferInitialization(true);
+        mock = new MockCloudWatchFacade(config);
+
+        // we can't use createWriter(), because we want to add a message before the writer starts
+
+        TestableCloudWatchLogWriter testableWriter = new TestableCloudWatchLogWriter(config, stats, internalLogger, mock.newInstance());
+        testableWriter.disableThreadSynchronization();
+        writer = testableWriter;
+        messageQueue = ClassUtil.getFieldValue(writer, "messageQueue", MessageQueue.class);
+
+        assertTrue("writer is in synchronous mode",                 writer.isSynchronous());
+        assertTrue("writer defers initialization",                  writer.isInitializationDeferred());
+
+        writer.addMessage(new LogMessage(0, "message one"));
+        assertEquals("message remains on queue before initialization", 1,                      messageQueue.size());
+        assertEquals("putEvents: invocation count before initialization", 0,                  mock.putEventsInvocationCount);
+
+        new DefaultThreadFactory("test").startWriterThread(writer, defaultUncaughtExceptionHandler);
+        assertTrue("writer initialized",                            writer.waitUntilInitialized(5000));
+
+        // the background thread exits once it has sent queued messages
+        testableWriter.writerThread.join(5000);
+
+        assertNotSame("writer initialized on background thread",    Thread.currentThread(),     testableWriter.writerThread);
+        assertEquals("messages have been removed from queue",       0,                          messageQueue.size());
+        assertEquals("putEvents: invocation count",                 1,                          mock.putEventsInvocationCount);
+        assertEquals("putEvents: last call message",                "message one",              mock.putEventsMessages.get(0).getMessage());
+        assertSame("putEvents: invocation thread",                  testableWriter.writerThread, mock.putEventsThread);
+
+        writer.addMessage(new LogMessage(0, "message two"));
+
+        assertEquals("messages have been removed from queue",       0,                          messageQueue.size());
+        assertEquals("putEvents: invocation count",                 2,                          mock.putEventsInvocationCount);
+        assertEquals("putEvents: last call message",                "message two",              mock.putEventsMessages.get(0).getMessage());
+        assertSame("putEvents: invocation thread",                  Thread.currentThread(),     mock.putEventsThread);
+
+        internalLogger.assertInternalWarningLog();
+        internalLogger.assertInternalErrorLog();
+    }
+
+
+    @Test
+    public void testSynchronousOperationWithDeferredInitializationAndFailingSend() throws Exception
+    {
+        RuntimeException cause = new RuntimeException("send fails");
+        AtomicBoolean allowSend = new AtomicBoolean(false);
+
+        config.setSynchronousMode(true);
+        config.setDeferInitialization(true);
+        mock = new MockCloudWatchFacade(config)
+        {
+            @Override
+            public void sendMessages(List<LogMessage> messages)
+            throws CloudWatchFacadeException
+            {
+                if (! allowSend.get())
+                    throw cause;
+
+                super.sendMessages(messages);
+            }
+        };
+
+        TestableCloudWatchLogWriter testableWriter = new TestableCloudWatchLogWriter(config, stats, internalLogger, mock.newInstance());
+        testableWriter.disableThreadSynchronization();
+        writer = testableWriter;
+        messageQueue = ClassUtil.getFieldValue(writer, "messageQueue", MessageQueue.class);
+
+        writer.addMessage(new LogMessage(0, "message one"));
+
+        new DefaultThreadFactory("test").startWriterThread(writer, defaultUncaughtExceptionHandler);
+        assertTrue("writer initialized",                            writer.waitUntilInitialized(5000));
+
+        // the background thread gives up after the failed batch, rather than spinning
+
+        testableWriter.writerThread.join(5000);
+        assertFalse("background thread exited",                     testableWriter.writerThread.isAlive());
+
+        assertEquals("putEvents: invocation count",                 1,                          mock.putEventsInvocationCount);
+        assertEquals("message has been returned to queue",          1,                          messageQueue.size());
+
+        // the next append sends the requeued message along with its own
+
+        allowSend.set(true);
+        writer.addMessage(new LogMessage(0, "message two"));
+
+        assertEquals("putEvents: invocation count",                 2,                          mock.putEventsInvocationCount);
+        assertEquals("putEvents: last call #/messages",             2,                          mock.putEventsMessages.size());
+        assertEquals("messages have been removed from queue",       0,                          messageQueue.size());
+        assertEquals("stats: messages sent",                        2,                          stats.getMessagesSent());
+
+        internalLogger.assertInternalWarningLog();
+        internalLogger.assertInternalErrorLog("unexpected exception in sendBatch.*");
+        assertUltimateCause("original exception reported",          cause,                      internalLogger.errorExceptions.get(0));
+    }
+
+
+    @Test
+    public void testSynchronousGroupCommit() throws Exception
+    {
+        final CountDownLatch firstSendStarted = new CountDownLatch(1);
+        final CountDownLatch allowFirstSend = new CountDownLatch(1);
+        final List<String> sentMessages = Collections.synchronizedList(new ArrayList<String>());
+
+        config.setSynchronousMode(true);
+        mock = new MockCloudWatchFacade(config)
+        {
+            @Override
+            public void sendMessages(List<LogMessage> messages)
+            throws CloudWatchFacadeException
+            {
+                if (putEventsInvocationCount == 1)
+                {
+                    firstSendStarted.countDown();
+                    try
+                    {
+                        allowFirstSend.await();
+                    }
+                    catch (InterruptedException ex)
+                    {
+                        throw new RuntimeException("unexpected interrupt");
+                    }
+                }
+                for (LogMessage message : messages)
+                {
+                    sentMessages.add(message.getMessage());
+                }
+                super.sendMessages(messages);
+            }
+        };
+
+        createWriter();
+        ((TestableCloudWatchLogWriter)writer).disableThreadSynchronization();
+
+        // the first thread becomes the leader, and blocks inside its send
+
+        List<Thread> threads = new ArrayList<>();
+        threads.add(new Thread(() -> writer.addMessage(new LogMessage(0, "message 0"))));
+        threads.get(0).start();
+        assertTrue("first send started", firstSendStarted.await(5, TimeUnit.SECONDS));
+
+        // the remaining threads queue their messages while it's blocked
+
+        for (int ii = 1 ; ii < 10 ; ii++)
+        {
+            final String text = "message " + ii;
+            Thread thread = new Thread(() -> writer.addMessage(new LogMessage(0, text)));
+            threads.add(thread);
+            thread.start();
+        }
+
+        long timeout = System.currentTimeMillis() + 5000;
+        while ((messageQueue.size() < 9) && (System.currentTimeMillis() < timeout))
+        {
+            Thread.sleep(10);
+        }
+        assertEquals("messages queued while send in progress",      9,                          messageQueue.size());
+
+        allowFirstSend.countDown();
+        for (Thread thread : threads)
+        {
+            thread.join(5000);
+            assertFalse("thread completed", thread.isAlive());
+        }
+
+        assertEquals("putEvents: invocation count",                 2,                          mock.putEventsInvocationCount);
+        assertEquals("putEvents: last call #/messages",             9,                          mock.putEventsMessages.size());
+        assertEquals("all messages sent",                           10,                         sentMessages.size());
+        assertEquals("messages have been removed from queue",       0,                          messageQueue.size());
+
+        internalLogger.assertInternalWarningLog();
+        internalLogger.assertInternalErrorLog();
+    }
+
+
+    @Test
+    public void testSynchronousFlushResendsFailedBatch() throws Exception
+    {
+        RuntimeException cause = new RuntimeException("first send fails");
+
+        config.setSynchronousMode(true);
+        mock = new MockCloudWatchFacade(config)
+        {
+            @Override
+            public void sendMessages(List<LogMessage> messages)
+            throws CloudWatchFacadeException
+            {
+                if (putEventsInvocationCount == 1)
+                    throw cause;
+
+                super.sendMessages(messages);
+            }
+        };
+
+        createWriter();
+        ((TestableCloudWatchLogWriter)writer).disableThreadSynchronization();
+
+        writer.addMessage(new LogMessage(0, "message one"));
+
+        assertEquals("putEvents: invocation count after failure",   1,                          mock.putEventsInvocationCount);
+        assertEquals("message has been returned to queue",          1,                          messageQueue.size());
+
+        assertTrue("flush succeeded",                               writer.flush(5000));
+
+        assertEquals("putEvents: invocation count after flush",     2,                          mock.putEventsInvocationCount);
+        assertEquals("putEvents: last call message",                "message one",              mock.putEventsMessages.get(0).getMessage());
+        assertEquals("messages have been removed from queue",       0,                          messageQueue.size());
+        assertEquals("stats: messages sent",                        1,                          stats.getMessagesSent());
+
+        internalLogger.assertInternalWarningLog();
+        internalLogger.assertInternalErrorLog("unexpected exception in sendBatch.*");
+        assertUltimateCause("original exception reported",          cause,                      internalLogger.errorExceptions.get(0));
+    }
+
+
+    @Test
+    public void testFlush() throws Exception
+    {
+        // a batch delay that's long enough to fail the test if flush waits for it
+        config.setBatchDelay(10000);
+        mock = new MockCloudWatchFacade(config);
+
+        // we can't use createWriter(), because the writer thread must not be blocked
+        // by the test semaphores
+
+        TestableCloudWatchLogWriter testableWriter = new TestableCloudWatchLogWriter(config, stats, internalLogger, mock.newInstance());
+        testableWriter.disableThreadSynchronization();
+        writer = testableWriter;
+        messageQueue = ClassUtil.getFieldValue(writer, "messageQueue", MessageQueue.class);
+
+        new DefaultThreadFactory("test").startWriterThread(writer, defaultUncaughtExceptionHandler);
+        assertTrue("writer initialized",                            writer.waitUntilInitialized(5000));
+
+        writer.addMessage(new LogMessage(System.currentTimeMillis(), "message one"));
+        writer.addMessage(new LogMessage(System.currentTimeMillis(), "message two"));
+
+        long flushStart = System.currentTimeMillis();
+        assertTrue("flush succeeded",                               writer.flush(5000));
+        long flushElapsed = System.currentTimeMillis() - flushStart;
+
+        assertInRange("flush did not wait for batch delay",         0, 1000,                    flushElapsed);
+        assertEquals("messages have been removed from queue",       0,                          messageQueue.size());
+        assertEquals("putEvents: invocation count",                 1,                          mock.putEventsInvocationCount);
+        assertEquals("putEvents: last call #/messages",             2,                          mock.putEventsMessages.size());
+        assertEquals("stats: messages sent",                        2,                          stats.getMessagesSent());
+
+        // JMX exposes flush via the statistics bean; also verifies an empty flush
+
+        writer.addMessage(new LogMessage(System.currentTimeMillis(), "message three"));
+        assertTrue("flush via statistics succeeded",                stats.flush(5000));
+        assertTrue("flush of empty queue succeeded",                stats.flush(5000));
+
+        assertEquals("putEvents: invocation count",                 2,                          mock.putEventsInvocationCount);
+        assertEquals("putEvents: last call message",                "message three",            mock.putEventsMessages.get(0).getMessage());
+
+        // after the writer stops, flush fails immediately
+
+        writer.setBatchDelay(100);
+        writer.stop();
+        testableWriter.writerThread.join(5000);
+        assertFalse("flush after stop",                                                         writer.flush(5000));
+
+        internalLogger.assertInternalWarningLog();
+        internalLogger.assertInternalErrorLog();
+    }
+
+
     @Test
     public void testShutdown() throws Exception
     {
@@ -1586,6 +2371,7 @@ extends AbstractLogWriterTest<CloudWatchLogWriter,CloudWatchWriterConfig,CloudWa
     }
 
     // note: this is the only place we test the shutdown hook; it's implemented in AbstractLogWriter
+    //       and ShutdownCoordinator
 
     @Test
     public void testShutdownHook() throws Exception
@@ -1596,35 +2382,103 @@ extends AbstractLogWriterTest<CloudWatchLogWriter,CloudWatchWriterConfig,CloudWa
         createWriter();
         ((TestableCloudWatchLogWriter)writer).disableThreadSynchronization();
 
-        assertTrue("writer is running", writer.isRunning());
+        assertTrue("writer is running",                             writer.isRunning());
 
-        Thread shutdownHook = ClassUtil.getFieldValue(writer, "shutdownHook", Thread.class);
-        assertNotNull("writer has shutdown hook", shutdownHook);
+        // we don't want the real shutdown hook to run, so invoke the coordinator directly
 
-        // this is an easy way to assert that the writer added the hook, without digging into
-        // JVM internals; plus, we don't want it to actually run
-        assertTrue("writer set shutdown hook", Runtime.getRuntime().removeShutdownHook(shutdownHook));
+        ShutdownCoordinator coordinator = ShutdownCoordinator.getInstance();
+        assertTrue("writer registered with coordinator",            coordinator.isRegistered((AbstractLogWriter<?,?>)writer));
 
-        shutdownHook.start();
+        writer.addMessage(new LogMessage(System.currentTimeMillis(), "message one"));
 
-        writer.waitUntilStopped(10000);
-        assertFalse("writer has stopped", writer.isRunning());
+        Map<AbstractLogWriter<?,?>,Integer> unsent = coordinator.shutdown(5000);
 
-        // this will never return if the shutdown hook hasn't run
-        shutdownHook.join();
+        assertEquals("all writers stopped",                         0,                          unsent.size());
+        assertFalse("writer has stopped",                                                       writer.isRunning());
+        assertFalse("writer deregistered",                                                      coordinator.isRegistered((AbstractLogWriter<?,?>)writer));
+        assertEquals("putEvents: invocation count",                 1,                          mock.putEventsInvocationCount);
+        assertEquals("putEvents: last call message",                "message one",              mock.putEventsMessages.get(0).getMessage());
 
-        // these assertions may be timing-dependent: shutdown hook could log wait before or after writer shutdown
         internalLogger.assertInternalDebugLog("log writer starting.*",
                                               "checking for existence of CloudWatch log group: argle",
                                               "using existing CloudWatch log group: argle",
                                               "checking for existence of CloudWatch log stream: bargle",
                                               "using existing CloudWatch log stream: bargle",
                                               "log writer initialization complete.*",
-                                              "shutdown hook .* invoked",
-                                              "shutdown hook .* waiting on writer thread",
-                                              "log.writer shut down.*",
-                                              "shutdown hook .* complete");
+                                              "stopping writer for JVM shutdown",
+                                              "log.writer shut down.*");
         internalLogger.assertInternalWarningLog();
         internalLogger.assertInternalErrorLog();
     }
+
+
+    @Test
+    public void testShutdownHookTimeout() throws Exception
+    {
+        final CountDownLatch allowSend = new CountDownLatch(1);
+
+        config.setUseShutdownHook(true);
+        config.setCriticalOnShutdown(true);
+        mock = new MockCloudWatchFacade(config)
+        {
+            @Override
+            public void sendMessages(List<LogMessage> messages)
+            throws CloudWatchFacadeException
+            {
+                // stop() interrupts the writer thread; we want to simulate a slow call
+                boolean released = false;
+                while (! released)
+                {
+                    try
+                    {
+                        allowSend.await();
+                        released = true;
+                    }
+                    catch (InterruptedException ignored)
+                    {
+                        // keep waiting
+                    }
+                }
+                super.sendMessages(messages);
+            }
+        };
+
+        // we can't use createWriter(), because the writer thread must not be blocked
+        // by the test semaphores
+
+        TestableCloudWatchLogWriter testableWriter = new TestableCloudWatchLogWriter(config, stats, internalLogger, mock.newInstance());
+        testableWriter.disableThreadSynchronization();
+        writer = testableWriter;
+
+        new DefaultThreadFactory("test").startWriterThread(writer, defaultUncaughtExceptionHandler);
+        assertTrue("writer initialized",                            writer.waitUntilInitialized(5000));
+
+        // the first message is stuck in the send, the second is in the queue
+
+        writer.addMessage(new LogMessage(System.currentTimeMillis(), "message one"));
+        long timeout = System.currentTimeMillis() + 5000;
+        while ((mock.putEventsInvocationCount == 0) && (System.currentTimeMillis() < timeout))
+        {
+            Thread.sleep(10);
+        }
+        writer.addMessage(new LogMessage(System.currentTimeMillis(), "message two"));
+
+        long shutdownStart = System.currentTimeMillis();
+        Map<AbstractLogWriter<?,?>,Integer> unsent = ShutdownCoordinator.getInstance().shutdown(200);
+        long shutdownElapsed = System.currentTimeMillis() - shutdownStart;
+
+        assertInRange("shutdown respected deadline",                150, 1000,                  shutdownElapsed);
+        assertEquals("unsent messages reported",                    Integer.valueOf(1),         unsent.get(writer));
+        internalLogger.assertInternalErrorLog("shutdown timeout expired with 1 message.*");
+
+        // once the send completes, the writer finishes normally
+
+        allowSend.countDown();
+        testableWriter.writerThread.join(5000);
+
+        assertFalse("writer has stopped",                                                       writer.isRunning());
+        assertFalse("writer deregistered",                                                      ShutdownCoordinator.getInstance().isRegistered(testableWriter));
+        assertEquals("putEvents: invocation count",                 2,                          mock.putEventsInvocationCount);
+        assertEquals("putEvents: last call message",                "message two",              mock.putEventsMessages.get(0).getMessage());
+    }
 }
@@ -0,0 +1,656 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.kdgregory.logging.aws;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import net.sf.kdgcommons.lang.StringUtil;
+import static net.sf.kdgcommons.test.StringAsserts.*;
+
+import com.kdgregory.logging.aws.facade.FirehoseFacade;
+import com.kdgregory.logging.aws.facade.FirehoseFacadeException;
+import com.kdgregory.logging.aws.facade.FirehoseFacadeException.ReasonCode;
+import com.kdgregory.logging.aws.firehose.FirehoseConstants;
+import com.kdgregory.logging.aws.firehose.FirehoseConstants.StreamStatus;
+import com.kdgregory.logging.aws.firehose.FirehoseLogWriter;
+import com.kdgregory.logging.aws.firehose.FirehoseWriterConfig;
+import com.kdgregory.logging.aws.firehose.FirehoseWriterStatistics;
+import com.kdgregory.logging.common.LogMessage;
+import com.kdgregory.logging.common.LogWriter;
+import com.kdgregory.logging.common.util.InternalLogger;
+import com.kdgregory.logging.common.util.MessageQueue.DiscardAction;
+import com.kdgregory.logging.common.util.WriterFactory;
+import com.kdgregory.logging.testhelpers.firehose.MockFirehoseFacade;
+import com.kdgregory.logging.testhelpers.firehose.TestableFirehoseLogWriter;
+
+
+/**
+ *  Performs mock-facade testing of <code>FirehoseLogWriter</code>.
+ *  <p>
+ *  The goal of these tests is to verify the invocaton and retry logic of the writer.
+ */
+public class TestFirehoseLogWriter
+extends AbstractLogWriterTest<FirehoseLogWriter,FirehoseWriterConfig,FirehoseWriterStatistics>
+{
+    private final static String DEFAULT_STREAM_NAME     = "argle";
+
+    private MockFirehoseFacade mock;
+
+//----------------------------------------------------------------------------
+//  Support Code
+//----------------------------------------------------------------------------
+
+    /**
+     *  Creates a new writer and starts it on a background thread. This uses
+     *  the current configuration and mock instance.
+     */
+    private void createWriter()
+    throws Exception
+    {
+        final FirehoseFacade facade = mock.newInstance();
+        WriterFactory<FirehoseWriterConfig,FirehoseWriterStatistics> writerFactory
+            = new WriterFactory<FirehoseWriterConfig,FirehoseWriterStatistics>()
+            {
+                @Override
+                public LogWriter newLogWriter(
+                        FirehoseWriterConfig passedConfig,
+                        FirehoseWriterStatistics passedStats,
+                        InternalLogger passedLogger)
+                {
+                    return new TestableFirehoseLogWriter(passedConfig, passedStats, passedLogger, facade);
+                }
+            };
+
+        super.createWriter(writerFactory);
+    }
+
+
+    /**
+     *  A convenience function that knows the writer supports a semaphore (so
+     *  that we don't need to cast within testcases).
+     */
+    private void waitForWriterThread()
+    throws Exception
+    {
+        ((TestableFirehoseLogWriter)writer).waitForWriterThread();
+    }
+
+//----------------------------------------------------------------------------
+//  JUnit scaffolding
+//----------------------------------------------------------------------------
+
+    @Before
+    public void setUp()
+    {
+        config = new FirehoseWriterConfig()
+                 .setStreamName(DEFAULT_STREAM_NAME)
+                 .setBatchDelay(100)
+                 .setDiscardThreshold(10000)
+                 .setDiscardAction(DiscardAction.oldest)
+                 .setUseShutdownHook(false)
+                 .setInitializationTimeout(250);
+
+        stats = new FirehoseWriterStatistics();
+    }
+
+
+    @After
+    public void tearDown()
+    throws Throwable
+    {
+        if (writer != null)
+        {
+            writer.stop();
+            ((TestableFirehoseLogWriter)writer).releaseWriterThread();
+        }
+
+        if (uncaughtException != null)
+            throw uncaughtException;
+    }
+
+//----------------------------------------------------------------------------
+//  Testcases
+//----------------------------------------------------------------------------
+
+    @Test
+    public void testInitialization() throws Exception
+    {
+        config.setBatchDelay(123)
+              .setDiscardThreshold(456)
+              .setDiscardAction(DiscardAction.newest);
+
+        mock = new MockFirehoseFacade(config);
+        createWriter();
+
+        assertTrue("writer is running", writer.isRunning());
+
+        assertEquals("retrieveStreamStatus() invocationCount",      1,                          mock.retrieveStreamStatusInvocationCount);
+
+        assertEquals("writer batch delay",                          123L,                       writer.getBatchDelay());
+        assertEquals("message queue discard policy",                DiscardAction.newest,       messageQueue.getDiscardAction());
+        assertEquals("message queue discard threshold",             456,                        messageQueue.getDiscardThreshold());
+
+        assertEquals("stats: actual stream name",                   DEFAULT_STREAM_NAME,        stats.getActualStreamName());
+
+        internalLogger.assertInternalDebugLog(
+                        "log writer starting.*",
+                        "checking status of delivery stream: " + DEFAULT_STREAM_NAME,
+                        "log writer initialization complete.*");
+        internalLogger.assertInternalWarningLog();
+        internalLogger.assertInternalErrorLog();
+    }
+
+
+    @Test
+    public void testInitializationInvalidConfiguration() throws Exception
+    {
+        config = new FirehoseWriterConfig();
+
+        mock = new MockFirehoseFacade(config);
+        createWriter();
+
+        assertFalse("writer is running", writer.isRunning());
+
+        internalLogger.assertInternalDebugLog(
+                            "log writer starting.*");
+        internalLogger.assertInternalWarningLog();
+        internalLogger.assertInternalErrorLog(
+                            "configuration error: missing stream name",
+                            "log writer failed to initialize.*");
+    }
+
+
+    @Test
+    public void testWaitForStreamReady() throws Exception
+    {
+        mock = new MockFirehoseFacade(config, StreamStatus.CREATING, StreamStatus.CREATING, StreamStatus.ACTIVE);
+        createWriter();
+
+        assertTrue("writer is running", writer.isRunning());
+
+        assertEquals("retrieveStreamStatus() invocationCount",      3,                          mock.retrieveStreamStatusInvocationCount);
+        assertEquals("putRecords() invocationCount",                0,                          mock.putRecordsInvocationCount);
+
+        internalLogger.assertInternalDebugLog(
+                        "log writer starting.*",
+                        "checking status of delivery stream: " + DEFAULT_STREAM_NAME,
+                        "waiting for delivery stream " + DEFAULT_STREAM_NAME + " to become active",
+                        "log writer initialization complete.*");
+        internalLogger.assertInternalWarningLog();
+        internalLogger.assertInternalErrorLog();
+    }
+
+
+    @Test
+    public void testWaitForStreamReadyTimeout() throws Exception
+    {
+        mock = new MockFirehoseFacade(config, StreamStatus.CREATING);
+        createWriter();
+
+        assertFalse("writer is running", writer.isRunning());
+
+        // initial status check, plus 5 until timeout
+
+        assertEquals("retrieveStreamStatus() invocationCount",      6,                          mock.retrieveStreamStatusInvocationCount);
+        assertEquals("putRecords() invocationCount",                0,                          mock.putRecordsInvocationCount);
+
+        internalLogger.assertInternalDebugLog(
+                        "log writer starting.*",
+                        "checking status of delivery stream: " + DEFAULT_STREAM_NAME,
+                        "waiting for delivery stream " + DEFAULT_STREAM_NAME + " to become active");
+        internalLogger.assertInternalWarningLog();
+        internalLogger.assertInternalErrorLog(
+                        "timeout waiting for delivery stream " + DEFAULT_STREAM_NAME + " to become active",
+                        "log writer failed to initialize.*");
+    }
+
+
+    @Test
+    public void testMissingStream() throws Exception
+    {
+        mock = new MockFirehoseFacade(config, StreamStatus.DOES_NOT_EXIST);
+        createWriter();
+
+        assertFalse("writer is running", writer.isRunning());
+
+        assertEquals("retrieveStreamStatus() invocationCount",      1,                          mock.retrieveStreamStatusInvocationCount);
+
+        internalLogger.assertInternalDebugLog(
+                        "log writer starting.*",
+                        "checking status of delivery stream: " + DEFAULT_STREAM_NAME);
+        internalLogger.assertInternalWarningLog();
+        internalLogger.assertInternalErrorLog(
+                        "delivery stream \"" + DEFAULT_STREAM_NAME + "\" does not exist",
+                        "log writer failed to initialize.*");
+    }
+
+
+    @Test
+    public void testUnusableStream() throws Exception
+    {
+        mock = new MockFirehoseFacade(config, StreamStatus.DELETING);
+        createWriter();
+
+        assertFalse("writer is running", writer.isRunning());
+
+        assertEquals("retrieveStreamStatus() invocationCount",      1,                          mock.retrieveStreamStatusInvocationCount);
+
+        internalLogger.assertInternalWarningLog();
+        internalLogger.assertInternalErrorLog(
+                        "delivery stream \"" + DEFAULT_STREAM_NAME + "\" is not usable; status: DELETING",
+                        "log writer failed to initialize.*");
+    }
+
+
+    @Test
+    public void testInitializationException() throws Exception
+    {
+        mock = new MockFirehoseFacade(config)
+        {
+            @Override
+            public StreamStatus retrieveStreamStatus()
+            {
+                throw new RuntimeException("standin for network timeout SDK exception");
+            }
+        };
+        createWriter();
+
+        assertFalse("writer is running", writer.isRunning());
+
+        assertEquals("retrieveStreamStatus() invocationCount",      1,                          mock.retrieveStreamStatusInvocationCount);
+        assertEquals("message queue discard threshold reduced",     0,                          messageQueue.getDiscardThreshold());
+
+        internalLogger.assertInternalWarningLog();
+        internalLogger.assertInternalErrorLog(
+                        "exception during initialization.*",
+                        "log writer failed to initialize.*");
+    }
+
+
+    @Test
+    public void testWriteHappyPath() throws Exception
+    {
+        mock = new MockFirehoseFacade(config);
+        createWriter();
+
+        writer.addMessage(new LogMessage(System.currentTimeMillis(), "message one"));
+        writer.addMessage(new LogMessage(System.currentTimeMillis(), "message two"));
+        waitForWriterThread();
+
+        assertEquals("putRecords() invocationCount",                1,                          mock.putRecordsInvocationCount);
+        assertNotSame("putRecords() thread",                        Thread.currentThread(),     mock.putRecordsThread);
+        assertEquals("putRecords() batch size",                     2,                          mock.putRecordsBatch.size());
+        assertEquals("putRecords() first message",                  "message one",              mock.putRecordsBatch.get(0).getMessage());
+        assertEquals("putRecords() second message",                 "message two",              mock.putRecordsBatch.get(1).getMessage());
+
+        assertStatisticsTotalMessagesSent(2);
+        assertEquals("statistics: last batch size",                 2,                          stats.getLastBatchSize());
+        assertEquals("statistics: last batch messages sent",        2,                          stats.getMessagesSentLastBatch());
+        assertEquals("statistics: last batch messages requeued",    0,                          stats.getMessagesRequeuedLastBatch());
+
+        internalLogger.assertInternalWarningLog();
+        internalLogger.assertInternalErrorLog();
+    }
+
+
+    @Test
+    public void testWritePartial() throws Exception
+    {
+        mock = new MockFirehoseFacade(config)
+        {
+            @Override
+            public List<LogMessage> putRecords(List<LogMessage> batch)
+            {
+                return (batch.size() < 2)
+                     ? Collections.emptyList()
+                     : batch.subList(2, batch.size());
+            }
+        };
+        createWriter();
+
+        writer.addMessage(new LogMessage(System.currentTimeMillis(), "message one"));
+        writer.addMessage(new LogMessage(System.currentTimeMillis(), "message two"));
+        writer.addMessage(new LogMessage(System.currentTimeMillis(), "message three"));
+        writer.addMessage(new LogMessage(System.currentTimeMillis(), "message four"));
+        waitForWriterThread();
+
+        assertEquals("putRecords() invocationCount",                1,                          mock.putRecordsInvocationCount);
+        assertEquals("putRecords() batch size",                     4,                          mock.putRecordsBatch.size());
+
+        assertStatisticsTotalMessagesSent(2);
+        assertEquals("statistics: last batch messages sent",        2,                          stats.getMessagesSentLastBatch());
+        assertEquals("statistics: last batch messages requeued",    2,                          stats.getMessagesRequeuedLastBatch());
+
+        waitForWriterThread();
+
+        assertEquals("putRecords() invocationCount",                2,                          mock.putRecordsInvocationCount);
+        assertEquals("putRecords() batch size",                     2,                          mock.putRecordsBatch.size());
+        assertEquals("putRecords() first message",                  "message three",            mock.putRecordsBatch.get(0).getMessage());
+        assertEquals("putRecords() second message",                 "message four",             mock.putRecordsBatch.get(1).getMessage());
+
+        assertStatisticsTotalMessagesSent(4);
+        assertEquals("statistics: last batch messages requeued",    0,                          stats.getMessagesRequeuedLastBatch());
+    }
+
+
+    @Test
+    public void testWriteThrottleRetry() throws Exception
+    {
+        mock = new MockFirehoseFacade(config)
+        {
+            @Override
+            public List<LogMessage> putRecords(List<LogMessage> batch)
+            {
+                if (putRecordsInvocationCount == 1)
+                    throw new FirehoseFacadeException(ReasonCode.THROTTLING, true, null);
+                else
+                    return super.putRecords(batch);
+            }
+        };
+        createWriter();
+
+        writer.addMessage(new LogMessage(System.currentTimeMillis(), "message one"));
+        writer.addMessage(new LogMessage(System.currentTimeMillis(), "message two"));
+        waitForWriterThread();
+
+        assertEquals("putRecords() invocationCount",                2,                          mock.putRecordsInvocationCount);
+        assertEquals("putRecords() batch size",                     2,                          mock.putRecordsBatch.size());
+
+        assertStatisticsTotalMessagesSent(2);
+        assertEquals("statistics: number of throttles",             1,                          stats.getThrottledWrites());
+
+        internalLogger.assertInternalWarningLog();
+        internalLogger.assertInternalErrorLog();
+    }
+
+
+    @Test
+    public void testWriteUnrecoveredThrottling() throws Exception
+    {
+        mock = new MockFirehoseFacade(config)
+        {
+            @Override
+            public List<LogMessage> putRecords(List<LogMessage> batch)
+            {
+                throw new FirehoseFacadeException(ReasonCode.THROTTLING, true, null);
+            }
+        };
+        createWriter();
+
+        writer.addMessage(new LogMessage(System.currentTimeMillis(), "message one"));
+        writer.addMessage(new LogMessage(System.currentTimeMillis(), "message two"));
+        waitForWriterThread();
+
+        // number of invocations is based on the RetryManager config in TestableFirehoseLogWriter
+
+        assertEquals("putRecords() invocationCount",                4,                          mock.putRecordsInvocationCount);
+
+        assertStatisticsTotalMessagesSent(0);
+        assertEquals("statistics: last batch messages requeued",    2,                          stats.getMessagesRequeuedLastBatch());
+        assertEquals("statistics: number of throttles",             4,                          stats.getThrottledWrites());
+
+        assertEquals("messages remain on message queuue",           2,                          messageQueue.size());
+
+        internalLogger.assertInternalWarningLog(
+                        "timeout while sending batch");
+        internalLogger.assertInternalErrorLog();
+    }
+
+
+    @Test
+    public void testWriteException() throws Exception
+    {
+        final RuntimeException cause = new RuntimeException("something");
+        mock = new MockFirehoseFacade(config)
+        {
+            @Override
+            public List<LogMessage> putRecords(List<LogMessage> batch)
+            {
+                throw new FirehoseFacadeException(ReasonCode.UNEXPECTED_EXCEPTION, false, cause);
+            }
+        };
+        createWriter();
+
+        writer.addMessage(new LogMessage(System.currentTimeMillis(), "message one"));
+        writer.addMessage(new LogMessage(System.currentTimeMillis(), "message two"));
+        waitForWriterThread();
+
+        assertEquals("putRecords() invocationCount",                1,                          mock.putRecordsInvocationCount);
+
+        assertStatisticsTotalMessagesSent(0);
+        assertEquals("messages remain on message queuue",           2,                          messageQueue.size());
+
+        internalLogger.assertInternalWarningLog();
+        internalLogger.assertInternalErrorLog(
+                        "exception while sending batch");
+
+        assertUltimateCause("reported underlying exception", cause, internalLogger.errorExceptions.get(0));
+    }
+
+
+    @Test
+    public void testAggregation() throws Exception
+    {
+        config.setAggregateMessages(true);
+        mock = new MockFirehoseFacade(config);
+        createWriter();
+
+        writer.addMessage(new LogMessage(System.currentTimeMillis(), "message one"));
+        writer.addMessage(new LogMessage(System.currentTimeMillis(), "message two\n"));
+        writer.addMessage(new LogMessage(System.currentTimeMillis(), "message three"));
+        waitForWriterThread();
+
+        assertEquals("putRecords() invocationCount",                1,                          mock.putRecordsInvocationCount);
+        assertEquals("putRecords() batch size",                     1,                          mock.putRecordsBatch.size());
+        assertEquals("putRecords() record content",                 "message one\nmessage two\nmessage three\n",
+                                                                                                mock.putRecordsBatch.get(0).getMessage());
+
+        assertStatisticsTotalMessagesSent(3);
+        assertEquals("statistics: last batch size",                 3,                          stats.getLastBatchSize());
+        assertEquals("statistics: last batch messages sent",        3,                          stats.getMessagesSentLastBatch());
+        assertEquals("statistics: last batch messages requeued",    0,                          stats.getMessagesRequeuedLastBatch());
+
+        internalLogger.assertInternalWarningLog();
+        internalLogger.assertInternalErrorLog();
+    }
+
+
+    @Test
+    public void testAggregationByRecordSize() throws Exception
+    {
+        config.setAggregateMessages(true);
+        config.setBatchDelay(500);
+
+        // each message plus newline is exactly 1/10 of the maximum record size
+        String baseMessage = StringUtil.repeat('X', FirehoseConstants.MAX_RECORD_BYTES / 10 - 4);
+
+        // records are returned as failed until we've made sure they're aggregated correctly
+        mock = new MockFirehoseFacade(config)
+        {
+            @Override
+            public List<LogMessage> putRecords(List<LogMessage> batch)
+            {
+                return (putRecordsInvocationCount == 1)
+                     ? batch.subList(1, batch.size())
+                     : super.putRecords(batch);
+            }
+        };
+        createWriter();
+
+        List<String> expectedMessages = new ArrayList<>();
+        for (int ii = 0 ; ii < 30 ; ii++)
+        {
+            String message = String.format("%03d", ii) + baseMessage;
+            expectedMessages.add(message);
+            writer.addMessage(new LogMessage(System.currentTimeMillis(), message));
+        }
+
+        waitForWriterThread();
+
+        assertEquals("putRecords() invocationCount",                1,                          mock.putRecordsInvocationCount);
+        assertEquals("putRecords() number of records",              3,                          mock.putRecordsBatch.size());
+        for (LogMessage record : mock.putRecordsBatch)
+        {
+            assertEquals("record size",                             FirehoseConstants.MAX_RECORD_BYTES,     record.size());
+        }
+        assertRegex("first record starts with first message",       "(?s)000X+\n001X.*",            mock.putRecordsBatch.get(0).getMessage());
+        assertRegex("last record ends with last message",           "(?s).*\n029X+\n",              mock.putRecordsBatch.get(2).getMessage());
+
+        assertStatisticsTotalMessagesSent(10);
+        assertEquals("statistics: last batch messages requeued",    20,                         stats.getMessagesRequeuedLastBatch());
+        assertEquals("rejected messages requeued",                  20,                         messageQueue.size());
+
+        waitForWriterThread();
+
+        assertEquals("putRecords() invocationCount",                2,                          mock.putRecordsInvocationCount);
+        assertEquals("putRecords() number of records",              2,                          mock.putRecordsBatch.size());
+        assertRegex("resent records start with first rejected",     "(?s)010X+\n.*",                mock.putRecordsBatch.get(0).getMessage());
+
+        assertStatisticsTotalMessagesSent(30);
+        assertEquals("no messages remain on queue",                 0,                          messageQueue.size());
+
+        List<String> sentMessages = new ArrayList<>();
+        for (LogMessage record : mock.putRecordsBatch)
+        {
+            for (String message : record.getMessage().split("\n"))
+                sentMessages.add(message);
+        }
+        assertEquals("all rejected messages resent, in order",      expectedMessages.subList(10, 30),   sentMessages);
+    }
+
+
+    @Test
+    public void testDiscardOversizeMessage() throws Exception
+    {
+        final String bigMessage     = StringUtil.repeat('X', FirehoseConstants.MAX_RECORD_BYTES - 1) + "Y";
+        final String biggerMessage  = bigMessage + "X";
+
+        config.setTruncateOversizeMessages(false);
+
+        mock = new MockFirehoseFacade(config);
+        createWriter();
+
+        writer.addMessage(new LogMessage(System.currentTimeMillis(), biggerMessage));
+        writer.addMessage(new LogMessage(System.currentTimeMillis(), bigMessage));
+        waitForWriterThread();
+
+        assertEquals("putRecords() invocationCount",                1,                          mock.putRecordsInvocationCount);
+        assertEquals("putRecords() batch size",                     1,                          mock.putRecordsBatch.size());
+        assertEquals("putRecords() message",                        bigMessage,                 mock.putRecordsBatch.get(0).getMessage());
+
+        internalLogger.assertInternalWarningLog("discarded oversize message.*");
+    }
+
+
+    @Test
+    public void testBatchConstructionByRecordCount() throws Exception
+    {
+        config.setDiscardAction(DiscardAction.none);
+        config.setDiscardThreshold(Integer.MAX_VALUE);
+        config.setBatchDelay(500);
+
+        mock = new MockFirehoseFacade(config);
+        createWriter();
+
+        List<String> expectedMessages = new ArrayList<>();
+        for (int ii = 0 ; ii < 750 ; ii++)
+        {
+            String message = String.valueOf(ii);
+            expectedMessages.add(message);
+            writer.addMessage(new LogMessage(System.currentTimeMillis(), message));
+        }
+
+        waitForWriterThread();
+
+        assertEquals("putRecords() invocationCount",                1,                  mock.putRecordsInvocationCount);
+        assertEquals("putRecords() batch size",                     500,                mock.putRecordsBatch.size());
+        assertEquals("unsent messages remain on queue",             250,                messageQueue.size());
+
+        waitForWriterThread();
+
+        assertEquals("putRecords() invocationCount",                2,                  mock.putRecordsInvocationCount);
+        assertEquals("putRecords() batch size",                     250,                mock.putRecordsBatch.size());
+        assertEquals("no unsent messages remain on queue",          0,                  messageQueue.size());
+
+        List<String> putRecordsHistory = mock.putRecordsHistory.stream().map(LogMessage::getMessage).collect(Collectors.toList());
+
+        assertEquals("all messages sent, in order",                 expectedMessages,   putRecordsHistory);
+    }
+
+
+    @Test
+    public void testBatchConstructionWithAggregation() throws Exception
+    {
+        // with aggregation the record count limit doesn't apply
+
+        config.setAggregateMessages(true);
+        config.setDiscardAction(DiscardAction.none);
+        config.setDiscardThreshold(Integer.MAX_VALUE);
+        config.setBatchDelay(500);
+
+        mock = new MockFirehoseFacade(config);
+        createWriter();
+
+        StringBuilder expected = new StringBuilder();
+        for (int ii = 0 ; ii < 750 ; ii++)
+        {
+            String message = String.valueOf(ii);
+            expected.append(message).append("\n");
+            writer.addMessage(new LogMessage(System.currentTimeMillis(), message));
+        }
+
+        waitForWriterThread();
+
+        assertEquals("putRecords() invocationCount",                1,                  mock.putRecordsInvocationCount);
+        assertEquals("putRecords() batch size",                     1,                  mock.putRecordsBatch.size());
+        assertEquals("putRecords() record content",                 expected.toString(),    mock.putRecordsBatch.get(0).getMessage());
+        assertEquals("no unsent messages remain on queue",          0,                  messageQueue.size());
+
+        assertStatisticsTotalMessagesSent(750);
+    }
+
+
+    @Test
+    public void testSynchronousOperation() throws Exception
+    {
+        config.setSynchronousMode(true);
+        mock = new MockFirehoseFacade(config);
+
+        createWriter();
+
+        assertTrue("writer is running",                             writer.isRunning());
+        assertTrue("writer is in synchronous mode",                 writer.isSynchronous());
+        assertSame("writer initialized on main thread",             Thread.currentThread(),     writerThread);
+
+        ((TestableFirehoseLogWriter)writer).disableThreadSynchronization();
+
+        writer.addMessage(new LogMessage(0, "message one"));
+        writer.addMessage(new LogMessage(0, "message two"));
+
+        assertEquals("messages have been removed from queue",       0,                          messageQueue.size());
+        assertEquals("putRecords() invocationCount",                2,                          mock.putRecordsInvocationCount);
+        assertSame("putRecords() thread",                           Thread.currentThread(),     mock.putRecordsThread);
+        assertEquals("putRecords() last message",                   "message two",              mock.putRecordsBatch.get(0).getMessage());
+    }
+}
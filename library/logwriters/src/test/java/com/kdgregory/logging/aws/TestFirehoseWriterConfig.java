@@ -0,0 +1,89 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.kdgregory.logging.aws;
+
+import java.util.List;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import net.sf.kdgcommons.lang.StringUtil;
+
+import com.kdgregory.logging.aws.firehose.FirehoseWriterConfig;
+
+
+/**
+ *  Verifies validation logic.
+ */
+public class TestFirehoseWriterConfig
+{
+    @Test
+    public void testValidateMinimal() throws Exception
+    {
+        FirehoseWriterConfig config = new FirehoseWriterConfig()
+                                      .setStreamName("Valid_Stream.Name-");
+
+        List<String> result = config.validate();
+        assertEquals("config should be valid", 0, result.size());
+    }
+
+
+    @Test
+    public void testValidateMissingValues() throws Exception
+    {
+        FirehoseWriterConfig config = new FirehoseWriterConfig();
+
+        List<String> result = config.validate();
+        assertEquals("number of messages",  1,                          result.size());
+        assertEquals("message 0",           "missing stream name",      result.get(0));
+    }
+
+
+    @Test
+    public void testValidateBlankValues() throws Exception
+    {
+        FirehoseWriterConfig config = new FirehoseWriterConfig()
+                                      .setStreamName("");
+
+        List<String> result = config.validate();
+        assertEquals("number of messages",  1,                          result.size());
+        assertEquals("message 0",           "blank stream name",        result.get(0));
+    }
+
+
+    @Test
+    public void testValidateOverlongValues() throws Exception
+    {
+        FirehoseWriterConfig config = new FirehoseWriterConfig()
+                                      .setStreamName(StringUtil.repeat('X', 65));
+
+        List<String> result = config.validate();
+        assertEquals("number of messages",  1,                          result.size());
+        assertEquals("message 0",           "stream name too long",     result.get(0));
+    }
+
+
+    @Test
+    public void testValidateInvalidValues() throws Exception
+    {
+        FirehoseWriterConfig config = new FirehoseWriterConfig()
+                                      .setStreamName("I'm Not Valid!");
+
+        List<String> result = config.validate();
+        assertEquals("number of messages",  1,                                      result.size());
+        assertEquals("message 0",           "invalid stream name: I'm Not Valid!",  result.get(0));
+    }
+}
@@ -0,0 +1,574 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.kdgregory.logging.aws;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import net.sf.kdgcommons.lang.ClassUtil;
+import static net.sf.kdgcommons.test.StringAsserts.*;
+
+import com.kdgregory.logging.aws.facade.S3Facade;
+import com.kdgregory.logging.aws.facade.S3FacadeException;
+import com.kdgregory.logging.aws.facade.S3FacadeException.ReasonCode;
+import com.kdgregory.logging.aws.s3.S3LogWriter;
+import com.kdgregory.logging.aws.s3.S3WriterConfig;
+import com.kdgregory.logging.aws.s3.S3WriterStatistics;
+import com.kdgregory.logging.common.LogMessage;
+import com.kdgregory.logging.common.LogWriter;
+import com.kdgregory.logging.common.util.DefaultThreadFactory;
+import com.kdgregory.logging.common.util.InternalLogger;
+import com.kdgregory.logging.common.util.MessageQueue;
+import com.kdgregory.logging.common.util.MessageQueue.DiscardAction;
+import com.kdgregory.logging.common.util.WriterFactory;
+import com.kdgregory.logging.testhelpers.MockS3Facade;
+import com.kdgregory.logging.testhelpers.s3.TestableS3LogWriter;
+
+
+/**
+ *  Performs mock-facade testing of <code>S3LogWriter</code>.
+ *  <p>
+ *  The goal of these tests is to verify the buffering, rollover, and upload logic
+ *  of the writer.
+ */
+public class TestS3LogWriter
+extends AbstractLogWriterTest<S3LogWriter,S3WriterConfig,S3WriterStatistics>
+{
+    private final static String DEFAULT_BUCKET_NAME     = "argle";
+    private final static String DEFAULT_KEY_TEMPLATE    = "logs/{sequence}.ndjson.gz";
+
+    private MockS3Facade mock;
+
+//----------------------------------------------------------------------------
+//  Support Code
+//----------------------------------------------------------------------------
+
+    /**
+     *  Creates a new writer and starts it on a background thread. This uses
+     *  the current configuration and mock instance.
+     */
+    private void createWriter()
+    throws Exception
+    {
+        final S3Facade facade = mock;
+        WriterFactory<S3WriterConfig,S3WriterStatistics> writerFactory
+            = new WriterFactory<S3WriterConfig,S3WriterStatistics>()
+            {
+                @Override
+                public LogWriter newLogWriter(
+                        S3WriterConfig passedConfig,
+                        S3WriterStatistics passedStats,
+                        InternalLogger passedLogger)
+                {
+                    return new TestableS3LogWriter(passedConfig, passedStats, passedLogger, facade);
+                }
+            };
+
+        super.createWriter(writerFactory);
+    }
+
+
+    /**
+     *  Creates a new writer whose thread isn't blocked by the test semaphores. This
+     *  is used for tests that flush or stop the writer.
+     */
+    private void createUnsynchronizedWriter()
+    throws Exception
+    {
+        TestableS3LogWriter testableWriter = new TestableS3LogWriter(config, stats, internalLogger, mock);
+        testableWriter.disableThreadSynchronization();
+        writer = testableWriter;
+        messageQueue = ClassUtil.getFieldValue(writer, "messageQueue", MessageQueue.class);
+
+        new DefaultThreadFactory("test").startWriterThread(writer, defaultUncaughtExceptionHandler);
+        assertTrue("writer initialized",                            writer.waitUntilInitialized(5000));
+        writerThread = testableWriter.writerThread;
+    }
+
+
+    /**
+     *  A convenience function that knows the writer supports a semaphore (so
+     *  that we don't need to cast within testcases).
+     */
+    private void waitForWriterThread()
+    throws Exception
+    {
+        ((TestableS3LogWriter)writer).waitForWriterThread();
+    }
+
+
+    /**
+     *  Returns the decompressed content of an uploaded object.
+     */
+    private String uploadedContent(String key)
+    throws Exception
+    {
+        byte[] content = mock.uploads.get(key);
+        assertNotNull("object was uploaded: " + key, content);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(content)))
+        {
+            byte[] buf = new byte[8192];
+            int count;
+            while ((count = in.read(buf)) > 0)
+            {
+                out.write(buf, 0, count);
+            }
+        }
+        return new String(out.toByteArray(), "UTF-8");
+    }
+
+//----------------------------------------------------------------------------
+//  JUnit scaffolding
+//----------------------------------------------------------------------------
+
+    @Before
+    public void setUp()
+    {
+        config = new S3WriterConfig()
+                 .setBucketName(DEFAULT_BUCKET_NAME)
+                 .setKeyTemplate(DEFAULT_KEY_TEMPLATE)
+                 .setBatchDelay(100)
+                 .setDiscardThreshold(10000)
+                 .setDiscardAction(DiscardAction.oldest)
+                 .setUseShutdownHook(false)
+                 .setInitializationTimeout(250);
+
+        stats = new S3WriterStatistics();
+        mock = new MockS3Facade();
+    }
+
+
+    @After
+    public void tearDown()
+    throws Throwable
+    {
+        if (writer != null)
+        {
+            writer.stop();
+            ((TestableS3LogWriter)writer).releaseWriterThread();
+        }
+
+        if (uncaughtException != null)
+            throw uncaughtException;
+    }
+
+//----------------------------------------------------------------------------
+//  Testcases
+//----------------------------------------------------------------------------
+
+    @Test
+    public void testInitialization() throws Exception
+    {
+        config.setBatchDelay(123)
+              .setDiscardThreshold(456)
+              .setDiscardAction(DiscardAction.newest);
+
+        createWriter();
+
+        assertTrue("writer is running", writer.isRunning());
+
+        assertEquals("writer batch delay",                          123L,                       writer.getBatchDelay());
+        assertEquals("message queue discard policy",                DiscardAction.newest,       messageQueue.getDiscardAction());
+        assertEquals("message queue discard threshold",             456,                        messageQueue.getDiscardThreshold());
+
+        assertEquals("stats: actual bucket name",                   DEFAULT_BUCKET_NAME,        stats.getActualBucketName());
+        assertEquals("stats: objects written",                      0,                          stats.getObjectsWritten());
+
+        internalLogger.assertInternalDebugLog(
+                        "log writer starting.*",
+                        "writing to bucket: " + DEFAULT_BUCKET_NAME,
+                        "log writer initialization complete.*");
+        internalLogger.assertInternalWarningLog();
+        internalLogger.assertInternalErrorLog();
+    }
+
+
+    @Test
+    public void testInitializationInvalidConfiguration() throws Exception
+    {
+        config = new S3WriterConfig();
+
+        createWriter();
+
+        assertFalse("writer is running", writer.isRunning());
+
+        internalLogger.assertInternalDebugLog(
+                            "log writer starting.*");
+        internalLogger.assertInternalWarningLog();
+        internalLogger.assertInternalErrorLog(
+                            "configuration error: missing bucket name",
+                            "log writer failed to initialize.*");
+    }
+
+
+    @Test
+    public void testRolloverByTime() throws Exception
+    {
+        config.setRolloverInterval(200);
+        createWriter();
+
+        writer.addMessage(new LogMessage(System.currentTimeMillis(), "message one"));
+        writer.addMessage(new LogMessage(System.currentTimeMillis(), "message two\n"));
+
+        waitForWriterThread();
+
+        assertEquals("nothing uploaded after first batch",          0,                          mock.uploads.size());
+        assertStatisticsTotalMessagesSent(2);
+        assertEquals("statistics: last batch messages sent",        2,                          stats.getMessagesSentLastBatch());
+
+        writer.addMessage(new LogMessage(System.currentTimeMillis(), "message three"));
+
+        waitForWriterThread();
+
+        assertEquals("nothing uploaded after second batch",         0,                          mock.uploads.size());
+        assertStatisticsTotalMessagesSent(3);
+
+        // the writer wakes up at the deadline even though there aren't any messages
+        Thread.sleep(250);
+        waitForWriterThread();
+
+        assertEquals("putObject() invocationCount",                 1,                          mock.putObjectInvocationCount);
+        assertEquals("startMultipartUpload() invocationCount",      0,                          mock.startMultipartUploadInvocationCount);
+        assertEquals("uploaded content",                            "message one\nmessage two\nmessage three\n",
+                                                                    uploadedContent("logs/0.ndjson.gz"));
+        assertEquals("stats: objects written",                      1,                          stats.getObjectsWritten());
+        assertEquals("stats: last object key",                      "logs/0.ndjson.gz",         stats.getLastObjectKey());
+
+        // the next message starts a new object
+
+        writer.addMessage(new LogMessage(System.currentTimeMillis(), "message four"));
+        waitForWriterThread();
+        Thread.sleep(250);
+        waitForWriterThread();
+
+        assertEquals("putObject() invocationCount",                 2,                          mock.putObjectInvocationCount);
+        assertEquals("uploaded content, second object",             "message four\n",           uploadedContent("logs/1.ndjson.gz"));
+        assertEquals("stats: objects written",                      2,                          stats.getObjectsWritten());
+
+        internalLogger.assertInternalWarningLog();
+        internalLogger.assertInternalErrorLog();
+    }
+
+
+    @Test
+    public void testRolloverBySize() throws Exception
+    {
+        config.setRolloverSize(1);
+        createWriter();
+
+        writer.addMessage(new LogMessage(System.currentTimeMillis(), "message one"));
+        writer.addMessage(new LogMessage(System.currentTimeMillis(), "message two"));
+
+        waitForWriterThread();
+
+        assertEquals("putObject() invocationCount",                 1,                          mock.putObjectInvocationCount);
+        assertEquals("uploaded content",                            "message one\nmessage two\n",
+                                                                    uploadedContent("logs/0.ndjson.gz"));
+
+        writer.addMessage(new LogMessage(System.currentTimeMillis(), "message three"));
+
+        waitForWriterThread();
+
+        assertEquals("putObject() invocationCount",                 2,                          mock.putObjectInvocationCount);
+        assertEquals("uploaded content, second object",             "message three\n",          uploadedContent("logs/1.ndjson.gz"));
+        assertEquals("stats: objects written",                      2,                          stats.getObjectsWritten());
+        assertEquals("stats: last object key",                      "logs/1.ndjson.gz",         stats.getLastObjectKey());
+    }
+
+
+    @Test
+    public void testMultipartUpload() throws Exception
+    {
+        // random data doesn't compress well, so a few batches will give us multiple parts
+
+        Random rnd = new Random();
+        List<String> messages = new ArrayList<String>();
+        StringBuilder expected = new StringBuilder();
+        for (int ii = 0 ; ii < 12 ; ii++)
+        {
+            byte[] data = new byte[700000];
+            rnd.nextBytes(data);
+            String message = Base64.getEncoder().encodeToString(data);
+            messages.add(message);
+            expected.append(message).append("\n");
+        }
+
+        createUnsynchronizedWriter();
+
+        for (String message : messages)
+        {
+            writer.addMessage(new LogMessage(System.currentTimeMillis(), message));
+        }
+
+        assertTrue("flush succeeded",                                                           writer.flush(10000));
+
+        assertEquals("startMultipartUpload() invocationCount",      1,                          mock.startMultipartUploadInvocationCount);
+        assertTrue("uploadPart() invocationCount",                                              mock.uploadPartInvocationCount >= 2);
+        assertEquals("completeMultipartUpload() invocationCount",   1,                          mock.completeMultipartUploadInvocationCount);
+        assertEquals("putObject() invocationCount",                 0,                          mock.putObjectInvocationCount);
+        assertEquals("uploaded content",                            expected.toString(),        uploadedContent("logs/0.ndjson.gz"));
+        assertEquals("stats: objects written",                      1,                          stats.getObjectsWritten());
+        assertStatisticsTotalMessagesSent(12);
+
+        internalLogger.assertInternalWarningLog();
+        internalLogger.assertInternalErrorLog();
+    }
+
+
+    @Test
+    public void testFlush() throws Exception
+    {
+        // a batch delay that's long enough to fail the test if flush waits for it
+        config.setBatchDelay(10000);
+        createUnsynchronizedWriter();
+
+        writer.addMessage(new LogMessage(System.currentTimeMillis(), "message one"));
+        writer.addMessage(new LogMessage(System.currentTimeMillis(), "message two"));
+
+        assertTrue("flush succeeded",                                                           writer.flush(1000));
+
+        assertEquals("putObject() invocationCount",                 1,                          mock.putObjectInvocationCount);
+        assertEquals("uploaded content",                            "message one\nmessage two\n",
+                                                                    uploadedContent("logs/0.ndjson.gz"));
+        assertEquals("stats: objects written",                      1,                          stats.getObjectsWritten());
+    }
+
+
+    @Test
+    public void testShutdown() throws Exception
+    {
+        createUnsynchronizedWriter();
+
+        writer.addMessage(new LogMessage(System.currentTimeMillis(), "message one"));
+        writer.addMessage(new LogMessage(System.currentTimeMillis(), "message two"));
+
+        writer.stop();
+        joinWriterThread();
+
+        assertEquals("putObject() invocationCount",                 1,                          mock.putObjectInvocationCount);
+        assertEquals("uploaded content",                            "message one\nmessage two\n",
+                                                                    uploadedContent("logs/0.ndjson.gz"));
+        assertEquals("shutdown() invocationCount",                  1,                          mock.shutdownInvocationCount);
+
+        internalLogger.assertInternalWarningLog();
+        internalLogger.assertInternalErrorLog();
+    }
+
+
+    @Test
+    public void testUploadRetry() throws Exception
+    {
+        config.setRolloverSize(1);
+        mock = new MockS3Facade()
+        {
+            @Override
+            public void putObject(String key, byte[] content)
+            {
+                if (putObjectInvocationCount == 0)
+                {
+                    putObjectInvocationCount++;
+                    throw new S3FacadeException(ReasonCode.THROTTLING, true, null);
+                }
+                super.putObject(key, content);
+            }
+        };
+        createWriter();
+
+        writer.addMessage(new LogMessage(System.currentTimeMillis(), "message one"));
+
+        waitForWriterThread();
+
+        assertEquals("putObject() invocationCount",                 1,                          mock.putObjectInvocationCount);
+        assertEquals("nothing uploaded",                            0,                          mock.uploads.size());
+        assertEquals("stats: throttled writes",                     1,                          stats.getThrottledWrites());
+        assertEquals("stats: objects written",                      0,                          stats.getObjectsWritten());
+
+        // the next message waits for the retry
+
+        writer.addMessage(new LogMessage(System.currentTimeMillis(), "message two"));
+
+        waitForWriterThread();
+
+        assertEquals("putObject() invocationCount",                 3,                          mock.putObjectInvocationCount);
+        assertEquals("first object",                                "message one\n",            uploadedContent("logs/0.ndjson.gz"));
+        assertEquals("second object",                               "message two\n",            uploadedContent("logs/1.ndjson.gz"));
+        assertEquals("stats: objects written",                      2,                          stats.getObjectsWritten());
+        assertStatisticsTotalMessagesSent(2);
+
+        internalLogger.assertInternalWarningLog(
+                        "unable to upload logs/0.ndjson.gz; will retry.*");
+        internalLogger.assertInternalErrorLog();
+    }
+
+
+    @Test
+    public void testUploadFailure() throws Exception
+    {
+        final RuntimeException cause = new RuntimeException("something");
+
+        config.setRolloverSize(1);
+        mock = new MockS3Facade()
+        {
+            @Override
+            public void putObject(String key, byte[] content)
+            {
+                if (putObjectInvocationCount == 0)
+                {
+                    putObjectInvocationCount++;
+                    throw new S3FacadeException(ReasonCode.MISSING_BUCKET, false, cause);
+                }
+                super.putObject(key, content);
+            }
+        };
+        createWriter();
+
+        writer.addMessage(new LogMessage(System.currentTimeMillis(), "message one"));
+        writer.addMessage(new LogMessage(System.currentTimeMillis(), "message two"));
+
+        waitForWriterThread();
+
+        assertEquals("putObject() invocationCount",                 1,                          mock.putObjectInvocationCount);
+        assertEquals("nothing uploaded",                            0,                          mock.uploads.size());
+        assertEquals("stats: objects written",                      0,                          stats.getObjectsWritten());
+
+        writer.addMessage(new LogMessage(System.currentTimeMillis(), "message three"));
+
+        waitForWriterThread();
+
+        assertEquals("putObject() invocationCount",                 2,                          mock.putObjectInvocationCount);
+        assertEquals("failed object was not uploaded",              null,                       mock.uploads.get("logs/0.ndjson.gz"));
+        assertEquals("next object",                                 "message three\n",          uploadedContent("logs/1.ndjson.gz"));
+
+        internalLogger.assertInternalWarningLog();
+        internalLogger.assertInternalErrorLog(
+                        "unable to upload logs/0.ndjson.gz; discarding 2 message\\(s\\)");
+        assertUltimateCause("reported underlying exception", cause, internalLogger.errorExceptions.get(0));
+        assertStatisticsErrorMessage("unable to upload logs/0.ndjson.gz; discarding 2 message\\(s\\)");
+    }
+
+
+    @Test
+    public void testMultipartUploadFailure() throws Exception
+    {
+        Random rnd = new Random();
+        mock = new MockS3Facade()
+        {
+            @Override
+            public String uploadPart(String key, String uploadId, int partNumber, byte[] content)
+            {
+                uploadPartInvocationCount++;
+                throw new S3FacadeException(ReasonCode.UNEXPECTED_EXCEPTION, false, null);
+            }
+        };
+        createWriter();
+
+        for (int ii = 0 ; ii < 8 ; ii++)
+        {
+            byte[] data = new byte[700000];
+            rnd.nextBytes(data);
+            writer.addMessage(new LogMessage(System.currentTimeMillis(), Base64.getEncoder().encodeToString(data)));
+        }
+
+        waitForWriterThread();
+
+        assertEquals("startMultipartUpload() invocationCount",      1,                          mock.startMultipartUploadInvocationCount);
+        assertEquals("uploadPart() invocationCount",                1,                          mock.uploadPartInvocationCount);
+        assertEquals("abortMultipartUpload() invocationCount",      1,                          mock.abortMultipartUploadInvocationCount);
+        assertEquals("no pending uploads",                          0,                          mock.pendingParts.size());
+
+        internalLogger.assertInternalErrorLog(
+                        "unable to upload logs/0.ndjson.gz; discarding 8 message\\(s\\)");
+    }
+
+
+    @Test
+    public void testMultipartUploadTransientFailure() throws Exception
+    {
+        // a network error on one part must not discard the object
+
+        Random rnd = new Random();
+        List<String> messages = new ArrayList<String>();
+        StringBuilder expected = new StringBuilder();
+        for (int ii = 0 ; ii < 8 ; ii++)
+        {
+            byte[] data = new byte[700000];
+            rnd.nextBytes(data);
+            String message = Base64.getEncoder().encodeToString(data);
+            messages.add(message);
+            expected.append(message).append("\n");
+        }
+
+        mock = new MockS3Facade()
+        {
+            @Override
+            public String uploadPart(String key, String uploadId, int partNumber, byte[] content)
+            {
+                if (uploadPartInvocationCount == 0)
+                {
+                    uploadPartInvocationCount++;
+                    throw new S3FacadeException(ReasonCode.UNEXPECTED_EXCEPTION, true, new RuntimeException("connection reset"));
+                }
+                return super.uploadPart(key, uploadId, partNumber, content);
+            }
+        };
+        createUnsynchronizedWriter();
+
+        for (String message : messages)
+        {
+            writer.addMessage(new LogMessage(System.currentTimeMillis(), message));
+        }
+
+        assertTrue("flush succeeded",                                                           writer.flush(10000));
+
+        assertTrue("uploadPart() was retried",                                                  mock.uploadPartInvocationCount >= 2);
+        assertEquals("abortMultipartUpload() invocationCount",      0,                          mock.abortMultipartUploadInvocationCount);
+        assertEquals("completeMultipartUpload() invocationCount",   1,                          mock.completeMultipartUploadInvocationCount);
+        assertEquals("uploaded content",                            expected.toString(),        uploadedContent("logs/0.ndjson.gz"));
+        assertEquals("stats: objects written",                      1,                          stats.getObjectsWritten());
+        assertStatisticsTotalMessagesSent(8);
+
+        internalLogger.assertInternalWarningLog(
+                        "unable to upload logs/0.ndjson.gz; will retry.*");
+        internalLogger.assertInternalErrorLog();
+    }
+
+
+    @Test
+    public void testKeySubstitutions() throws Exception
+    {
+        config.setKeyTemplate("{date}/{pid}-{sequence}.gz")
+              .setRolloverSize(1);
+        createWriter();
+
+        writer.addMessage(new LogMessage(System.currentTimeMillis(), "message one"));
+
+        waitForWriterThread();
+
+        assertRegex("key",                                          "\\d{8}/\\d+-0.gz",         stats.getLastObjectKey());
+    }
+}
@@ -0,0 +1,99 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.kdgregory.logging.aws;
+
+import java.util.List;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import com.kdgregory.logging.aws.s3.S3WriterConfig;
+
+
+/**
+ *  Verifies validation logic.
+ */
+public class TestS3WriterConfig
+{
+    @Test
+    public void testValidateMinimal() throws Exception
+    {
+        S3WriterConfig config = new S3WriterConfig()
+                                .setBucketName("valid.bucket-name");
+
+        List<String> result = config.validate();
+        assertEquals("config should be valid", 0, result.size());
+    }
+
+
+    @Test
+    public void testValidateMissingValues() throws Exception
+    {
+        S3WriterConfig config = new S3WriterConfig()
+                                .setKeyTemplate(null);
+
+        List<String> result = config.validate();
+        assertEquals("number of messages",  2,                          result.size());
+        assertEquals("message 0",           "missing bucket name",      result.get(0));
+        assertEquals("message 1",           "missing key template",     result.get(1));
+    }
+
+
+    @Test
+    public void testValidateBlankValues() throws Exception
+    {
+        S3WriterConfig config = new S3WriterConfig()
+                                .setBucketName("")
+                                .setKeyTemplate("");
+
+        List<String> result = config.validate();
+        assertEquals("number of messages",  2,                          result.size());
+        assertEquals("message 0",           "blank bucket name",        result.get(0));
+        assertEquals("message 1",           "missing key template",     result.get(1));
+    }
+
+
+    @Test
+    public void testValidateInvalidValues() throws Exception
+    {
+        S3WriterConfig config = new S3WriterConfig()
+                                .setBucketName("Not_Valid")
+                                .setRolloverSize(0)
+                                .setRolloverInterval(-1)
+                                .setSynchronousMode(true)
+                                .setOversizeS3Bucket("example");
+
+        List<String> result = config.validate();
+        assertEquals("number of messages",  5,                                      result.size());
+        assertEquals("message 0",           "invalid bucket name: Not_Valid",       result.get(0));
+        assertEquals("message 1",           "invalid rollover size: 0",             result.get(1));
+        assertEquals("message 2",           "invalid rollover interval: -1",        result.get(2));
+        assertEquals("message 3",           "synchronous mode is not supported",    result.get(3));
+        assertEquals("message 4",           "oversize message upload is not supported", result.get(4));
+    }
+
+
+    @Test
+    public void testValidateBucketNameLength() throws Exception
+    {
+        S3WriterConfig config = new S3WriterConfig()
+                                .setBucketName("ab");
+
+        List<String> result = config.validate();
+        assertEquals("number of messages",  1,                                      result.size());
+        assertEquals("message 0",           "invalid bucket name length: ab",       result.get(0));
+    }
+}
@@ -0,0 +1,693 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.kdgregory.logging.aws;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import net.sf.kdgcommons.lang.StringUtil;
+
+import com.kdgregory.logging.aws.facade.SQSFacade;
+import com.kdgregory.logging.aws.facade.SQSFacadeException;
+import com.kdgregory.logging.aws.facade.SQSFacadeException.ReasonCode;
+import com.kdgregory.logging.aws.sqs.SQSConstants;
+import com.kdgregory.logging.aws.sqs.SQSLogWriter;
+import com.kdgregory.logging.aws.sqs.SQSWriterConfig;
+import com.kdgregory.logging.aws.sqs.SQSWriterStatistics;
+import com.kdgregory.logging.common.LogMessage;
+import com.kdgregory.logging.common.LogWriter;
+import com.kdgregory.logging.common.util.InternalLogger;
+import com.kdgregory.logging.common.util.MessageQueue.DiscardAction;
+import com.kdgregory.logging.common.util.WriterFactory;
+import com.kdgregory.logging.testhelpers.sqs.MockSQSFacade;
+import com.kdgregory.logging.testhelpers.sqs.TestableSQSLogWriter;
+
+
+/**
+ *  Performs mock-facade testing of <code>SQSLogWriter</code>.
+ *  <p>
+ *  The goal of these tests is to verify the invocaton and retry logic of the writer.
+ */
+public class TestSQSLogWriter
+extends AbstractLogWriterTest<SQSLogWriter,SQSWriterConfig,SQSWriterStatistics>
+{
+    private final static String DEFAULT_QUEUE_NAME      = "argle";
+    private final static String DEFAULT_QUEUE_URL       = MockSQSFacade.DEFAULT_QUEUE_URL + DEFAULT_QUEUE_NAME;
+
+    private MockSQSFacade mock;
+
+//----------------------------------------------------------------------------
+//  Support Code
+//----------------------------------------------------------------------------
+
+    /**
+     *  Creates a new writer and starts it on a background thread. This uses
+     *  the current configuration and mock instance.
+     */
+    private void createWriter()
+    throws Exception
+    {
+        final SQSFacade facade = mock.newInstance();
+        WriterFactory<SQSWriterConfig,SQSWriterStatistics> writerFactory
+            = new WriterFactory<SQSWriterConfig,SQSWriterStatistics>()
+            {
+                @Override
+                public LogWriter newLogWriter(
+                        SQSWriterConfig passedConfig,
+                        SQSWriterStatistics passedStats,
+                        InternalLogger passedLogger)
+                {
+                    return new TestableSQSLogWriter(passedConfig, passedStats, passedLogger, facade);
+                }
+            };
+
+        super.createWriter(writerFactory);
+    }
+
+
+    /**
+     *  A convenience function that knows the writer supports a semaphore (so
+     *  that we don't need to cast within testcases).
+     */
+    private void waitForWriterThread()
+    throws Exception
+    {
+        ((TestableSQSLogWriter)writer).waitForWriterThread();
+    }
+
+
+    /**
+     *  Extracts the text of the passed messages, sorted by their numeric value
+     *  (concurrent requests may be recorded in any order).
+     */
+    private static List<String> sortedMessageText(List<LogMessage> messages)
+    {
+        return messages.stream()
+               .map(LogMessage::getMessage)
+               .sorted((s1, s2) -> Integer.parseInt(s1) - Integer.parseInt(s2))
+               .collect(Collectors.toList());
+    }
+
+//----------------------------------------------------------------------------
+//  JUnit scaffolding
+//----------------------------------------------------------------------------
+
+    @Before
+    public void setUp()
+    {
+        config = new SQSWriterConfig()
+                 .setQueueName(DEFAULT_QUEUE_NAME)
+                 .setBatchDelay(100)
+                 .setDiscardThreshold(10000)
+                 .setDiscardAction(DiscardAction.oldest)
+                 .setUseShutdownHook(false)
+                 .setInitializationTimeout(250);
+
+        stats = new SQSWriterStatistics();
+    }
+
+
+    @After
+    public void tearDown()
+    throws Throwable
+    {
+        if (writer != null)
+        {
+            writer.stop();
+            ((TestableSQSLogWriter)writer).releaseWriterThread();
+        }
+
+        if (uncaughtException != null)
+            throw uncaughtException;
+    }
+
+//----------------------------------------------------------------------------
+//  Testcases
+//----------------------------------------------------------------------------
+
+    @Test
+    public void testInitialization() throws Exception
+    {
+        config.setBatchDelay(123)
+              .setDiscardThreshold(456)
+              .setDiscardAction(DiscardAction.newest);
+
+        mock = new MockSQSFacade(config);
+        createWriter();
+
+        assertTrue("writer is running", writer.isRunning());
+
+        assertEquals("retrieveQueueUrl() invocationCount",          1,                          mock.retrieveQueueUrlInvocationCount);
+
+        assertEquals("writer batch delay",                          123L,                       writer.getBatchDelay());
+        assertEquals("message queue discard policy",                DiscardAction.newest,       messageQueue.getDiscardAction());
+        assertEquals("message queue discard threshold",             456,                        messageQueue.getDiscardThreshold());
+
+        assertEquals("stats: actual queue name",                    DEFAULT_QUEUE_NAME,         stats.getActualQueueName());
+        assertEquals("stats: actual queue URL",                     DEFAULT_QUEUE_URL,          stats.getActualQueueUrl());
+
+        internalLogger.assertInternalDebugLog(
+                        "log writer starting.*",
+                        "retrieving URL for queue: " + DEFAULT_QUEUE_NAME,
+                        "log writer initialization complete.*");
+        internalLogger.assertInternalWarningLog();
+        internalLogger.assertInternalErrorLog();
+    }
+
+
+    @Test
+    public void testInitializationInvalidConfiguration() throws Exception
+    {
+        config = new SQSWriterConfig();
+
+        mock = new MockSQSFacade(config);
+        createWriter();
+
+        assertFalse("writer is running", writer.isRunning());
+
+        assertEquals("retrieveQueueUrl() invocationCount",          0,                          mock.retrieveQueueUrlInvocationCount);
+
+        internalLogger.assertInternalDebugLog(
+                            "log writer starting.*");
+        internalLogger.assertInternalWarningLog();
+        internalLogger.assertInternalErrorLog(
+                            "configuration error: missing queue name",
+                            "log writer failed to initialize.*");
+    }
+
+
+    @Test
+    public void testMissingQueue() throws Exception
+    {
+        mock = new MockSQSFacade(config)
+        {
+            @Override
+            public String retrieveQueueUrl()
+            {
+                throw new SQSFacadeException(ReasonCode.MISSING_QUEUE, false, null);
+            }
+        };
+        createWriter();
+
+        assertFalse("writer is running", writer.isRunning());
+
+        assertEquals("retrieveQueueUrl() invocationCount",          1,                          mock.retrieveQueueUrlInvocationCount);
+        assertEquals("stats: actual queue URL",                     null,                       stats.getActualQueueUrl());
+
+        internalLogger.assertInternalDebugLog(
+                        "log writer starting.*",
+                        "retrieving URL for queue: " + DEFAULT_QUEUE_NAME);
+        internalLogger.assertInternalWarningLog();
+        internalLogger.assertInternalErrorLog(
+                        "queue \"" + DEFAULT_QUEUE_NAME + "\" does not exist",
+                        "log writer failed to initialize.*");
+    }
+
+
+    @Test
+    public void testInitializationTimeout() throws Exception
+    {
+        mock = new MockSQSFacade(config)
+        {
+            @Override
+            public String retrieveQueueUrl()
+            {
+                // indicates throttling
+                return null;
+            }
+        };
+        createWriter();
+
+        assertFalse("writer is running", writer.isRunning());
+
+        // number of invocations is based on the RetryManager config in TestableSQSLogWriter
+        assertEquals("retrieveQueueUrl() invocationCount",          5,                          mock.retrieveQueueUrlInvocationCount);
+
+        internalLogger.assertInternalWarningLog();
+        internalLogger.assertInternalErrorLog(
+                        "timeout retrieving URL for queue \"" + DEFAULT_QUEUE_NAME + "\"",
+                        "log writer failed to initialize.*");
+    }
+
+
+    @Test
+    public void testInitializationException() throws Exception
+    {
+        mock = new MockSQSFacade(config)
+        {
+            @Override
+            public String retrieveQueueUrl()
+            {
+                throw new RuntimeException("standin for network timeout SDK exception");
+            }
+        };
+        createWriter();
+
+        assertFalse("writer is running", writer.isRunning());
+
+        assertEquals("retrieveQueueUrl() invocationCount",          1,                          mock.retrieveQueueUrlInvocationCount);
+        assertEquals("message queue discard threshold reduced",     0,                          messageQueue.getDiscardThreshold());
+
+        internalLogger.assertInternalWarningLog();
+        internalLogger.assertInternalErrorLog(
+                        "exception during initialization.*",
+                        "log writer failed to initialize.*");
+    }
+
+
+    @Test
+    public void testWriteHappyPath() throws Exception
+    {
+        mock = new MockSQSFacade(config);
+        createWriter();
+
+        writer.addMessage(new LogMessage(System.currentTimeMillis(), "message one"));
+        writer.addMessage(new LogMessage(System.currentTimeMillis(), "message two"));
+        waitForWriterThread();
+
+        assertEquals("sendMessages() invocationCount",              1,                          mock.sendMessagesInvocationCount);
+        assertEquals("sendMessages() queue URL",                    DEFAULT_QUEUE_URL,          mock.sendMessagesQueueUrl);
+        assertFalse("sendMessages() not called on main thread",                                 mock.sendMessagesThreads.contains(Thread.currentThread()));
+        assertEquals("sendMessages() batch size",                   2,                          mock.sendMessagesBatch.size());
+        assertEquals("sendMessages() first message",                "message one",              mock.sendMessagesBatch.get(0).getMessage());
+        assertEquals("sendMessages() second message",               "message two",              mock.sendMessagesBatch.get(1).getMessage());
+
+        assertStatisticsTotalMessagesSent(2);
+        assertEquals("statistics: last batch size",                 2,                          stats.getLastBatchSize());
+        assertEquals("statistics: last batch messages sent",        2,                          stats.getMessagesSentLastBatch());
+        assertEquals("statistics: last batch messages requeued",    0,                          stats.getMessagesRequeuedLastBatch());
+
+        internalLogger.assertInternalWarningLog();
+        internalLogger.assertInternalErrorLog();
+    }
+
+
+    @Test
+    public void testWritePartial() throws Exception
+    {
+        mock = new MockSQSFacade(config)
+        {
+            @Override
+            public List<LogMessage> sendMessages(String queueUrl, List<LogMessage> batch)
+            {
+                return (batch.size() < 2)
+                     ? Collections.emptyList()
+                     : batch.subList(2, batch.size());
+            }
+        };
+        createWriter();
+
+        writer.addMessage(new LogMessage(System.currentTimeMillis(), "message one"));
+        writer.addMessage(new LogMessage(System.currentTimeMillis(), "message two"));
+        writer.addMessage(new LogMessage(System.currentTimeMillis(), "message three"));
+        writer.addMessage(new LogMessage(System.currentTimeMillis(), "message four"));
+        waitForWriterThread();
+
+        assertEquals("sendMessages() invocationCount",              1,                          mock.sendMessagesInvocationCount);
+        assertEquals("sendMessages() batch size",                   4,                          mock.sendMessagesBatch.size());
+
+        assertStatisticsTotalMessagesSent(2);
+        assertEquals("statistics: last batch messages sent",        2,                          stats.getMessagesSentLastBatch());
+        assertEquals("statistics: last batch messages requeued",    2,                          stats.getMessagesRequeuedLastBatch());
+
+        waitForWriterThread();
+
+        assertEquals("sendMessages() invocationCount",              2,                          mock.sendMessagesInvocationCount);
+        assertEquals("sendMessages() batch size",                   2,                          mock.sendMessagesBatch.size());
+        assertEquals("sendMessages() first message",                "message three",            mock.sendMessagesBatch.get(0).getMessage());
+        assertEquals("sendMessages() second message",               "message four",             mock.sendMessagesBatch.get(1).getMessage());
+
+        assertStatisticsTotalMessagesSent(4);
+        assertEquals("statistics: last batch messages requeued",    0,                          stats.getMessagesRequeuedLastBatch());
+    }
+
+
+    @Test
+    public void testWriteThrottleRetry() throws Exception
+    {
+        mock = new MockSQSFacade(config)
+        {
+            @Override
+            public List<LogMessage> sendMessages(String queueUrl, List<LogMessage> batch)
+            {
+                if (sendMessagesInvocationCount == 1)
+                    throw new SQSFacadeException(ReasonCode.THROTTLING, true, null);
+                else
+                    return super.sendMessages(queueUrl, batch);
+            }
+        };
+        createWriter();
+
+        writer.addMessage(new LogMessage(System.currentTimeMillis(), "message one"));
+        writer.addMessage(new LogMessage(System.currentTimeMillis(), "message two"));
+        waitForWriterThread();
+
+        assertEquals("sendMessages() invocationCount",              2,                          mock.sendMessagesInvocationCount);
+        assertEquals("sendMessages() batch size",                   2,                          mock.sendMessagesBatch.size());
+
+        assertStatisticsTotalMessagesSent(2);
+        assertEquals("statistics: number of throttles",             1,                          stats.getThrottledWrites());
+
+        internalLogger.assertInternalWarningLog();
+        internalLogger.assertInternalErrorLog();
+    }
+
+
+    @Test
+    public void testWriteUnrecoveredThrottling() throws Exception
+    {
+        mock = new MockSQSFacade(config)
+        {
+            @Override
+            public List<LogMessage> sendMessages(String queueUrl, List<LogMessage> batch)
+            {
+                throw new SQSFacadeException(ReasonCode.THROTTLING, true, null);
+            }
+        };
+        createWriter();
+
+        writer.addMessage(new LogMessage(System.currentTimeMillis(), "message one"));
+        writer.addMessage(new LogMessage(System.currentTimeMillis(), "message two"));
+        waitForWriterThread();
+
+        // number of invocations is based on the RetryManager config in TestableSQSLogWriter
+
+        assertEquals("sendMessages() invocationCount",              4,                          mock.sendMessagesInvocationCount);
+
+        assertStatisticsTotalMessagesSent(0);
+        assertEquals("statistics: last batch messages requeued",    2,                          stats.getMessagesRequeuedLastBatch());
+        assertEquals("statistics: number of throttles",             4,                          stats.getThrottledWrites());
+
+        assertEquals("messages remain on message queuue",           2,                          messageQueue.size());
+
+        internalLogger.assertInternalWarningLog(
+                        "timeout while sending batch");
+        internalLogger.assertInternalErrorLog();
+    }
+
+
+    @Test
+    public void testWriteException() throws Exception
+    {
+        final RuntimeException cause = new RuntimeException("something");
+        mock = new MockSQSFacade(config)
+        {
+            @Override
+            public List<LogMessage> sendMessages(String queueUrl, List<LogMessage> batch)
+            {
+                throw new SQSFacadeException(ReasonCode.UNEXPECTED_EXCEPTION, false, cause);
+            }
+        };
+        createWriter();
+
+        writer.addMessage(new LogMessage(System.currentTimeMillis(), "message one"));
+        writer.addMessage(new LogMessage(System.currentTimeMillis(), "message two"));
+        waitForWriterThread();
+
+        assertEquals("sendMessages() invocationCount",              1,                          mock.sendMessagesInvocationCount);
+
+        assertStatisticsTotalMessagesSent(0);
+        assertEquals("messages remain on message queuue",           2,                          messageQueue.size());
+
+        internalLogger.assertInternalWarningLog();
+        internalLogger.assertInternalErrorLog(
+                        "exception while sending batch");
+
+        assertUltimateCause("reported underlying exception", cause, internalLogger.errorExceptions.get(0));
+    }
+
+
+    @Test
+    public void testBatchConstructionByMessageCount() throws Exception
+    {
+        config.setConcurrentRequests(4);
+        config.setDiscardAction(DiscardAction.none);
+        config.setDiscardThreshold(Integer.MAX_VALUE);
+        config.setBatchDelay(500);
+
+        mock = new MockSQSFacade(config);
+        createWriter();
+
+        List<String> expectedMessages = new ArrayList<>();
+        for (int ii = 0 ; ii < 75 ; ii++)
+        {
+            String message = String.valueOf(ii);
+            expectedMessages.add(message);
+            writer.addMessage(new LogMessage(System.currentTimeMillis(), message));
+        }
+
+        waitForWriterThread();
+
+        assertEquals("sendMessages() invocationCount",              4,                  mock.sendMessagesInvocationCount);
+        for (List<LogMessage> request : mock.sendMessagesRequests)
+        {
+            assertEquals("request size",                            10,                 request.size());
+        }
+        assertEquals("unsent messages remain on queue",             35,                 messageQueue.size());
+        assertStatisticsTotalMessagesSent(40);
+
+        waitForWriterThread();
+
+        assertEquals("sendMessages() invocationCount",              8,                  mock.sendMessagesInvocationCount);
+        assertEquals("unsent messages remain on queue",             0,                  messageQueue.size());
+        assertStatisticsTotalMessagesSent(75);
+
+        assertEquals("all messages sent",                           expectedMessages,   sortedMessageText(mock.sendMessagesHistory));
+    }
+
+
+    @Test
+    public void testBatchConstructionByMessageSize() throws Exception
+    {
+        config.setConcurrentRequests(2);
+        config.setDiscardAction(DiscardAction.none);
+        config.setDiscardThreshold(Integer.MAX_VALUE);
+        config.setBatchDelay(500);
+
+        // four messages fill a request
+        final String padding = StringUtil.repeat('X', SQSConstants.MAX_REQUEST_BYTES / 4 - 2);
+
+        mock = new MockSQSFacade(config);
+        createWriter();
+
+        for (int ii = 0 ; ii < 10 ; ii++)
+        {
+            String message = String.format("%02d", ii) + padding;
+            writer.addMessage(new LogMessage(System.currentTimeMillis(), message));
+        }
+
+        waitForWriterThread();
+
+        assertEquals("sendMessages() invocationCount",              2,                  mock.sendMessagesInvocationCount);
+        for (List<LogMessage> request : mock.sendMessagesRequests)
+        {
+            assertEquals("request size",                            4,                  request.size());
+        }
+        assertEquals("unsent messages remain on queue",             2,                  messageQueue.size());
+        assertStatisticsTotalMessagesSent(8);
+    }
+
+
+    @Test
+    public void testConcurrentRequests() throws Exception
+    {
+        config.setConcurrentRequests(4);
+        config.setBatchDelay(500);
+
+        // each request waits until all four requests are in progress
+        final CyclicBarrier barrier = new CyclicBarrier(4);
+        mock = new MockSQSFacade(config)
+        {
+            @Override
+            public List<LogMessage> sendMessages(String queueUrl, List<LogMessage> batch)
+            {
+                try
+                {
+                    barrier.await(2, TimeUnit.SECONDS);
+                }
+                catch (Exception ex)
+                {
+                    throw new RuntimeException("requests were not concurrent", ex);
+                }
+                return super.sendMessages(queueUrl, batch);
+            }
+        };
+        createWriter();
+
+        for (int ii = 0 ; ii < 40 ; ii++)
+        {
+            writer.addMessage(new LogMessage(System.currentTimeMillis(), String.valueOf(ii)));
+        }
+
+        waitForWriterThread();
+
+        assertEquals("sendMessages() invocationCount",              4,                  mock.sendMessagesInvocationCount);
+        assertEquals("sendMessages() distinct threads",             4,                  mock.sendMessagesThreads.size());
+        assertFalse("sendMessages() not called on writer thread",                       mock.sendMessagesThreads.contains(writerThread));
+        assertStatisticsTotalMessagesSent(40);
+
+        internalLogger.assertInternalWarningLog();
+        internalLogger.assertInternalErrorLog();
+    }
+
+
+    @Test
+    public void testConcurrentRequestsPartialFailure() throws Exception
+    {
+        config.setConcurrentRequests(2);
+        config.setBatchDelay(500);
+
+        // the request containing message 0 fails; the other succeeds
+        mock = new MockSQSFacade(config)
+        {
+            @Override
+            public List<LogMessage> sendMessages(String queueUrl, List<LogMessage> batch)
+            {
+                if ("0".equals(batch.get(0).getMessage()))
+                    throw new SQSFacadeException(ReasonCode.UNEXPECTED_EXCEPTION, false, null);
+                return super.sendMessages(queueUrl, batch);
+            }
+        };
+        createWriter();
+
+        for (int ii = 0 ; ii < 20 ; ii++)
+        {
+            writer.addMessage(new LogMessage(System.currentTimeMillis(), String.valueOf(ii)));
+        }
+
+        waitForWriterThread();
+
+        assertEquals("sendMessages() invocationCount",              2,                  mock.sendMessagesInvocationCount);
+        assertStatisticsTotalMessagesSent(10);
+        assertEquals("statistics: last batch messages requeued",    10,                 stats.getMessagesRequeuedLastBatch());
+        assertEquals("failed messages requeued",                    10,                 messageQueue.size());
+        assertEquals("first requeued message",                      "0",                messageQueue.dequeue().getMessage());
+
+        internalLogger.assertInternalErrorLog(
+                        "exception while sending batch");
+    }
+
+
+    @Test
+    public void testSingleRequestUsesWriterThread() throws Exception
+    {
+        config.setConcurrentRequests(1);
+        config.setBatchDelay(500);
+
+        mock = new MockSQSFacade(config);
+        createWriter();
+
+        for (int ii = 0 ; ii < 25 ; ii++)
+        {
+            writer.addMessage(new LogMessage(System.currentTimeMillis(), String.valueOf(ii)));
+        }
+
+        waitForWriterThread();
+
+        assertEquals("sendMessages() invocationCount",              1,                  mock.sendMessagesInvocationCount);
+        assertEquals("sendMessages() batch size",                   10,                 mock.sendMessagesBatch.size());
+        assertEquals("sendMessages() thread",                       Collections.singleton(writerThread),    mock.sendMessagesThreads);
+        assertEquals("unsent messages remain on queue",             15,                 messageQueue.size());
+    }
+
+
+    @Test
+    public void testInvalidCharactersReplaced() throws Exception
+    {
+        final String original = "\u001b[31mred\u001b[0m\tand\r\nnot\u0000";
+
+        // the first request is rejected, so that we can verify what's requeued
+        mock = new MockSQSFacade(config)
+        {
+            @Override
+            public List<LogMessage> sendMessages(String queueUrl, List<LogMessage> batch)
+            {
+                return (sendMessagesInvocationCount == 1)
+                     ? batch
+                     : super.sendMessages(queueUrl, batch);
+            }
+        };
+        createWriter();
+
+        writer.addMessage(new LogMessage(System.currentTimeMillis(), original));
+        writer.addMessage(new LogMessage(System.currentTimeMillis(), "valid"));
+        waitForWriterThread();
+
+        assertEquals("sendMessages() invocationCount",              1,                          mock.sendMessagesInvocationCount);
+        assertEquals("sent message 0",                              "?[31mred?[0m\tand\r\nnot?",    mock.sendMessagesBatch.get(0).getMessage());
+        assertEquals("sent message 1",                              "valid",                    mock.sendMessagesBatch.get(1).getMessage());
+
+        assertStatisticsTotalMessagesSent(0);
+        assertEquals("statistics: last batch messages requeued",    2,                          stats.getMessagesRequeuedLastBatch());
+        assertEquals("original message was requeued",              original,                   messageQueue.dequeue().getMessage());
+    }
+
+
+    @Test
+    public void testDiscardOversizeMessage() throws Exception
+    {
+        final String bigMessage     = StringUtil.repeat('X', SQSConstants.MAX_MESSAGE_BYTES - 1) + "Y";
+        final String biggerMessage  = bigMessage + "X";
+
+        config.setTruncateOversizeMessages(false);
+
+        mock = new MockSQSFacade(config);
+        createWriter();
+
+        writer.addMessage(new LogMessage(System.currentTimeMillis(), biggerMessage));
+        writer.addMessage(new LogMessage(System.currentTimeMillis(), bigMessage));
+        waitForWriterThread();
+
+        assertEquals("sendMessages() invocationCount",              1,                          mock.sendMessagesInvocationCount);
+        assertEquals("sendMessages() batch size",                   1,                          mock.sendMessagesBatch.size());
+        assertEquals("sendMessages() message",                      bigMessage,                 mock.sendMessagesBatch.get(0).getMessage());
+
+        internalLogger.assertInternalWarningLog("discarded oversize message.*");
+    }
+
+
+    @Test
+    public void testSynchronousOperation() throws Exception
+    {
+        config.setSynchronousMode(true);
+        mock = new MockSQSFacade(config);
+
+        createWriter();
+
+        assertTrue("writer is running",                             writer.isRunning());
+        assertTrue("writer is in synchronous mode",                 writer.isSynchronous());
+        assertSame("writer initialized on main thread",             Thread.currentThread(),     writerThread);
+
+        ((TestableSQSLogWriter)writer).disableThreadSynchronization();
+
+        writer.addMessage(new LogMessage(0, "message one"));
+        writer.addMessage(new LogMessage(0, "message two"));
+
+        assertEquals("messages have been removed from queue",       0,                          messageQueue.size());
+        assertEquals("sendMessages() invocationCount",              2,                          mock.sendMessagesInvocationCount);
+        assertEquals("sendMessages() thread",                       Collections.singleton(Thread.currentThread()),  mock.sendMessagesThreads);
+        assertEquals("sendMessages() last message",                 "message two",              mock.sendMessagesBatch.get(0).getMessage());
+    }
+}
@@ -0,0 +1,99 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.kdgregory.logging.aws;
+
+import java.util.List;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import net.sf.kdgcommons.lang.StringUtil;
+
+import com.kdgregory.logging.aws.sqs.SQSWriterConfig;
+
+
+/**
+ *  Verifies validation logic.
+ */
+public class TestSQSWriterConfig
+{
+    @Test
+    public void testValidateMinimal() throws Exception
+    {
+        SQSWriterConfig config = new SQSWriterConfig()
+                                 .setQueueName("Valid_Queue-Name");
+
+        List<String> result = config.validate();
+        assertEquals("config should be valid", 0, result.size());
+    }
+
+
+    @Test
+    public void testValidateMissingValues() throws Exception
+    {
+        SQSWriterConfig config = new SQSWriterConfig();
+
+        List<String> result = config.validate();
+        assertEquals("number of messages",  1,                          result.size());
+        assertEquals("message 0",           "missing queue name",       result.get(0));
+    }
+
+
+    @Test
+    public void testValidateBlankValues() throws Exception
+    {
+        SQSWriterConfig config = new SQSWriterConfig()
+                                 .setQueueName("");
+
+        List<String> result = config.validate();
+        assertEquals("number of messages",  1,                          result.size());
+        assertEquals("message 0",           "blank queue name",         result.get(0));
+    }
+
+
+    @Test
+    public void testValidateOverlongValues() throws Exception
+    {
+        SQSWriterConfig config = new SQSWriterConfig()
+                                 .setQueueName(StringUtil.repeat('X', 81));
+
+        List<String> result = config.validate();
+        assertEquals("number of messages",  1,                          result.size());
+        assertEquals("message 0",           "queue name too long",      result.get(0));
+    }
+
+
+    @Test
+    public void testValidateInvalidValues() throws Exception
+    {
+        SQSWriterConfig config = new SQSWriterConfig()
+                                 .setQueueName("I'm Not Valid!")
+                                 .setConcurrentRequests(0);
+
+        List<String> result = config.validate();
+        assertEquals("number of messages",  2,                                      result.size());
+        assertEquals("message 0",           "invalid queue name: I'm Not Valid!",   result.get(0));
+        assertEquals("message 1",           "invalid concurrent requests: 0",       result.get(1));
+
+        config.setQueueName("example.fifo")
+              .setConcurrentRequests(17);
+
+        result = config.validate();
+        assertEquals("number of messages",  2,                                      result.size());
+        assertEquals("message 0",           "FIFO queues are not supported: example.fifo",  result.get(0));
+        assertEquals("message 1",           "invalid concurrent requests: 17",      result.get(1));
+    }
+}
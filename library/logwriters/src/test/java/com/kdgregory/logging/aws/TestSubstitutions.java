@@ -294,4 +294,18 @@ public class TestSubstitutions
         // was succeeding if the bogus substitution was the first thing
         assertEquals(" 20170529 {bogus} 20170529", subs.perform(" {date} {bogus} {date}"));
     }
+
+
+    @Test
+    public void testTemplateReuse() throws Exception
+    {
+        // compiled templates are shared, values are not
+
+        Substitutions subs1 = new Substitutions(TEST_DATE, 1, mockInfoFacade);
+        Substitutions subs2 = new Substitutions(new Date(TEST_DATE.getTime() + 86400000L), 2, mockInfoFacade);
+
+        assertEquals("first instance",      "foo-20170529-1-bar",   subs1.perform("foo-{date}-{sequence}-bar"));
+        assertEquals("second instance",     "foo-20170530-2-bar",   subs2.perform("foo-{date}-{sequence}-bar"));
+        assertEquals("first instance again", "foo-20170529-1-bar",  subs1.perform("foo-{date}-{sequence}-bar"));
+    }
 }
@@ -16,10 +16,13 @@ package com.kdgregory.logging.common;
 
 import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
+import java.util.List;
 
 import org.junit.Test;
 import static org.junit.Assert.*;
 
+import com.kdgregory.logging.common.LogMessage.Severity;
+
 
 public class TestLogMessage
 {
@@ -53,6 +56,27 @@ public class TestLogMessage
     }
 
 
+    @Test
+    public void testDeferredMessage() throws Exception
+    {
+        final long timestamp = System.currentTimeMillis();
+        final String text = "\u0024\u00a2\u20ac";
+
+        LogMessage message = new LogMessage(timestamp, () -> text);
+
+        assertTrue("deferred before format",                                            message.isDeferred());
+        assertEquals("timestmap",               timestamp,                              message.getTimestamp());
+        assertEquals("size before format",      0,                                      message.size());
+
+        message.format();
+
+        assertFalse("deferred after format",                                            message.isDeferred());
+        assertEquals("message",                 text,                                   message.getMessage());
+        assertArrayEquals("message as bytes",   text.getBytes(StandardCharsets.UTF_8),  message.getBytes());
+        assertEquals("size",                    6,                                      message.size());
+    }
+
+
     @Test
     public void testTruncate() throws Exception
     {
@@ -127,6 +151,49 @@ public class TestLogMessage
     }
 
 
+    @Test
+    public void testSplit() throws Exception
+    {
+        final String ascii = "abcdefghijklmnopqrstuvwxyz0123";     // 30 bytes
+        final String utf8  = "\u00c1\u00c2\u2440\u00c1\u00c2\u2440";  // encodes as 2, 2, 3, 2, 2, 3
+
+        // header is "[x 30/30] " for worst-case size, leaving 10 bytes for content
+        LogMessage a = new LogMessage(123, Severity.WARN, ascii);
+        List<LogMessage> aParts = a.split(20, "x");
+
+        assertEquals("ASCII: number of parts",                      3,                      aParts.size());
+        assertEquals("ASCII: part 1",                               "[x 1/3] abcdefghij",   aParts.get(0).getMessage());
+        assertEquals("ASCII: part 2",                               "[x 2/3] klmnopqrst",   aParts.get(1).getMessage());
+        assertEquals("ASCII: part 3",                               "[x 3/3] uvwxyz0123",   aParts.get(2).getMessage());
+        assertEquals("ASCII: timestamp retained",                   123,                    aParts.get(2).getTimestamp());
+        assertEquals("ASCII: severity retained",                    Severity.WARN,          aParts.get(2).getSeverity());
+
+        // header is "[x 14/14] " for worst-case size, leaving 5 bytes for content; the split
+        // backs up to avoid breaking characters
+        LogMessage u = new LogMessage(0, utf8);
+        List<LogMessage> uParts = u.split(15, "x");
+
+        assertEquals("UTF-8: number of parts",                      3,                      uParts.size());
+        assertEquals("UTF-8: part 1",                               "[x 1/3] \u00c1\u00c2",  uParts.get(0).getMessage());
+        assertEquals("UTF-8: part 2",                               "[x 2/3] \u2440\u00c1",  uParts.get(1).getMessage());
+        assertEquals("UTF-8: part 3",                               "[x 3/3] \u00c2\u2440",  uParts.get(2).getMessage());
+        for (LogMessage part : uParts)
+        {
+            assertTrue("UTF-8: part within limit: " + part.size(),                          part.size() <= 15);
+        }
+
+        try
+        {
+            a.split(12, "x");
+            fail("was able to split with a size that can't hold header");
+        }
+        catch (IllegalArgumentException ex)
+        {
+            // success
+        }
+    }
+
+
 
     @Test
     public void testOrdering() throws Exception
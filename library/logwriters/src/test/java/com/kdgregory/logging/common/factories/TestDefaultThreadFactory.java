@@ -88,11 +88,18 @@ public class TestDefaultThreadFactory
     extends MockLogWriter<AbstractWriterConfig<?>>
     {
         private boolean isSynchronous;
+        private boolean isInitializationDeferred;
 
         public MyMockLogWriter(boolean isSynchronous)
+        {
+            this(isSynchronous, false);
+        }
+
+        public MyMockLogWriter(boolean isSynchronous, boolean isInitializationDeferred)
         {
             super(null);
             this.isSynchronous = isSynchronous;
+            this.isInitializationDeferred = isInitializationDeferred;
         }
 
         @Override
@@ -100,6 +107,12 @@ public class TestDefaultThreadFactory
         {
             return isSynchronous;
         }
+
+        @Override
+        public boolean isInitializationDeferred()
+        {
+            return isInitializationDeferred;
+        }
     }
 
 //----------------------------------------------------------------------------
@@ -140,6 +153,22 @@ public class TestDefaultThreadFactory
     }
 
 
+    @Test
+    public void testSynchronousOperationWithDeferredInitialization() throws Exception
+    {
+        TestableDefaultThreadFactory factory = new TestableDefaultThreadFactory("test");
+        MyMockLogWriter writer = new MyMockLogWriter(true, true);
+
+        factory.startLoggingThread(writer);
+        assertTrue("writer was started", writer.waitUntilInitialized(1000));
+        assertTrue("no uncaught exceptions", factory.uncaughtExceptions.isEmpty());
+
+        ArrayList<Thread> threads = new ArrayList<>(factory.threads);
+        assertEquals("number of threads created", 1, threads.size());
+        assertSame("writer was started on thread", threads.get(0), writer.writerThread);
+    }
+
+
     @Test
     public void testUncaughtExceptions() throws Exception
     {
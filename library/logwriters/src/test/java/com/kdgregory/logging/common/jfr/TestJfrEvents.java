@@ -0,0 +1,136 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.kdgregory.logging.common.jfr;
+
+import java.io.File;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import static org.junit.Assume.*;
+
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+import com.kdgregory.logging.common.LogMessage;
+import com.kdgregory.logging.common.util.MessageQueue;
+import com.kdgregory.logging.common.util.MessageQueue.DiscardAction;
+
+
+public class TestJfrEvents
+{
+    private File recordingFile;
+
+
+    @Before
+    public void setUp() throws Exception
+    {
+        assumeTrue(JfrEvents.isAvailable() && FlightRecorder.isAvailable());
+
+        recordingFile = File.createTempFile("TestJfrEvents-", ".jfr");
+    }
+
+
+    @After
+    public void tearDown() throws Exception
+    {
+        if (recordingFile != null)
+            recordingFile.delete();
+    }
+
+//----------------------------------------------------------------------------
+//  Testcases
+//----------------------------------------------------------------------------
+
+    @Test
+    public void testNoRecording() throws Exception
+    {
+        // tokens are null when the event isn't enabled, and null tokens are ignored
+
+        assertNull("batch built",                                   JfrEvents.beginBatchBuild());
+        assertNull("batch sent",                                    JfrEvents.beginBatchSend());
+        assertNull("writer initialized",                            JfrEvents.beginWriterInitialization());
+        assertNull("client created",                                JfrEvents.beginClientCreation());
+
+        JfrEvents.endBatchBuild(null, 1, 10);
+        JfrEvents.endBatchSend(null, "test", Collections.<LogMessage>emptyList(), Collections.<LogMessage>emptyList());
+        JfrEvents.endWriterInitialization(null, "test", true);
+        JfrEvents.endClientCreation(null, "test");
+    }
+
+
+    @Test
+    public void testRecording() throws Exception
+    {
+        LogMessage m1 = new LogMessage(System.currentTimeMillis(), "message one");
+        LogMessage m2 = new LogMessage(System.currentTimeMillis(), "message two");
+        List<LogMessage> batch = Arrays.asList(m1, m2);
+
+        try (Recording recording = new Recording())
+        {
+            for (String name : Arrays.asList("BatchBuilt", "BatchSent", "Throttled", "Requeued",
+                                             "Discarded", "WriterInitialized", "ClientCreated"))
+            {
+                recording.enable("com.kdgregory.logging." + name).withThreshold(Duration.ZERO);
+            }
+            recording.start();
+
+            JfrEvents.endWriterInitialization(JfrEvents.beginWriterInitialization(), "TestWriter", true);
+            JfrEvents.endClientCreation(JfrEvents.beginClientCreation(), "TestClient");
+            JfrEvents.endBatchBuild(JfrEvents.beginBatchBuild(), 2, 74);
+            JfrEvents.throttled("TestService");
+            JfrEvents.endBatchSend(JfrEvents.beginBatchSend(), "TestService", batch, Collections.singletonList(m2));
+            JfrEvents.requeued(1);
+
+            MessageQueue queue = new MessageQueue(1, DiscardAction.oldest);
+            queue.enqueue(m1);
+            queue.enqueue(m2);
+
+            recording.stop();
+            recording.dump(recordingFile.toPath());
+        }
+
+        Map<String,RecordedEvent> events = new HashMap<>();
+        for (RecordedEvent event : RecordingFile.readAllEvents(recordingFile.toPath()))
+        {
+            events.put(event.getEventType().getName().replace("com.kdgregory.logging.", ""), event);
+        }
+
+        assertEquals("writer initialized: writer",                  "TestWriter",           events.get("WriterInitialized").getString("writer"));
+        assertEquals("writer initialized: success",                 true,                   events.get("WriterInitialized").getBoolean("success"));
+        assertEquals("client created: type",                        "TestClient",           events.get("ClientCreated").getString("clientType"));
+        assertEquals("batch built: count",                          2,                      events.get("BatchBuilt").getInt("messageCount"));
+        assertEquals("batch built: bytes",                          74,                     events.get("BatchBuilt").getLong("bytes"));
+        assertEquals("throttled: service",                          "TestService",          events.get("Throttled").getString("service"));
+        assertEquals("batch sent: service",                         "TestService",          events.get("BatchSent").getString("service"));
+        assertEquals("batch sent: count",                           2,                      events.get("BatchSent").getInt("messageCount"));
+        assertEquals("batch sent: failed",                          1,                      events.get("BatchSent").getInt("failedCount"));
+        assertEquals("batch sent: bytes",                           11,                     events.get("BatchSent").getLong("bytes"));
+        assertEquals("requeued: count",                             1,                      events.get("Requeued").getInt("messageCount"));
+        assertEquals("discarded: count",                            1,                      events.get("Discarded").getInt("messageCount"));
+        assertEquals("discarded: bytes",                            11,                     events.get("Discarded").getLong("bytes"));
+        assertEquals("discarded: action",                           "oldest",               events.get("Discarded").getString("discardAction"));
+    }
+}
@@ -0,0 +1,90 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.kdgregory.logging.common.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+
+public class TestAtomicFileWriter
+{
+    private File dir;
+    private File file;
+
+
+    @Before
+    public void setUp() throws Exception
+    {
+        dir = Files.createTempDirectory("TestAtomicFileWriter-").toFile();
+        file = new File(new File(dir, "subdir"), "example.txt");
+    }
+
+
+    @After
+    public void tearDown() throws Exception
+    {
+        file.delete();
+        file.getParentFile().delete();
+        dir.delete();
+    }
+
+//----------------------------------------------------------------------------
+//  Testcases
+//----------------------------------------------------------------------------
+
+    @Test
+    public void testWriteAndReplace() throws Exception
+    {
+        AtomicFileWriter.write(file, out -> out.write("first".getBytes(StandardCharsets.UTF_8)));
+        assertEquals("after initial write",         "first",    new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8));
+
+        AtomicFileWriter.write(file, out -> out.write("second".getBytes(StandardCharsets.UTF_8)));
+        assertEquals("after replacement",           "second",   new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8));
+
+        assertEquals("no temporary files remain",   1,          file.getParentFile().list().length);
+    }
+
+
+    @Test
+    public void testFailedWrite() throws Exception
+    {
+        AtomicFileWriter.write(file, out -> out.write("original".getBytes(StandardCharsets.UTF_8)));
+
+        try
+        {
+            AtomicFileWriter.write(file, out ->
+            {
+                out.write("partial".getBytes(StandardCharsets.UTF_8));
+                throw new IOException("expected");
+            });
+            fail("should have thrown");
+        }
+        catch (IOException ex)
+        {
+            assertEquals("exception message",       "expected", ex.getMessage());
+        }
+
+        assertEquals("file unchanged",              "original", new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8));
+        assertEquals("temporary file removed",      1,          file.getParentFile().list().length);
+    }
+}
@@ -0,0 +1,74 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.kdgregory.logging.common.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+
+public class TestEwmaRate
+{
+    private AtomicLong counter = new AtomicLong();
+    private AtomicLong clock = new AtomicLong(1000000);
+
+
+    @Test
+    public void testNoChange() throws Exception
+    {
+        EwmaRate rate = new EwmaRate(counter::get, clock::get);
+
+        assertEquals("before first interval",           0.0,        rate.getRate(),     0.0);
+
+        clock.addAndGet(60000);
+        assertEquals("after one minute, no updates",    0.0,        rate.getRate(),     0.0);
+    }
+
+
+    @Test
+    public void testConvergence() throws Exception
+    {
+        EwmaRate rate = new EwmaRate(counter::get, clock::get);
+
+        // 50 events every 5 seconds is 10 per second
+        counter.addAndGet(50);
+        clock.addAndGet(5000);
+        double first = rate.getRate();
+        assertTrue("after first interval, rate is increasing: " + first,        (first > 0) && (first < 10));
+
+        // partial intervals are ignored
+        clock.addAndGet(2000);
+        assertEquals("partial interval",                first,      rate.getRate(),     0.0);
+        clock.addAndGet(3000);
+        counter.addAndGet(50);
+
+        for (int ii = 0 ; ii < 120 ; ii++)
+        {
+            counter.addAndGet(50);
+            clock.addAndGet(5000);
+            rate.getRate();
+        }
+        assertEquals("after ten minutes",               10.0,       rate.getRate(),     0.1);
+
+        // multiple intervals between reads are treated as a single average change
+        clock.addAndGet(60000);
+        double decayed = rate.getRate();
+        assertTrue("after a minute without updates: " + decayed,                (decayed > 3) && (decayed < 4));
+
+        clock.addAndGet(3600000);
+        assertEquals("after an hour without updates",   0.0,        rate.getRate(),     0.0);
+    }
+}
@@ -0,0 +1,144 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.kdgregory.logging.common.util;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+
+public class TestExistenceCache
+{
+    private File cacheFile;
+
+
+    @Before
+    public void setUp() throws Exception
+    {
+        cacheFile = File.createTempFile("TestExistenceCache-", ".cache");
+        cacheFile.delete();
+    }
+
+
+    @After
+    public void tearDown() throws Exception
+    {
+        cacheFile.delete();
+    }
+
+//----------------------------------------------------------------------------
+//  Testcases
+//----------------------------------------------------------------------------
+
+    @Test
+    public void testMemoryOnly() throws Exception
+    {
+        ExistenceCache cache = new ExistenceCache(null);
+
+        assertFalse("before add",                           cache.contains("foo"));
+
+        cache.add("foo", 60000);
+        assertTrue("after add",                             cache.contains("foo"));
+        assertFalse("unrelated key",                        cache.contains("bar"));
+
+        cache.remove("foo");
+        assertFalse("after remove",                         cache.contains("foo"));
+    }
+
+
+    @Test
+    public void testExpiration() throws Exception
+    {
+        ExistenceCache cache = new ExistenceCache(null);
+
+        cache.add("foo", 50);
+        assertTrue("before expiration",                     cache.contains("foo"));
+
+        Thread.sleep(100);
+        assertFalse("after expiration",                     cache.contains("foo"));
+    }
+
+
+    @Test
+    public void testInvalidKey() throws Exception
+    {
+        ExistenceCache cache = new ExistenceCache(cacheFile);
+
+        cache.add("foo\tbar", 60000);
+        assertFalse("key was not added",                    cache.contains("foo\tbar"));
+        assertFalse("file not written",                     cacheFile.exists());
+    }
+
+
+    @Test
+    public void testPersistence() throws Exception
+    {
+        ExistenceCache cache1 = new ExistenceCache(cacheFile);
+        cache1.add("foo", 60000);
+        cache1.add("bar", 60000);
+
+        assertTrue("file written",                          cacheFile.exists());
+
+        ExistenceCache cache2 = new ExistenceCache(cacheFile);
+        assertTrue("second instance: foo",                  cache2.contains("foo"));
+        assertTrue("second instance: bar",                  cache2.contains("bar"));
+
+        // additions and removals are merged with whatever is in the file
+
+        cache2.add("baz", 60000);
+        cache1.remove("bar");
+
+        ExistenceCache cache3 = new ExistenceCache(cacheFile);
+        assertTrue("third instance: foo",                   cache3.contains("foo"));
+        assertFalse("third instance: bar",                  cache3.contains("bar"));
+        assertTrue("third instance: baz",                   cache3.contains("baz"));
+    }
+
+
+    @Test
+    public void testIgnoresExpiredAndCorruptEntries() throws Exception
+    {
+        long now = System.currentTimeMillis();
+        Files.write(cacheFile.toPath(),
+                    Arrays.asList((now + 60000) + "\tfoo",
+                                  (now - 1000) + "\tbar",
+                                  "argle\tbaz",
+                                  "bargle"),
+                    StandardCharsets.UTF_8);
+
+        ExistenceCache cache = new ExistenceCache(cacheFile);
+        assertTrue("valid entry",                           cache.contains("foo"));
+        assertFalse("expired entry",                        cache.contains("bar"));
+        assertFalse("corrupt entry",                        cache.contains("baz"));
+    }
+
+
+    @Test
+    public void testSharedInstances() throws Exception
+    {
+        assertSame("same file",                             ExistenceCache.getInstance(cacheFile.getPath()),
+                                                            ExistenceCache.getInstance(cacheFile.getPath()));
+        assertSame("memory-only",                           ExistenceCache.getInstance(null),
+                                                            ExistenceCache.getInstance(""));
+        assertNotSame("different files",                    ExistenceCache.getInstance(cacheFile.getPath()),
+                                                            ExistenceCache.getInstance(null));
+    }
+}
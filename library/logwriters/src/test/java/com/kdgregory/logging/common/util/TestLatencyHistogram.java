@@ -0,0 +1,111 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.kdgregory.logging.common.util;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+
+public class TestLatencyHistogram
+{
+    @Test
+    public void testEmpty() throws Exception
+    {
+        LatencyHistogram histogram = new LatencyHistogram();
+
+        assertEquals("count",                               0,          histogram.getCount());
+        assertEquals("p50",                                 0,          histogram.getPercentile(0.50));
+        assertEquals("p999",                                0,          histogram.getPercentile(0.999));
+    }
+
+
+    @Test
+    public void testSmallValuesAreExact() throws Exception
+    {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int ii = 0 ; ii < 16 ; ii++)
+        {
+            histogram.record(ii);
+        }
+
+        assertEquals("count",                               16,         histogram.getCount());
+        assertEquals("p0",                                  0,          histogram.getPercentile(0.0));
+        assertEquals("p50",                                 7,          histogram.getPercentile(0.50));
+        assertEquals("p100",                                15,         histogram.getPercentile(1.0));
+    }
+
+
+    @Test
+    public void testLargeValuesAreApproximate() throws Exception
+    {
+        long[] values = new long[] { 16, 17, 100, 1000, 12345, 86400000L, 1L << 40 };
+        for (long value : values)
+        {
+            LatencyHistogram histogram = new LatencyHistogram();
+            histogram.record(value);
+            long reported = histogram.getPercentile(0.5);
+            assertTrue("reported value not less than actual: " + value,             reported >= value);
+            assertTrue("reported value within 1/16 of actual: " + value,            reported - value <= value / 16);
+        }
+    }
+
+
+    @Test
+    public void testOutOfRangeValues() throws Exception
+    {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(-10);
+        assertEquals("negative value recorded as zero",     0,          histogram.getPercentile(1.0));
+
+        histogram.record(Long.MAX_VALUE);
+        assertTrue("huge value recorded in highest bucket",             histogram.getPercentile(1.0) >= (1L << 40));
+        assertEquals("count",                               2,          histogram.getCount());
+    }
+
+
+    @Test
+    public void testPercentiles() throws Exception
+    {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int ii = 0 ; ii < 990 ; ii++)
+        {
+            histogram.record(10);
+        }
+        for (int ii = 0 ; ii < 9 ; ii++)
+        {
+            histogram.record(100);
+        }
+        histogram.record(1000);
+
+        assertEquals("p50",                                 10,         histogram.getPercentile(0.50));
+        assertEquals("p99",                                 10,         histogram.getPercentile(0.99));
+        assertInBucket("p999",                              100,        histogram.getPercentile(0.999));
+        assertInBucket("p100",                              1000,       histogram.getPercentile(1.0));
+
+        histogram.reset();
+        assertEquals("count after reset",                   0,          histogram.getCount());
+        assertEquals("p50 after reset",                     0,          histogram.getPercentile(0.50));
+    }
+
+//----------------------------------------------------------------------------
+//  Internals
+//----------------------------------------------------------------------------
+
+    private static void assertInBucket(String message, long expected, long actual)
+    {
+        assertTrue(message + ": expected approximately " + expected + ", was " + actual,
+                   (actual >= expected) && (actual - expected <= expected / 16));
+    }
+}
@@ -23,7 +23,10 @@ import java.util.concurrent.atomic.AtomicReference;
 import org.junit.Test;
 import static org.junit.Assert.*;
 
+import static net.sf.kdgcommons.test.NumericAsserts.*;
+
 import com.kdgregory.logging.common.LogMessage;
+import com.kdgregory.logging.common.LogMessage.Severity;
 import com.kdgregory.logging.common.util.MessageQueue.DiscardAction;
 
 
@@ -96,6 +99,36 @@ public class TestMessageQueue
     }
 
 
+    @Test
+    public void testByteCountAndHighWater() throws Exception
+    {
+        LogMessage old = new LogMessage(1000L, "older");
+        MessageQueue queue = new MessageQueue(1000, DiscardAction.none);
+
+        assertEquals("initial byte count",                          0,                          queue.byteCount());
+        assertEquals("initial oldest timestamp",                    0,                          queue.oldestTimestamp());
+
+        queue.enqueue(m1);
+        queue.enqueue(m2);
+        queue.requeue(old);
+
+        assertEquals("byte count after adds",                       9,                          queue.byteCount());
+        assertEquals("oldest timestamp after adds",                 1000L,                      queue.oldestTimestamp());
+
+        queue.dequeue();
+        queue.dequeue(10);
+
+        assertEquals("byte count after removes",                    2,                          queue.byteCount());
+        assertEquals("oldest timestamp after removes",              m2.getTimestamp(),          queue.oldestTimestamp());
+        assertEquals("high-water message count",                    3,                          queue.getHighWaterMessageCount());
+        assertEquals("high-water byte count",                       9,                          queue.getHighWaterByteCount());
+
+        queue.enqueue(m3);
+        assertEquals("high-water message count unchanged",          3,                          queue.getHighWaterMessageCount());
+        assertEquals("high-water byte count unchanged",             9,                          queue.getHighWaterByteCount());
+    }
+
+
     @Test
     public void testConcurrentChanges() throws Exception
     {
@@ -200,6 +233,61 @@ public class TestMessageQueue
     }
 
 
+    @Test
+    public void testWakeupDuringDequeue() throws Exception
+    {
+        final MessageQueue queue = new MessageQueue(1000, DiscardAction.oldest);
+        final AtomicReference<Object> lastDequeue = new AtomicReference<Object>();
+
+        Thread readerThread = new Thread(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                for (int attempt = 0 ; attempt < 2 ; attempt++)
+                {
+                    lastDequeue.set(queue.dequeue(Long.MAX_VALUE));
+                }
+            }
+        });
+        readerThread.start();
+
+        queue.enqueue(m1);
+        waitForReference(lastDequeue, m1, 2);
+        assertSame("after first enqueue, was able to retrieve", m1, lastDequeue.get());
+
+        waitForReaderToBlock(readerThread, 2);
+        queue.wakeup();
+        waitForReference(lastDequeue, null, 2);
+        assertNull("after wakeup, retrieved null", lastDequeue.get());
+
+        // this will hang if the reader hasn't processed 2 dequeues
+        readerThread.join();
+
+        // a wakeup without a waiting thread applies to the next timed dequeue only
+
+        queue.wakeup();
+        long start = System.currentTimeMillis();
+        assertNull("dequeue after wakeup", queue.dequeue(1000L));
+        assertInRange("dequeue after wakeup did not wait", 0, 100, System.currentTimeMillis() - start);
+
+        start = System.currentTimeMillis();
+        assertNull("subsequent dequeue", queue.dequeue(200L));
+        assertInRange("subsequent dequeue waited", 150, 400, System.currentTimeMillis() - start);
+
+        // a wakeup isn't consumed by dequeues that return a message
+
+        queue.enqueue(m1);
+        queue.enqueue(m2);
+        queue.wakeup();
+        assertSame("first dequeue after wakeup, with messages",  m1, queue.dequeue(1000L));
+        assertSame("second dequeue after wakeup, with messages", m2, queue.dequeue(1000L));
+        start = System.currentTimeMillis();
+        assertNull("dequeue after draining", queue.dequeue(1000L));
+        assertInRange("dequeue after draining did not wait", 0, 100, System.currentTimeMillis() - start);
+    }
+
+
     @Test
     public void testDiscardNone() throws Exception
     {
@@ -233,6 +321,7 @@ public class TestMessageQueue
 
         assertEquals("queue size",                  discardThreshold, queue.size());
         assertEquals("number of dropped messages",  expectedDiscards, queue.getDroppedMessageCount());
+        assertEquals("number of dropped bytes",     10,               queue.getDroppedByteCount());
 
         List<LogMessage> messages = queue.toList();
         assertEquals("first message in queue",  "10", messages.get(0).getMessage());
@@ -256,6 +345,7 @@ public class TestMessageQueue
 
         assertEquals("queue size",                  discardThreshold, queue.size());
         assertEquals("number of dropped messages",  expectedDiscards, queue.getDroppedMessageCount());
+        assertEquals("number of dropped bytes",     20,               queue.getDroppedByteCount());
 
         List<LogMessage> messages = queue.toList();
         assertEquals("first message in queue",  "0", messages.get(0).getMessage());
@@ -263,6 +353,161 @@ public class TestMessageQueue
     }
 
 
+    @Test
+    public void testMixedSeverities() throws Exception
+    {
+        LogMessage debug = new LogMessage(System.currentTimeMillis(), Severity.DEBUG, "debug");
+        LogMessage info  = new LogMessage(System.currentTimeMillis(), Severity.INFO,  "info");
+        LogMessage warn  = new LogMessage(System.currentTimeMillis(), Severity.WARN,  "warn");
+        LogMessage error = new LogMessage(System.currentTimeMillis(), Severity.ERROR, "error");
+
+        MessageQueue queue = new MessageQueue(1000, DiscardAction.none);
+
+        queue.enqueue(warn);
+        queue.enqueue(debug);
+        queue.enqueue(error);
+        queue.enqueue(info);
+
+        assertEquals("contents in enqueue order",       Arrays.asList(warn, debug, error, info),    queue.toList());
+        assertEquals("oldest timestamp",                warn.getTimestamp(),                        queue.oldestTimestamp());
+
+        assertSame("first dequeue",                     warn,       queue.dequeue());
+        assertSame("second dequeue",                    debug,      queue.dequeue());
+
+        // requeues go to the front, regardless of severity
+        queue.requeue(debug);
+        queue.requeue(warn);
+
+        assertEquals("contents after requeue",          Arrays.asList(warn, debug, error, info),    queue.toList());
+        assertSame("dequeue after requeue",             warn,       queue.dequeue());
+        assertSame("dequeue after requeue",             debug,      queue.dequeue());
+        assertSame("dequeue after requeue",             error,      queue.dequeue());
+        assertSame("dequeue after requeue",             info,       queue.dequeue());
+        assertTrue("queue is empty",                                queue.isEmpty());
+    }
+
+
+    @Test
+    public void testDiscardByLevel() throws Exception
+    {
+        LogMessage debug1 = new LogMessage(System.currentTimeMillis(), Severity.DEBUG, "debug1");
+        LogMessage debug2 = new LogMessage(System.currentTimeMillis(), Severity.DEBUG, "debug2");
+        LogMessage info   = new LogMessage(System.currentTimeMillis(), Severity.INFO,  "info");
+        LogMessage error1 = new LogMessage(System.currentTimeMillis(), Severity.ERROR, "error1");
+        LogMessage error2 = new LogMessage(System.currentTimeMillis(), Severity.ERROR, "error2");
+
+        MessageQueue queue = new MessageQueue(3, DiscardAction.oldest);
+        queue.setDiscardByLevel(true);
+
+        queue.enqueue(error1);
+        queue.enqueue(debug1);
+        queue.enqueue(info);
+        queue.enqueue(debug2);
+        assertEquals("oldest debug discarded first",    Arrays.asList(error1, info, debug2),        queue.toList());
+
+        queue.enqueue(error2);
+        assertEquals("remaining debug discarded",       Arrays.asList(error1, info, error2),        queue.toList());
+
+        queue.enqueue(debug1);
+        assertEquals("new debug discarded",             Arrays.asList(error1, info, error2),        queue.toList());
+
+        assertEquals("dropped count",                   3,          queue.getDroppedMessageCount());
+        assertEquals("dropped bytes",                   18,         queue.getDroppedByteCount());
+
+        // "newest" applies within the lowest level
+        queue = new MessageQueue(2, DiscardAction.newest);
+        queue.setDiscardByLevel(true);
+
+        queue.enqueue(debug1);
+        queue.enqueue(debug2);
+        assertFalse("discardIfFull depends on severity",            queue.discardIfFull());
+
+        queue.enqueue(error1);
+        assertEquals("newest debug discarded",          Arrays.asList(debug1, error1),              queue.toList());
+    }
+
+
+    @Test
+    public void testDiscardBlock() throws Exception
+    {
+        LogMessage m4 = new LogMessage(System.currentTimeMillis(), "m4");
+
+        final MessageQueue queue = new MessageQueue(2, DiscardAction.block);
+        queue.setBlockTimeout(200);
+
+        queue.enqueue(m1);
+        queue.enqueue(m2);
+        assertFalse("discardIfFull never discards",                 queue.discardIfFull());
+        assertEquals("no blocking below threshold",                 0,                          queue.getBlockedCount());
+
+        // enqueue will wait until the reader thread removes a message
+        Thread readerThread = new Thread(() ->
+        {
+            try
+            {
+                Thread.sleep(50);
+            }
+            catch (InterruptedException ignored)
+            {
+                // nothing to do
+            }
+            queue.dequeue();
+        });
+        readerThread.start();
+
+        queue.enqueue(m3);
+        readerThread.join();
+
+        assertEquals("after blocked enqueue",                       Arrays.asList(m2, m3),      queue.toList());
+        assertEquals("blocked count",                               1,                          queue.getBlockedCount());
+        assertInRange("blocked time",                               40, 200,                    queue.getBlockedTime());
+        assertEquals("no timeouts",                                 0,                          queue.getBlockTimeoutCount());
+        assertEquals("nothing dropped",                             0,                          queue.getDroppedMessageCount());
+
+        // without a reader, enqueue will wait for the timeout and then apply the fallback
+        queue.enqueue(m4);
+
+        assertEquals("fallback discarded oldest",                   Arrays.asList(m3, m4),      queue.toList());
+        assertEquals("blocked count",                               2,                          queue.getBlockedCount());
+        assertInRange("blocked time",                               240, 600,                   queue.getBlockedTime());
+        assertEquals("timeout count",                               1,                          queue.getBlockTimeoutCount());
+        assertEquals("dropped count",                               1,                          queue.getDroppedMessageCount());
+
+        // requeue never blocks, and never discards
+        queue.requeue(m2);
+        assertEquals("after requeue",                               Arrays.asList(m2, m3, m4),  queue.toList());
+        assertEquals("blocked count after requeue",                 2,                          queue.getBlockedCount());
+    }
+
+
+    @Test
+    public void testDiscardIfFull() throws Exception
+    {
+        MessageQueue queue = new MessageQueue(2, DiscardAction.newest);
+
+        assertFalse("empty queue",                  queue.discardIfFull());
+        queue.enqueue(m1);
+        assertFalse("below threshold",              queue.discardIfFull());
+        queue.enqueue(m2);
+        assertTrue("at threshold",                  queue.discardIfFull());
+        assertEquals("dropped count",               1,      queue.getDroppedMessageCount());
+        assertEquals("dropped bytes",               0,      queue.getDroppedByteCount());
+        assertEquals("queue unchanged",             Arrays.asList(m1, m2),  queue.toList());
+
+        queue.setDiscardAction(DiscardAction.oldest);
+        assertFalse("oldest: at threshold",         queue.discardIfFull());
+
+        queue.setDiscardAction(DiscardAction.none);
+        assertFalse("none: at threshold",           queue.discardIfFull());
+
+        // this is the configuration after writer initialization fails
+        queue.setDiscardAction(DiscardAction.oldest);
+        queue.setDiscardThreshold(0);
+        assertTrue("zero threshold",                queue.discardIfFull());
+        assertEquals("dropped count",               2,      queue.getDroppedMessageCount());
+    }
+
+
     @Test
     public void testUpdateDiscard() throws Exception
     {
@@ -0,0 +1,96 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.kdgregory.logging.testhelpers;
+
+import java.lang.management.ManagementFactory;
+
+
+/**
+ *  Measures the number of bytes allocated by the current thread, for tests that
+ *  guard the allocation "budget" of a code path. This relies on the HotSpot
+ *  extension to <code>ThreadMXBean</code>; callers should check {@link #isSupported}
+ *  (typically via <code>Assume</code>) before measuring.
+ */
+public class AllocationMeter
+{
+    private final static com.sun.management.ThreadMXBean threadBean = retrieveThreadBean();
+
+    // the measurement itself allocates a few bytes (at least on JDK 8); this is subtracted
+    private final static long overhead = calibrate();
+
+
+    /**
+     *  Returns true if the JVM is able to report per-thread allocation.
+     */
+    public static boolean isSupported()
+    {
+        return threadBean != null;
+    }
+
+
+    /**
+     *  Invokes the passed action and returns the number of bytes allocated by the
+     *  current thread while doing so.
+     */
+    public static long allocatedBytes(Runnable action)
+    {
+        long threadId = Thread.currentThread().getId();
+        long before = threadBean.getThreadAllocatedBytes(threadId);
+        action.run();
+        long after = threadBean.getThreadAllocatedBytes(threadId);
+        return Math.max(0, after - before - overhead);
+    }
+
+
+    private static com.sun.management.ThreadMXBean retrieveThreadBean()
+    {
+        try
+        {
+            java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+            if (! (bean instanceof com.sun.management.ThreadMXBean))
+                return null;
+
+            com.sun.management.ThreadMXBean result = (com.sun.management.ThreadMXBean)bean;
+            if (! result.isThreadAllocatedMemorySupported())
+                return null;
+
+            result.setThreadAllocatedMemoryEnabled(true);
+            return result;
+        }
+        catch (Throwable ex)
+        {
+            // the com.sun.management classes may not exist on a non-HotSpot JVM
+            return null;
+        }
+    }
+
+
+    private static long calibrate()
+    {
+        if (threadBean == null)
+            return 0;
+
+        long threadId = Thread.currentThread().getId();
+        long result = Long.MAX_VALUE;
+        for (int ii = 0 ; ii < 100 ; ii++)
+        {
+            long before = threadBean.getThreadAllocatedBytes(threadId);
+            long after = threadBean.getThreadAllocatedBytes(threadId);
+            result = Math.min(result, after - before);
+        }
+        return result;
+    }
+}
@@ -44,8 +44,13 @@ implements LogWriter
 
     public boolean stopped;
 
+    // set by tests to simulate a full queue
+    public volatile boolean queueFull;
+    public int discardedBeforeFormatCount;
+
     public int runInvocationCount;
     public int addMessageInvocationCount;
+    public int flushInvocationCount;
     public int stopInvocationCount;
     public int waitUntilStoppedInvocationCount;
 
@@ -95,6 +100,13 @@ implements LogWriter
     }
 
 
+    @Override
+    public boolean isInitializationDeferred()
+    {
+        return config.getDeferInitialization();
+    }
+
+
     @Override
     public void run()
     {
@@ -103,6 +115,15 @@ implements LogWriter
     }
 
 
+    @Override
+    public boolean discardIfFull()
+    {
+        if (queueFull)
+            discardedBeforeFormatCount++;
+        return queueFull;
+    }
+
+
     @Override
     public void addMessage(LogMessage message)
     {
@@ -112,6 +133,14 @@ implements LogWriter
     }
 
 
+    @Override
+    public boolean flush(long millisToWait)
+    {
+        flushInvocationCount++;
+        return true;
+    }
+
+
     @Override
     public void stop()
     {
@@ -0,0 +1,127 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.kdgregory.logging.testhelpers;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import com.kdgregory.logging.aws.facade.S3Facade;
+
+
+/**
+ *  Simple mock-object, used for testing offload of oversize messages and the S3
+ *  writer. Uploaded objects are recorded in a map, keyed by object key; multipart
+ *  uploads are recorded when completed. Set <code>exception</code> to make all
+ *  calls fail.
+ */
+public class MockS3Facade
+implements S3Facade
+{
+    public Map<String,byte[]> uploads = Collections.synchronizedMap(new LinkedHashMap<>());
+    public volatile RuntimeException exception;
+    public volatile int putObjectInvocationCount;
+    public volatile int startMultipartUploadInvocationCount;
+    public volatile int uploadPartInvocationCount;
+    public volatile int completeMultipartUploadInvocationCount;
+    public volatile int abortMultipartUploadInvocationCount;
+    public volatile int shutdownInvocationCount;
+
+    // in-progress multipart uploads, keyed by upload ID
+    public Map<String,List<byte[]>> pendingParts = Collections.synchronizedMap(new LinkedHashMap<>());
+
+
+    @Override
+    public void putObject(String key, byte[] content)
+    {
+        putObjectInvocationCount++;
+        if (exception != null)
+            throw exception;
+
+        uploads.put(key, content);
+    }
+
+
+    @Override
+    public String startMultipartUpload(String key)
+    {
+        startMultipartUploadInvocationCount++;
+        if (exception != null)
+            throw exception;
+
+        String uploadId = UUID.randomUUID().toString();
+        pendingParts.put(uploadId, new ArrayList<>());
+        return uploadId;
+    }
+
+
+    @Override
+    public String uploadPart(String key, String uploadId, int partNumber, byte[] content)
+    {
+        uploadPartInvocationCount++;
+        if (exception != null)
+            throw exception;
+
+        List<byte[]> parts = pendingParts.get(uploadId);
+        if (parts.size() != partNumber - 1)
+            throw new IllegalStateException("unexpected part number: " + partNumber);
+
+        parts.add(content);
+        return "etag-" + partNumber;
+    }
+
+
+    @Override
+    public void completeMultipartUpload(String key, String uploadId, List<String> partETags)
+    {
+        completeMultipartUploadInvocationCount++;
+        if (exception != null)
+            throw exception;
+
+        List<byte[]> parts = pendingParts.remove(uploadId);
+        if (parts.size() != partETags.size())
+            throw new IllegalStateException("expected " + parts.size() + " etags, was " + partETags.size());
+
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+        for (byte[] part : parts)
+        {
+            content.write(part, 0, part.length);
+        }
+        uploads.put(key, content.toByteArray());
+    }
+
+
+    @Override
+    public void abortMultipartUpload(String key, String uploadId)
+    {
+        abortMultipartUploadInvocationCount++;
+        if (exception != null)
+            throw exception;
+
+        pendingParts.remove(uploadId);
+    }
+
+
+    @Override
+    public void shutdown()
+    {
+        shutdownInvocationCount++;
+    }
+}
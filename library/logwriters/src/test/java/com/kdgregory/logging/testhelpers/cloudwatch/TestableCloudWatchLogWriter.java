@@ -45,6 +45,7 @@ extends CloudWatchLogWriter
         // replace the stndard retry timeouts with something that operates much more quickly
         describeRetry = new RetryManager2("describe", Duration.ofMillis(50), false, true);
         createRetry = new RetryManager2("create", Duration.ofMillis(50), false, false);
+        optimisticCreateTimeout = Duration.ofMillis(200);
         sendTimeout = Duration.ofMillis(200);
         sendRetry = new RetryManager2("send", Duration.ofMillis(50), false, false);
     }
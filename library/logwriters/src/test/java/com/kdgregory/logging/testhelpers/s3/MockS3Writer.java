@@ -0,0 +1,31 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.kdgregory.logging.testhelpers.s3;
+
+import com.kdgregory.logging.aws.s3.S3WriterConfig;
+import com.kdgregory.logging.testhelpers.MockLogWriter;
+
+
+/**
+ *  A mock equivalent of S3LogWriter, used by appender tests.
+ */
+public class MockS3Writer
+extends MockLogWriter<S3WriterConfig>
+{
+    public MockS3Writer(S3WriterConfig config)
+    {
+        super(config);
+    }
+}
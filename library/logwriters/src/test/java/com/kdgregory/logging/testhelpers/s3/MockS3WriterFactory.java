@@ -0,0 +1,42 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.kdgregory.logging.testhelpers.s3;
+
+import com.kdgregory.logging.aws.s3.S3WriterStatistics;
+import com.kdgregory.logging.aws.s3.S3WriterConfig;
+import com.kdgregory.logging.common.LogWriter;
+import com.kdgregory.logging.common.util.InternalLogger;
+import com.kdgregory.logging.common.util.WriterFactory;
+
+
+/**
+ *  A writer factory for appender tests (replace the default factory in the
+ *  test). It creates a mock writer, and records factory invocations.
+ */
+public class MockS3WriterFactory
+implements WriterFactory<S3WriterConfig,S3WriterStatistics>
+{
+    public int invocationCount = 0;
+    public MockS3Writer writer;
+
+
+    @Override
+    public LogWriter newLogWriter(S3WriterConfig config, S3WriterStatistics stats, InternalLogger logger)
+    {
+        invocationCount++;
+        writer = new MockS3Writer(config);
+        return writer;
+    }
+}
@@ -0,0 +1,123 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.kdgregory.logging.testhelpers.s3;
+
+import java.util.concurrent.Semaphore;
+
+import com.kdgregory.logging.aws.facade.S3Facade;
+import com.kdgregory.logging.aws.s3.S3LogWriter;
+import com.kdgregory.logging.aws.s3.S3WriterConfig;
+import com.kdgregory.logging.aws.s3.S3WriterStatistics;
+import com.kdgregory.logging.common.util.InternalLogger;
+
+
+/**
+ *  Used by appender tests. Provides semaphores to synchronize test (main) and
+ *  writer threads.
+ */
+public class TestableS3LogWriter
+extends S3LogWriter
+{
+    private Semaphore allowMainThread   = new Semaphore(0);
+    private Semaphore allowWriterThread = new Semaphore(0);
+
+    public Thread writerThread;
+
+
+    public TestableS3LogWriter(S3WriterConfig config, S3WriterStatistics stats, InternalLogger logger, S3Facade facade)
+    {
+        super(config, stats, logger, facade);
+
+        // replace the standard retry delay with something that operates much more quickly
+        retryDelay = 50;
+    }
+
+    @Override
+    public void run()
+    {
+        writerThread = Thread.currentThread();
+        super.run();
+    }
+
+
+
+    @Override
+    public synchronized void processBatch(long waitUntil)
+    {
+        if (!isRunning())
+            return;
+
+        try
+        {
+            allowWriterThread.acquire();
+            super.processBatch(waitUntil);
+            super.writeBuffers(false);
+        }
+        catch (InterruptedException ex)
+        {
+            // this will happen when main thread calls stop()
+        }
+        finally
+        {
+            allowMainThread.release();
+        }
+    }
+
+
+    /**
+     *  The writer thread calls this after every batch; those calls are made from
+     *  {@link #processBatch} instead, so that they're synchronized with the test.
+     *  Forced calls (flush and shutdown) are passed through.
+     */
+    @Override
+    protected boolean writeBuffers(boolean force)
+    {
+        return force ? super.writeBuffers(true) : true;
+    }
+
+
+    /**
+     *  Pauses the main thread and allows the writer thread to proceed.
+     */
+    public void waitForWriterThread()
+    throws Exception
+    {
+        allowWriterThread.release();
+        Thread.sleep(100);
+        allowMainThread.acquire();
+    }
+
+
+    /**
+     *  Allows the writer thread to proceed, without waiting (this is used in test teardown).
+     */
+    public void releaseWriterThread()
+    throws Exception
+    {
+        allowWriterThread.release();
+    }
+
+
+    /**
+     *  Used for synchronous invocation tests: grants an "infinite" number of
+     *  permits for the writer to proceed.
+     */
+    public void disableThreadSynchronization()
+    {
+        allowMainThread = new Semaphore(1000);
+        allowWriterThread = new Semaphore(1000);
+    }
+
+}
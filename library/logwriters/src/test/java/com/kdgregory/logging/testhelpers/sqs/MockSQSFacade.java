@@ -0,0 +1,132 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.kdgregory.logging.testhelpers.sqs;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import com.kdgregory.logging.aws.facade.SQSFacade;
+import com.kdgregory.logging.aws.sqs.SQSWriterConfig;
+import com.kdgregory.logging.common.LogMessage;
+
+
+/**
+ *  A mock object for testing <code>SQSLogWriter</code>.
+ *  <p>
+ *  The default implementation assumes that everything works; override methods
+ *  to test failure behavior.
+ *  <p>
+ *  Since the writer calls <code>sendMessages()</code> from multiple threads, the
+ *  recorded invocation data is updated while synchronized on this object, but
+ *  the overridable method is called without holding the lock (so that tests can
+ *  verify concurrent invocation).
+ */
+public class MockSQSFacade
+implements InvocationHandler
+{
+    public final static String DEFAULT_QUEUE_URL = "https://sqs.us-east-1.amazonaws.com/123456789012/";
+
+    private SQSWriterConfig config;
+
+    // invocation counters
+    public int retrieveQueueUrlInvocationCount;
+    public int sendMessagesInvocationCount;
+    public int shutdownInvocationCount;
+
+    // arguments passed to sendMessages(); the batch is the last one sent
+    public String sendMessagesQueueUrl;
+    public List<LogMessage> sendMessagesBatch;
+    public List<List<LogMessage>> sendMessagesRequests = new ArrayList<List<LogMessage>>();
+    public List<LogMessage> sendMessagesHistory = new ArrayList<LogMessage>();
+    public Set<Thread> sendMessagesThreads = new LinkedHashSet<Thread>();
+
+
+    public MockSQSFacade(SQSWriterConfig config)
+    {
+        this.config = config;
+    }
+
+
+    public SQSFacade newInstance()
+    {
+        return (SQSFacade)Proxy.newProxyInstance(
+                            getClass().getClassLoader(),
+                            new Class<?>[] { SQSFacade.class },
+                            this);
+    }
+
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable
+    {
+        switch (method.getName())
+        {
+            case "retrieveQueueUrl":
+                synchronized (this)
+                {
+                    retrieveQueueUrlInvocationCount++;
+                }
+                return retrieveQueueUrl();
+            case "sendMessages":
+                String queueUrl = (String)args[0];
+                List<LogMessage> batch = (List<LogMessage>)args[1];
+                synchronized (this)
+                {
+                    sendMessagesInvocationCount++;
+                    sendMessagesThreads.add(Thread.currentThread());
+                    sendMessagesQueueUrl = queueUrl;
+                    sendMessagesBatch = batch;
+                    sendMessagesRequests.add(batch);
+                    sendMessagesHistory.addAll(batch);
+                }
+                return sendMessages(queueUrl, batch);
+            case "shutdown":
+                synchronized (this)
+                {
+                    shutdownInvocationCount++;
+                }
+                shutdown();
+                return null;
+            default:
+                throw new RuntimeException("unexpected method: " + method.getName());
+        }
+    }
+
+//----------------------------------------------------------------------------
+//  SQSFacade -- override these to return testable values
+//----------------------------------------------------------------------------
+
+    public String retrieveQueueUrl()
+    {
+        return DEFAULT_QUEUE_URL + config.getQueueName();
+    }
+
+    public List<LogMessage> sendMessages(String queueUrl, List<LogMessage> batch)
+    {
+        return Collections.emptyList();
+    }
+
+    public void shutdown()
+    {
+        // nothing here
+    }
+}